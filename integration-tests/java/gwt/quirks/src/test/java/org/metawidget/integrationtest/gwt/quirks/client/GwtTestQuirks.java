@@ -29,6 +29,7 @@ import com.google.gwt.event.shared.HasHandlers;
 import com.google.gwt.event.shared.UmbrellaException;
 import com.google.gwt.junit.client.GWTTestCase;
 import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.CheckBox;
 import com.google.gwt.user.client.ui.FlexTable;
@@ -324,6 +325,93 @@ public class GwtTestQuirks
 		}
 	}
 
+	public void testGwtRemoteInspectorProxyBatching() {
+
+		final GwtRemoteInspectorProxy inspector = new GwtRemoteInspectorProxy();
+		inspector.setBatchInspections( true );
+		inspector.setCacheInspectionResults( true );
+
+		final GwtQuirks quirks = new GwtQuirks();
+		final String type = GwtQuirks.class.getName();
+		final String[] inspectionResults = new String[2];
+
+		// Requested within the same browser event, so sent as one batch
+
+		inspector.inspect( quirks, type, null, new AsyncCallback<String>() {
+
+			public void onFailure( Throwable caught ) {
+
+				fail( caught.getMessage() );
+			}
+
+			public void onSuccess( String inspectionResult ) {
+
+				inspectionResults[0] = inspectionResult;
+			}
+		} );
+
+		inspector.inspect( quirks, type, new String[] { "nestedQuirks" }, new AsyncCallback<String>() {
+
+			public void onFailure( Throwable caught ) {
+
+				fail( caught.getMessage() );
+			}
+
+			public void onSuccess( String inspectionResult ) {
+
+				// (batched results arrive together, in order)
+
+				assertTrue( inspectionResults[0].contains( "booleanPrimitive" ) );
+				assertTrue( inspectionResult.contains( "nestedAction" ) );
+				inspectionResults[1] = inspectionResult;
+
+				// Cached results are returned without a round trip...
+
+				final boolean[] cached = new boolean[1];
+
+				inspector.inspect( quirks, type, new String[] { "nestedQuirks" }, new AsyncCallback<String>() {
+
+					public void onFailure( Throwable caught ) {
+
+						fail( caught.getMessage() );
+					}
+
+					public void onSuccess( String cachedInspectionResult ) {
+
+						assertEquals( inspectionResults[1], cachedInspectionResult );
+						cached[0] = true;
+					}
+				} );
+
+				assertTrue( cached[0] );
+
+				// ...until invalidated (including paths beneath the type)
+
+				inspector.invalidate( type );
+				final boolean[] reinspected = new boolean[1];
+
+				inspector.inspect( quirks, type, new String[] { "nestedQuirks" }, new AsyncCallback<String>() {
+
+					public void onFailure( Throwable caught ) {
+
+						fail( caught.getMessage() );
+					}
+
+					public void onSuccess( String reinspectedInspectionResult ) {
+
+						reinspected[0] = true;
+						assertEquals( inspectionResults[1], reinspectedInspectionResult );
+						finish();
+					}
+				} );
+
+				assertFalse( reinspected[0] );
+			}
+		} );
+
+		delayTestFinish( TEST_FINISH_DELAY );
+	}
+
 	//
 	// Private methods
 	//
@@ -0,0 +1,185 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import static org.metawidget.inspector.InspectionResultConstants.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.util.XmlUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Benchmarks <code>XmlUtils.combineElements</code> against wide entities, as produced by
+ * <code>CompositeInspector</code> when several inspectors return the same properties.
+ * <p>
+ * Compares the keyed merge against the previous linear scan, so that scaling with the number of
+ * properties is visible.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class CombineElementsBenchmark {
+
+	//
+	// Private members
+	//
+
+	@Param( { "10", "50", "100", "200", "500" } )
+	private int			mProperties;
+
+	private String		mMasterXml;
+
+	private Element		mToAdd;
+
+	private Element		mMaster;
+
+	//
+	// Public methods
+	//
+
+	@Setup( Level.Trial )
+	public void setUpTrial() {
+
+		// Master and toAdd share every property, in reverse order (the worst case for a linear
+		// scan), and toAdd contributes one extra property per ten
+
+		StringBuilder master = new StringBuilder( "<inspection-result><entity type=\"Foo\">" );
+		StringBuilder toAdd = new StringBuilder( "<inspection-result><entity type=\"Foo\">" );
+
+		for ( int loop = 0; loop < mProperties; loop++ ) {
+			master.append( "<property name=\"prop" ).append( loop ).append( "\" type=\"java.lang.String\"/>" );
+
+			int reverse = mProperties - loop - 1;
+			toAdd.append( "<property name=\"prop" ).append( reverse ).append( "\" required=\"true\"/>" );
+
+			if ( reverse % 10 == 0 ) {
+				toAdd.append( "<property name=\"extra" ).append( reverse ).append( "\" type=\"int\"/>" );
+			}
+		}
+
+		master.append( "</entity></inspection-result>" );
+		toAdd.append( "</entity></inspection-result>" );
+
+		mMasterXml = master.toString();
+		mToAdd = XmlUtils.documentFromString( toAdd.toString() ).getDocumentElement();
+	}
+
+	@Setup( Level.Invocation )
+	public void setUpInvocation() {
+
+		// combineElements mutates the master, so start from a fresh copy each time
+
+		mMaster = XmlUtils.documentFromString( mMasterXml ).getDocumentElement();
+	}
+
+	@Benchmark
+	public Element keyed() {
+
+		XmlUtils.combineElements( mMaster, mToAdd, TYPE, NAME );
+		return mMaster;
+	}
+
+	@Benchmark
+	public Element linearScan() {
+
+		linearScanCombineElements( mMaster, mToAdd, TYPE, NAME );
+		return mMaster;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * The previous implementation of <code>XmlUtils.combineElements</code>, which scanned the
+	 * master's children for every child being added. Error checking is elided.
+	 */
+
+	private static void linearScanCombineElements( Element master, Element toAdd, String topLevelAttributeToCombineOn, String childAttributeToCombineOn ) {
+
+		for ( int loop = 0, length = toAdd.getAttributes().getLength(); loop < length; loop++ ) {
+			Node nodeToAdd = toAdd.getAttributes().item( loop );
+			master.setAttribute( nodeToAdd.getNodeName(), nodeToAdd.getNodeValue() );
+		}
+
+		NodeList childrenToAdd = toAdd.getChildNodes();
+		NodeList masterChildren = master.getChildNodes();
+		Document document = master.getOwnerDocument();
+		Node nodeLastMasterCombinePoint = null;
+
+		outerLoop: for ( int addLoop = 0, addLength = childrenToAdd.getLength(); addLoop < addLength; addLoop++ ) {
+			Node nodeChildToAdd = childrenToAdd.item( addLoop );
+
+			if ( !( nodeChildToAdd instanceof Element ) ) {
+				continue;
+			}
+
+			Element childToAdd = (Element) nodeChildToAdd;
+			String childToAddName = childToAdd.getAttribute( topLevelAttributeToCombineOn );
+
+			for ( int masterLoop = 0, masterLength = masterChildren.getLength(); masterLoop < masterLength; masterLoop++ ) {
+				Node nodeMasterChild = masterChildren.item( masterLoop );
+
+				if ( !( nodeMasterChild instanceof Element ) ) {
+					continue;
+				}
+
+				Element masterChild = (Element) nodeMasterChild;
+
+				if ( !childToAddName.equals( masterChild.getAttribute( topLevelAttributeToCombineOn ) ) ) {
+					continue;
+				}
+
+				if ( masterLoop == masterLength - 1 ) {
+					nodeLastMasterCombinePoint = null;
+				} else {
+					nodeLastMasterCombinePoint = masterChild;
+				}
+
+				linearScanCombineElements( masterChild, childToAdd, childAttributeToCombineOn, childAttributeToCombineOn );
+				continue outerLoop;
+			}
+
+			Element imported = XmlUtils.importElement( document, childToAdd );
+
+			if ( nodeLastMasterCombinePoint != null ) {
+				master.insertBefore( imported, nodeLastMasterCombinePoint.getNextSibling() );
+				nodeLastMasterCombinePoint = imported;
+				continue;
+			}
+
+			master.appendChild( imported );
+		}
+	}
+}
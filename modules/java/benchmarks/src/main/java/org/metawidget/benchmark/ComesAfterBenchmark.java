@@ -0,0 +1,98 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.inspectionresultprocessor.sort.ComesAfterInspectionResultProcessor;
+import org.metawidget.util.XmlUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks <code>ComesAfterInspectionResultProcessor</code> against synthetic entities.
+ * <p>
+ * Measures both the common case (no <code>comes-after</code> at all, which should be close to
+ * free) and the worst case (every property <code>comes-after</code> its successor, so the whole
+ * entity must be reversed).
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class ComesAfterBenchmark {
+
+	//
+	// Private members
+	//
+
+	@Param( { "10", "50", "100", "200", "500" } )
+	private int											mProperties;
+
+	private ComesAfterInspectionResultProcessor<Object>	mProcessor	= new ComesAfterInspectionResultProcessor<Object>();
+
+	private String										mUnsortedXml;
+
+	private String										mReversedXml;
+
+	private Element										mUnsorted;
+
+	private Element										mReversed;
+
+	//
+	// Public methods
+	//
+
+	@Setup( Level.Trial )
+	public void setUpTrial() {
+
+		mUnsortedXml = SyntheticModels.getInspectionResult( "Foo", mProperties, false );
+		mReversedXml = SyntheticModels.getInspectionResult( "Foo", mProperties, true );
+	}
+
+	@Setup( Level.Invocation )
+	public void setUpInvocation() {
+
+		// The processor reorders in place, so start from a fresh copy each time
+
+		mUnsorted = XmlUtils.documentFromString( mUnsortedXml ).getDocumentElement();
+		mReversed = XmlUtils.documentFromString( mReversedXml ).getDocumentElement();
+	}
+
+	@Benchmark
+	public Element noComesAfter() {
+
+		return mProcessor.processInspectionResultAsDom( mUnsorted, null, null, "Foo" );
+	}
+
+	@Benchmark
+	public Element reversed() {
+
+		return mProcessor.processInspectionResultAsDom( mReversed, null, null, "Foo" );
+	}
+}
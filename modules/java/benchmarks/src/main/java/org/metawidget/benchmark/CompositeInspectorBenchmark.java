@@ -0,0 +1,109 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.inspector.annotation.MetawidgetAnnotationInspector;
+import org.metawidget.inspector.composite.CompositeInspector;
+import org.metawidget.inspector.composite.CompositeInspectorConfig;
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.inspector.propertytype.PropertyTypeInspector;
+import org.metawidget.inspector.xml.XmlInspector;
+import org.metawidget.inspector.xml.XmlInspectorConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks <code>CompositeInspector</code> with typical Inspector chains against synthetic
+ * models.
+ * <p>
+ * Measures a single <code>PropertyTypeInspector</code> (the floor), the chain used by most
+ * Metawidgets' default configurations (<code>PropertyTypeInspector</code> and
+ * <code>MetawidgetAnnotationInspector</code>), and that chain plus an <code>XmlInspector</code>
+ * contributing overlapping properties (so that the results must be merged).
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class CompositeInspectorBenchmark {
+
+	//
+	// Private members
+	//
+
+	@Param( { "10", "50", "100", "200", "500" } )
+	private int			mProperties;
+
+	private Object		mToInspect;
+
+	private String		mType;
+
+	private Inspector	mPropertyType;
+
+	private Inspector	mDefaultChain;
+
+	private Inspector	mXmlChain;
+
+	//
+	// Public methods
+	//
+
+	@Setup( Level.Trial )
+	public void setUpTrial() {
+
+		mToInspect = SyntheticModels.newModel( mProperties );
+		mType = mToInspect.getClass().getName();
+
+		mPropertyType = new CompositeInspector( new CompositeInspectorConfig().setInspectors( new PropertyTypeInspector() ) );
+		mDefaultChain = new CompositeInspector( new CompositeInspectorConfig().setInspectors( new PropertyTypeInspector(), new MetawidgetAnnotationInspector() ) );
+
+		String xml = SyntheticModels.getInspectionResult( mType, mProperties, false );
+		XmlInspector xmlInspector = new XmlInspector( new XmlInspectorConfig().setInputStream( new ByteArrayInputStream( xml.getBytes() ) ) );
+		mXmlChain = new CompositeInspector( new CompositeInspectorConfig().setInspectors( new PropertyTypeInspector(), new MetawidgetAnnotationInspector(), xmlInspector ) );
+	}
+
+	@Benchmark
+	public String propertyTypeInspector() {
+
+		return mPropertyType.inspect( mToInspect, mType );
+	}
+
+	@Benchmark
+	public String defaultChain() {
+
+		return mDefaultChain.inspect( mToInspect, mType );
+	}
+
+	@Benchmark
+	public String defaultChainWithXml() {
+
+		return mXmlChain.inspect( mToInspect, mType );
+	}
+}
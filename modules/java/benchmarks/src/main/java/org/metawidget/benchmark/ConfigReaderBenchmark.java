@@ -0,0 +1,132 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.config.iface.ResourceResolver;
+import org.metawidget.config.impl.BaseConfigReader;
+import org.metawidget.inspector.composite.CompositeInspectorConfig;
+import org.metawidget.inspector.iface.Inspector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks <code>BaseConfigReader.configure</code>, as called every time a Metawidget is
+ * constructed.
+ * <p>
+ * Compares configuring an immutable object (served from the cache of immutable instances),
+ * configuring a mutable object with a warm <code>BaseConfigReader</code> (replaying the cached
+ * resource) and configuring it with a fresh <code>BaseConfigReader</code> (parsing from scratch).
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class ConfigReaderBenchmark {
+
+	//
+	// Private statics
+	//
+
+	private static final String				INSPECTOR_XML		= "<metawidget xmlns=\"http://metawidget.org\" version=\"1.0\">" + getInspectorXml() + "</metawidget>";
+
+	private static final String				CONFIG_XML			= "<metawidget xmlns=\"http://metawidget.org\" version=\"1.0\"><compositeInspectorConfig xmlns=\"java:org.metawidget.inspector.composite\"><inspectors><array>" + getInspectorsXml() + "</array></inspectors></compositeInspectorConfig></metawidget>";
+
+	private static final ResourceResolver	RESOURCE_RESOLVER	= new InMemoryResourceResolver();
+
+	//
+	// Private members
+	//
+
+	private BaseConfigReader				mConfigReader	= new BaseConfigReader( RESOURCE_RESOLVER );
+
+	//
+	// Public methods
+	//
+
+	@Benchmark
+	public Object immutable() {
+
+		return mConfigReader.configure( "inspector.xml", Inspector.class );
+	}
+
+	@Benchmark
+	public Object mutable() {
+
+		return mConfigReader.configure( "config.xml", new CompositeInspectorConfig() );
+	}
+
+	@Benchmark
+	public Object mutableFreshReader() {
+
+		return new BaseConfigReader( RESOURCE_RESOLVER ).configure( "config.xml", new CompositeInspectorConfig() );
+	}
+
+	//
+	// Private methods
+	//
+
+	private static String getInspectorXml() {
+
+		return "<compositeInspector xmlns=\"java:org.metawidget.inspector.composite\" config=\"CompositeInspectorConfig\"><inspectors><array>" + getInspectorsXml() + "</array></inspectors></compositeInspector>";
+	}
+
+	/**
+	 * The Inspectors from a typical <code>metawidget.xml</code>.
+	 */
+
+	private static String getInspectorsXml() {
+
+		return "<propertyTypeInspector xmlns=\"java:org.metawidget.inspector.propertytype\" config=\"org.metawidget.inspector.impl.BaseObjectInspectorConfig\"><propertyStyle><javaBeanPropertyStyle xmlns=\"java:org.metawidget.inspector.impl.propertystyle.javabean\" config=\"JavaBeanPropertyStyleConfig\"><supportPublicFields><boolean>true</boolean></supportPublicFields></javaBeanPropertyStyle></propertyStyle></propertyTypeInspector>" +
+				"<metawidgetAnnotationInspector xmlns=\"java:org.metawidget.inspector.annotation\"/>";
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * Serves the resources from memory, so that the benchmark does not measure file I/O.
+	 */
+
+	private static class InMemoryResourceResolver
+		implements ResourceResolver {
+
+		//
+		// Public methods
+		//
+
+		public InputStream openResource( String resource ) {
+
+			if ( "inspector.xml".equals( resource ) ) {
+				return new ByteArrayInputStream( INSPECTOR_XML.getBytes() );
+			}
+
+			return new ByteArrayInputStream( CONFIG_XML.getBytes() );
+		}
+	}
+}
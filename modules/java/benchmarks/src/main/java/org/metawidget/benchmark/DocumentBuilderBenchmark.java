@@ -0,0 +1,124 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.metawidget.util.XmlUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * Benchmarks throughput of <code>XmlUtils.newDocument</code> and
+ * <code>XmlUtils.documentFromString</code> under contention, against a single
+ * <code>DocumentBuilder</code> guarded by a global lock (as <code>XmlUtils</code> used to be).
+ * <p>
+ * Run <code>main</code> to measure each benchmark at 1, 2, 4, 8, 16 and 32 threads.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class DocumentBuilderBenchmark {
+
+	//
+	// Private statics
+	//
+
+	private static final String	XML	= "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Person\"><property name=\"name\" type=\"java.lang.String\" required=\"true\"/><property name=\"age\" type=\"int\"/><action name=\"save\"/></entity></inspection-result>";
+
+	//
+	// Private members
+	//
+
+	private DocumentBuilder		mGlobalDocumentBuilder;
+
+	//
+	// Constructor
+	//
+
+	public DocumentBuilderBenchmark() {
+
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware( true );
+			factory.setIgnoringComments( true );
+			factory.setIgnoringElementContentWhitespace( true );
+			mGlobalDocumentBuilder = factory.newDocumentBuilder();
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	//
+	// Public methods
+	//
+
+	@Benchmark
+	public Document pooledNewDocument() {
+
+		return XmlUtils.newDocument();
+	}
+
+	@Benchmark
+	public Document pooledDocumentFromString() {
+
+		return XmlUtils.documentFromString( XML );
+	}
+
+	@Benchmark
+	public Document globalLockNewDocument() {
+
+		synchronized ( mGlobalDocumentBuilder ) {
+			return mGlobalDocumentBuilder.newDocument();
+		}
+	}
+
+	@Benchmark
+	public Document globalLockDocumentFromString()
+		throws Exception {
+
+		synchronized ( mGlobalDocumentBuilder ) {
+			return mGlobalDocumentBuilder.parse( new InputSource( new StringReader( XML ) ) );
+		}
+	}
+
+	public static void main( String[] args )
+		throws Exception {
+
+		for ( int threads : new int[] { 1, 2, 4, 8, 16, 32 } ) {
+			Options options = new OptionsBuilder().include( DocumentBuilderBenchmark.class.getSimpleName() ).threads( threads ).build();
+			new Runner( options ).run();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.util.ClassUtils;
+import org.metawidget.util.CollectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks <code>ClassUtils.getOriginalAnnotation</code> under contention, as
+ * <code>JavaBeanProperty.getAnnotation</code> calls it for every annotation of every property.
+ * <p>
+ * Compares the lock-free snapshot cache against the previous cache (a per-Method
+ * <code>WeakHashMap</code>, locked on every lookup). Each invocation queries several annotation
+ * types, present and absent, across several Methods.
+ * <p>
+ * Run <code>main</code> to measure each benchmark at 1, 2, 4, 8, 16 and 32 threads.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class OriginalAnnotationBenchmark {
+
+	//
+	// Private statics
+	//
+
+	private static final Class<?>[]										ANNOTATION_TYPES	= new Class<?>[] { Label.class, Hidden.class, Deprecated.class, Retention.class };
+
+	//
+	// Private members
+	//
+
+	private Method[]													mMethods;
+
+	private Map<Method, Map<Class<? extends Annotation>, Annotation>>	mLockedCache;
+
+	//
+	// Constructor
+	//
+
+	public OriginalAnnotationBenchmark() {
+
+		try {
+			mMethods = new Method[] { Person.class.getMethod( "getName" ), Person.class.getMethod( "getAge" ), Person.class.getMethod( "getRetired" ), Person.class.getMethod( "setName", String.class ) };
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
+
+		// Populate the outer map up front, as the previous implementation did not synchronize it
+
+		mLockedCache = CollectionUtils.newHashMap();
+
+		for ( Method method : mMethods ) {
+			mLockedCache.put( method, CollectionUtils.<Class<? extends Annotation>, Annotation> newWeakHashMap() );
+		}
+	}
+
+	//
+	// Public methods
+	//
+
+	@Benchmark
+	@SuppressWarnings( "unchecked" )
+	public void snapshot( Blackhole blackhole ) {
+
+		for ( Method method : mMethods ) {
+			for ( Class<?> annotationType : ANNOTATION_TYPES ) {
+				blackhole.consume( ClassUtils.getOriginalAnnotation( method, (Class<? extends Annotation>) annotationType ) );
+			}
+		}
+	}
+
+	@Benchmark
+	@SuppressWarnings( "unchecked" )
+	public void locked( Blackhole blackhole ) {
+
+		for ( Method method : mMethods ) {
+			for ( Class<?> annotationType : ANNOTATION_TYPES ) {
+				blackhole.consume( lockedGetOriginalAnnotation( method, (Class<? extends Annotation>) annotationType ) );
+			}
+		}
+	}
+
+	public static void main( String[] args )
+		throws Exception {
+
+		for ( int threads : new int[] { 1, 2, 4, 8, 16, 32 } ) {
+			Options options = new OptionsBuilder().include( OriginalAnnotationBenchmark.class.getSimpleName() ).threads( threads ).build();
+			new Runner( options ).run();
+		}
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * The previous caching in <code>ClassUtils.getOriginalAnnotation</code>. Resolving a miss
+	 * delegates to the current implementation, as only cache hits are being measured.
+	 */
+
+	private Annotation lockedGetOriginalAnnotation( Method method, Class<? extends Annotation> annotationClass ) {
+
+		Map<Class<? extends Annotation>, Annotation> cache = mLockedCache.get( method );
+
+		synchronized ( cache ) {
+			if ( cache.containsKey( annotationClass ) ) {
+				return cache.get( annotationClass );
+			}
+
+			Annotation annotation = ClassUtils.getOriginalAnnotation( method, annotationClass );
+			cache.put( annotationClass, annotation );
+
+			return annotation;
+		}
+	}
+
+	//
+	// Inner class
+	//
+
+	@Retention( RetentionPolicy.RUNTIME )
+	public static @interface Label {
+
+		String value();
+	}
+
+	@Retention( RetentionPolicy.RUNTIME )
+	public static @interface Hidden {
+		// Just a marker annotation
+	}
+
+	public static class Person {
+
+		@Label( "Full name" )
+		public String getName() {
+
+			return null;
+		}
+
+		/**
+		 * @param name
+		 */
+
+		public void setName( String name ) {
+
+			// Do nothing
+		}
+
+		@Label( "Age" )
+		@Hidden
+		public int getAge() {
+
+			return 0;
+		}
+
+		public boolean getRetired() {
+
+			return false;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.awt.Component;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.statically.html.StaticHtmlMetawidget;
+import org.metawidget.swing.SwingMetawidget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks full <code>W3CPipeline</code> builds (configure, inspect, process, build widgets, lay
+ * out) against synthetic models, for the static HTML and Swing front ends.
+ * <p>
+ * The <code>new...</code> benchmarks construct a fresh Metawidget each time, as a request-scoped
+ * page or a newly opened dialog would. The <code>rebuild...</code> benchmarks reuse one Metawidget
+ * and invalidate it, as happens after <code>setToInspect</code> or <code>setReadOnly</code>.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class PipelineBenchmark {
+
+	//
+	// Private members
+	//
+
+	@Param( { "10", "50", "100", "200", "500" } )
+	private int				mProperties;
+
+	private Object			mModel;
+
+	private String			mType;
+
+	private SwingMetawidget	mSwingMetawidget;
+
+	//
+	// Public methods
+	//
+
+	@Setup( Level.Trial )
+	public void setUpTrial() {
+
+		mModel = SyntheticModels.newModel( mProperties );
+		mType = mModel.getClass().getName();
+
+		mSwingMetawidget = new SwingMetawidget();
+		mSwingMetawidget.setToInspect( mModel );
+		mSwingMetawidget.getComponentCount();
+	}
+
+	@Benchmark
+	public String newStaticHtml() {
+
+		StaticHtmlMetawidget metawidget = new StaticHtmlMetawidget();
+		metawidget.setPath( mType );
+
+		StringWriter writer = new StringWriter();
+		metawidget.write( writer, 0 );
+		return writer.toString();
+	}
+
+	@Benchmark
+	public Component[] newSwing() {
+
+		SwingMetawidget metawidget = new SwingMetawidget();
+		metawidget.setToInspect( mModel );
+		return metawidget.getComponents();
+	}
+
+	@Benchmark
+	public Component[] rebuildSwing() {
+
+		mSwingMetawidget.setToInspect( mModel );
+		return mSwingMetawidget.getComponents();
+	}
+}
@@ -0,0 +1,165 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.util.ClassUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks <code>ClassUtils.getProperty</code> and <code>ClassUtils.setProperty</code>, as used
+ * by binding processors on every save and rebind.
+ * <p>
+ * Compares the cached accessors against resolving the getter and setter on every call (as
+ * <code>ClassUtils</code> used to), and against invoking an already-resolved Method directly. The
+ * <code>boolean</code> property exercises the failed <code>getX</code> lookup that precedes
+ * <code>isX</code>.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class PropertyAccessBenchmark {
+
+	//
+	// Private members
+	//
+
+	private Person	mPerson	= new Person();
+
+	private Method	mGetName;
+
+	private Method	mSetName;
+
+	//
+	// Constructor
+	//
+
+	public PropertyAccessBenchmark() {
+
+		mGetName = ClassUtils.getReadMethod( Person.class, "name" );
+		mSetName = ClassUtils.getWriteMethod( Person.class, "name", String.class );
+	}
+
+	//
+	// Public methods
+	//
+
+	@Benchmark
+	public Object cachedGet() {
+
+		return ClassUtils.getProperty( mPerson, "name" );
+	}
+
+	@Benchmark
+	public Object cachedGetBoolean() {
+
+		return ClassUtils.getProperty( mPerson, "retired" );
+	}
+
+	@Benchmark
+	public void cachedSet() {
+
+		ClassUtils.setProperty( mPerson, "name", "Homer" );
+	}
+
+	@Benchmark
+	public Object uncachedGet()
+		throws Exception {
+
+		return ClassUtils.getReadMethod( mPerson.getClass(), "name" ).invoke( mPerson );
+	}
+
+	@Benchmark
+	public Object uncachedGetBoolean()
+		throws Exception {
+
+		return ClassUtils.getReadMethod( mPerson.getClass(), "retired" ).invoke( mPerson );
+	}
+
+	@Benchmark
+	public void uncachedSet()
+		throws Exception {
+
+		Class<?> personClass = mPerson.getClass();
+		Method readMethod = ClassUtils.getReadMethod( personClass, "name" );
+		ClassUtils.getWriteMethod( personClass, "name", readMethod.getReturnType() ).invoke( mPerson, "Homer" );
+	}
+
+	@Benchmark
+	public Object resolvedGet()
+		throws Exception {
+
+		return mGetName.invoke( mPerson );
+	}
+
+	@Benchmark
+	public void resolvedSet()
+		throws Exception {
+
+		mSetName.invoke( mPerson, "Homer" );
+	}
+
+	//
+	// Inner class
+	//
+
+	public static class Person {
+
+		//
+		// Private members
+		//
+
+		private String	mName;
+
+		private boolean	mRetired;
+
+		//
+		// Public methods
+		//
+
+		public String getName() {
+
+			return mName;
+		}
+
+		public void setName( String name ) {
+
+			mName = name;
+		}
+
+		public boolean isRetired() {
+
+			return mRetired;
+		}
+
+		public void setRetired( boolean retired ) {
+
+			mRetired = retired;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.metawidget.inspector.impl.propertystyle.Property;
+import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyle;
+import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyleConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks <code>JavaBeanPropertyStyle</code> lookups against synthetic models.
+ * <p>
+ * A <em>cold</em> lookup discovers every getter, setter and annotation of the type (as happens the
+ * first time each type is inspected, or always if <code>setCacheLookups( false )</code>). A
+ * <em>warm</em> lookup hits the cache. <code>warmReadAll</code> then reads every property, as
+ * <code>PropertyTypeInspector</code> does when inspecting values.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class PropertyStyleBenchmark {
+
+	//
+	// Private members
+	//
+
+	@Param( { "10", "50", "100", "200", "500" } )
+	private int						mProperties;
+
+	private Object					mModel;
+
+	private String					mType;
+
+	private JavaBeanPropertyStyle	mCold;
+
+	private JavaBeanPropertyStyle	mWarm;
+
+	//
+	// Public methods
+	//
+
+	@Setup( Level.Trial )
+	public void setUpTrial() {
+
+		mModel = SyntheticModels.newModel( mProperties );
+		mType = mModel.getClass().getName();
+
+		JavaBeanPropertyStyleConfig coldConfig = new JavaBeanPropertyStyleConfig();
+		coldConfig.setCacheLookups( false );
+		mCold = new JavaBeanPropertyStyle( coldConfig );
+
+		mWarm = new JavaBeanPropertyStyle();
+		mWarm.getProperties( mType );
+	}
+
+	@Benchmark
+	public Map<String, Property> coldGetProperties() {
+
+		return mCold.getProperties( mType );
+	}
+
+	@Benchmark
+	public Map<String, Property> warmGetProperties() {
+
+		return mWarm.getProperties( mType );
+	}
+
+	@Benchmark
+	public int warmReadAll() {
+
+		int read = 0;
+
+		for ( Property property : mWarm.getProperties( mType ).values() ) {
+			if ( property.read( mModel ) != null ) {
+				read++;
+			}
+		}
+
+		return read;
+	}
+}
@@ -0,0 +1,210 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.metawidget.util.ClassUtils;
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * Synthetic business models for benchmarking, with a configurable number of properties.
+ * <p>
+ * Models are generated as JavaBean source, compiled with the system <code>JavaCompiler</code> and
+ * loaded through a ClassLoader registered with <code>ClassUtils.registerAlienClassLoader</code>, so
+ * that every <code>Inspector</code> and <code>PropertyStyle</code> can resolve them by name. This
+ * means the benchmarks must be run on a JDK, not a JRE.
+ * <p>
+ * Properties cycle through <code>String</code>, <code>int</code>, <code>boolean</code> and
+ * <code>Date</code>. Every third property is <code>@UiRequired</code> and every fifth has a
+ * <code>@UiLabel</code>, so that annotation inspection has something to find.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public final class SyntheticModels {
+
+	//
+	// Private statics
+	//
+
+	private static final String					PACKAGE			= "org.metawidget.benchmark.synthetic";
+
+	private static final String[]				PROPERTY_TYPES	= new String[] { "String", "int", "boolean", "java.util.Date" };
+
+	private static final Map<Integer, Class<?>>	MODELS			= CollectionUtils.newHashMap();
+
+	//
+	// Public statics
+	//
+
+	/**
+	 * Gets a synthetic model class with the given number of properties, compiling it if necessary.
+	 */
+
+	public static synchronized Class<?> getModelClass( int properties ) {
+
+		Class<?> modelClass = MODELS.get( properties );
+
+		if ( modelClass == null ) {
+			modelClass = compile( "Model" + properties, getModelSource( "Model" + properties, properties ) );
+			MODELS.put( properties, modelClass );
+		}
+
+		return modelClass;
+	}
+
+	/**
+	 * Gets a new instance of the synthetic model class with the given number of properties.
+	 */
+
+	public static Object newModel( int properties ) {
+
+		try {
+			return getModelClass( properties ).newInstance();
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Gets an <code>inspection-result</code> for an entity with the given number of properties.
+	 *
+	 * @param reverseComesAfter
+	 *            whether each property should <code>comes-after</code> its successor, so that the
+	 *            properties must be completely reversed (the worst case for sorting)
+	 */
+
+	public static String getInspectionResult( String type, int properties, boolean reverseComesAfter ) {
+
+		StringBuilder builder = new StringBuilder( "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"" );
+		builder.append( type );
+		builder.append( "\">" );
+
+		for ( int loop = 0; loop < properties; loop++ ) {
+			builder.append( "<property name=\"property" ).append( loop ).append( '\"' );
+			builder.append( " type=\"" ).append( getPropertyType( loop ) ).append( '\"' );
+
+			if ( reverseComesAfter && loop < properties - 1 ) {
+				builder.append( " comes-after=\"property" ).append( loop + 1 ).append( '\"' );
+			}
+
+			builder.append( "/>" );
+		}
+
+		builder.append( "</entity></inspection-result>" );
+		return builder.toString();
+	}
+
+	//
+	// Private methods
+	//
+
+	private static String getPropertyType( int property ) {
+
+		String propertyType = PROPERTY_TYPES[property % PROPERTY_TYPES.length];
+
+		if ( "String".equals( propertyType ) ) {
+			return String.class.getName();
+		}
+
+		return propertyType;
+	}
+
+	private static String getModelSource( String className, int properties ) {
+
+		StringBuilder builder = new StringBuilder();
+		builder.append( "package " ).append( PACKAGE ).append( ";\n\n" );
+		builder.append( "import org.metawidget.inspector.annotation.*;\n\n" );
+		builder.append( "public class " ).append( className ).append( " {\n" );
+
+		for ( int loop = 0; loop < properties; loop++ ) {
+			String propertyType = PROPERTY_TYPES[loop % PROPERTY_TYPES.length];
+			builder.append( "\tprivate " ).append( propertyType ).append( " mProperty" ).append( loop ).append( ";\n" );
+		}
+
+		for ( int loop = 0; loop < properties; loop++ ) {
+			String propertyType = PROPERTY_TYPES[loop % PROPERTY_TYPES.length];
+			String prefix = ( "boolean".equals( propertyType ) ? "is" : "get" );
+
+			if ( loop % 3 == 0 ) {
+				builder.append( "\t@UiRequired\n" );
+			}
+
+			if ( loop % 5 == 0 ) {
+				builder.append( "\t@UiLabel( \"Label " ).append( loop ).append( "\" )\n" );
+			}
+
+			builder.append( "\tpublic " ).append( propertyType ).append( ' ' ).append( prefix ).append( "Property" ).append( loop ).append( "() { return mProperty" ).append( loop ).append( "; }\n" );
+			builder.append( "\tpublic void setProperty" ).append( loop ).append( "( " ).append( propertyType ).append( " property ) { mProperty" ).append( loop ).append( " = property; }\n" );
+		}
+
+		builder.append( "}\n" );
+		return builder.toString();
+	}
+
+	private static Class<?> compile( String className, String source ) {
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+		if ( compiler == null ) {
+			throw new RuntimeException( "Synthetic models must be compiled at runtime: please run the benchmarks on a JDK" );
+		}
+
+		try {
+			File directory = File.createTempFile( "metawidget-benchmark", "" );
+			directory.delete();
+			File packageDirectory = new File( directory, PACKAGE.replace( '.', File.separatorChar ) );
+			packageDirectory.mkdirs();
+
+			File sourceFile = new File( packageDirectory, className + ".java" );
+			Writer writer = new OutputStreamWriter( new FileOutputStream( sourceFile ), "UTF-8" );
+
+			try {
+				writer.write( source );
+			} finally {
+				writer.close();
+			}
+
+			if ( compiler.run( null, null, null, "-nowarn", "-classpath", System.getProperty( "java.class.path" ), "-d", directory.getPath(), sourceFile.getPath() ) != 0 ) {
+				throw new RuntimeException( "Unable to compile synthetic model " + className );
+			}
+
+			ClassLoader classLoader = new URLClassLoader( new URL[] { directory.toURI().toURL() }, SyntheticModels.class.getClassLoader() );
+			ClassUtils.registerAlienClassLoader( classLoader );
+
+			return classLoader.loadClass( PACKAGE + '.' + className );
+		} catch ( RuntimeException e ) {
+			throw e;
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	//
+	// Private constructor
+	//
+
+	private SyntheticModels() {
+
+		// Can never be called
+	}
+}
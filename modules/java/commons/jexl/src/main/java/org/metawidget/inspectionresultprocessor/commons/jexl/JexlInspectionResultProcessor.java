@@ -12,10 +12,13 @@
 package org.metawidget.inspectionresultprocessor.commons.jexl;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.jexl2.Expression;
 import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.MapContext;
@@ -47,6 +50,14 @@ public class JexlInspectionResultProcessor<M>
 
 	private static final Pattern					PATTERN_EXPRESSION	= Pattern.compile( "\\$\\{([^\\}]+)\\}" );
 
+	private static final String						EXPRESSION_START	= "${";
+
+	/**
+	 * Maximum number of distinct attribute values whose ExpressionTemplates are cached.
+	 */
+
+	private static final int	MAXIMUM_CACHED_TEMPLATES	= 1000;
+
 	//
 	// Private members
 	//
@@ -57,6 +68,13 @@ public class JexlInspectionResultProcessor<M>
 
 	private JexlEngine								mJexlEngine;
 
+	/**
+	 * Attribute values, parsed once into literals and pre-compiled Expressions. The same raw values
+	 * (such as <code>${this.foo}</code> in a <code>UiAttribute</code>) recur on every inspection.
+	 */
+
+	private ConcurrentMap<String, ExpressionTemplate>	mExpressionTemplates	= CollectionUtils.newConcurrentHashMap();
+
 	//
 	// Constructors
 	//
@@ -134,73 +152,29 @@ public class JexlInspectionResultProcessor<M>
 	@Override
 	protected void processAttributes( Map<String, String> attributes, M metawidget ) {
 
+		JexlContext context = LOCAL_CONTEXT.get();
+
 		// For each attribute value...
 
 		for ( Map.Entry<String, String> entry : attributes.entrySet() ) {
 
-			String key = entry.getKey();
 			String value = entry.getValue();
 
 			// ...that contains an EL expression...
 
-			Matcher matcher = PATTERN_EXPRESSION.matcher( value );
-			int matchOffset = 0;
-
-			while ( matcher.find() ) {
-
-				String expression = matcher.group( 1 );
-
-				// ...evaluate it...
-
-				try {
-					Object valueObject = mJexlEngine.createExpression( expression ).evaluate( LOCAL_CONTEXT.get() );
-					String valueObjectAsString;
-
-					if ( valueObject == null ) {
-
-						// Support the default case (when the String is just one EL)
-
-						if ( matcher.start() == 0 && matcher.end() == value.length() ) {
-							value = null;
-							break;
-						}
-
-						valueObjectAsString = "";
-					} else {
-
-						// Support the default case (when the String is just one EL)
-
-						if ( matcher.start() == 0 && matcher.end() == value.length() ) {
-							if ( valueObject instanceof Collection<?> ) {
-								value = CollectionUtils.toString( (Collection<?>) valueObject );
-							} else if ( valueObject.getClass().isArray() ) {
-								value = ArrayUtils.toString( valueObject );
-							} else {
-								value = String.valueOf( valueObject );
-							}
-							break;
-						}
-
-						valueObjectAsString = String.valueOf( valueObject );
-					}
-
-					// Replace multiple ELs within the String
-
-					value = new StringBuilder( value ).replace( matcher.start() + matchOffset, matcher.end() + matchOffset, valueObjectAsString ).toString();
-					matchOffset += valueObjectAsString.length() - ( matcher.end() - matcher.start() );
+			if ( value.indexOf( EXPRESSION_START ) == -1 ) {
+				continue;
+			}
 
-				} catch ( Exception e ) {
+			ExpressionTemplate template = getExpressionTemplate( value );
 
-					// We have found it helpful to include the actual expression we were trying to
-					// evaluate
-
-					throw InspectionResultProcessorException.newException( "Unable to evaluate " + value, e );
-				}
+			if ( !template.hasExpressions() ) {
+				continue;
 			}
 
-			// ...and replace it
+			// ...evaluate it and replace it
 
-			attributes.put( key, value );
+			attributes.put( entry.getKey(), template.evaluate( mJexlEngine, context ) );
 		}
 	}
 
@@ -244,4 +218,188 @@ public class JexlInspectionResultProcessor<M>
 
 		return context;
 	}
+
+	//
+	// Private methods
+	//
+
+	private ExpressionTemplate getExpressionTemplate( String value ) {
+
+		ExpressionTemplate template = mExpressionTemplates.get( value );
+
+		if ( template == null ) {
+
+			// Attribute values are usually a fixed set, but guard against unbounded growth
+
+			if ( mExpressionTemplates.size() >= MAXIMUM_CACHED_TEMPLATES ) {
+				mExpressionTemplates.clear();
+			}
+
+			template = new ExpressionTemplate( value, mJexlEngine );
+			mExpressionTemplates.put( value, template );
+		}
+
+		return template;
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * An attribute value parsed into literal text and pre-compiled Expressions.
+	 * <p>
+	 * Immutable, and JEXL Expressions are Thread-safe, so ExpressionTemplates can be shared.
+	 */
+
+	private static class ExpressionTemplate {
+
+		//
+		// Private members
+		//
+
+		private final String		mValue;
+
+		/**
+		 * Literal text before each expression, plus the literal text after the last one.
+		 */
+
+		private final String[]		mLiterals;
+
+		private final String[]		mExpressionTexts;
+
+		/**
+		 * Pre-compiled Expressions, or null for any that failed to compile (so that they fail at
+		 * evaluation time, with the same error as before).
+		 */
+
+		private final Expression[]	mExpressions;
+
+		/**
+		 * Offset of each expression (including its <code>${</code>) within <code>mValue</code>.
+		 */
+
+		private final int[]			mExpressionStarts;
+
+		//
+		// Constructor
+		//
+
+		public ExpressionTemplate( String value, JexlEngine engine ) {
+
+			mValue = value;
+
+			List<String> literals = CollectionUtils.newArrayList();
+			List<String> expressionTexts = CollectionUtils.newArrayList();
+			List<Integer> expressionStarts = CollectionUtils.newArrayList();
+			Matcher matcher = PATTERN_EXPRESSION.matcher( value );
+			int literalStart = 0;
+
+			while ( matcher.find() ) {
+				literals.add( value.substring( literalStart, matcher.start() ) );
+				expressionTexts.add( matcher.group( 1 ) );
+				expressionStarts.add( matcher.start() );
+				literalStart = matcher.end();
+			}
+
+			literals.add( value.substring( literalStart ) );
+
+			mLiterals = literals.toArray( new String[literals.size()] );
+			mExpressionTexts = expressionTexts.toArray( new String[expressionTexts.size()] );
+			mExpressions = new Expression[mExpressionTexts.length];
+			mExpressionStarts = new int[mExpressionTexts.length];
+
+			for ( int loop = 0, length = mExpressionTexts.length; loop < length; loop++ ) {
+				mExpressionStarts[loop] = expressionStarts.get( loop );
+
+				try {
+					mExpressions[loop] = engine.createExpression( mExpressionTexts[loop] );
+				} catch ( Exception e ) {
+					// Report at evaluation time
+				}
+			}
+		}
+
+		//
+		// Public methods
+		//
+
+		public boolean hasExpressions() {
+
+			return ( mExpressions.length > 0 );
+		}
+
+		public String evaluate( JexlEngine engine, JexlContext context ) {
+
+			// Support the default case (when the String is just one EL)
+
+			if ( mExpressions.length == 1 && mLiterals[0].length() == 0 && mLiterals[1].length() == 0 ) {
+
+				try {
+					Object valueObject = evaluate( 0, engine, context );
+
+					if ( valueObject == null ) {
+						return null;
+					}
+
+					if ( valueObject instanceof Collection<?> ) {
+						return CollectionUtils.toString( (Collection<?>) valueObject );
+					}
+
+					if ( valueObject.getClass().isArray() ) {
+						return ArrayUtils.toString( valueObject );
+					}
+
+					return String.valueOf( valueObject );
+
+				} catch ( Exception e ) {
+
+					// We have found it helpful to include the actual expression we were trying to
+					// evaluate
+
+					throw InspectionResultProcessorException.newException( "Unable to evaluate " + mValue, e );
+				}
+			}
+
+			// Replace multiple ELs within the String
+
+			StringBuilder builder = new StringBuilder( mValue.length() );
+
+			for ( int loop = 0, length = mExpressions.length; loop < length; loop++ ) {
+
+				builder.append( mLiterals[loop] );
+
+				try {
+					Object valueObject = evaluate( loop, engine, context );
+
+					if ( valueObject != null ) {
+						builder.append( String.valueOf( valueObject ) );
+					}
+				} catch ( Exception e ) {
+
+					// Include the String as evaluated so far
+
+					throw InspectionResultProcessorException.newException( "Unable to evaluate " + builder + mValue.substring( mExpressionStarts[loop] ), e );
+				}
+			}
+
+			builder.append( mLiterals[mExpressions.length] );
+			return builder.toString();
+		}
+
+		//
+		// Private methods
+		//
+
+		private Object evaluate( int index, JexlEngine engine, JexlContext context ) {
+
+			Expression expression = mExpressions[index];
+
+			if ( expression == null ) {
+				expression = engine.createExpression( mExpressionTexts[index] );
+			}
+
+			return expression.evaluate( context );
+		}
+	}
 }
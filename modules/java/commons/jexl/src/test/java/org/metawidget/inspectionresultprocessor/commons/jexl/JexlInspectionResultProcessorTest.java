@@ -17,6 +17,7 @@ import java.util.Collection;
 
 import junit.framework.TestCase;
 
+import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessorException;
 import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyle;
 import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyleConfig;
 import org.metawidget.util.CollectionUtils;
@@ -243,6 +244,46 @@ public class JexlInspectionResultProcessorTest
 		assertEquals( entity.getChildNodes().getLength(), 1 );
 	}
 
+	public void testExpressionTemplates() {
+
+		String xml = "<?xml version=\"1.0\"?>";
+		xml += "<inspection-result xmlns=\"http://www.metawidget.org/inspection-result\" version=\"1.0\">";
+		xml += "<entity type=\"" + ThisTest.class.getName() + "\">";
+		xml += "<property name=\"me\" who-am-i=\"I am ${this.identity}\" not-el=\"${ unclosed\" />";
+		xml += "</entity></inspection-result>";
+
+		JexlInspectionResultProcessor<?> inspectionResultProcessor = new JexlInspectionResultProcessor<Object>();
+
+		// Same attribute values, different objects
+
+		for ( int loop = 0; loop < 3; loop++ ) {
+			ThisTest thisTest = new ThisTest();
+			thisTest.setIdentity( "ThisTest #" + loop );
+
+			String result = inspectionResultProcessor.processInspectionResult( xml, null, thisTest, ThisTest.class.getName() );
+			Element property = XmlUtils.getFirstChildElement( XmlUtils.getFirstChildElement( XmlUtils.documentFromString( result ).getDocumentElement() ) );
+			assertEquals( "I am ThisTest #" + loop, property.getAttribute( "who-am-i" ) );
+			assertEquals( "${ unclosed", property.getAttribute( "not-el" ) );
+		}
+
+		// Errors report the String as evaluated so far, every time
+
+		xml = "<?xml version=\"1.0\"?>";
+		xml += "<inspection-result xmlns=\"http://www.metawidget.org/inspection-result\" version=\"1.0\">";
+		xml += "<entity type=\"" + Foo.class.getName() + "\">";
+		xml += "<property name=\"bar\" bad-el=\"first ${this.abc} then ${this.}\" />";
+		xml += "</entity></inspection-result>";
+
+		for ( int loop = 0; loop < 2; loop++ ) {
+			try {
+				inspectionResultProcessor.processInspectionResult( xml, null, new Foo(), Foo.class.getName() );
+				fail();
+			} catch ( InspectionResultProcessorException e ) {
+				assertEquals( "Unable to evaluate first from-abc then ${this.}", e.getMessage() );
+			}
+		}
+	}
+
 	//
 	// Inner class
 	//
@@ -21,12 +21,15 @@ import java.net.URL;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
+import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import org.metawidget.config.iface.ConfigReader;
@@ -83,38 +86,50 @@ public class BaseConfigReader
 	private final ResourceResolver										mResourceResolver;
 
 	/**
-	 * Cache of resource content based on resource name
+	 * Cache of parsed resources, indexed by a unique location (ie. the resource name, the type
+	 * being configured and any names). Each entry pairs the recorded resource content with the
+	 * objects that are immutable at each element number within it. This is a broad-grained cache
+	 * that can prune off large portions of the tree. For example, it can cache a
+	 * <code>CompositeInspector</code> at the top-level, including all child <code>Inspector</code>s
+	 * and their various <code>xxxConfig</code>s.
+	 * <p>
+	 * Entries are only published once fully parsed, and are never modified afterwards, so may be
+	 * replayed by any number of threads without locking.
 	 */
 
-	/* package private */final Map<String, CachingContentHandler>		mResourceCache				= CollectionUtils.newHashMap();
+	/* package private */final ConcurrentMap<String, ParsedResource>		mResourceCache				= CollectionUtils.newConcurrentHashMap();
+
+	private volatile boolean											mCompileRecipes				= true;
 
 	/**
-	 * Cache of objects that are immutable, indexed by a unique location (ie. the resource name) and
-	 * element number. This is a broad-grained cache that can prune off large portions of the tree.
-	 * For example, it can cache a <code>CompositeInspector</code> at the top-level, including all
-	 * child <code>Inspector</code>s and their various <code>xxxConfig</code>s.
+	 * Locks guarding the first parse of each location, so that a resource is only parsed once
+	 * however many threads request it concurrently. Once parsed, the lock is never taken again.
 	 */
 
-	/* package private */final Map<String, Map<Integer, Immutable>>		mImmutableByLocationCache	= CollectionUtils.newHashMap();
+	private final ConcurrentMap<String, Object>							mResourceLocks				= CollectionUtils.newConcurrentHashMap();
 
 	/**
 	 * Cache of objects that are immutable, indexed by their Class (and within that their Config).
-	 * This is a more fine-grained cache than mImmutableByLocationCache, but is more widely
-	 * applicable. For example, it can cache the same <code>Inspector</code> between different XMLs
-	 * from different <code>InputStream</code>s, and the same <code>PropertyStyle</code> across
-	 * multiple different <code>Inspector</code>s.
+	 * This is a more fine-grained cache than mResourceCache, but is more widely applicable. For
+	 * example, it can cache the same <code>Inspector</code> between different XMLs from different
+	 * <code>InputStream</code>s, and the same <code>PropertyStyle</code> across multiple different
+	 * <code>Inspector</code>s.
+	 * <p>
+	 * The outer map is only locked briefly to lookup the per-Class map. Immutables are published
+	 * into the per-Class map using <code>putIfAbsent</code>, so that concurrent configures agree
+	 * on a single instance.
 	 */
 
-	/* package private */final Map<Class<?>, Map<Object, Immutable>>	mImmutableByClassCache		= CollectionUtils.newWeakHashMap();
+	/* package private */final Map<Class<?>, ConcurrentMap<Object, Immutable>>	mImmutableByClassCache	= CollectionUtils.newWeakHashMap();
 
 	/**
 	 * Cache of objects that are immutable, indexed by their id. This is a less automatic cache than
-	 * either mImmutableByLocationCache or mImmutableByClassCache because the developer has to
-	 * specify an id explicitly. But it leads to cleaner metawidget.xml files because developers
-	 * need only specify, say, a PropertyStyle with nested Config options once.
+	 * either mResourceCache or mImmutableByClassCache because the developer has to specify an id
+	 * explicitly. But it leads to cleaner metawidget.xml files because developers need only
+	 * specify, say, a PropertyStyle with nested Config options once.
 	 */
 
-	/* package private */final Map<String, Immutable>					mImmutableByIdCache			= CollectionUtils.newHashMap();
+	/* package private */final ConcurrentMap<String, Immutable>			mImmutableByIdCache			= CollectionUtils.newConcurrentHashMap();
 
 	/**
 	 * Patterns do not cache well, because <code>java.util.regex.Pattern</code> does not override
@@ -122,7 +137,7 @@ public class BaseConfigReader
 	 * same instance.
 	 */
 
-	/* package private */final Map<String, Pattern>						mPatternCache				= CollectionUtils.newHashMap();
+	/* package private */final ConcurrentMap<String, Pattern>				mPatternCache				= CollectionUtils.newConcurrentHashMap();
 
 	//
 	// Constructor
@@ -154,6 +169,12 @@ public class BaseConfigReader
 	 * <p>
 	 * This version further caches any immutable objects, in the same way as
 	 * <code>configure( InputStream, Object )</code> (see the JavaDoc for that method).
+	 * <p>
+	 * Once a resource has been parsed, subsequent calls replay it without taking any lock, so
+	 * configuring from many threads at once scales across cores. By default, the first parse also
+	 * compiles a <em>recipe</em> of the resolved constructors, setters and immutables, so that
+	 * subsequent calls can stamp out the configured object with direct calls rather than
+	 * replaying the SAX events (see <code>setCompileRecipes</code>).
 	 *
 	 * @param resource
 	 *            resource name that will be looked up using openResource
@@ -181,44 +202,68 @@ public class BaseConfigReader
 
 		locationKey += ArrayUtils.toString( names, StringUtils.SEPARATOR_FORWARD_SLASH, true, false );
 
-		synchronized ( mImmutableByLocationCache ) {
+		// Replay the existing cache (without locking)...
 
-			Map<Integer, Immutable> immutableByLocationCache = mImmutableByLocationCache.get( locationKey );
+		try {
+			ParsedResource parsedResource = mResourceCache.get( locationKey );
 
-			if ( immutableByLocationCache == null ) {
-				immutableByLocationCache = CollectionUtils.newHashMap();
-			}
+			if ( parsedResource == null ) {
 
-			configHandler.setImmutableForThisLocationCache( immutableByLocationCache );
+				// ...or parse it, if no other thread is already doing so
 
-			try {
+				Object lock = mResourceLocks.get( locationKey );
 
-				// Replay the existing cache...
+				if ( lock == null ) {
+					lock = new Object();
+					Object existingLock = mResourceLocks.putIfAbsent( locationKey, lock );
 
-				CachingContentHandler cachingContentHandler = mResourceCache.get( locationKey );
+					if ( existingLock != null ) {
+						lock = existingLock;
+					}
+				}
 
-				if ( cachingContentHandler != null ) {
-					cachingContentHandler.replay( configHandler );
+				synchronized ( lock ) {
+					parsedResource = mResourceCache.get( locationKey );
 
-				} else {
+					if ( parsedResource == null ) {
+						LOG.debug( "Reading resource from {0}", locationKey );
+						Map<Integer, Immutable> immutableByLocationCache = CollectionUtils.newHashMap();
+						configHandler.setImmutableForThisLocationCache( immutableByLocationCache );
+						CachingContentHandler cachingContentHandler = new CachingContentHandler( configHandler );
+						configHandler.setCachingContentHandler( cachingContentHandler );
+
+						if ( mCompileRecipes ) {
+							configHandler.compileRecipe();
+						}
 
-					// ...or cache a new one
+						newSAXParser().parse( mResourceResolver.openResource( resource ), cachingContentHandler );
 
-					LOG.debug( "Reading resource from {0}", locationKey );
-					cachingContentHandler = new CachingContentHandler( configHandler );
-					configHandler.setCachingContentHandler( cachingContentHandler );
-					mFactory.newSAXParser().parse( mResourceResolver.openResource( resource ), cachingContentHandler );
+						// Only cache if successful
 
-					// Only cache if successful
+						mResourceCache.put( locationKey, new ParsedResource( cachingContentHandler, immutableByLocationCache, configHandler.getRecipe(), toConfigure instanceof Class<?> ) );
+						mResourceLocks.remove( locationKey );
 
-					mResourceCache.put( locationKey, cachingContentHandler );
-					mImmutableByLocationCache.put( locationKey, immutableByLocationCache );
+						return configHandler.getConfigured();
+					}
 				}
+			}
 
-				return configHandler.getConfigured();
-			} catch ( Exception e ) {
-				throw MetawidgetException.newException( e );
+			// Stamp out the compiled recipe (if any)...
+
+			Recipe recipe = parsedResource.getRecipe( toConfigure );
+
+			if ( recipe != null ) {
+				return recipe.stamp( toConfigure );
 			}
+
+			// ...or replay the SAX events
+
+			configHandler.setImmutableForThisLocationCache( parsedResource.getImmutableByLocation() );
+			parsedResource.getCachingContentHandler().replay( configHandler );
+
+			return configHandler.getConfigured();
+		} catch ( Exception e ) {
+			throw MetawidgetException.newException( e );
 		}
 	}
 
@@ -287,7 +332,7 @@ public class BaseConfigReader
 
 		try {
 			ConfigHandler configHandler = new ConfigHandler( toConfigure, names );
-			mFactory.newSAXParser().parse( stream, configHandler );
+			newSAXParser().parse( stream, configHandler );
 
 			return configHandler.getConfigured();
 		} catch ( Exception e ) {
@@ -300,6 +345,18 @@ public class BaseConfigReader
 		return mResourceResolver;
 	}
 
+	/**
+	 * Whether <code>configure( String, ... )</code> should compile each resource into a recipe on
+	 * first parse. Defaults to true. If false, subsequent calls replay the SAX events instead.
+	 * <p>
+	 * Only affects resources parsed after this call.
+	 */
+
+	public void setCompileRecipes( boolean compileRecipes ) {
+
+		mCompileRecipes = compileRecipes;
+	}
+
 	//
 	// Protected methods
 	//
@@ -426,7 +483,11 @@ public class BaseConfigReader
 
 			if ( pattern == null ) {
 				pattern = Pattern.compile( recordedText );
-				mPatternCache.put( recordedText, pattern );
+				Pattern existingPattern = mPatternCache.putIfAbsent( recordedText, pattern );
+
+				if ( existingPattern != null ) {
+					pattern = existingPattern;
+				}
 			}
 
 			return pattern;
@@ -618,6 +679,51 @@ public class BaseConfigReader
 		return Immutable.class.isAssignableFrom( clazz );
 	}
 
+	//
+	// Private methods
+	//
+
+	/**
+	 * @return true if the given value is of a type known to be immutable, so can be shared
+	 *         between recipe stampings
+	 */
+
+	/* package private */static boolean isImmutableValue( Object value ) {
+
+		if ( value == null ) {
+			return true;
+		}
+
+		if ( value instanceof String || value instanceof Class<?> || value instanceof Enum<?> || value instanceof Pattern ) {
+			return true;
+		}
+
+		// (not Number, as that includes mutables like AtomicInteger)
+
+		if ( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+			return true;
+		}
+
+		if ( value instanceof Boolean || value instanceof Character || value instanceof Double || value instanceof Float ) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * <code>SAXParserFactory</code> is not guaranteed to be thread-safe, so guard it. The
+	 * <code>SAXParser</code> it returns is only used by the calling thread.
+	 */
+
+	private SAXParser newSAXParser()
+		throws Exception {
+
+		synchronized ( mFactory ) {
+			return mFactory.newSAXParser();
+		}
+	}
+
 	//
 	// Inner classes
 	//
@@ -724,6 +830,12 @@ public class BaseConfigReader
 
 		private CachingContentHandler	mCachingContentHandler;
 
+		/**
+		 * Stack of Recipes, mirroring mConstructing, if compiling a recipe.
+		 */
+
+		private Stack<Recipe>			mRecipe;
+
 		//
 		// Constructor
 		//
@@ -748,6 +860,29 @@ public class BaseConfigReader
 			mCachingContentHandler = cachingContentHandler;
 		}
 
+		/**
+		 * Trace the objects constructed, and the methods called on them, so that they can be
+		 * compiled into a <code>Recipe</code>.
+		 */
+
+		public void compileRecipe() {
+
+			mRecipe = CollectionUtils.newStack();
+		}
+
+		/**
+		 * @return the compiled recipe, or null if no recipe was compiled (or nothing matched)
+		 */
+
+		public Recipe getRecipe() {
+
+			if ( mRecipe == null || mRecipe.size() != 1 ) {
+				return null;
+			}
+
+			return mRecipe.peek();
+		}
+
 		public Object getConfigured() {
 
 			if ( mConstructing.isEmpty() ) {
@@ -851,6 +986,10 @@ public class BaseConfigReader
 
 							mConstructing.push( mToConfigure );
 							mEncountered.push( EncounteredState.JAVA_OBJECT );
+
+							if ( mRecipe != null ) {
+								mRecipe.push( new ToConfigureRecipe() );
+							}
 						}
 
 						mExpecting = ExpectingState.METHOD;
@@ -879,6 +1018,10 @@ public class BaseConfigReader
 							mConstructing.push( collection );
 							mEncountered.push( EncounteredState.NATIVE_COLLECTION_TYPE );
 
+							if ( mRecipe != null ) {
+								mRecipe.push( new CollectionRecipe( localName ) );
+							}
+
 							mExpecting = ExpectingState.OBJECT;
 							return;
 						}
@@ -919,6 +1062,10 @@ public class BaseConfigReader
 						mConstructing.push( new ArrayList<Object>() );
 						mEncountered.push( EncounteredState.METHOD );
 
+						if ( mRecipe != null ) {
+							mRecipe.push( new CollectionRecipe( null ) );
+						}
+
 						mExpecting = ExpectingState.OBJECT;
 						break;
 
@@ -1024,7 +1171,17 @@ public class BaseConfigReader
 
 						// Create native
 
-						addToConstructing( createNative( localName, constructing.getClass(), endRecording() ) );
+						String recordedText = endRecording();
+						Object nativeValue = createNative( localName, constructing.getClass(), recordedText );
+						addToConstructing( nativeValue );
+
+						if ( mRecipe != null ) {
+							if ( isImmutableValue( nativeValue ) ) {
+								mRecipe.peek().add( new ConstantRecipe( nativeValue ) );
+							} else {
+								mRecipe.peek().add( new NativeRecipe( localName, constructing.getClass(), recordedText ) );
+							}
+						}
 
 						mExpecting = ExpectingState.OBJECT;
 						return;
@@ -1036,12 +1193,22 @@ public class BaseConfigReader
 						Collection<Object> parameters = (Collection<Object>) mConstructing.peek();
 						parameters.add( nativeCollectionType );
 
+						if ( mRecipe != null ) {
+							Recipe collectionRecipe = mRecipe.pop();
+							mRecipe.peek().add( collectionRecipe );
+						}
+
 						mExpecting = ExpectingState.OBJECT;
 						return;
 
 					case CONFIGURED_TYPE:
 					case JAVA_OBJECT:
 						Object object = mConstructing.pop();
+						Recipe recipe = null;
+
+						if ( mRecipe != null ) {
+							recipe = mRecipe.pop();
+						}
 
 						if ( encountered == EncounteredState.CONFIGURED_TYPE ) {
 							Class<?> classToConstruct = lookupClass( uri, localName, mToConfigure.getClass().getClassLoader() );
@@ -1059,6 +1226,10 @@ public class BaseConfigReader
 								try {
 									Constructor<?> constructor = classToConstruct.getConstructor( object.getClass() );
 									configuredObject = constructor.newInstance( object );
+
+									if ( recipe != null ) {
+										recipe = new ConstructorRecipe( constructor, recipe );
+									}
 								} catch ( NoSuchMethodException e ) {
 									String likelyConfig = getLikelyConfig( classToConstruct );
 
@@ -1075,8 +1246,8 @@ public class BaseConfigReader
 
 								if ( isImmutable( classToConstruct ) ) {
 									LOG.debug( "\tInstantiated immutable {0} (config hashCode {1})", classToConstruct, object.hashCode() );
-									Immutable immutable = (Immutable) configuredObject;
-									putImmutableByClass( immutable, object );
+									Immutable immutable = putImmutableByClass( (Immutable) configuredObject, object );
+									configuredObject = immutable;
 
 									if ( id != null ) {
 										putImmutableById( id, immutable );
@@ -1101,18 +1272,31 @@ public class BaseConfigReader
 							// on
 
 							object = configuredObject;
+
+							if ( recipe != null && isImmutable( classToConstruct ) ) {
+								recipe = new ConstantRecipe( object );
+							}
 						}
 
 						// Back at root? Expect another TO_CONFIGURE
 
 						if ( mDepth == 1 ) {
 							mConstructing.push( object );
+
+							if ( recipe != null ) {
+								mRecipe.push( recipe );
+							}
+
 							mExpecting = ExpectingState.TO_CONFIGURE;
 							return;
 						}
 
 						addToConstructing( object );
 
+						if ( recipe != null ) {
+							mRecipe.peek().add( recipe );
+						}
+
 						mExpecting = ExpectingState.OBJECT;
 						return;
 
@@ -1127,10 +1311,21 @@ public class BaseConfigReader
 
 						Class<?> constructingClass = constructing1.getClass();
 						String methodName = "set" + StringUtils.capitalize( localName );
+						CollectionRecipe parametersRecipe = null;
+						List<Object> unresolvedParameters = null;
+
+						if ( mRecipe != null ) {
+							parametersRecipe = (CollectionRecipe) mRecipe.pop();
+							unresolvedParameters = CollectionUtils.newArrayList( parameters1 );
+						}
 
 						try {
 							Method method = classGetMethod( constructingClass, methodName, parameters1 );
 							method.invoke( constructing1, parameters1.toArray() );
+
+							if ( mRecipe != null ) {
+								mRecipe.peek().addMethodCall( new MethodCallRecipe( method, parametersRecipe, unresolvedParameters, parameters1 ) );
+							}
 						} catch ( NoSuchMethodException e ) {
 							// Hint for config-based constructors
 
@@ -1230,6 +1425,11 @@ public class BaseConfigReader
 
 				mConstructing.push( immutable );
 				mEncountered.push( EncounteredState.JAVA_OBJECT );
+
+				if ( mRecipe != null ) {
+					mRecipe.push( new ConstantRecipe( immutable ) );
+				}
+
 				return ExpectingState.CLOSE_OBJECT_WITH_REFID;
 			}
 
@@ -1271,6 +1471,10 @@ public class BaseConfigReader
 				mConstructing.push( new ConfigAndId( config, attributes.getValue( "id" ) ) );
 				mEncountered.push( EncounteredState.CONFIGURED_TYPE );
 
+				if ( mRecipe != null ) {
+					mRecipe.push( new ConfigRecipe( configClass ) );
+				}
+
 				// Pause caching (if any)
 
 				if ( mIgnoreImmutableAfterDepth == -1 && mCachingContentHandler != null && isImmutable( classToConstruct ) ) {
@@ -1289,10 +1493,16 @@ public class BaseConfigReader
 
 			// Java objects (without config)?
 
+			Recipe recipe = null;
+
 			if ( object == null ) {
 				try {
 					Constructor<?> defaultConstructor = classToConstruct.getConstructor();
 					object = defaultConstructor.newInstance();
+
+					if ( mRecipe != null ) {
+						recipe = new ConstructorRecipe( defaultConstructor, null );
+					}
 				} catch ( NoSuchMethodException e ) {
 					String likelyConfig = getLikelyConfig( classToConstruct );
 
@@ -1307,8 +1517,8 @@ public class BaseConfigReader
 
 				if ( isImmutable( classToConstruct ) ) {
 					LOG.debug( "\tInstantiated immutable {0} (no config)", classToConstruct );
-					Immutable immutable = (Immutable) object;
-					putImmutableByClass( immutable, null );
+					Immutable immutable = putImmutableByClass( (Immutable) object, null );
+					object = immutable;
 
 					String id = attributes.getValue( "id" );
 
@@ -1321,6 +1531,16 @@ public class BaseConfigReader
 			mConstructing.push( object );
 			mEncountered.push( EncounteredState.JAVA_OBJECT );
 
+			// (immutables, whether cached or newly instantiated, are shared as-is)
+
+			if ( mRecipe != null ) {
+				if ( isImmutable( classToConstruct ) ) {
+					recipe = new ConstantRecipe( object );
+				}
+
+				mRecipe.push( recipe );
+			}
+
 			return ExpectingState.METHOD;
 		}
 
@@ -1391,16 +1611,23 @@ public class BaseConfigReader
 
 		private void putImmutableById( String id, Immutable immutable ) {
 
-			if ( mImmutableByIdCache.containsKey( id ) ) {
+			// (another thread configuring the same resource may have registered the same
+			// instance already, which is fine)
+
+			Immutable existingImmutable = mImmutableByIdCache.putIfAbsent( id, immutable );
+
+			if ( existingImmutable != null && existingImmutable != immutable ) {
 				throw InspectorException.newException( "Attribute id=\"" + id + "\" appears more than once" );
 			}
-
-			mImmutableByIdCache.put( id, immutable );
 		}
 
 		private Object getImmutableByClass( Class<?> clazz, Object config ) {
 
-			Map<Object, Immutable> configs = mImmutableByClassCache.get( clazz );
+			Map<Object, Immutable> configs;
+
+			synchronized ( mImmutableByClassCache ) {
+				configs = mImmutableByClassCache.get( clazz );
+			}
 
 			if ( configs == null ) {
 				return null;
@@ -1417,14 +1644,25 @@ public class BaseConfigReader
 			return configs.get( configToLookup );
 		}
 
-		private void putImmutableByClass( Immutable immutable, Object config ) {
+		/**
+		 * Cache the given immutable by its class (and config).
+		 *
+		 * @return the cached immutable. This may be a different instance to the one given, if
+		 *         another thread cached an equivalent immutable first
+		 */
+
+		private Immutable putImmutableByClass( Immutable immutable, Object config ) {
 
 			Class<?> clazz = immutable.getClass();
-			Map<Object, Immutable> configs = mImmutableByClassCache.get( clazz );
+			ConcurrentMap<Object, Immutable> configs;
 
-			if ( configs == null ) {
-				configs = CollectionUtils.newHashMap();
-				mImmutableByClassCache.put( clazz, configs );
+			synchronized ( mImmutableByClassCache ) {
+				configs = mImmutableByClassCache.get( clazz );
+
+				if ( configs == null ) {
+					configs = CollectionUtils.newConcurrentHashMap();
+					mImmutableByClassCache.put( clazz, configs );
+				}
 			}
 
 			Object configToStoreUnder = config;
@@ -1509,10 +1747,6 @@ public class BaseConfigReader
 				}
 			}
 
-			if ( configs.containsKey( configToStoreUnder ) ) {
-				throw InspectorException.newException( "Config '" + configToStoreUnder + "' already cached" );
-			}
-
 			for ( Method method : clazz.getMethods() ) {
 
 				// Do not warn for > 1 parameter, as a lot of WidgetBuilders implement setValue
@@ -1523,7 +1757,17 @@ public class BaseConfigReader
 				}
 			}
 
-			configs.put( configToStoreUnder, immutable );
+			// Publish. Callers always check getImmutableByClass first, so the only way the config
+			// can already be cached is if another thread got there first. In which case use theirs,
+			// so that there is still only ever one instance
+
+			Immutable cachedImmutable = configs.putIfAbsent( configToStoreUnder, immutable );
+
+			if ( cachedImmutable == null ) {
+				cachedImmutable = immutable;
+			} else if ( cachedImmutable != immutable ) {
+				LOG.debug( "\tConfig ''{0}'' already cached by another thread. Adopting its {1}", configToStoreUnder, clazz );
+			}
 
 			// Unpause caching (if any)
 
@@ -1532,9 +1776,11 @@ public class BaseConfigReader
 				mIgnoreImmutableAfterDepth = -1;
 
 				if ( config != null ) {
-					putImmutableByLocation( immutable );
+					putImmutableByLocation( cachedImmutable );
 				}
 			}
+
+			return cachedImmutable;
 		}
 
 		/**
@@ -1734,4 +1980,516 @@ public class BaseConfigReader
 			return mId;
 		}
 	}
+
+	/**
+	 * Compiled form of (part of) a resource. Rather than replaying SAX events, and so re-resolving
+	 * classes, setters and immutables by name, a <code>Recipe</code> holds them already resolved,
+	 * and stamps out a freshly configured object with direct calls.
+	 * <p>
+	 * Recipes are compiled by tracing the first parse of a resource, and are never modified
+	 * afterwards, so may be stamped by any number of threads at once.
+	 */
+
+	/* package private */abstract class Recipe {
+
+		//
+		// Private members
+		//
+
+		private List<MethodCallRecipe>	mMethodCalls;
+
+		//
+		// Public methods
+		//
+
+		public Object stamp( Object toConfigure )
+			throws Exception {
+
+			Object stamped = create( toConfigure );
+
+			if ( mMethodCalls != null ) {
+				for ( MethodCallRecipe methodCall : mMethodCalls ) {
+					methodCall.invoke( stamped, toConfigure );
+				}
+			}
+
+			return stamped;
+		}
+
+		public void addMethodCall( MethodCallRecipe methodCall ) {
+
+			if ( mMethodCalls == null ) {
+				mMethodCalls = CollectionUtils.newArrayList();
+			}
+
+			mMethodCalls.add( methodCall );
+		}
+
+		public void add( Recipe toAdd ) {
+
+			throw MetawidgetException.newException( "Don't know how to add to a " + getClass() );
+		}
+
+		/**
+		 * @return true if every stamping returns the same value
+		 */
+
+		public boolean isConstant() {
+
+			return false;
+		}
+
+		//
+		// Protected methods
+		//
+
+		protected boolean hasMethodCalls() {
+
+			return ( mMethodCalls != null );
+		}
+
+		protected abstract Object create( Object toConfigure )
+			throws Exception;
+	}
+
+	/**
+	 * Recipe for an immutable (or an immutable value, such as a <code>String</code>). The same
+	 * instance is shared by every stamping.
+	 */
+
+	private class ConstantRecipe
+		extends Recipe {
+
+		//
+		// Private members
+		//
+
+		private final Object	mConstant;
+
+		//
+		// Constructor
+		//
+
+		public ConstantRecipe( Object constant ) {
+
+			mConstant = constant;
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public boolean isConstant() {
+
+			return !hasMethodCalls();
+		}
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected Object create( Object toConfigure ) {
+
+			return mConstant;
+		}
+	}
+
+	/**
+	 * Recipe for the object passed to <code>configure</code>.
+	 */
+
+	private class ToConfigureRecipe
+		extends Recipe {
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected Object create( Object toConfigure ) {
+
+			return toConfigure;
+		}
+	}
+
+	/**
+	 * Recipe for an <code>xxxConfig</code> object.
+	 */
+
+	private class ConfigRecipe
+		extends Recipe {
+
+		//
+		// Private members
+		//
+
+		private final Class<?>	mConfigClass;
+
+		//
+		// Constructor
+		//
+
+		public ConfigRecipe( Class<?> configClass ) {
+
+			mConfigClass = configClass;
+		}
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected Object create( Object toConfigure )
+			throws Exception {
+
+			Object config = mConfigClass.newInstance();
+
+			if ( config instanceof NeedsResourceResolver ) {
+				( (NeedsResourceResolver) config ).setResourceResolver( getResourceResolver() );
+			}
+
+			return config;
+		}
+	}
+
+	/**
+	 * Recipe for a (mutable) object, constructed either with no arguments or with a config.
+	 */
+
+	private class ConstructorRecipe
+		extends Recipe {
+
+		//
+		// Private members
+		//
+
+		private final Constructor<?>	mConstructor;
+
+		private final Recipe			mConfig;
+
+		//
+		// Constructor
+		//
+
+		/**
+		 * @param config
+		 *            recipe for the config to pass to the constructor, or null for a default
+		 *            constructor
+		 */
+
+		public ConstructorRecipe( Constructor<?> constructor, Recipe config ) {
+
+			mConstructor = constructor;
+			mConfig = config;
+		}
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected Object create( Object toConfigure )
+			throws Exception {
+
+			if ( mConfig == null ) {
+				return mConstructor.newInstance();
+			}
+
+			return mConstructor.newInstance( mConfig.stamp( toConfigure ) );
+		}
+	}
+
+	/**
+	 * Recipe for a native type whose value cannot be shared between stampings (such as a
+	 * <code>MessageFormat</code> or an <code>InputStream</code>).
+	 */
+
+	private class NativeRecipe
+		extends Recipe {
+
+		//
+		// Private members
+		//
+
+		private final String	mName;
+
+		private final Class<?>	mNamespace;
+
+		private final String	mRecordedText;
+
+		//
+		// Constructor
+		//
+
+		public NativeRecipe( String name, Class<?> namespace, String recordedText ) {
+
+			mName = name;
+			mNamespace = namespace;
+			mRecordedText = recordedText;
+		}
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected Object create( Object toConfigure )
+			throws Exception {
+
+			return createNative( mName, mNamespace, mRecordedText );
+		}
+	}
+
+	/**
+	 * Recipe for a native collection type, or for the parameters to a method.
+	 */
+
+	private class CollectionRecipe
+		extends Recipe {
+
+		//
+		// Private members
+		//
+
+		/**
+		 * Name of the native collection type, or null if method parameters.
+		 */
+
+		private final String		mName;
+
+		private final List<Recipe>	mChildren	= CollectionUtils.newArrayList();
+
+		//
+		// Constructor
+		//
+
+		public CollectionRecipe( String name ) {
+
+			mName = name;
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public void add( Recipe toAdd ) {
+
+			mChildren.add( toAdd );
+		}
+
+		public List<Recipe> getChildren() {
+
+			return mChildren;
+		}
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected Object create( Object toConfigure )
+			throws Exception {
+
+			Object collection = createNativeCollection( mName );
+
+			// Arrays
+
+			if ( collection.getClass().isArray() ) {
+				Object[] array = (Object[]) Array.newInstance( collection.getClass().getComponentType(), mChildren.size() );
+
+				for ( int loop = 0, length = array.length; loop < length; loop++ ) {
+					array[loop] = mChildren.get( loop ).stamp( toConfigure );
+				}
+
+				return array;
+			}
+
+			// Collections
+
+			@SuppressWarnings( "unchecked" )
+			Collection<Object> collectionToAddTo = (Collection<Object>) collection;
+
+			for ( Recipe child : mChildren ) {
+				collectionToAddTo.add( child.stamp( toConfigure ) );
+			}
+
+			return collection;
+		}
+	}
+
+	/**
+	 * Recipe for calling a (setter) method, already resolved.
+	 */
+
+	private class MethodCallRecipe {
+
+		//
+		// Private members
+		//
+
+		private final Method	mMethod;
+
+		private final Recipe[]	mParameters;
+
+		/**
+		 * Types to lazily resolve each parameter to (see <code>createLazyResolvingNative</code>).
+		 * Null entries need no resolving.
+		 */
+
+		private final Class<?>[]	mLazilyResolveTo;
+
+		//
+		// Constructor
+		//
+
+		/**
+		 * @param unresolvedParameters
+		 *            the parameters as they were before <code>classGetMethod</code>
+		 * @param resolvedParameters
+		 *            the parameters as they were after <code>classGetMethod</code>, with any lazy
+		 *            natives resolved
+		 */
+
+		public MethodCallRecipe( Method method, CollectionRecipe parameters, List<Object> unresolvedParameters, List<Object> resolvedParameters ) {
+
+			mMethod = method;
+			mParameters = parameters.getChildren().toArray( new Recipe[parameters.getChildren().size()] );
+			mLazilyResolveTo = new Class<?>[mParameters.length];
+			Class<?>[] parameterTypes = method.getParameterTypes();
+
+			for ( int loop = 0, length = mParameters.length; loop < length; loop++ ) {
+				Object resolvedParameter = resolvedParameters.get( loop );
+
+				if ( unresolvedParameters.get( loop ) == resolvedParameter ) {
+					continue;
+				}
+
+				// Resolve once, if we can...
+
+				if ( mParameters[loop].isConstant() && isImmutableValue( resolvedParameter ) ) {
+					mParameters[loop] = new ConstantRecipe( resolvedParameter );
+					continue;
+				}
+
+				// ...otherwise resolve at every stamping
+
+				Class<?> parameterType = parameterTypes[loop];
+
+				if ( parameterType.isPrimitive() ) {
+					parameterType = ClassUtils.getWrapperClass( parameterType );
+				}
+
+				mLazilyResolveTo[loop] = parameterType;
+			}
+		}
+
+		//
+		// Public methods
+		//
+
+		public void invoke( Object target, Object toConfigure )
+			throws Exception {
+
+			Object[] parameters = new Object[mParameters.length];
+
+			for ( int loop = 0, length = parameters.length; loop < length; loop++ ) {
+				Object parameter = mParameters[loop].stamp( toConfigure );
+				Class<?> lazilyResolveTo = mLazilyResolveTo[loop];
+
+				if ( lazilyResolveTo != null && !lazilyResolveTo.isInstance( parameter ) ) {
+					parameter = createLazyResolvingNative( parameter, lazilyResolveTo );
+
+					if ( parameter == null ) {
+						throw MetawidgetException.newException( "Unable to resolve parameter " + loop + " of " + mMethod );
+					}
+				}
+
+				parameters[loop] = parameter;
+			}
+
+			try {
+				mMethod.invoke( target, parameters );
+			} catch ( InvocationTargetException e ) {
+
+				// Prevent InvocationTargetException 'masking' the error
+
+				Throwable t = e.getTargetException();
+
+				if ( !( t instanceof Exception ) ) {
+					throw new RuntimeException( t );
+				}
+
+				throw (Exception) t;
+			}
+		}
+	}
+
+	/**
+	 * A resource that has been fully parsed: its recorded content, the objects that are immutable
+	 * at each element number within it, and its compiled recipe (if any). Never modified after
+	 * construction.
+	 */
+
+	/* package private */static class ParsedResource {
+
+		//
+		// Private members
+		//
+
+		private final CachingContentHandler		mCachingContentHandler;
+
+		private final Map<Integer, Immutable>	mImmutableByLocation;
+
+		private final Recipe					mRecipe;
+
+		/**
+		 * Whether mRecipe was compiled for a <code>Class</code> (as opposed to an instance). Both
+		 * share the same location.
+		 */
+
+		private final boolean					mRecipeForClass;
+
+		//
+		// Constructor
+		//
+
+		public ParsedResource( CachingContentHandler cachingContentHandler, Map<Integer, Immutable> immutableByLocation, Recipe recipe, boolean recipeForClass ) {
+
+			mCachingContentHandler = cachingContentHandler;
+			mImmutableByLocation = Collections.unmodifiableMap( immutableByLocation );
+			mRecipe = recipe;
+			mRecipeForClass = recipeForClass;
+		}
+
+		//
+		// Public methods
+		//
+
+		public CachingContentHandler getCachingContentHandler() {
+
+			return mCachingContentHandler;
+		}
+
+		public Map<Integer, Immutable> getImmutableByLocation() {
+
+			return mImmutableByLocation;
+		}
+
+		/**
+		 * @return the compiled recipe, or null if none was compiled (or it was compiled for a
+		 *         <code>Class</code> but toConfigure is an instance, or vice versa)
+		 */
+
+		public Recipe getRecipe( Object toConfigure ) {
+
+			if ( ( toConfigure instanceof Class<?> ) != mRecipeForClass ) {
+				return null;
+			}
+
+			return mRecipe;
+		}
+	}
 }
@@ -14,8 +14,6 @@ package org.metawidget.inspectionresultprocessor.sort;
 import static org.metawidget.inspector.InspectionResultConstants.COMES_AFTER;
 import static org.metawidget.inspector.InspectionResultConstants.ENTITY;
 import static org.metawidget.inspector.InspectionResultConstants.NAME;
-import static org.metawidget.inspector.InspectionResultConstants.NAMESPACE;
-import static org.metawidget.inspector.InspectionResultConstants.ROOT;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -27,7 +25,6 @@ import org.metawidget.inspectionresultprocessor.impl.BaseInspectionResultProcess
 import org.metawidget.util.ArrayUtils;
 import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.XmlUtils;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 /**
@@ -66,42 +63,50 @@ public class ComesAfterInspectionResultProcessor<M>
 				throw InspectionResultProcessorException.newException( "Top-level element name should be " + ENTITY + ", not " + elementName );
 			}
 			
-			// Prepare all traits as a topological graph (use LinkedHashMap and List
-			// so we get a consistent ordering)
+			// Prepare all traits as a topological graph (use a List so we get a consistent
+			// ordering). Note whether any trait has a comes-after at all
 
-			Map<String, TopologicalElement> topologicalElements = CollectionUtils.newLinkedHashMap();
+			List<TopologicalElement> topologicalElements = CollectionUtils.newArrayList();
+			Map<String, TopologicalElement> topologicalElementsByName = CollectionUtils.newHashMap();
+			boolean hasComesAfter = false;
 			Element trait = XmlUtils.getFirstChildElement( entity );
 
 			while ( trait != null ) {
-				topologicalElements.put( trait.getAttribute( NAME ), new TopologicalElement( trait ) );
+				TopologicalElement topologicalElement = new TopologicalElement( trait );
+				topologicalElements.add( topologicalElement );
+				topologicalElementsByName.put( trait.getAttribute( NAME ), topologicalElement );
+
+				if ( hasComesAfter( trait, metawidget ) ) {
+					hasComesAfter = true;
+				}
+
 				trait = XmlUtils.getNextSiblingElement( trait );
 			}
 
-			Collection<TopologicalElement> unmarkedNodes = CollectionUtils.newArrayList();
+			// Nothing to sort?
 
-			for ( TopologicalElement topologicalElement : topologicalElements.values() ) {
+			if ( !hasComesAfter ) {
+				return inspectionResult;
+			}
+
+			for ( TopologicalElement topologicalElement : topologicalElements ) {
 
-				unmarkedNodes.add( topologicalElement );
 				trait = topologicalElement.getElement();
 
 				if ( hasComesAfter( trait, metawidget ) ) {
-					
+
 					String comesAfters = getComesAfter( trait, metawidget );
 
-					// For comes-after all, gather all nodes
-					
-					if ( "".equals( comesAfters )) {
-						for ( TopologicalElement comesAfter : topologicalElements.values() ) {
+					// For comes-after all, don't gather all nodes (that would be quadratic).
+					// Visit them at sort time instead
 
-							if ( !comesAfter.equals( topologicalElement ) ) {
-								topologicalElement.addComesAfter( comesAfter );
-							}
-						}
+					if ( "".equals( comesAfters ) ) {
+						topologicalElement.setComesAfterAll( true );
 						continue;
 					}
 
 					// For others, lookup each dependent node
-					
+
 					String[] comesAftersArray = ArrayUtils.fromString( comesAfters );
 					String traitName = trait.getAttribute( NAME );
 
@@ -111,14 +116,14 @@ public class ComesAfterInspectionResultProcessor<M>
 							throw InspectionResultProcessorException.newException( '\'' + traitName + "' " + COMES_AFTER + " itself" );
 						}
 
-						TopologicalElement comesAfterElement = topologicalElements.get( comesAfter );
-					
+						TopologicalElement comesAfterElement = topologicalElementsByName.get( comesAfter );
+
 						// (node may not be in the graph)
-						
+
 						if ( comesAfterElement == null ) {
 							continue;
 						}
-						
+
 						topologicalElement.addComesAfter( comesAfterElement );
 					}
 				}
@@ -126,29 +131,23 @@ public class ComesAfterInspectionResultProcessor<M>
 
 			// Sort the graph
 
-			List<Element> sortedTraits = CollectionUtils.newArrayList();
-			topologicalSort( unmarkedNodes, sortedTraits );
+			List<TopologicalElement> sortedTraits = CollectionUtils.newArrayList();
+			topologicalSort( topologicalElements, sortedTraits );
 
-			// Reconstruct the DOM. First, start a new document (Android 1.1 did
-			// not cope well with shuffling the nodes of an existing document)...
+			// Already sorted?
 
-			Document newDocument = XmlUtils.newDocument();
-			Element newInspectionResult = newDocument.createElementNS( NAMESPACE, ROOT );
-			XmlUtils.setMapAsAttributes( newInspectionResult, XmlUtils.getAttributesAsMap( inspectionResult ) );
-			newDocument.appendChild( newInspectionResult );
-
-			Element newEntity = newDocument.createElementNS( NAMESPACE, ENTITY );
-			XmlUtils.setMapAsAttributes( newEntity, XmlUtils.getAttributesAsMap( entity ) );
-			newInspectionResult.appendChild( newEntity );
+			if ( sortedTraits.equals( topologicalElements ) ) {
+				return inspectionResult;
+			}
 
-			// ...then import our sorted traits into it
+			// Reorder the traits in place (appendChild moves an existing node to the end)
 
-			for ( Element sortedTrait : sortedTraits ) {
+			for ( TopologicalElement sortedTrait : sortedTraits ) {
 
-				newEntity.appendChild( XmlUtils.importElement( newDocument, sortedTrait ) );
+				entity.appendChild( sortedTrait.getElement() );
 			}
 
-			return newInspectionResult;
+			return inspectionResult;
 		} catch ( Exception e ) {
 			throw InspectionResultProcessorException.newException( e );
 		}
@@ -200,18 +199,27 @@ public class ComesAfterInspectionResultProcessor<M>
 
 	/**
 	 * Visit the next unmarked node.
+	 * <p>
+	 * Rather than removing visited nodes from a Collection (which would be quadratic), walk the
+	 * nodes in order and skip those already permanently marked.
 	 */
 
-	private void topologicalSort( Collection<TopologicalElement> unmarkedNodes, List<Element> sorted ) {
+	private void topologicalSort( List<TopologicalElement> nodes, List<TopologicalElement> sorted ) {
+
+		int temporaryMark = 0;
 
-		while ( !unmarkedNodes.isEmpty() ) {
+		for ( TopologicalElement node : nodes ) {
+
+			if ( node.getMark() == PERMANENT_MARK ) {
+				continue;
+			}
 
-			TopologicalElement node = unmarkedNodes.iterator().next();
-			topologicalVisit( node, unmarkedNodes, sorted, unmarkedNodes.size() );
+			temporaryMark++;
+			topologicalVisit( node, nodes, sorted, temporaryMark );
 		}
 	}
 
-	private void topologicalVisit( TopologicalElement node, Collection<TopologicalElement> unmarkedNodes, List<Element> sorted, int temporaryMark ) {
+	private void topologicalVisit( TopologicalElement node, List<TopologicalElement> nodes, List<TopologicalElement> sorted, int temporaryMark ) {
 
 		// If node has a permanent mark then all done
 
@@ -224,7 +232,13 @@ public class ComesAfterInspectionResultProcessor<M>
 		if ( node.getMark() == temporaryMark ) {
 			List<String> infiniteLoopNames = CollectionUtils.newArrayList();
 
-			for ( TopologicalElement infiniteLoopNode : unmarkedNodes ) {
+			for ( TopologicalElement infiniteLoopNode : nodes ) {
+
+				// (only unmarked nodes)
+
+				if ( infiniteLoopNode.getMark() == PERMANENT_MARK ) {
+					continue;
+				}
 
 				String value;
 				Element trait = infiniteLoopNode.getElement();
@@ -254,20 +268,28 @@ public class ComesAfterInspectionResultProcessor<M>
 
 		node.setMark( temporaryMark );
 
-		// Visit each dependent node
+		// Visit each dependent node (for comes-after all, that is every other node)
+
+		if ( node.isComesAfterAll() ) {
+			for ( TopologicalElement comesAfter : nodes ) {
 
-		for ( TopologicalElement comesAfter : node.getComesAfter() ) {
-			topologicalVisit( comesAfter, unmarkedNodes, sorted, temporaryMark );
+				if ( comesAfter != node ) {
+					topologicalVisit( comesAfter, nodes, sorted, temporaryMark );
+				}
+			}
+		} else {
+			for ( TopologicalElement comesAfter : node.getComesAfter() ) {
+				topologicalVisit( comesAfter, nodes, sorted, temporaryMark );
+			}
 		}
 
 		// Mark node permanently
 
 		node.setMark( PERMANENT_MARK );
-		unmarkedNodes.remove( node );
 
 		// Add node to sorted list
 
-		sorted.add( node.getElement() );
+		sorted.add( node );
 	}
 
 	//
@@ -294,6 +316,8 @@ public class ComesAfterInspectionResultProcessor<M>
 
 		private Collection<TopologicalElement>	mComesAfter	= CollectionUtils.newArrayList();
 
+		private boolean							mComesAfterAll;
+
 		//
 		// Constructor
 		//
@@ -322,6 +346,21 @@ public class ComesAfterInspectionResultProcessor<M>
 			mComesAfter.add( comesAfter );
 		}
 
+		/**
+		 * Whether this node comes after every other node. Held as a flag, rather than as an edge to
+		 * every other node, so that building the graph stays linear.
+		 */
+
+		public boolean isComesAfterAll() {
+
+			return mComesAfterAll;
+		}
+
+		public void setComesAfterAll( boolean comesAfterAll ) {
+
+			mComesAfterAll = comesAfterAll;
+		}
+
 		public void setMark( int mark ) {
 
 			mMark = mark;
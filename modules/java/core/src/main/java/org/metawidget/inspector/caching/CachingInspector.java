@@ -0,0 +1,412 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.inspector.caching;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.metawidget.inspector.iface.DomInspector;
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.inspector.iface.InspectorException;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.XmlUtils;
+import org.metawidget.util.simple.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Caches the results of another Inspector, keyed by type and names.
+ * <p>
+ * Many Metawidgets (and their nested Metawidgets) inspect the same class-level metadata over and
+ * over. CachingInspector remembers those results, up to a maximum number (after which the
+ * approximately least recently used result is discarded). By default it only caches inspections where
+ * <code>toInspect</code> is null, as other results may depend on runtime values (see
+ * <code>CachingInspectorConfig.setValueIndependent</code>).
+ * <p>
+ * Because InspectionResultProcessors may modify the DOM they are given, CachingInspector never
+ * hands out its cached DOM. Each call to <code>inspectAsDom</code> returns a fresh copy.
+ * <p>
+ * Once instantiated, CachingInspector is Thread-safe and can be shared by many Metawidgets.
+ * Lookups never lock: only evicting (when the cache is full) is serialized. If the underlying
+ * metadata changes (eg. <code>metawidget.xml</code> is redeployed) call <code>invalidate</code>.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class CachingInspector
+	implements DomInspector<Element> {
+
+	//
+	// Private members
+	//
+
+	private final Inspector										mInspector;
+
+	private final boolean										mValueIndependent;
+
+	private final int											mMaximumSize;
+
+	private final ConcurrentMap<String, CachedInspectionResult>	mCache			= CollectionUtils.newConcurrentHashMap();
+
+	/**
+	 * Ticks on every cache access. Each cached result records the tick it was last used at, so
+	 * eviction can find the (approximately) least recently used.
+	 */
+
+	private final AtomicLong									mClock			= new AtomicLong();
+
+	/**
+	 * Incremented by every <code>invalidate</code>. An inspection that misses the cache only stores
+	 * its result if no invalidation happened while it was running, so that it cannot re-insert a
+	 * stale result.
+	 */
+
+	private final AtomicLong									mGeneration		= new AtomicLong();
+
+	private final Object										mEvictionLock	= new Object();
+
+	private final AtomicLong									mHitCount		= new AtomicLong();
+
+	private final AtomicLong									mMissCount		= new AtomicLong();
+
+	//
+	// Constructor
+	//
+
+	public CachingInspector( CachingInspectorConfig config ) {
+
+		mInspector = config.getInspector();
+
+		if ( mInspector == null ) {
+			throw InspectorException.newException( "CachingInspector needs an Inspector" );
+		}
+
+		mMaximumSize = config.getMaximumSize();
+
+		if ( mMaximumSize <= 0 ) {
+			throw InspectorException.newException( "CachingInspector needs a maximumSize greater than zero" );
+		}
+
+		mValueIndependent = config.isValueIndependent();
+	}
+
+	//
+	// Public methods
+	//
+
+	public String inspect( Object toInspect, String type, String... names ) {
+
+		String key = getKey( toInspect, type, names );
+
+		if ( key == null ) {
+			return mInspector.inspect( toInspect, type, names );
+		}
+
+		CachedInspectionResult cachedInspectionResult = getCachedInspectionResult( key );
+
+		if ( cachedInspectionResult != null ) {
+			return cachedInspectionResult.getXml();
+		}
+
+		long generation = mGeneration.get();
+		String xml = mInspector.inspect( toInspect, type, names );
+
+		if ( xml == null ) {
+			putCachedInspectionResult( key, generation, new CachedInspectionResult( null, null ) );
+		} else {
+			putCachedInspectionResult( key, generation, new CachedInspectionResult( XmlUtils.documentFromString( xml ).getDocumentElement(), xml ) );
+		}
+
+		return xml;
+	}
+
+	/**
+	 * Returns a copy of the cached inspection result, so that the caller (typically a pipeline of
+	 * InspectionResultProcessors) is free to modify it.
+	 */
+
+	public Element inspectAsDom( Object toInspect, String type, String... names ) {
+
+		String key = getKey( toInspect, type, names );
+
+		if ( key == null ) {
+			return runInspector( toInspect, type, names );
+		}
+
+		CachedInspectionResult cachedInspectionResult = getCachedInspectionResult( key );
+
+		if ( cachedInspectionResult != null ) {
+			return cachedInspectionResult.copyElement();
+		}
+
+		long generation = mGeneration.get();
+		Element element = runInspector( toInspect, type, names );
+
+		if ( element == null ) {
+			putCachedInspectionResult( key, generation, new CachedInspectionResult( null, null ) );
+		} else {
+			putCachedInspectionResult( key, generation, new CachedInspectionResult( copyElement( element ), null ) );
+		}
+
+		return element;
+	}
+
+	/**
+	 * Discards all cached inspection results for the given type, including those for paths within
+	 * it (ie. with names).
+	 */
+
+	public void invalidate( String type ) {
+
+		// Bump the generation before removing, so that any in-flight inspection either sees the new
+		// generation or has already stored its result (which we then remove)
+
+		mGeneration.incrementAndGet();
+
+		String prefix = type + StringUtils.SEPARATOR_FORWARD_SLASH_CHAR;
+
+		for ( Iterator<String> i = mCache.keySet().iterator(); i.hasNext(); ) {
+			String key = i.next();
+
+			if ( key.equals( type ) || key.startsWith( prefix ) ) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Discards all cached inspection results.
+	 */
+
+	public void invalidate() {
+
+		mGeneration.incrementAndGet();
+		mCache.clear();
+	}
+
+	/**
+	 * @return how many inspections have been served from the cache
+	 */
+
+	public long getHitCount() {
+
+		return mHitCount.get();
+	}
+
+	/**
+	 * @return how many cacheable inspections were not in the cache, and so were passed to the
+	 *         Inspector. Inspections that cannot be cached are not counted
+	 */
+
+	public long getMissCount() {
+
+		return mMissCount.get();
+	}
+
+	/**
+	 * @return how many inspection results are currently cached
+	 */
+
+	public int getSize() {
+
+		return mCache.size();
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * @return the cache key for the given inspection, or null if it should not be cached
+	 */
+
+	private String getKey( Object toInspect, String type, String... names ) {
+
+		if ( type == null ) {
+			return null;
+		}
+
+		if ( toInspect != null && !mValueIndependent ) {
+			return null;
+		}
+
+		if ( names == null || names.length == 0 ) {
+			return type;
+		}
+
+		StringBuilder builder = new StringBuilder( type );
+
+		for ( String name : names ) {
+			builder.append( StringUtils.SEPARATOR_FORWARD_SLASH_CHAR );
+			builder.append( name );
+		}
+
+		return builder.toString();
+	}
+
+	private CachedInspectionResult getCachedInspectionResult( String key ) {
+
+		CachedInspectionResult cachedInspectionResult = mCache.get( key );
+
+		if ( cachedInspectionResult == null ) {
+			mMissCount.incrementAndGet();
+		} else {
+			cachedInspectionResult.setLastUsed( mClock.incrementAndGet() );
+			mHitCount.incrementAndGet();
+		}
+
+		return cachedInspectionResult;
+	}
+
+	/**
+	 * Stores the given inspection result, unless the cache was invalidated since
+	 * <code>generation</code> (ie. while the inspection was running).
+	 */
+
+	private void putCachedInspectionResult( String key, long generation, CachedInspectionResult cachedInspectionResult ) {
+
+		cachedInspectionResult.setLastUsed( mClock.incrementAndGet() );
+		mCache.put( key, cachedInspectionResult );
+
+		// Check after putting, not before, else an invalidate could slip in between
+
+		if ( mGeneration.get() != generation ) {
+			mCache.remove( key, cachedInspectionResult );
+			return;
+		}
+
+		if ( mCache.size() > mMaximumSize ) {
+			evict();
+		}
+	}
+
+	/**
+	 * Evicts the least recently used results until the cache is back within its maximum size.
+	 * <p>
+	 * Results may be used concurrently with the scan, so this is approximate. Only one Thread
+	 * evicts at a time, but lookups carry on in parallel.
+	 */
+
+	private void evict() {
+
+		synchronized ( mEvictionLock ) {
+			while ( mCache.size() > mMaximumSize ) {
+				Map.Entry<String, CachedInspectionResult> eldest = null;
+
+				for ( Map.Entry<String, CachedInspectionResult> entry : mCache.entrySet() ) {
+					if ( eldest == null || entry.getValue().getLastUsed() < eldest.getValue().getLastUsed() ) {
+						eldest = entry;
+					}
+				}
+
+				if ( eldest == null ) {
+					return;
+				}
+
+				mCache.remove( eldest.getKey(), eldest.getValue() );
+			}
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private Element runInspector( Object toInspect, String type, String... names ) {
+
+		if ( mInspector instanceof DomInspector<?> ) {
+			return ( (DomInspector<Element>) mInspector ).inspectAsDom( toInspect, type, names );
+		}
+
+		String xml = mInspector.inspect( toInspect, type, names );
+
+		if ( xml == null ) {
+			return null;
+		}
+
+		return XmlUtils.documentFromString( xml ).getDocumentElement();
+	}
+
+	private static Element copyElement( Element element ) {
+
+		Document document = XmlUtils.newDocument();
+		Element copy = XmlUtils.importElement( document, element );
+		document.appendChild( copy );
+
+		return copy;
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * A cached inspection result (which may be null).
+	 * <p>
+	 * DOMs are not Thread-safe even for reading (eg. they may expand nodes lazily) so access to the
+	 * cached Element is synchronized.
+	 */
+
+	private static class CachedInspectionResult {
+
+		//
+		// Private members
+		//
+
+		private final Element	mElement;
+
+		private String			mXml;
+
+		private volatile long	mLastUsed;
+
+		//
+		// Constructor
+		//
+
+		public CachedInspectionResult( Element element, String xml ) {
+
+			mElement = element;
+			mXml = xml;
+		}
+
+		//
+		// Public methods
+		//
+
+		public synchronized Element copyElement() {
+
+			if ( mElement == null ) {
+				return null;
+			}
+
+			return CachingInspector.copyElement( mElement );
+		}
+
+		public long getLastUsed() {
+
+			return mLastUsed;
+		}
+
+		public void setLastUsed( long lastUsed ) {
+
+			mLastUsed = lastUsed;
+		}
+
+		public synchronized String getXml() {
+
+			if ( mXml == null && mElement != null ) {
+				mXml = XmlUtils.nodeToString( mElement, false );
+			}
+
+			return mXml;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.inspector.caching;
+
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.util.simple.ObjectUtils;
+
+/**
+ * Configures a CachingInspector prior to use. Once instantiated, Inspectors are immutable.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class CachingInspectorConfig {
+
+	//
+	// Private statics
+	//
+
+	private static final int	DEFAULT_MAXIMUM_SIZE	= 1000;
+
+	//
+	// Private members
+	//
+
+	private Inspector			mInspector;
+
+	private int					mMaximumSize			= DEFAULT_MAXIMUM_SIZE;
+
+	private boolean				mValueIndependent;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Sets the Inspector whose results the CachingInspector will cache. Typically a
+	 * <code>CompositeInspector</code>.
+	 *
+	 * @return this, as part of a fluent interface
+	 */
+
+	public CachingInspectorConfig setInspector( Inspector inspector ) {
+
+		mInspector = inspector;
+
+		// Fluent interface
+
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of inspection results to cache. When full, the least recently used
+	 * result is discarded. Defaults to 1000.
+	 *
+	 * @return this, as part of a fluent interface
+	 */
+
+	public CachingInspectorConfig setMaximumSize( int maximumSize ) {
+
+		mMaximumSize = maximumSize;
+
+		// Fluent interface
+
+		return this;
+	}
+
+	/**
+	 * Sets whether the Inspector's results depend only on the type and names being inspected,
+	 * never on the runtime value of <code>toInspect</code>.
+	 * <p>
+	 * By default this is false, and only inspections where <code>toInspect</code> is null (ie.
+	 * class-level metadata) are cached. Set it to true if the Inspector only reads annotations or
+	 * XML, say. Do not set it if the Inspector reports runtime values, such as
+	 * <code>PropertyTypeInspector</code> reporting the <code>actual-class</code> of a property.
+	 *
+	 * @return this, as part of a fluent interface
+	 */
+
+	public CachingInspectorConfig setValueIndependent( boolean valueIndependent ) {
+
+		mValueIndependent = valueIndependent;
+
+		// Fluent interface
+
+		return this;
+	}
+
+	@Override
+	public boolean equals( Object that ) {
+
+		if ( this == that ) {
+			return true;
+		}
+
+		if ( !ObjectUtils.nullSafeClassEquals( this, that ) ) {
+			return false;
+		}
+
+		if ( !ObjectUtils.nullSafeEquals( mInspector, ( (CachingInspectorConfig) that ).mInspector ) ) {
+			return false;
+		}
+
+		if ( mMaximumSize != ( (CachingInspectorConfig) that ).mMaximumSize ) {
+			return false;
+		}
+
+		if ( mValueIndependent != ( (CachingInspectorConfig) that ).mValueIndependent ) {
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+
+		int hashCode = 1;
+		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mInspector );
+		hashCode = 31 * hashCode + mMaximumSize;
+		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mValueIndependent );
+
+		return hashCode;
+	}
+
+	//
+	// Protected methods
+	//
+
+	protected Inspector getInspector() {
+
+		return mInspector;
+	}
+
+	protected int getMaximumSize() {
+
+		return mMaximumSize;
+	}
+
+	protected boolean isValueIndependent() {
+
+		return mValueIndependent;
+	}
+}
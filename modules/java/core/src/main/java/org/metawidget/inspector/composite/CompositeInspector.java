@@ -52,13 +52,19 @@ public class CompositeInspector
 	// Private statics
 	//
 
-	private static final Log				LOG	= LogUtils.getLog( CompositeInspector.class );
+	private static final Log							LOG					= LogUtils.getLog( CompositeInspector.class );
+
+	/**
+	 * InspectorListener for the inspection running on the current Thread, if any.
+	 */
+
+	private static final ThreadLocal<InspectorListener>	INSPECTOR_LISTENER	= new ThreadLocal<InspectorListener>();
 
 	//
 	// Private members
 	//
 
-	/* package private */final Inspector[]	mInspectors;
+	/* package private */final Inspector[]				mInspectors;
 
 	//
 	// Constructor
@@ -191,6 +197,28 @@ public class CompositeInspector
 		}
 	}
 
+	/**
+	 * As <code>inspectAsDom</code>, but reports each sub-Inspector to the given listener as it runs.
+	 * <p>
+	 * This allows profilers (such as a pipeline's <code>PipelineListener</code>) to tell which
+	 * sub-Inspector is slow, rather than only timing the CompositeInspector as a whole. Subclasses
+	 * that run sub-Inspectors on other Threads must report them through <code>runInspector</code>
+	 * on that Thread (as <code>ParallelCompositeInspector</code> does), so the listener may be
+	 * called from several Threads.
+	 */
+
+	public Element inspectAsDomAndReport( InspectorListener listener, Object toInspect, String type, String... names ) {
+
+		InspectorListener previousListener = INSPECTOR_LISTENER.get();
+		INSPECTOR_LISTENER.set( listener );
+
+		try {
+			return inspectAsDom( null, toInspect, type, names );
+		} finally {
+			INSPECTOR_LISTENER.set( previousListener );
+		}
+	}
+
 	//
 	// Protected methods
 	//
@@ -224,9 +252,86 @@ public class CompositeInspector
 		return masterDocumentToUse;
 	}
 
+	/**
+	 * Run the given sub-Inspector and parse its result, reporting it to the InspectorListener (if
+	 * any).
+	 */
+
 	protected Document runInspector( Inspector inspector, Object toInspect, String type, String... names )
 		throws Exception {
 
+		InspectorListener listener = INSPECTOR_LISTENER.get();
+
+		if ( listener == null ) {
+			return runInspectorAndParse( inspector, toInspect, type, names );
+		}
+
+		Object token = listener.inspectorStarted( inspector );
+		Document inspectionDocument = runInspectorAndParse( inspector, toInspect, type, names );
+
+		if ( inspectionDocument == null ) {
+			listener.inspectorEnded( inspector, token, null );
+		} else {
+			listener.inspectorEnded( inspector, token, inspectionDocument.getDocumentElement() );
+		}
+
+		return inspectionDocument;
+	}
+
+	protected Document combineInspectionResult( Document masterDocument, Document inspectionDocument ) {
+
+		// Short circuit...
+
+		if ( inspectionDocument == null || !inspectionDocument.hasChildNodes() ) {
+			return masterDocument;
+		}
+
+		if ( masterDocument == null || !masterDocument.hasChildNodes() ) {
+			return inspectionDocument;
+		}
+
+		// ...or full combine
+
+		XmlUtils.combineElements( masterDocument.getDocumentElement(), inspectionDocument.getDocumentElement(), TYPE, NAME );
+		return masterDocument;
+	}
+
+	//
+	// Package private methods
+	//
+
+	/**
+	 * @return the InspectorListener for the inspection running on the current Thread, or null
+	 */
+
+	/* package private */static InspectorListener getInspectorListener() {
+
+		return INSPECTOR_LISTENER.get();
+	}
+
+	/**
+	 * Runs the given sub-Inspector on behalf of an inspection started on another Thread.
+	 */
+
+	/* package private */Document runInspector( InspectorListener listener, Inspector inspector, Object toInspect, String type, String... names )
+		throws Exception {
+
+		InspectorListener previousListener = INSPECTOR_LISTENER.get();
+		INSPECTOR_LISTENER.set( listener );
+
+		try {
+			return runInspector( inspector, toInspect, type, names );
+		} finally {
+			INSPECTOR_LISTENER.set( previousListener );
+		}
+	}
+
+	//
+	// Private methods
+	//
+
+	private Document runInspectorAndParse( Inspector inspector, Object toInspect, String type, String... names ) {
+
 		// DomInspector...
 
 		if ( inspector instanceof DomInspector<?> ) {
@@ -259,21 +364,33 @@ public class CompositeInspector
 		return XmlUtils.documentFromString( xml );
 	}
 
-	protected Document combineInspectionResult( Document masterDocument, Document inspectionDocument ) {
+	//
+	// Inner class
+	//
 
-		// Short circuit...
+	/**
+	 * Listener for each sub-Inspector run by <code>inspectAsDomAndReport</code>.
+	 */
 
-		if ( inspectionDocument == null || !inspectionDocument.hasChildNodes() ) {
-			return masterDocument;
-		}
+	public interface InspectorListener {
 
-		if ( masterDocument == null || !masterDocument.hasChildNodes() ) {
-			return inspectionDocument;
-		}
+		//
+		// Methods
+		//
 
-		// ...or full combine
+		/**
+		 * @return a token to pass to the matching <code>inspectorEnded</code>. May be null
+		 */
 
-		XmlUtils.combineElements( masterDocument.getDocumentElement(), inspectionDocument.getDocumentElement(), TYPE, NAME );
-		return masterDocument;
+		Object inspectorStarted( Inspector inspector );
+
+		/**
+		 * Called after a sub-Inspector has run. Not called if it throws an exception.
+		 *
+		 * @param result
+		 *            the sub-Inspector's result, or null if it had nothing to inspect
+		 */
+
+		void inspectorEnded( Inspector inspector, Object token, Element result );
 	}
 }
@@ -0,0 +1,234 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.inspector.composite;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.inspector.iface.InspectorException;
+import org.metawidget.util.ArrayUtils;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.simple.StringUtils;
+import org.w3c.dom.Document;
+
+/**
+ * CompositeInspector that runs its sub-Inspectors concurrently.
+ * <p>
+ * Each sub-Inspector (except the first, which runs on the calling thread) is submitted to the
+ * configured <code>Executor</code>. The results are then combined in the declared order of the
+ * sub-Inspectors, so the combined DOM is identical to that of a regular
+ * <code>CompositeInspector</code>. Overall latency becomes that of the slowest sub-Inspector,
+ * rather than the sum of all of them.
+ * <p>
+ * An optional timeout bounds how long to wait for the sub-Inspectors running on the
+ * <code>Executor</code>. The first sub-Inspector runs on the calling thread, so is not subject to
+ * the timeout.
+ * <p>
+ * Note: sub-Inspectors must be threadsafe (as all Inspectors should be), and must not rely on
+ * thread-bound state (such as a <code>FacesContext</code>) because they will generally be run on a
+ * different thread to the caller.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class ParallelCompositeInspector
+	extends CompositeInspector {
+
+	//
+	// Private statics
+	//
+
+	private static Executor	DEFAULT_EXECUTOR;
+
+	//
+	// Private members
+	//
+
+	private final Executor	mExecutor;
+
+	private final int		mTimeout;
+
+	//
+	// Constructor
+	//
+
+	public ParallelCompositeInspector( ParallelCompositeInspectorConfig config ) {
+
+		super( config );
+
+		Executor executor = config.getExecutor();
+
+		if ( executor == null ) {
+			executor = getDefaultExecutor();
+		}
+
+		mExecutor = executor;
+		mTimeout = config.getTimeout();
+	}
+
+	//
+	// Protected methods
+	//
+
+	/**
+	 * Run the sub-Inspectors concurrently and combine the result in declared order.
+	 */
+
+	@Override
+	protected Document runInspectors( Document masterDocument, final Object toInspect, final String type, final String... names )
+		throws Exception {
+
+		int length = mInspectors.length;
+
+		// Short circuit
+
+		if ( length == 1 ) {
+			return super.runInspectors( masterDocument, toInspect, type, names );
+		}
+
+		// Start each Inspector (except the first)...
+
+		List<FutureTask<Document>> futures = CollectionUtils.newArrayList( length );
+		boolean[] rejected = new boolean[length];
+
+		// (the InspectorListener, if any, is bound to this Thread so hand it over explicitly)
+
+		final InspectorListener listener = getInspectorListener();
+
+		// (the first runs on this thread, so has no FutureTask)
+
+		futures.add( null );
+
+		for ( int loop = 1; loop < length; loop++ ) {
+
+			final Inspector inspector = mInspectors[loop];
+			FutureTask<Document> future = new FutureTask<Document>( new Callable<Document>() {
+
+				public Document call()
+					throws Exception {
+
+					return runInspector( listener, inspector, toInspect, type, names );
+				}
+			} );
+			futures.add( future );
+
+			// If the Executor is saturated, run on this thread instead (below)
+
+			try {
+				mExecutor.execute( future );
+			} catch ( RejectedExecutionException e ) {
+				rejected[loop] = true;
+			}
+		}
+
+		// ...run the first on this thread, so as not to sit idle...
+
+		long deadline = System.currentTimeMillis() + mTimeout;
+		Document masterDocumentToUse;
+
+		try {
+			masterDocumentToUse = combineInspectionResult( masterDocument, runInspector( mInspectors[0], toInspect, type, names ) );
+
+			// ...then combine the rest, in order
+
+			for ( int loop = 1; loop < length; loop++ ) {
+
+				if ( rejected[loop] ) {
+					futures.get( loop ).run();
+				}
+
+				masterDocumentToUse = combineInspectionResult( masterDocumentToUse, getInspectionResult( futures.get( loop ), mInspectors[loop], deadline, type, names ) );
+			}
+		} finally {
+
+			// Don't leave stragglers running if we failed
+
+			for ( int loop = 1; loop < length; loop++ ) {
+				futures.get( loop ).cancel( true );
+			}
+		}
+
+		return masterDocumentToUse;
+	}
+
+	//
+	// Private methods
+	//
+
+	private Document getInspectionResult( FutureTask<Document> future, Inspector inspector, long deadline, String type, String... names )
+		throws Exception {
+
+		try {
+			if ( mTimeout == 0 ) {
+				return future.get();
+			}
+
+			return future.get( Math.max( deadline - System.currentTimeMillis(), 0 ), TimeUnit.MILLISECONDS );
+
+		} catch ( TimeoutException e ) {
+			throw InspectorException.newException( inspector.getClass().getName() + " did not inspect " + type + ArrayUtils.toString( names, StringUtils.SEPARATOR_FORWARD_SLASH, true, false ) + " within " + mTimeout + "ms" );
+		} catch ( ExecutionException e ) {
+			Throwable cause = e.getCause();
+
+			if ( cause instanceof Exception ) {
+				throw (Exception) cause;
+			}
+
+			if ( cause instanceof Error ) {
+				throw (Error) cause;
+			}
+
+			throw InspectorException.newException( cause );
+		}
+	}
+
+	/**
+	 * Gets a shared pool of daemon threads, for when no Executor is configured.
+	 * <p>
+	 * The pool is bounded to the number of processors, and does not queue. When every thread is
+	 * busy the pool rejects further sub-Inspectors, which then run on the calling thread instead.
+	 * This stops a burst of inspections from spawning an unbounded number of threads.
+	 */
+
+	private static synchronized Executor getDefaultExecutor() {
+
+		// Do not initialise unless needed
+
+		if ( DEFAULT_EXECUTOR == null ) {
+			int maximumThreads = Runtime.getRuntime().availableProcessors();
+
+			DEFAULT_EXECUTOR = new ThreadPoolExecutor( 0, maximumThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+				public Thread newThread( Runnable runnable ) {
+
+					// Daemon threads, so as not to prevent the JVM from shutting down
+
+					Thread thread = new Thread( runnable, ParallelCompositeInspector.class.getSimpleName() );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+		}
+
+		return DEFAULT_EXECUTOR;
+	}
+}
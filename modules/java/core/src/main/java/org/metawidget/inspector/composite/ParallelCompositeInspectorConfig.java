@@ -0,0 +1,135 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.inspector.composite;
+
+import java.util.concurrent.Executor;
+
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.util.simple.ObjectUtils;
+
+/**
+ * Configures a ParallelCompositeInspector prior to use. Once instantiated, Inspectors are
+ * immutable.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class ParallelCompositeInspectorConfig
+	extends CompositeInspectorConfig {
+
+	//
+	// Private members
+	//
+
+	private Executor	mExecutor;
+
+	private int			mTimeout;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Overridden to provide a covariant return type for our fluent interface.
+	 */
+
+	@Override
+	public ParallelCompositeInspectorConfig setInspectors( Inspector... inspectors ) {
+
+		return (ParallelCompositeInspectorConfig) super.setInspectors( inspectors );
+	}
+
+	/**
+	 * Sets the Executor used to run the sub-Inspectors.
+	 * <p>
+	 * By default, uses a shared pool of daemon threads, bounded to the number of processors. If the
+	 * Executor rejects a sub-Inspector (eg. because it is saturated), that sub-Inspector runs on the
+	 * calling thread instead. Environments that manage their own threads (eg. Java EE containers)
+	 * or that support lightweight threads should supply their own Executor.
+	 *
+	 * @return this, as part of a fluent interface
+	 */
+
+	public ParallelCompositeInspectorConfig setExecutor( Executor executor ) {
+
+		mExecutor = executor;
+
+		// Fluent interface
+
+		return this;
+	}
+
+	/**
+	 * Sets the maximum time, in milliseconds, to wait for each sub-Inspector to return. If a
+	 * sub-Inspector takes longer, inspection fails with an <code>InspectorException</code>.
+	 * <p>
+	 * 0 (the default) waits indefinitely.
+	 *
+	 * @return this, as part of a fluent interface
+	 */
+
+	public ParallelCompositeInspectorConfig setTimeout( int timeout ) {
+
+		mTimeout = timeout;
+
+		// Fluent interface
+
+		return this;
+	}
+
+	@Override
+	public boolean equals( Object that ) {
+
+		if ( this == that ) {
+			return true;
+		}
+
+		if ( !ObjectUtils.nullSafeClassEquals( this, that ) ) {
+			return false;
+		}
+
+		if ( !ObjectUtils.nullSafeEquals( mExecutor, ( (ParallelCompositeInspectorConfig) that ).mExecutor ) ) {
+			return false;
+		}
+
+		if ( mTimeout != ( (ParallelCompositeInspectorConfig) that ).mTimeout ) {
+			return false;
+		}
+
+		return super.equals( that );
+	}
+
+	@Override
+	public int hashCode() {
+
+		int hashCode = super.hashCode();
+		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mExecutor );
+		hashCode = 31 * hashCode + mTimeout;
+
+		return hashCode;
+	}
+
+	//
+	// Protected methods
+	//
+
+	protected Executor getExecutor() {
+
+		return mExecutor;
+	}
+
+	protected int getTimeout() {
+
+		return mTimeout;
+	}
+
+}
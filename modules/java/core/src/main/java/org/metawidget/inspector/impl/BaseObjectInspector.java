@@ -15,7 +15,9 @@ import static org.metawidget.inspector.InspectionResultConstants.*;
 
 import java.lang.reflect.Modifier;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import org.metawidget.inspector.iface.DomInspector;
 import org.metawidget.inspector.iface.InspectorException;
@@ -25,9 +27,11 @@ import org.metawidget.inspector.impl.propertystyle.Property;
 import org.metawidget.inspector.impl.propertystyle.PropertyStyle;
 import org.metawidget.inspector.impl.propertystyle.ValueAndDeclaredType;
 import org.metawidget.util.ClassUtils;
+import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.LogUtils;
 import org.metawidget.util.LogUtils.Log;
 import org.metawidget.util.XmlUtils;
+import org.metawidget.util.simple.ObjectUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -66,15 +70,29 @@ public abstract class BaseObjectInspector
 	// Protected members
 	//
 
-	protected final Log			mLog	= LogUtils.getLog( getClass() );
+	protected final Log															mLog	= LogUtils.getLog( getClass() );
 
 	//
 	// Private members
 	//
 
-	private final PropertyStyle	mPropertyStyle;
+	private final PropertyStyle													mPropertyStyle;
 
-	private final ActionStyle	mActionStyle;
+	private final ActionStyle													mActionStyle;
+
+	/**
+	 * Cache of inspection plans, keyed by type. Null if
+	 * <code>BaseObjectInspectorConfig.setCacheInspectionPlans</code> is false.
+	 */
+
+	/* package private */final ConcurrentMap<String, InspectionPlan>			mInspectionPlans;
+
+	/**
+	 * Cache of <code>inspectEntity</code> results, keyed by declared and actual type. Null if
+	 * <code>BaseObjectInspectorConfig.setCacheInspectionPlans</code> is false.
+	 */
+
+	/* package private */final ConcurrentMap<EntityKey, Map<String, String>>	mEntityAttributes;
 
 	//
 	// Constructors
@@ -96,6 +114,14 @@ public abstract class BaseObjectInspector
 
 		mPropertyStyle = config.getPropertyStyle();
 		mActionStyle = config.getActionStyle();
+
+		if ( config.isCacheInspectionPlans() ) {
+			mInspectionPlans = CollectionUtils.newConcurrentHashMap();
+			mEntityAttributes = CollectionUtils.newConcurrentHashMap();
+		} else {
+			mInspectionPlans = null;
+			mEntityAttributes = null;
+		}
 	}
 
 	//
@@ -231,7 +257,7 @@ public abstract class BaseObjectInspector
 				actualChildType = childToInspect.getClass().getName();
 			}
 
-			XmlUtils.setMapAsAttributes( entity, inspectEntity( declaredChildType, actualChildType ) );
+			XmlUtils.setMapAsAttributes( entity, getEntityAttributes( declaredChildType, actualChildType ) );
 
 			if ( !abortTraversingPastNull ) {
 				inspectTraits( childToInspect, actualChildType, entity );
@@ -274,6 +300,24 @@ public abstract class BaseObjectInspector
 		}
 	}
 
+	/**
+	 * SPI for tools such as <a href="http://code.google.com/p/fakereplace">FakeReplace</a> that
+	 * need to clear the cache of inspection plans.
+	 * <p>
+	 * This does not affect immutability, as our external behaviour is unchanged (we will just be a
+	 * little slower the next time we are called, while we re-cache).
+	 */
+
+	public void clearCache() {
+
+		if ( mInspectionPlans == null ) {
+			return;
+		}
+
+		mInspectionPlans.clear();
+		mEntityAttributes.clear();
+	}
+
 	//
 	// Protected methods
 	//
@@ -296,6 +340,17 @@ public abstract class BaseObjectInspector
 	protected Map<String, String> inspectParent( Object parentToInspect, Property propertyInParent )
 		throws Exception {
 
+		// Use the inspection plan (if any). The plan is keyed by the parent's actual type, so
+		// cannot be used for static inspection
+
+		if ( mInspectionPlans != null && parentToInspect != null ) {
+			PropertyPlan propertyPlan = getInspectionPlan( parentToInspect.getClass().getName() ).getPropertyPlan( propertyInParent );
+
+			if ( propertyPlan != null ) {
+				return propertyPlan.getAttributesAsMap();
+			}
+		}
+
 		Map<String, String> traitAttributes = inspectTrait( propertyInParent );
 		Map<String, String> propertyAttributes = inspectProperty( propertyInParent );
 
@@ -328,6 +383,11 @@ public abstract class BaseObjectInspector
 	protected void inspectTraits( Object toInspect, String type, Element toAddTo )
 		throws Exception {
 
+		if ( mInspectionPlans != null ) {
+			getInspectionPlan( type ).replay( toInspect, toAddTo );
+			return;
+		}
+
 		Document document = toAddTo.getOwnerDocument();
 
 		// Inspect properties
@@ -560,7 +620,70 @@ public abstract class BaseObjectInspector
 
 		// Delegate to inspectEntity
 
-		return inspectEntity( property.getType(), actualType );
+		return getEntityAttributes( property.getType(), actualType );
+	}
+
+	/**
+	 * Calls <code>inspectEntity</code>, or returns its cached result.
+	 */
+
+	private Map<String, String> getEntityAttributes( String declaredClass, String actualClass )
+		throws Exception {
+
+		if ( mEntityAttributes == null ) {
+			return inspectEntity( declaredClass, actualClass );
+		}
+
+		EntityKey key = new EntityKey( declaredClass, actualClass );
+		Map<String, String> entityAttributes = mEntityAttributes.get( key );
+
+		if ( entityAttributes == null ) {
+			entityAttributes = immutableAttributes( inspectEntity( declaredClass, actualClass ) );
+			mEntityAttributes.putIfAbsent( key, entityAttributes );
+		}
+
+		return entityAttributes;
+	}
+
+	/**
+	 * Gets the inspection plan for the given type, building it if necessary.
+	 * <p>
+	 * Plans remember the exact <code>Property</code> and <code>Action</code> Maps they were built
+	 * from. If the <code>PropertyStyle</code> or <code>ActionStyle</code> returns different Maps
+	 * (eg. because its own cache was cleared) the plan is rebuilt.
+	 */
+
+	private InspectionPlan getInspectionPlan( String type )
+		throws Exception {
+
+		Map<String, Property> properties = getProperties( type );
+		Map<String, Action> actions = getActions( type );
+		InspectionPlan inspectionPlan = mInspectionPlans.get( type );
+
+		if ( inspectionPlan == null || !inspectionPlan.isBuiltFrom( properties, actions ) ) {
+
+			// Note: two threads may race to build the same plan. This is harmless, as both plans
+			// will be identical
+
+			inspectionPlan = new InspectionPlan( properties, actions );
+			mInspectionPlans.put( type, inspectionPlan );
+		}
+
+		return inspectionPlan;
+	}
+
+	/**
+	 * Returns an immutable copy of the given attributes, preserving their iteration order (and
+	 * therefore their order within the DOM). Returns an empty Map if there are no attributes.
+	 */
+
+	/* package private */static Map<String, String> immutableAttributes( Map<String, String> attributes ) {
+
+		if ( attributes == null || attributes.isEmpty() ) {
+			return Collections.emptyMap();
+		}
+
+		return Collections.unmodifiableMap( CollectionUtils.newLinkedHashMap( attributes ) );
 	}
 
 	/**
@@ -584,4 +707,296 @@ public abstract class BaseObjectInspector
 
 		return true;
 	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * Precomputed, immutable attributes for each property and action of a type.
+	 * <p>
+	 * Stores the results of <code>inspectTrait</code>, <code>inspectProperty</code> and
+	 * <code>inspectAction</code> (which depend only on the type) so that they can be replayed
+	 * against each new DOM. Only <code>inspectPropertyAsEntity</code> (which may depend on the
+	 * runtime value) is re-run each time.
+	 */
+
+	/* package private */class InspectionPlan {
+
+		//
+		// Private members
+		//
+
+		private volatile Map<String, Property>		mProperties;
+
+		private volatile Map<String, Action>		mActions;
+
+		private final Map<String, PropertyPlan>		mPropertyPlans;
+
+		private final List<PropertyPlan>			mPropertyPlansInOrder;
+
+		private final List<Map<String, String>>		mActionTraitAttributes;
+
+		private final List<Map<String, String>>		mActionAttributes;
+
+		private final List<String>					mActionNames;
+
+		//
+		// Constructor
+		//
+
+		public InspectionPlan( Map<String, Property> properties, Map<String, Action> actions )
+			throws Exception {
+
+			mProperties = properties;
+			mActions = actions;
+
+			// Plan properties
+
+			mPropertyPlans = CollectionUtils.newHashMap( properties.size() );
+			mPropertyPlansInOrder = CollectionUtils.newArrayList( properties.size() );
+
+			for ( Property property : properties.values() ) {
+				PropertyPlan propertyPlan = new PropertyPlan( property, immutableAttributes( inspectTrait( property ) ), immutableAttributes( inspectProperty( property ) ), shouldInspectPropertyAsEntity( property ) );
+				mPropertyPlans.put( property.getName(), propertyPlan );
+				mPropertyPlansInOrder.add( propertyPlan );
+			}
+
+			// Plan actions (skipping those that have nothing of consequence)
+
+			mActionNames = CollectionUtils.newArrayList();
+			mActionTraitAttributes = CollectionUtils.newArrayList();
+			mActionAttributes = CollectionUtils.newArrayList();
+
+			for ( Action action : actions.values() ) {
+				Map<String, String> traitAttributes = immutableAttributes( inspectTrait( action ) );
+				Map<String, String> actionAttributes = immutableAttributes( inspectAction( action ) );
+
+				if ( traitAttributes.isEmpty() && actionAttributes.isEmpty() ) {
+					continue;
+				}
+
+				mActionNames.add( action.getName() );
+				mActionTraitAttributes.add( traitAttributes );
+				mActionAttributes.add( actionAttributes );
+			}
+		}
+
+		//
+		// Public methods
+		//
+
+		public boolean isBuiltFrom( Map<String, Property> properties, Map<String, Action> actions ) {
+
+			// Fast path
+
+			if ( mProperties == properties && mActions == actions ) {
+				return true;
+			}
+
+			// Slow path (eg. the PropertyStyle returned an unmodifiable copy of the same Map). Note
+			// Property and Action do not override .equals, so this compares their identity
+
+			if ( !mProperties.equals( properties ) || !mActions.equals( actions ) ) {
+				return false;
+			}
+
+			// Remember these Maps for next time. This is harmless if two threads race
+
+			mProperties = properties;
+			mActions = actions;
+			return true;
+		}
+
+		/**
+		 * @return the plan for the given property, or null if the property is not the one this plan
+		 *         was built from
+		 */
+
+		public PropertyPlan getPropertyPlan( Property property ) {
+
+			PropertyPlan propertyPlan = mPropertyPlans.get( property.getName() );
+
+			if ( propertyPlan == null || propertyPlan.getProperty() != property ) {
+				return null;
+			}
+
+			return propertyPlan;
+		}
+
+		/**
+		 * Replays this plan against the given DOM Element. Equivalent to the uncached
+		 * <code>inspectTraits</code>.
+		 */
+
+		public void replay( Object toInspect, Element toAddTo )
+			throws Exception {
+
+			Document document = toAddTo.getOwnerDocument();
+
+			// Replay properties
+
+			for ( PropertyPlan propertyPlan : mPropertyPlansInOrder ) {
+				Map<String, String> entityAttributes = null;
+
+				if ( propertyPlan.isInspectAsEntity() ) {
+					entityAttributes = inspectPropertyAsEntity( propertyPlan.getProperty(), toInspect );
+				}
+
+				if ( propertyPlan.isEmpty() && ( entityAttributes == null || entityAttributes.isEmpty() ) ) {
+					continue;
+				}
+
+				Element element = document.createElementNS( NAMESPACE, PROPERTY );
+				element.setAttribute( NAME, propertyPlan.getProperty().getName() );
+
+				XmlUtils.setMapAsAttributes( element, propertyPlan.getTraitAttributes() );
+				XmlUtils.setMapAsAttributes( element, propertyPlan.getPropertyAttributes() );
+				XmlUtils.setMapAsAttributes( element, entityAttributes );
+
+				toAddTo.appendChild( element );
+			}
+
+			// Replay actions
+
+			for ( int loop = 0, length = mActionNames.size(); loop < length; loop++ ) {
+				Element element = document.createElementNS( NAMESPACE, ACTION );
+				element.setAttribute( NAME, mActionNames.get( loop ) );
+
+				XmlUtils.setMapAsAttributes( element, mActionTraitAttributes.get( loop ) );
+				XmlUtils.setMapAsAttributes( element, mActionAttributes.get( loop ) );
+
+				toAddTo.appendChild( element );
+			}
+		}
+	}
+
+	/**
+	 * Precomputed, immutable attributes for a single property.
+	 */
+
+	/* package private */static class PropertyPlan {
+
+		//
+		// Private members
+		//
+
+		private final Property				mProperty;
+
+		private final Map<String, String>	mTraitAttributes;
+
+		private final Map<String, String>	mPropertyAttributes;
+
+		private final boolean				mInspectAsEntity;
+
+		//
+		// Constructor
+		//
+
+		public PropertyPlan( Property property, Map<String, String> traitAttributes, Map<String, String> propertyAttributes, boolean inspectAsEntity ) {
+
+			mProperty = property;
+			mTraitAttributes = traitAttributes;
+			mPropertyAttributes = propertyAttributes;
+			mInspectAsEntity = inspectAsEntity;
+		}
+
+		//
+		// Public methods
+		//
+
+		public Property getProperty() {
+
+			return mProperty;
+		}
+
+		public Map<String, String> getTraitAttributes() {
+
+			return mTraitAttributes;
+		}
+
+		public Map<String, String> getPropertyAttributes() {
+
+			return mPropertyAttributes;
+		}
+
+		public boolean isInspectAsEntity() {
+
+			return mInspectAsEntity;
+		}
+
+		public boolean isEmpty() {
+
+			return mTraitAttributes.isEmpty() && mPropertyAttributes.isEmpty();
+		}
+
+		/**
+		 * Returns a new, mutable Map combining the trait and property attributes. Equivalent to the
+		 * uncached <code>inspectParent</code>.
+		 */
+
+		public Map<String, String> getAttributesAsMap() {
+
+			Map<String, String> attributes = CollectionUtils.newHashMap( mTraitAttributes );
+			attributes.putAll( mPropertyAttributes );
+			return attributes;
+		}
+	}
+
+	/**
+	 * Key for the <code>inspectEntity</code> cache.
+	 */
+
+	/* package private */static final class EntityKey {
+
+		//
+		// Private members
+		//
+
+		private final String	mDeclaredClass;
+
+		private final String	mActualClass;
+
+		//
+		// Constructor
+		//
+
+		public EntityKey( String declaredClass, String actualClass ) {
+
+			mDeclaredClass = declaredClass;
+			mActualClass = actualClass;
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public boolean equals( Object that ) {
+
+			if ( this == that ) {
+				return true;
+			}
+
+			if ( !( that instanceof EntityKey ) ) {
+				return false;
+			}
+
+			if ( !ObjectUtils.nullSafeEquals( mDeclaredClass, ( (EntityKey) that ).mDeclaredClass ) ) {
+				return false;
+			}
+
+			return ObjectUtils.nullSafeEquals( mActualClass, ( (EntityKey) that ).mActualClass );
+		}
+
+		@Override
+		public int hashCode() {
+
+			int hashCode = 1;
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mDeclaredClass );
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mActualClass );
+
+			return hashCode;
+		}
+	}
 }
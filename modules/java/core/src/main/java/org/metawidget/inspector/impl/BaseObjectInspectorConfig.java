@@ -58,6 +58,8 @@ public class BaseObjectInspectorConfig {
 
 	protected boolean				mNullActionStyle;
 
+	protected boolean				mCacheInspectionPlans;
+
 	//
 	// Public methods
 	//
@@ -94,6 +96,29 @@ public class BaseObjectInspectorConfig {
 		return this;
 	}
 
+	/**
+	 * Sets whether to cache 'inspection plans' for each type. An inspection plan is the set of
+	 * attributes returned by <code>inspectTrait</code>, <code>inspectProperty</code>,
+	 * <code>inspectAction</code> and <code>inspectEntity</code>, which for most Inspectors depend
+	 * only on the type being inspected (eg. its annotations) and never change. Subsequent
+	 * inspections of the same type just replay the plan, and only invoke getters where needed (eg.
+	 * for <code>shouldInspectPropertyAsEntity</code>).
+	 * <p>
+	 * Only enable this if the Inspector's <code>inspectXXX</code> methods depend solely on their
+	 * arguments (ie. not on some external, changing state). False by default.
+	 *
+	 * @return this, as part of a fluent interface
+	 */
+
+	public BaseObjectInspectorConfig setCacheInspectionPlans( boolean cacheInspectionPlans ) {
+
+		mCacheInspectionPlans = cacheInspectionPlans;
+
+		// Fluent interface
+
+		return this;
+	}
+
 	@Override
 	public boolean equals( Object that ) {
 
@@ -121,6 +146,10 @@ public class BaseObjectInspectorConfig {
 			return false;
 		}
 
+		if ( mCacheInspectionPlans != ( (BaseObjectInspectorConfig) that ).mCacheInspectionPlans ) {
+			return false;
+		}
+
 		return true;
 	}
 
@@ -132,6 +161,7 @@ public class BaseObjectInspectorConfig {
 		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mNullPropertyStyle );
 		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mActionStyle );
 		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mNullActionStyle );
+		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mCacheInspectionPlans );
 
 		return hashCode;
 	}
@@ -185,4 +215,13 @@ public class BaseObjectInspectorConfig {
 
 		return mActionStyle;
 	}
+
+	/**
+	 * Gets whether to cache inspection plans for each type.
+	 */
+
+	protected boolean isCacheInspectionPlans() {
+
+		return mCacheInspectionPlans;
+	}
 }
@@ -13,8 +13,11 @@ package org.metawidget.inspector.impl;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.regex.Pattern;
 
+import org.metawidget.inspector.iface.InspectorException;
 import org.metawidget.util.ArrayUtils;
 import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.LogUtils;
@@ -48,21 +51,25 @@ public abstract class BaseTraitStyle<T extends Trait> {
 	 * Note: the cache is unbounded, because the number of Classes in the system is fixed. This even
 	 * applies to hot deployment products such as FakeReplace, because new Classes are replaced such
 	 * that they <code>.equal()</code> their originals.
+	 * <p>
+	 * The cache is a <code>ConcurrentMap</code> of compute-once cells, so that readers never lock and
+	 * a cold lookup only blocks those threads asking for the same type. Threads asking for other
+	 * types proceed in parallel.
 	 */
 
-	/* package private */final Map<String, Map<String, T>>	mCache;
+	/* package private */final ConcurrentMap<String, CachedTraits<T>>	mCache;
 
-	private Pattern											mExcludeBaseType;
+	private Pattern														mExcludeBaseType;
 
-	private Class<?>[]										mExcludeReturnType;
+	private Class<?>[]													mExcludeReturnType;
 
-	private String[]										mExcludeName;
+	private String[]													mExcludeName;
 
 	//
 	// Protected members
 	//
 
-	protected final Log										mLog	= LogUtils.getLog( getClass() );
+	protected final Log													mLog	= LogUtils.getLog( getClass() );
 
 	//
 	// Constructor
@@ -71,7 +78,7 @@ public abstract class BaseTraitStyle<T extends Trait> {
 	protected BaseTraitStyle( BaseTraitStyleConfig config ) {
 
 		if ( config.isCacheLookups() ) {
-			mCache = CollectionUtils.newHashMap();
+			mCache = CollectionUtils.newConcurrentHashMap();
 		} else {
 			mCache = null;
 		}
@@ -99,41 +106,85 @@ public abstract class BaseTraitStyle<T extends Trait> {
 			return;
 		}
 
-		synchronized ( mCache ) {
-			mCache.clear();
-		}
+		mCache.clear();
 	}
 
 	//
 	// Protected methods
 	//
 
+	/**
+	 * @return true if lookups are cached (see <code>BaseTraitStyleConfig.setCacheLookups</code>)
+	 */
+
+	protected final boolean isCacheLookups() {
+
+		return ( mCache != null );
+	}
+
+	/**
+	 * Gets the traits for the given type, computing them at most once per type (unless the cache is
+	 * disabled or cleared).
+	 * <p>
+	 * If <code>getUncachedTraits</code> recursively calls <code>getTraits</code> for the same type it
+	 * is computing, the recursive call computes the type again (uncached) rather than waiting on
+	 * itself.
+	 */
+
 	protected final Map<String, T> getTraits( String type ) {
 
 		if ( mCache == null ) {
 			return getUncachedTraits( type );
 		}
 
-		synchronized ( mCache ) {
-			Map<String, T> traits = getCachedTraits( type );
+		// Fast path: already cached (or being cached by another thread)
 
-			if ( traits == null ) {
-				traits = getUncachedTraits( type );
-				cacheTraits( type, traits );
-			}
+		CachedTraits<T> cachedTraits = mCache.get( type );
+
+		if ( cachedTraits != null ) {
+			return getCachedTraits( type, cachedTraits );
+		}
+
+		// Slow path: race to be the thread that computes this type
+
+		CachedTraits<T> newTraits = new CachedTraits<T>();
+		cachedTraits = mCache.putIfAbsent( type, newTraits );
+
+		if ( cachedTraits != null ) {
+			return getCachedTraits( type, cachedTraits );
+		}
 
+		try {
+			Map<String, T> traits = getUncachedTraits( type );
+			newTraits.set( Collections.unmodifiableMap( traits ) );
 			return traits;
+		} catch ( RuntimeException e ) {
+			mCache.remove( type, newTraits );
+			newTraits.setException( e );
+			throw e;
+		} catch ( Error e ) {
+			mCache.remove( type, newTraits );
+			newTraits.setException( e );
+			throw e;
 		}
 	}
 
 	protected final Map<String, T> getCachedTraits( String type ) {
 
-		return mCache.get( type );
+		CachedTraits<T> cachedTraits = mCache.get( type );
+
+		if ( cachedTraits == null ) {
+			return null;
+		}
+
+		return getCachedTraits( type, cachedTraits );
 	}
 
 	protected final void cacheTraits( String type, Map<String, T> traits ) {
 
-		mCache.put( type, Collections.unmodifiableMap( traits ) );
+		CachedTraits<T> cachedTraits = new CachedTraits<T>();
+		cachedTraits.set( Collections.unmodifiableMap( traits ) );
+		mCache.put( type, cachedTraits );
 	}
 
 	protected abstract Map<String, T> getUncachedTraits( String type );
@@ -240,4 +291,123 @@ public abstract class BaseTraitStyle<T extends Trait> {
 
 		return false;
 	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Waits for the given cached traits to be computed (if they are not already), rethrowing any
+	 * failure.
+	 * <p>
+	 * If the current Thread is the one computing them (ie. <code>getUncachedTraits</code> has
+	 * recursively called <code>getTraits</code> for the same type) waiting would deadlock, so
+	 * computes them again inline instead.
+	 */
+
+	private Map<String, T> getCachedTraits( String type, CachedTraits<T> cachedTraits ) {
+
+		if ( cachedTraits.isComputingThread() ) {
+			return getUncachedTraits( type );
+		}
+
+		try {
+			return cachedTraits.get();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw InspectorException.newException( e );
+		}
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * Compute-once cell for the traits of a single type.
+	 * <p>
+	 * Threads that find a <code>CachedTraits</code> in the cache wait on it (if it is still being
+	 * computed) without holding any lock on the cache itself.
+	 */
+
+	/* package private */static class CachedTraits<T> {
+
+		//
+		// Private members
+		//
+
+		private final CountDownLatch	mComputed	= new CountDownLatch( 1 );
+
+		/**
+		 * Thread computing the traits. Cleared once computed, so the cache does not pin it.
+		 */
+
+		private volatile Thread			mComputingThread;
+
+		private volatile Map<String, T>	mTraits;
+
+		private volatile Throwable		mThrowable;
+
+		//
+		// Constructor
+		//
+
+		public CachedTraits() {
+
+			mComputingThread = Thread.currentThread();
+		}
+
+		//
+		// Public methods
+		//
+
+		public boolean isComputingThread() {
+
+			return ( mComputingThread == Thread.currentThread() );
+		}
+
+		/**
+		 * Waits for the traits to be computed.
+		 *
+		 * @throws RuntimeException
+		 *             (or Error) if computing the traits failed
+		 */
+
+		public Map<String, T> get()
+			throws InterruptedException {
+
+			mComputed.await();
+
+			Throwable throwable = mThrowable;
+
+			if ( throwable instanceof RuntimeException ) {
+				throw (RuntimeException) throwable;
+			}
+
+			if ( throwable instanceof Error ) {
+				throw (Error) throwable;
+			}
+
+			return mTraits;
+		}
+
+		public void set( Map<String, T> traits ) {
+
+			mTraits = traits;
+			mComputingThread = null;
+			mComputed.countDown();
+		}
+
+		/**
+		 * @param throwable
+		 *            a RuntimeException or an Error
+		 */
+
+		public void setException( Throwable throwable ) {
+
+			mThrowable = throwable;
+			mComputingThread = null;
+			mComputed.countDown();
+		}
+	}
 }
@@ -14,7 +14,11 @@ package org.metawidget.inspector.impl;
 import static org.metawidget.inspector.InspectionResultConstants.*;
 
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import org.metawidget.config.iface.ResourceResolver;
 import org.metawidget.inspector.iface.DomInspector;
@@ -24,12 +28,15 @@ import org.metawidget.inspector.impl.propertystyle.PropertyStyle;
 import org.metawidget.inspector.impl.propertystyle.ValueAndDeclaredType;
 import org.metawidget.util.ArrayUtils;
 import org.metawidget.util.ClassUtils;
+import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.LogUtils;
 import org.metawidget.util.LogUtils.Log;
 import org.metawidget.util.XmlUtils;
 import org.metawidget.util.simple.StringUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 /**
  * Convenience implementation for Inspectors that inspect XML files.
@@ -129,6 +136,26 @@ public abstract class BaseXmlInspector
 
 	private final boolean		mInferInheritanceHierarchy;
 
+	private final boolean		mIndexed;
+
+	/**
+	 * Immutable index of top-level elements, keyed by their top-level type attribute, compiled from
+	 * mRoot on first use. Null until then, or if not <code>BaseXmlInspectorConfig.setIndexed</code>.
+	 * <p>
+	 * The index is not compiled at construction time, because compiling calls overridable methods
+	 * (such as <code>inspectProperty</code>) that may rely on subclass state not yet initialized.
+	 * Unlike mRoot, the index is safe to read from multiple threads without locking.
+	 */
+
+	private volatile Map<String, IndexedElement>	mIndex;
+
+	/**
+	 * For types not in mIndex, the top-level type (if any) they inherit from, so that the Java
+	 * class hierarchy is only walked once per type. An empty String if none. Null if not indexed.
+	 */
+
+	private final ConcurrentMap<String, String>	mInheritedTypes;
+
 	//
 	// Constructor
 	//
@@ -245,6 +272,16 @@ public abstract class BaseXmlInspector
 				}
 			}
 
+			// indexed
+
+			mIndexed = config.isIndexed();
+
+			if ( mIndexed ) {
+				mInheritedTypes = CollectionUtils.newConcurrentHashMap();
+			} else {
+				mInheritedTypes = null;
+			}
+
 		} catch ( Exception e ) {
 			throw InspectorException.newException( e );
 		}
@@ -281,6 +318,12 @@ public abstract class BaseXmlInspector
 			return null;
 		}
 
+		// Indexed? No need to lock
+
+		if ( mIndexed ) {
+			return inspectIndexAsDom( toInspect, type, names );
+		}
+
 		try {
 			Document document;
 			Element entity;
@@ -336,24 +379,7 @@ public abstract class BaseXmlInspector
 				}
 			}
 
-			Element root = document.createElementNS( NAMESPACE, ROOT );
-			root.setAttribute( VERSION, "1.0" );
-			document.appendChild( root );
-			root.appendChild( entity );
-
-			// Add parent attributes (if any)
-
-			XmlUtils.setMapAsAttributes( entity, parentAttributes );
-
-			// Use the declared type so as to align with other Inspectors
-
-			if ( valueAndDeclaredType.getDeclaredType() != null ) {
-				entity.setAttribute( TYPE, valueAndDeclaredType.getDeclaredType() );
-			}
-
-			// Return the root
-
-			return root;
+			return newInspectionResult( document, entity, parentAttributes, valueAndDeclaredType.getDeclaredType() );
 		} catch ( Exception e ) {
 			throw InspectorException.newException( e );
 		}
@@ -571,10 +597,255 @@ public abstract class BaseXmlInspector
 	 * @return the Element (may be null) and its declared type (not actual type). Never null.
 	 *         If the declared type within the ValueAndDeclaredType is null, inspection will be
 	 *         aborted
+	 *         <p>
+	 *         Note: when <code>BaseXmlInspectorConfig.setIndexed</code> is true,
+	 *         <code>inspectAsDom</code> walks the same path over its index instead, so overriding
+	 *         this method has no effect there. Override <code>getTopLevelTypeAttribute</code>,
+	 *         <code>traverseFromTopLevelTypeToNamedChildren</code> and friends instead, as both
+	 *         paths honour them.
 	 */
 
 	protected ValueAndDeclaredType traverse( Object toTraverse, String type, boolean onlyToParent, String... names ) {
 
+		ValueAndDeclaredType valueAndDeclaredType = traverseElements( null, toTraverse, type, onlyToParent, names );
+		DomElement domElement = (DomElement) valueAndDeclaredType.getValue();
+
+		if ( domElement == null ) {
+			return valueAndDeclaredType;
+		}
+
+		return new ValueAndDeclaredType( domElement.getElement(), valueAndDeclaredType.getDeclaredType() );
+	}
+
+	/**
+	 * The attribute on top-level elements that uniquely identifies them.
+	 */
+
+	protected String getTopLevelTypeAttribute() {
+
+		return TYPE;
+	}
+
+	/**
+	 * The attribute on child elements that uniquely identifies them.
+	 */
+
+	protected String getNameAttribute() {
+
+		return NAME;
+	}
+
+	/**
+	 * The attribute on child elements that identifies another top-level element.
+	 * <p>
+	 * This is necessary for path traversal. If an XML format does not specify a way to traverse
+	 * from a child to another top-level element, the Inspector cannot find information along paths
+	 * (eg. <code>foo/bar/baz</code>). There <em>is</em> a way around this but, on balance, we
+	 * decided against it (see http://blog.kennardconsulting.com/2008/01/ask-your-father.html).
+	 */
+
+	protected String getTypeAttribute() {
+
+		return TYPE;
+	}
+
+	/**
+	 * The attribute on top-level elements that identifies a superclass relationship (if any).
+	 */
+
+	protected String getExtendsAttribute() {
+
+		return null;
+	}
+
+	/**
+	 * The attribute on child elements that identifies a reference to another element (if any).
+	 * Note that <code>typeAttribute</code> will always take precedence over
+	 * <code>referenceAttribute</code>.
+	 */
+
+	protected String getReferenceAttribute() {
+
+		return null;
+	}
+
+	/**
+	 * Traverse from the given top-level element (as per <code>getTopLevelTypeAttribute</code>) to
+	 * the element which contains named children (as per <code>getNameAttribute</code>). In many
+	 * cases this is one and the same, so by default this method simply returns the given element.
+	 * <p>
+	 * Subclasses can override this method if they need to do some intermediate traversal.
+	 *
+	 * @return the element containing named children, or null if no such element
+	 */
+
+	protected Element traverseFromTopLevelTypeToNamedChildren( Element topLevel ) {
+
+		return topLevel;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Wrap the given entity in a root element, ready to return from <code>inspectAsDom</code>.
+	 */
+
+	private Element newInspectionResult( Document document, Element entity, Map<String, String> parentAttributes, String declaredType ) {
+
+		Element root = document.createElementNS( NAMESPACE, ROOT );
+		root.setAttribute( VERSION, "1.0" );
+		document.appendChild( root );
+		root.appendChild( entity );
+
+		// Add parent attributes (if any)
+
+		XmlUtils.setMapAsAttributes( entity, parentAttributes );
+
+		// Use the declared type so as to align with other Inspectors
+
+		if ( declaredType != null ) {
+			entity.setAttribute( TYPE, declaredType );
+		}
+
+		// Return the root
+
+		return root;
+	}
+
+	/**
+	 * As <code>inspectAsDom</code>, but using mIndex rather than mRoot, and so without locking.
+	 */
+
+	private Element inspectIndexAsDom( Object toInspect, String type, String... names ) {
+
+		try {
+			Map<String, String> parentAttributes = null;
+
+			// If the path has a parent...
+
+			if ( names != null && names.length > 0 ) {
+				// ...use its property's attributes...
+
+				IndexedElement propertyInParent = (IndexedElement) traverseElements( getIndex(), toInspect, type, true, names ).getValue();
+
+				if ( propertyInParent != null ) {
+					parentAttributes = propertyInParent.getPropertyAttributes();
+				}
+			}
+
+			// ...otherwise, just start at the end point
+
+			ValueAndDeclaredType valueAndDeclaredType = traverseElements( getIndex(), toInspect, type, false, names );
+			IndexedElement indexedElement = (IndexedElement) valueAndDeclaredType.getValue();
+
+			if ( indexedElement == null && ( parentAttributes == null || parentAttributes.isEmpty() ) ) {
+				return null;
+			}
+
+			Document document = XmlUtils.newDocument();
+			Element entity = document.createElementNS( NAMESPACE, ENTITY );
+
+			if ( indexedElement != null ) {
+
+				// Copy pre-extracted traits
+
+				indexedElement.appendTraits( entity );
+
+				// Nothing of consequence to return?
+
+				if ( !entity.hasChildNodes() && entity.getAttributes().getLength() == 0 && parentAttributes == null ) {
+					return null;
+				}
+			}
+
+			return newInspectionResult( document, entity, parentAttributes, valueAndDeclaredType.getDeclaredType() );
+		} catch ( Exception e ) {
+			throw InspectorException.newException( e );
+		}
+	}
+
+	/**
+	 * Gets mIndex, compiling it if this is the first use.
+	 */
+
+	private Map<String, IndexedElement> getIndex() {
+
+		Map<String, IndexedElement> index = mIndex;
+
+		if ( index == null ) {
+
+			// (compile under the same lock as non-indexed inspection, as the DOM is not thread-safe)
+
+			synchronized ( mRoot ) {
+				index = mIndex;
+
+				if ( index == null ) {
+					index = newIndex();
+					mIndex = index;
+				}
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Compile mRoot into an index of <code>IndexedElement</code>s, keyed by top-level type
+	 * attribute.
+	 */
+
+	private Map<String, IndexedElement> newIndex() {
+
+		String topLevelTypeAttribute = getTopLevelTypeAttribute();
+		Map<Element, IndexedElement> indexed = new IdentityHashMap<Element, IndexedElement>();
+		Map<String, IndexedElement> index = CollectionUtils.newHashMap();
+
+		// (first match wins, as per XmlUtils.getChildWithAttributeValue)
+
+		for ( Element topLevel = XmlUtils.getFirstChildElement( mRoot ); topLevel != null; topLevel = XmlUtils.getNextSiblingElement( topLevel ) ) {
+			String topLevelType = topLevel.getAttribute( topLevelTypeAttribute );
+
+			if ( !index.containsKey( topLevelType ) ) {
+				index.put( topLevelType, indexElement( topLevel, indexed ) );
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Index the given Element, or return the existing index if already indexed (Elements may be
+	 * reachable along several paths, and even recursively).
+	 */
+
+	private IndexedElement indexElement( Element element, Map<Element, IndexedElement> indexed ) {
+
+		if ( element == null ) {
+			return null;
+		}
+
+		IndexedElement indexedElement = indexed.get( element );
+
+		if ( indexedElement == null ) {
+			indexedElement = new IndexedElement( element, indexed );
+		}
+
+		return indexedElement;
+	}
+
+	/**
+	 * Shared implementation of <code>traverse</code>, walking either mRoot or mIndex.
+	 *
+	 * @param index
+	 *            the index to walk, or null to walk mRoot
+	 * @return the TraversableElement (may be null) and its declared type (not actual type). Never
+	 *         null.
+	 */
+
+	private ValueAndDeclaredType traverseElements( Map<String, IndexedElement> index, Object toTraverse, String type, boolean onlyToParent, String... names ) {
+
 		// If given a non-null Object, use it to restrictAgainstObject
 
 		String typeToInspect = type;
@@ -609,8 +880,7 @@ public abstract class BaseXmlInspector
 
 		// Validate type
 
-		String topLevelTypeAttribute = getTopLevelTypeAttribute();
-		Element topLevelElement = XmlUtils.getChildWithAttributeValue( mRoot, topLevelTypeAttribute, typeToInspect );
+		TraversableElement topLevelElement = getTopLevelElement( index, typeToInspect );
 
 		if ( topLevelElement == null ) {
 
@@ -619,37 +889,50 @@ public abstract class BaseXmlInspector
 			}
 
 			// If using mRestrictAgainstObject or mInferInheritanceHierarchy, attempt to match
-			// superclasses by checking against the Java class heirarchy
+			// superclasses by checking against the Java class heirarchy (once per type, if indexed)
 
-			Class<?> actualClass;
+			String inheritedType = null;
 
-			if ( traverseAgainstObject != null ) {
-				actualClass = traverseAgainstObject.getClass();
-			} else {
-				actualClass = ClassUtils.niceForName( typeToInspect );
+			if ( mInheritedTypes != null ) {
+				inheritedType = mInheritedTypes.get( typeToInspect );
+			}
+
+			if ( inheritedType == null ) {
+				inheritedType = "";
+				Class<?> actualClass;
 
-				if ( actualClass == null ) {
-					return new ValueAndDeclaredType( null, typeToInspect );
+				if ( traverseAgainstObject != null ) {
+					actualClass = traverseAgainstObject.getClass();
+				} else {
+					actualClass = ClassUtils.niceForName( typeToInspect );
 				}
-			}
 
-			while ( topLevelElement == null ) {
+				if ( actualClass != null ) {
 
-				actualClass = actualClass.getSuperclass();
+					for ( actualClass = actualClass.getSuperclass(); actualClass != null; actualClass = actualClass.getSuperclass() ) {
 
-				if ( actualClass == null ) {
-					break;
+						if ( getTopLevelElement( index, actualClass.getName() ) != null ) {
+							inheritedType = actualClass.getName();
+							break;
+						}
+					}
 				}
 
-				topLevelElement = XmlUtils.getChildWithAttributeValue( mRoot, topLevelTypeAttribute, actualClass.getName() );
+				if ( mInheritedTypes != null ) {
+					mInheritedTypes.putIfAbsent( typeToInspect, inheritedType );
+				}
 			}
 
-			if ( topLevelElement == null ) {
+			// (class names are never empty, so an empty String means no match)
+
+			if ( inheritedType.length() == 0 ) {
 				return new ValueAndDeclaredType( null, declaredType );
 			}
+
+			topLevelElement = getTopLevelElement( index, inheritedType );
 		}
 
-		Element elementWithNamedChildren = traverseFromTopLevelTypeToNamedChildren( topLevelElement );
+		TraversableElement elementWithNamedChildren = topLevelElement.getNamedChildren();
 
 		if ( namesToInspect == null || elementWithNamedChildren == null ) {
 			return new ValueAndDeclaredType( elementWithNamedChildren, declaredType );
@@ -661,13 +944,6 @@ public abstract class BaseXmlInspector
 			return new ValueAndDeclaredType( elementWithNamedChildren, declaredType );
 		}
 
-		// Traverse names
-
-		String extendsAttribute = getExtendsAttribute();
-		String nameAttribute = getNameAttribute();
-		String typeAttribute = getTypeAttribute();
-		String referenceAttribute = getReferenceAttribute();
-
 		// For each name...
 
 		for ( int loop = 0; loop < length; loop++ ) {
@@ -676,29 +952,30 @@ public abstract class BaseXmlInspector
 
 			// ...find the property with that name
 
-			Element property = XmlUtils.getChildWithAttributeValue( elementWithNamedChildren, nameAttribute, name );
+			TraversableElement property = elementWithNamedChildren.getChildByName( name );
 
 			// If none, XML structure may support 'extends', so jump across to the extended element
 			// and search for named properties there
 
-			if ( property == null && extendsAttribute != null ) {
+			if ( property == null ) {
 
 				while ( true ) {
 
 					// ('extends' may be several levels deep)
 
-					if ( !elementWithNamedChildren.hasAttribute( extendsAttribute ) ) {
+					String childExtends = elementWithNamedChildren.getExtends();
+
+					if ( childExtends == null ) {
 						break;
 					}
 
-					String childExtends = elementWithNamedChildren.getAttribute( extendsAttribute );
-					elementWithNamedChildren = XmlUtils.getChildWithAttributeValue( mRoot, topLevelTypeAttribute, childExtends );
+					elementWithNamedChildren = getTopLevelElement( index, childExtends );
 
 					if ( elementWithNamedChildren == null ) {
 						break;
 					}
 
-					property = XmlUtils.getChildWithAttributeValue( elementWithNamedChildren, nameAttribute, name );
+					property = elementWithNamedChildren.getChildByName( name );
 
 					if ( property != null ) {
 						break;
@@ -709,9 +986,11 @@ public abstract class BaseXmlInspector
 			// If still none, XML structure may support 'reference', so search for referenced
 			// properties
 
-			if ( property == null && referenceAttribute != null ) {
+			if ( property == null && getReferenceAttribute() != null ) {
 
-				property = XmlUtils.getChildWithAttributeValue( elementWithNamedChildren, referenceAttribute, name );
+				if ( elementWithNamedChildren != null ) {
+					property = elementWithNamedChildren.getChildByReference( name );
+				}
 
 				if ( property == null ) {
 					return new ValueAndDeclaredType( null, null );
@@ -735,25 +1014,23 @@ public abstract class BaseXmlInspector
 			if ( declaredType == null ) {
 				// Fetch typeAttribute (if any)
 
-				if ( property.hasAttribute( typeAttribute ) ) {
-					declaredType = property.getAttribute( typeAttribute );
-				}
+				declaredType = property.getType();
 
 				// Support nested elements with named children (with or without a typeAttribute)
 
-				elementWithNamedChildren = traverseFromTopLevelTypeToNamedChildren( property );
+				elementWithNamedChildren = property.getNamedChildren();
 
-				if ( XmlUtils.getChildWithAttribute( elementWithNamedChildren, nameAttribute ) != null ) {
+				if ( elementWithNamedChildren != null && elementWithNamedChildren.hasChildWithName() ) {
 					continue;
 				}
 
 				// If no typeAttribute, support referenceAttribute (though typeAttribute takes
 				// precedence)
 
-				if ( !property.hasAttribute( typeAttribute ) ) {
+				if ( declaredType == null ) {
 
-					if ( referenceAttribute == null || XmlUtils.getChildWithAttribute( elementWithNamedChildren, referenceAttribute ) == null ) {
-						throw InspectorException.newException( "Property " + name + " in entity " + topLevelElement.getAttribute( typeAttribute ) + " has no @" + typeAttribute + " attribute in the XML, so cannot navigate to " + type + ArrayUtils.toString( namesToInspect, StringUtils.SEPARATOR_FORWARD_SLASH, true, false ) );
+					if ( elementWithNamedChildren == null || !elementWithNamedChildren.hasChildWithReference() ) {
+						throw InspectorException.newException( "Property " + name + " in entity " + topLevelElement.getTypeAttributeValue() + " has no @" + getTypeAttribute() + " attribute in the XML, so cannot navigate to " + type + ArrayUtils.toString( namesToInspect, StringUtils.SEPARATOR_FORWARD_SLASH, true, false ) );
 					}
 
 					continue;
@@ -762,7 +1039,7 @@ public abstract class BaseXmlInspector
 
 			// Traverse to new top-level element of the given declaredType
 
-			topLevelElement = XmlUtils.getChildWithAttributeValue( mRoot, topLevelTypeAttribute, declaredType );
+			topLevelElement = getTopLevelElement( index, declaredType );
 
 			if ( topLevelElement == null ) {
 				return new ValueAndDeclaredType( null, declaredType );
@@ -771,11 +1048,11 @@ public abstract class BaseXmlInspector
 			// For ref lookups, topLevelElement may have an additional typeAttribute that is
 			// different from topLevelTypeAttribute
 
-			if ( topLevelElement.hasAttribute( typeAttribute ) ) {
-				declaredType = topLevelElement.getAttribute( typeAttribute );
+			if ( topLevelElement.getType() != null ) {
+				declaredType = topLevelElement.getType();
 			}
 
-			elementWithNamedChildren = traverseFromTopLevelTypeToNamedChildren( topLevelElement );
+			elementWithNamedChildren = topLevelElement.getNamedChildren();
 
 			if ( elementWithNamedChildren == null ) {
 				return new ValueAndDeclaredType( null, declaredType );
@@ -786,69 +1063,483 @@ public abstract class BaseXmlInspector
 	}
 
 	/**
-	 * The attribute on top-level elements that uniquely identifies them.
+	 * Look up the top-level element of the given type, from either mRoot or mIndex.
+	 *
+	 * @param index
+	 *            the index to use, or null to use mRoot
 	 */
 
-	protected String getTopLevelTypeAttribute() {
+	private TraversableElement getTopLevelElement( Map<String, IndexedElement> index, String type ) {
 
-		return TYPE;
+		if ( index != null ) {
+			return index.get( type );
+		}
+
+		return newDomElement( XmlUtils.getChildWithAttributeValue( mRoot, getTopLevelTypeAttribute(), type ) );
 	}
 
 	/**
-	 * The attribute on child elements that uniquely identifies them.
+	 * Wrap the given Element (may be null) for <code>traverseElements</code>.
 	 */
 
-	protected String getNameAttribute() {
+	private DomElement newDomElement( Element element ) {
 
-		return NAME;
+		if ( element == null ) {
+			return null;
+		}
+
+		return new DomElement( element );
 	}
 
+	//
+	// Inner class
+	//
+
 	/**
-	 * The attribute on child elements that identifies another top-level element.
-	 * <p>
-	 * This is necessary for path traversal. If an XML format does not specify a way to traverse
-	 * from a child to another top-level element, the Inspector cannot find information along paths
-	 * (eg. <code>foo/bar/baz</code>). There <em>is</em> a way around this but, on balance, we
-	 * decided against it (see http://blog.kennardconsulting.com/2008/01/ask-your-father.html).
+	 * The view of an element needed by <code>traverseElements</code>, so that walking mRoot and
+	 * walking mIndex share one implementation.
 	 */
 
-	protected String getTypeAttribute() {
+	private interface TraversableElement {
 
-		return TYPE;
+		/**
+		 * @return the value of the type attribute, or an empty String if none (as per
+		 *         <code>Element.getAttribute</code>)
+		 */
+
+		String getTypeAttributeValue();
+
+		/**
+		 * @return the value of the type attribute, or null if none
+		 */
+
+		String getType();
+
+		/**
+		 * @return the value of the extends attribute, or null if none
+		 */
+
+		String getExtends();
+
+		TraversableElement getChildByName( String name );
+
+		TraversableElement getChildByReference( String reference );
+
+		boolean hasChildWithName();
+
+		boolean hasChildWithReference();
+
+		/**
+		 * @return the element containing named children (as per
+		 *         <code>traverseFromTopLevelTypeToNamedChildren</code>), or null if none
+		 */
+
+		TraversableElement getNamedChildren();
 	}
 
 	/**
-	 * The attribute on top-level elements that identifies a superclass relationship (if any).
+	 * TraversableElement that reads directly from a (non thread-safe) DOM Element.
 	 */
 
-	protected String getExtendsAttribute() {
+	private class DomElement
+		implements TraversableElement {
 
-		return null;
+		//
+		// Private members
+		//
+
+		private final Element	mElement;
+
+		//
+		// Constructor
+		//
+
+		public DomElement( Element element ) {
+
+			mElement = element;
+		}
+
+		//
+		// Public methods
+		//
+
+		public Element getElement() {
+
+			return mElement;
+		}
+
+		public String getTypeAttributeValue() {
+
+			return mElement.getAttribute( getTypeAttribute() );
+		}
+
+		public String getType() {
+
+			String typeAttribute = getTypeAttribute();
+
+			if ( !mElement.hasAttribute( typeAttribute ) ) {
+				return null;
+			}
+
+			return mElement.getAttribute( typeAttribute );
+		}
+
+		public String getExtends() {
+
+			String extendsAttribute = getExtendsAttribute();
+
+			if ( extendsAttribute == null || !mElement.hasAttribute( extendsAttribute ) ) {
+				return null;
+			}
+
+			return mElement.getAttribute( extendsAttribute );
+		}
+
+		public DomElement getChildByName( String name ) {
+
+			return newDomElement( XmlUtils.getChildWithAttributeValue( mElement, getNameAttribute(), name ) );
+		}
+
+		public DomElement getChildByReference( String reference ) {
+
+			String referenceAttribute = getReferenceAttribute();
+
+			if ( referenceAttribute == null ) {
+				return null;
+			}
+
+			return newDomElement( XmlUtils.getChildWithAttributeValue( mElement, referenceAttribute, reference ) );
+		}
+
+		public boolean hasChildWithName() {
+
+			return ( XmlUtils.getChildWithAttribute( mElement, getNameAttribute() ) != null );
+		}
+
+		public boolean hasChildWithReference() {
+
+			String referenceAttribute = getReferenceAttribute();
+
+			if ( referenceAttribute == null ) {
+				return false;
+			}
+
+			return ( XmlUtils.getChildWithAttribute( mElement, referenceAttribute ) != null );
+		}
+
+		public DomElement getNamedChildren() {
+
+			return newDomElement( traverseFromTopLevelTypeToNamedChildren( mElement ) );
+		}
 	}
 
 	/**
-	 * The attribute on child elements that identifies a reference to another element (if any).
-	 * Note that <code>typeAttribute</code> will always take precedence over
-	 * <code>referenceAttribute</code>.
+	 * Snapshot of an Element, as needed by <code>traverseElements</code> and
+	 * <code>inspectIndexAsDom</code>: its pertinent attributes, its children by name (and
+	 * reference), and the element containing its named children.
+	 * <p>
+	 * Its property attributes and inspected traits are only computed when first needed (under the
+	 * same lock as non-indexed inspection), because subclasses may not expect to inspect Elements
+	 * that are never traversed to. For example, <code>XmlSchemaInspector.inspectProperty</code>
+	 * never returns for <code>&lt;xs:element name="Foo" type="Foo"/&gt;</code>.
+	 * <p>
+	 * If the element containing its named children fails to compute, the failure is remembered and
+	 * rethrown if and when it is needed, so that errors surface at the same point as they would
+	 * without an index.
 	 */
 
-	protected String getReferenceAttribute() {
+	private class IndexedElement
+		implements TraversableElement {
 
-		return null;
+		//
+		// Private members
+		//
+
+		private final Element						mElement;
+
+		private final String						mTypeAttributeValue;
+
+		private final String						mType;
+
+		private final String						mExtends;
+
+		private final Map<String, IndexedElement>	mChildrenByName		= CollectionUtils.newHashMap();
+
+		private final Map<String, IndexedElement>	mChildrenByReference;
+
+		private final boolean						mHasChildWithName;
+
+		private final boolean						mHasChildWithReference;
+
+		private final IndexedElement				mNamedChildren;
+
+		private final RuntimeException				mNamedChildrenException;
+
+		/**
+		 * Written before <code>mPropertyAttributesInspected</code>, and only read after it.
+		 */
+
+		private Map<String, String>					mPropertyAttributes;
+
+		private volatile boolean					mPropertyAttributesInspected;
+
+		private volatile IndexedTrait				mTraits;
+
+		//
+		// Constructor
+		//
+
+		public IndexedElement( Element element, Map<Element, IndexedElement> indexed ) {
+
+			// Register first, in case of recursion
+
+			indexed.put( element, this );
+
+			mElement = element;
+
+			String typeAttribute = getTypeAttribute();
+			String extendsAttribute = getExtendsAttribute();
+			String nameAttribute = getNameAttribute();
+			String referenceAttribute = getReferenceAttribute();
+
+			mTypeAttributeValue = element.getAttribute( typeAttribute );
+
+			if ( element.hasAttribute( typeAttribute ) ) {
+				mType = mTypeAttributeValue;
+			} else {
+				mType = null;
+			}
+
+			if ( extendsAttribute != null && element.hasAttribute( extendsAttribute ) ) {
+				mExtends = element.getAttribute( extendsAttribute );
+			} else {
+				mExtends = null;
+			}
+
+			if ( referenceAttribute != null ) {
+				mChildrenByReference = CollectionUtils.newHashMap();
+			} else {
+				mChildrenByReference = null;
+			}
+
+			// Children (first match wins, as per XmlUtils.getChildWithAttributeValue)
+
+			boolean hasChildWithName = false;
+			boolean hasChildWithReference = false;
+
+			for ( Element child = XmlUtils.getFirstChildElement( element ); child != null; child = XmlUtils.getNextSiblingElement( child ) ) {
+
+				String childName = child.getAttribute( nameAttribute );
+
+				if ( !mChildrenByName.containsKey( childName ) ) {
+					mChildrenByName.put( childName, indexElement( child, indexed ) );
+				}
+
+				if ( child.hasAttribute( nameAttribute ) ) {
+					hasChildWithName = true;
+				}
+
+				if ( referenceAttribute != null ) {
+
+					String childReference = child.getAttribute( referenceAttribute );
+
+					if ( !mChildrenByReference.containsKey( childReference ) ) {
+						mChildrenByReference.put( childReference, indexElement( child, indexed ) );
+					}
+
+					if ( child.hasAttribute( referenceAttribute ) ) {
+						hasChildWithReference = true;
+					}
+				}
+			}
+
+			mHasChildWithName = hasChildWithName;
+			mHasChildWithReference = hasChildWithReference;
+
+			// Named children (if any)
+
+			IndexedElement namedChildren = null;
+			RuntimeException namedChildrenException = null;
+
+			try {
+				namedChildren = indexElement( traverseFromTopLevelTypeToNamedChildren( element ), indexed );
+			} catch ( RuntimeException e ) {
+				namedChildrenException = e;
+			}
+
+			mNamedChildren = namedChildren;
+			mNamedChildrenException = namedChildrenException;
+		}
+
+		//
+		// Public methods
+		//
+
+		public String getTypeAttributeValue() {
+
+			return mTypeAttributeValue;
+		}
+
+		public String getType() {
+
+			return mType;
+		}
+
+		public String getExtends() {
+
+			return mExtends;
+		}
+
+		public IndexedElement getChildByName( String name ) {
+
+			return mChildrenByName.get( name );
+		}
+
+		public IndexedElement getChildByReference( String reference ) {
+
+			if ( mChildrenByReference == null ) {
+				return null;
+			}
+
+			return mChildrenByReference.get( reference );
+		}
+
+		public boolean hasChildWithName() {
+
+			return mHasChildWithName;
+		}
+
+		public boolean hasChildWithReference() {
+
+			return mHasChildWithReference;
+		}
+
+		public IndexedElement getNamedChildren() {
+
+			if ( mNamedChildrenException != null ) {
+				throw mNamedChildrenException;
+			}
+
+			return mNamedChildren;
+		}
+
+		/**
+		 * @return this element's attributes, as <code>inspectProperty</code> would
+		 */
+
+		public Map<String, String> getPropertyAttributes() {
+
+			if ( !mPropertyAttributesInspected ) {
+
+				synchronized ( mRoot ) {
+
+					if ( !mPropertyAttributesInspected ) {
+						Map<String, String> propertyAttributes = inspectProperty( mElement );
+
+						if ( propertyAttributes != null ) {
+							propertyAttributes = Collections.unmodifiableMap( propertyAttributes );
+						}
+
+						mPropertyAttributes = propertyAttributes;
+						mPropertyAttributesInspected = true;
+					}
+				}
+			}
+
+			return mPropertyAttributes;
+		}
+
+		/**
+		 * Append this element's traits to the given entity, as <code>inspectTraits</code> would.
+		 */
+
+		public void appendTraits( Element entity ) {
+
+			IndexedTrait traits = mTraits;
+
+			if ( traits == null ) {
+
+				synchronized ( mRoot ) {
+					traits = mTraits;
+
+					if ( traits == null ) {
+						Element traitsEntity = XmlUtils.newDocument().createElementNS( NAMESPACE, ENTITY );
+						inspectTraits( mElement, traitsEntity );
+						traits = new IndexedTrait( traitsEntity );
+						mTraits = traits;
+					}
+				}
+			}
+
+			traits.appendTo( entity );
+		}
 	}
 
 	/**
-	 * Traverse from the given top-level element (as per <code>getTopLevelTypeAttribute</code>) to
-	 * the element which contains named children (as per <code>getNameAttribute</code>). In many
-	 * cases this is one and the same, so by default this method simply returns the given element.
-	 * <p>
-	 * Subclasses can override this method if they need to do some intermediate traversal.
-	 *
-	 * @return the element containing named children, or null if no such element
+	 * Immutable copy of an inspected trait (or entity): its attributes and its child elements.
 	 */
 
-	protected Element traverseFromTopLevelTypeToNamedChildren( Element topLevel ) {
+	private static class IndexedTrait {
 
-		return topLevel;
+		//
+		// Private members
+		//
+
+		private final String				mNamespaceURI;
+
+		private final String				mName;
+
+		private final String[]				mAttributes;
+
+		private final List<IndexedTrait>	mChildren	= CollectionUtils.newArrayList();
+
+		//
+		// Constructor
+		//
+
+		public IndexedTrait( Element element ) {
+
+			mNamespaceURI = element.getNamespaceURI();
+			mName = element.getNodeName();
+
+			// Attributes are stored as name/value pairs, in order
+
+			NamedNodeMap attributes = element.getAttributes();
+			int length = attributes.getLength();
+			mAttributes = new String[length * 2];
+
+			for ( int loop = 0; loop < length; loop++ ) {
+				Node attribute = attributes.item( loop );
+				mAttributes[loop * 2] = attribute.getNodeName();
+				mAttributes[loop * 2 + 1] = attribute.getNodeValue();
+			}
+
+			for ( Element child = XmlUtils.getFirstChildElement( element ); child != null; child = XmlUtils.getNextSiblingElement( child ) ) {
+				mChildren.add( new IndexedTrait( child ) );
+			}
+		}
+
+		//
+		// Public methods
+		//
+
+		/**
+		 * Copy this trait's attributes and children onto the given Element.
+		 */
+
+		public void appendTo( Element element ) {
+
+			for ( int loop = 0, length = mAttributes.length; loop < length; loop += 2 ) {
+				element.setAttribute( mAttributes[loop], mAttributes[loop + 1] );
+			}
+
+			Document document = element.getOwnerDocument();
+
+			for ( IndexedTrait child : mChildren ) {
+				Element childElement = document.createElementNS( child.mNamespaceURI, child.mName );
+				child.appendTo( childElement );
+				element.appendChild( childElement );
+			}
+		}
 	}
 }
@@ -11,8 +11,9 @@
 
 package org.metawidget.inspector.impl.propertystyle;
 
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import org.metawidget.inspector.impl.BaseTraitStyle;
 import org.metawidget.inspector.impl.BaseTraitStyleConfig;
@@ -31,6 +32,30 @@ public abstract class BasePropertyStyle
 	extends BaseTraitStyle<Property>
 	implements PropertyStyle {
 
+	//
+	// Private statics
+	//
+
+	private static final ValueAndDeclaredType						NO_VALUE_AND_DECLARED_TYPE	= new ValueAndDeclaredType( null, null );
+
+	//
+	// Private members
+	//
+
+	/**
+	 * Cache of compiled property paths, keyed by root class and names.
+	 * <p>
+	 * Each path is a chain of the Properties that <code>traverse</code> resolved for each name,
+	 * together with the runtime class they were resolved against. So long as the runtime classes
+	 * match, <code>traverse</code> can walk the chain without looking up any Properties.
+	 * <p>
+	 * Like the trait cache, this cache is unbounded (the number of paths through a fixed set of
+	 * Classes is fixed) and is only used if <code>BaseTraitStyleConfig.setCacheLookups</code> is
+	 * true.
+	 */
+
+	private final ConcurrentMap<PropertyPathKey, PropertyPathStep>	mPropertyPaths;
+
 	//
 	// Constructor
 	//
@@ -38,6 +63,12 @@ public abstract class BasePropertyStyle
 	protected BasePropertyStyle( BaseTraitStyleConfig config ) {
 
 		super( config );
+
+		if ( isCacheLookups() ) {
+			mPropertyPaths = CollectionUtils.newConcurrentHashMap();
+		} else {
+			mPropertyPaths = null;
+		}
 	}
 
 	//
@@ -49,6 +80,16 @@ public abstract class BasePropertyStyle
 		return getTraits( type );
 	}
 
+	@Override
+	public void clearCache() {
+
+		super.clearCache();
+
+		if ( mPropertyPaths != null ) {
+			mPropertyPaths.clear();
+		}
+	}
+
 	/**
 	 * Traverses the given Object heirarchy using properties of the given names.
 	 * <p>
@@ -56,6 +97,10 @@ public abstract class BasePropertyStyle
 	 * therefore have side effects. For example, a JSF controller 'ResourceController' may have a
 	 * method 'getLoggedIn' which has to check the HttpSession, maybe even hit some EJBs or access
 	 * the database.
+	 * <p>
+	 * Properties are resolved through a compiled property path where possible (see
+	 * <code>mPropertyPaths</code>). Cycles are detected by identity, so traversal never calls
+	 * <code>hashCode</code> or <code>equals</code> on the model.
 	 */
 
 	public ValueAndDeclaredType traverse( Object toTraverse, String type, boolean onlyToParent, String... names ) {
@@ -66,7 +111,7 @@ public abstract class BasePropertyStyle
 			// If there are names, return null
 
 			if ( names != null && names.length > 0 ) {
-				return new ValueAndDeclaredType( null, null );
+				return NO_VALUE_AND_DECLARED_TYPE;
 			}
 
 			return new ValueAndDeclaredType( null, type );
@@ -85,7 +130,7 @@ public abstract class BasePropertyStyle
 		Class<?> sanityCheck = ClassUtils.niceForName( type, toTraverse.getClass().getClassLoader() );
 
 		if ( sanityCheck != null && !sanityCheck.isAssignableFrom( toTraverse.getClass() ) ) {
-			return new ValueAndDeclaredType( null, null );
+			return NO_VALUE_AND_DECLARED_TYPE;
 		}
 
 		// Traverse through names (if any)
@@ -98,21 +143,65 @@ public abstract class BasePropertyStyle
 			// If no names, no parent
 
 			if ( onlyToParent ) {
-				return new ValueAndDeclaredType( null, null );
+				return NO_VALUE_AND_DECLARED_TYPE;
 			}
 
 		} else {
-			Set<Object> traversed = CollectionUtils.newHashSet();
-			traversed.add( traverse );
-
 			int length = names.length;
 
+			// Values traversed so far (beyond toTraverse itself), for detecting cycles
+
+			Object[] traversed = null;
+
+			if ( length > 1 ) {
+				traversed = new Object[length - 1];
+			}
+
+			// Compiled property path (if any)
+
+			PropertyPathStep step = null;
+			PropertyPathStep previousStep = null;
+			boolean compiling = ( mPropertyPaths != null );
+
+			if ( compiling ) {
+				step = mPropertyPaths.get( new PropertyPathKey( toTraverse.getClass(), names ) );
+			}
+
 			for ( int loop = 0; loop < length; loop++ ) {
 				String name = names[loop];
-				Property property = getProperties( traverse.getClass().getName() ).get( name );
+				Class<?> traverseClass = traverse.getClass();
+				Property property;
+
+				if ( step != null && step.getType() == traverseClass ) {
+
+					// Fast path: same runtime class as when the path was compiled
+
+					property = step.getProperty();
+
+				} else {
+					property = getProperties( traverseClass.getName() ).get( name );
+
+					// Compile the path as we go. If the runtime class differs from the compiled
+					// path (ie. the model is polymorphic) stick with the path as first compiled
+
+					if ( step == null && compiling ) {
+						step = compilePropertyPathStep( toTraverse.getClass(), names, previousStep, traverseClass, property );
+					}
+
+					if ( step == null || step.getType() != traverseClass ) {
+						step = null;
+						compiling = false;
+					}
+				}
+
+				previousStep = step;
+
+				if ( step != null ) {
+					step = step.getNext();
+				}
 
 				if ( property == null || !property.isReadable() ) {
-					return new ValueAndDeclaredType( null, null );
+					return NO_VALUE_AND_DECLARED_TYPE;
 				}
 
 				Object parentTraverse = traverse;
@@ -122,12 +211,12 @@ public abstract class BasePropertyStyle
 				// cyclic reference because it only looks at types, not objects),
 				// BaseObjectInspector can detect cycles and nip them in the bud
 
-				if ( !traversed.add( traverse ) ) {
+				if ( isTraversed( traverse, toTraverse, traversed, loop ) ) {
 					// Trace, rather than do a debug log, because it makes for a nicer 'out
 					// of the box' experience
 
 					mLog.trace( "Prevented infinite recursion on {0}{1}. Consider marking {2} as hidden", type, ArrayUtils.toString( names, StringUtils.SEPARATOR_FORWARD_SLASH, true, false ), name );
-					return new ValueAndDeclaredType( null, null );
+					return NO_VALUE_AND_DECLARED_TYPE;
 				}
 
 				// Always come in this loop once, even if onlyToParent, because we
@@ -153,12 +242,16 @@ public abstract class BasePropertyStyle
 						return new ValueAndDeclaredType( null, traverseDeclaredType );
 					}
 
-					return new ValueAndDeclaredType( null, null );
+					return NO_VALUE_AND_DECLARED_TYPE;
 				}
 
 				if ( onlyToParent && loop == length - 2 ) {
 					return new ValueAndDeclaredType( traverse, traverseDeclaredType );
 				}
+
+				if ( traversed != null && loop < traversed.length ) {
+					traversed[loop] = traverse;
+				}
 			}
 		}
 
@@ -180,4 +273,161 @@ public abstract class BasePropertyStyle
 	 */
 
 	protected abstract Map<String, Property> inspectProperties( String type );
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Adds a step to the end of the compiled property path. Threads may race to do this, but will
+	 * compile equivalent steps.
+	 *
+	 * @return the step now in the compiled property path. This may have been compiled by another
+	 *         Thread, against a different runtime class
+	 */
+
+	private PropertyPathStep compilePropertyPathStep( Class<?> rootClass, String[] names, PropertyPathStep previousStep, Class<?> type, Property property ) {
+
+		PropertyPathStep step = new PropertyPathStep( type, property );
+
+		if ( previousStep == null ) {
+			PropertyPathStep existingStep = mPropertyPaths.putIfAbsent( new PropertyPathKey( rootClass, names.clone() ), step );
+
+			if ( existingStep != null ) {
+				return existingStep;
+			}
+		} else {
+			previousStep.setNext( step );
+		}
+
+		return step;
+	}
+
+	/**
+	 * @return true if the given value is (by identity) the root, or one of the first
+	 *         <code>count</code> traversed values
+	 */
+
+	private static boolean isTraversed( Object value, Object root, Object[] traversed, int count ) {
+
+		if ( value == root ) {
+			return true;
+		}
+
+		for ( int loop = 0; loop < count; loop++ ) {
+			if ( value == traversed[loop] ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * Key for a compiled property path.
+	 */
+
+	private static class PropertyPathKey {
+
+		//
+		// Private members
+		//
+
+		private final Class<?>	mRootClass;
+
+		private final String[]	mNames;
+
+		private final int		mHashCode;
+
+		//
+		// Constructor
+		//
+
+		public PropertyPathKey( Class<?> rootClass, String[] names ) {
+
+			mRootClass = rootClass;
+			mNames = names;
+			mHashCode = 31 * rootClass.hashCode() + Arrays.hashCode( names );
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public boolean equals( Object that ) {
+
+			if ( !( that instanceof PropertyPathKey ) ) {
+				return false;
+			}
+
+			PropertyPathKey thatKey = (PropertyPathKey) that;
+			return mRootClass == thatKey.mRootClass && Arrays.equals( mNames, thatKey.mNames );
+		}
+
+		@Override
+		public int hashCode() {
+
+			return mHashCode;
+		}
+	}
+
+	/**
+	 * One step of a compiled property path: the Property (possibly null) resolved for a name
+	 * against a runtime class.
+	 * <p>
+	 * Steps are immutable, except that the next step is appended (once the path has been traversed
+	 * that far) through a volatile field.
+	 */
+
+	private static class PropertyPathStep {
+
+		//
+		// Private members
+		//
+
+		private final Class<?>				mType;
+
+		private final Property				mProperty;
+
+		private volatile PropertyPathStep	mNext;
+
+		//
+		// Constructor
+		//
+
+		public PropertyPathStep( Class<?> type, Property property ) {
+
+			mType = type;
+			mProperty = property;
+		}
+
+		//
+		// Public methods
+		//
+
+		public Class<?> getType() {
+
+			return mType;
+		}
+
+		public Property getProperty() {
+
+			return mProperty;
+		}
+
+		public PropertyPathStep getNext() {
+
+			return mNext;
+		}
+
+		public void setNext( PropertyPathStep next ) {
+
+			mNext = next;
+		}
+	}
 }
@@ -12,6 +12,7 @@
 package org.metawidget.inspector.impl.propertystyle.javabean;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -66,6 +67,8 @@ public class JavaBeanPropertyStyle
 
 	private ClassLoader		mAdditionalClassLoader;
 
+	private boolean			mSuppressAccessChecks;
+
 	//
 	// Constructor
 	//
@@ -82,6 +85,7 @@ public class JavaBeanPropertyStyle
 		mSupportPublicFields = config.isSupportPublicFields();
 		mPrivateFieldConvention = config.getPrivateFieldConvention();
 		mAdditionalClassLoader = config.getAdditionalClassLoader();
+		mSuppressAccessChecks = config.isSuppressAccessChecks();
 	}
 
 	//
@@ -120,6 +124,15 @@ public class JavaBeanPropertyStyle
 			}
 		}
 
+		// Suppress access checks once, rather than on every read/write
+
+		if ( mSuppressAccessChecks ) {
+
+			for ( Property property : properties.values() ) {
+				setAccessible( property );
+			}
+		}
+
 		return properties;
 	}
 
@@ -429,6 +442,38 @@ public class JavaBeanPropertyStyle
 		return null;
 	}
 
+	//
+	// Private methods
+	//
+
+	private void setAccessible( Property property ) {
+
+		if ( property instanceof FieldProperty ) {
+			setAccessible( ( (FieldProperty) property ).getField() );
+			return;
+		}
+
+		if ( property instanceof JavaBeanProperty ) {
+			setAccessible( ( (JavaBeanProperty) property ).getReadMethod() );
+			setAccessible( ( (JavaBeanProperty) property ).getWriteMethod() );
+		}
+	}
+
+	private void setAccessible( AccessibleObject accessibleObject ) {
+
+		if ( accessibleObject == null ) {
+			return;
+		}
+
+		try {
+			accessibleObject.setAccessible( true );
+		} catch ( RuntimeException e ) {
+
+			// Fall back to access checks on every call (eg. SecurityException in an Applet, or
+			// module encapsulation on later JVMs)
+		}
+	}
+
 	//
 	// Inner classes
 	//
@@ -520,6 +565,16 @@ public class JavaBeanPropertyStyle
 	public static class JavaBeanProperty
 		extends BaseProperty {
 
+		//
+		// Private statics
+		//
+
+		/**
+		 * Avoids allocating an empty varargs array on every <code>read</code>.
+		 */
+
+		private static final Object[]	NO_ARGUMENTS	= new Object[0];
+
 		//
 		// Private methods
 		//
@@ -568,7 +623,7 @@ public class JavaBeanPropertyStyle
 		public Object read( Object obj ) {
 
 			try {
-				return mReadMethod.invoke( obj );
+				return mReadMethod.invoke( obj, NO_ARGUMENTS );
 			} catch ( Exception e ) {
 				throw InspectorException.newException( e );
 			}
@@ -43,6 +43,8 @@ public class JavaBeanPropertyStyleConfig
 
 	private ClassLoader		mAdditionalClassLoader;
 
+	private boolean			mSuppressAccessChecks;
+
 	//
 	// Public methods
 	//
@@ -132,6 +134,28 @@ public class JavaBeanPropertyStyleConfig
 		return this;
 	}
 
+	/**
+	 * Sets whether to suppress Java language access checks on getters, setters and public fields,
+	 * by calling <code>setAccessible( true )</code> once when properties are first discovered. False
+	 * by default.
+	 * <p>
+	 * Properties are still read and written using reflection (<code>Method.invoke</code>), so this
+	 * only saves the per-call access check. That is most noticeable for public methods of
+	 * non-public classes. If the checks cannot be suppressed (eg. by a <code>SecurityManager</code>)
+	 * they are silently left in place.
+	 *
+	 * @return this, as part of a fluent interface
+	 */
+
+	public JavaBeanPropertyStyleConfig setSuppressAccessChecks( boolean suppressAccessChecks ) {
+
+		mSuppressAccessChecks = suppressAccessChecks;
+
+		// Fluent interface
+
+		return this;
+	}
+
 	@Override
 	public boolean equals( Object that ) {
 
@@ -159,6 +183,10 @@ public class JavaBeanPropertyStyleConfig
 			return false;
 		}
 
+		if ( mSuppressAccessChecks != ( (JavaBeanPropertyStyleConfig) that ).mSuppressAccessChecks ) {
+			return false;
+		}
+
 		return super.equals( that );
 	}
 
@@ -170,6 +198,7 @@ public class JavaBeanPropertyStyleConfig
 		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mPrivateFieldConvention );
 		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mSupportPublicFields );
 		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mAdditionalClassLoader );
+		hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode( mSuppressAccessChecks );
 
 		return hashCode;
 	}
@@ -204,4 +233,9 @@ public class JavaBeanPropertyStyleConfig
 
 		return mAdditionalClassLoader;
 	}
+
+	protected boolean isSuppressAccessChecks() {
+
+		return mSuppressAccessChecks;
+	}
 }
@@ -15,6 +15,7 @@ import static org.metawidget.inspector.InspectionResultConstants.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +26,8 @@ import org.metawidget.inspector.iface.DomInspector;
 import org.metawidget.inspector.iface.Inspector;
 import org.metawidget.layout.iface.AdvancedLayout;
 import org.metawidget.layout.iface.Layout;
+import org.metawidget.util.simple.ObjectUtils;
+import org.metawidget.widgetbuilder.composite.CompositeWidgetBuilder;
 import org.metawidget.widgetbuilder.iface.AdvancedWidgetBuilder;
 import org.metawidget.widgetbuilder.iface.WidgetBuilder;
 import org.metawidget.widgetprocessor.iface.AdvancedWidgetProcessor;
@@ -45,6 +48,8 @@ import org.metawidget.widgetprocessor.iface.WidgetProcessorException;
  * <li>stubs/stub attributes</li>
  * <li>read-only/active widgets</li>
  * <li>maximum inspection depth</li>
+ * <li>reusing nested inspection results when rebuilding</li>
+ * <li>PipelineListeners</li>
  * </ul>
  * This base class abstracts the pipeline without enforcing which XML libraries to use. Most
  * subclasses will choose <code>org.metawidget.pipeline.w3c.W3CPipeline</code>, which uses
@@ -87,6 +92,26 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 
 	private Layout<W, C, M>						mLayout;
 
+	private PipelineListener					mPipelineListener;
+
+	private int									mDepth;
+
+	private boolean								mReuseNestedInspectionResults;
+
+	/**
+	 * Nested inspection results for the inspection result most recently built by this pipeline.
+	 */
+
+	private InspectionNode<E>					mInspectionNode;
+
+	/**
+	 * Nested inspection results handed down by <code>initNestedPipeline</code>.
+	 */
+
+	private InspectionNode<E>					mNestedInspectionNode;
+
+	private boolean								mFirstNestedInspection;
+
 	//
 	// Public methods
 	//
@@ -126,6 +151,37 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 		mMaximumInspectionDepth = maximumInspectionDepth;
 	}
 
+	public boolean isReuseNestedInspectionResults() {
+
+		return mReuseNestedInspectionResults;
+	}
+
+	/**
+	 * Sets whether rebuilding the same inspection result should also reuse the inspection results
+	 * of the nested Metawidgets beneath it.
+	 * <p>
+	 * Normally, every time a Metawidget rebuilds (eg. after <code>setReadOnly</code>) it reuses its
+	 * own inspection result, but any nested Metawidgets start their own inspections from scratch,
+	 * re-traversing from the root object and re-running every Inspector and
+	 * InspectionResultProcessor at every level. With this option, this pipeline keeps the results
+	 * of its nested pipelines as a tree, and hands each nested pipeline its subtree through
+	 * <code>initNestedPipeline</code>. A fresh inspection discards the whole tree.
+	 * <p>
+	 * This only speeds up rebuilds, not the first build: the tree is filled in as nested pipelines
+	 * first inspect, because only the WidgetBuilders can decide which properties need nested
+	 * Metawidgets. A nested pipeline only reuses its subtree if it inspects the same
+	 * <code>toInspect</code> (by identity), type and names as last time, and only for its first
+	 * inspection after <code>initNestedPipeline</code>.
+	 * <p>
+	 * Defaults to false. Metawidgets typically enable it by overriding <code>newPipeline</code>.
+	 * Nested pipelines inherit this setting from <code>initNestedPipeline</code>.
+	 */
+
+	public void setReuseNestedInspectionResults( boolean reuseNestedInspectionResults ) {
+
+		mReuseNestedInspectionResults = reuseNestedInspectionResults;
+	}
+
 	public void setNeedsConfiguring() {
 
 		mNeedsConfiguring = true;
@@ -300,6 +356,28 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 		mLayout = layout;
 	}
 
+	public PipelineListener getPipelineListener() {
+
+		return mPipelineListener;
+	}
+
+	/**
+	 * Sets a listener to be told about each stage of the pipeline, such as which Inspector,
+	 * InspectionResultProcessor and WidgetBuilder ran and what they returned.
+	 * <p>
+	 * By default there is no listener, and the pipeline skips reporting altogether. Metawidgets
+	 * typically set a listener by overriding <code>newPipeline</code>. The listener is passed on to
+	 * nested pipelines by <code>initNestedPipeline</code>.
+	 *
+	 * @param pipelineListener
+	 *            may be null
+	 */
+
+	public void setPipelineListener( PipelineListener pipelineListener ) {
+
+		mPipelineListener = pipelineListener;
+	}
+
 	/**
 	 * Inspect the given Object according to the given path, and return the
 	 * result as a String conforming to inspection-result-1.0.xsd.
@@ -332,23 +410,42 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 
 		configureOnce();
 
+		// Nested inspection result handed down from our parent? Only reuse it for our first inspection, as
+		// subsequent inspections are presumably because something has changed
+
+		InspectionNode<E> nestedInspectionNode = mNestedInspectionNode;
+
+		if ( nestedInspectionNode != null && mFirstNestedInspection ) {
+			mFirstNestedInspection = false;
+			E nestedInspectionResult = nestedInspectionNode.getInspectionResult( toInspect, type, names );
+
+			if ( nestedInspectionResult != null ) {
+				mInspectionNode = nestedInspectionNode;
+				return nestedInspectionResult;
+			}
+		}
+
 		if ( mInspector == null ) {
 			throw new NullPointerException( "No inspector configured" );
 		}
 
-		Object inspectionResult;
-
-		if ( mInspector instanceof DomInspector<?> ) {
-			inspectionResult = ( (DomInspector<?>) mInspector ).inspectAsDom( toInspect, type, names );
-		} else {
-			inspectionResult = mInspector.inspect( toInspect, type, names );
-		}
+		Object inspectionResult = runInspector( toInspect, type, names );
 
 		if ( inspectionResult == null ) {
 			return null;
 		}
 
-		return processInspectionResult( inspectionResult, toInspect, type, names );
+		E processedInspectionResult = processInspectionResult( inspectionResult, toInspect, type, names );
+
+		// Record it for our parent to hand down next time (unless it has since started a new tree,
+		// in which case this is harmless)
+
+		if ( nestedInspectionNode != null && processedInspectionResult != null ) {
+			nestedInspectionNode.setInspectionResult( processedInspectionResult, toInspect, type, names );
+			mInspectionNode = nestedInspectionNode;
+		}
+
+		return processedInspectionResult;
 	}
 
 	/**
@@ -362,6 +459,16 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 		throws Exception {
 
 		configureOnce();
+
+		// Start a new tree of nested inspection results, unless we are rebuilding the same inspection
+		// result as last time
+
+		if ( !mReuseNestedInspectionResults ) {
+			mInspectionNode = null;
+		} else if ( mInspectionNode == null || !mInspectionNode.isInspectionResult( inspectionResult ) ) {
+			mInspectionNode = new InspectionNode<E>( inspectionResult );
+		}
+
 		startBuild();
 
 		if ( inspectionResult != null ) {
@@ -440,6 +547,10 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 	 * <li>the given pipeline is initialised with the same Inspectors, InspectionResultProcessors,
 	 * WidgetBuilders, WidgetProcessors and Layouts as the current pipeline. This is safe because
 	 * they are all immutable</li>
+	 * <li>the given pipeline is initialised with the same PipelineListener as the current pipeline,
+	 * and reports its stages one level deeper</li>
+	 * <li>if reusing nested inspection results, the given pipeline is handed the subtree of inspection
+	 * results for the attribute map's <code>NAME</code></li>
 	 * </ul>
 	 *
 	 * @param attributes
@@ -458,6 +569,17 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 		nestedPipeline.setInspector( getInspector() );
 		nestedPipeline.setWidgetBuilder( getWidgetBuilder() );
 		nestedPipeline.setLayout( getLayout() );
+		nestedPipeline.setPipelineListener( mPipelineListener );
+		nestedPipeline.mDepth = mDepth + 1;
+		nestedPipeline.setReuseNestedInspectionResults( mReuseNestedInspectionResults );
+
+		if ( mInspectionNode == null || attributes == null ) {
+			nestedPipeline.mNestedInspectionNode = null;
+			nestedPipeline.mFirstNestedInspection = false;
+		} else {
+			nestedPipeline.mNestedInspectionNode = mInspectionNode.getChild( attributes.get( NAME ) );
+			nestedPipeline.mFirstNestedInspection = true;
+		}
 
 		if ( mInspectionResultProcessors == null ) {
 			nestedPipeline.mInspectionResultProcessors = null;
@@ -543,7 +665,10 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 						attributes.remove( READ_ONLY );
 					}
 
+					M pipelineOwner = getPipelineOwner();
+					Object token = startStage( PipelineStage.BUILD_NESTED_METAWIDGET, pipelineOwner );
 					widget = buildNestedMetawidget( attributes );
+					endStage( PipelineStage.BUILD_NESTED_METAWIDGET, pipelineOwner, token, widget );
 				}
 
 				Map<String, String> additionalAttributes = getAdditionalAttributes( widget );
@@ -592,6 +717,60 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 
 	protected abstract void configure();
 
+	/**
+	 * Reports the start of a stage to the PipelineListener, if any. For use by subclasses that
+	 * override a stage, such as <code>processInspectionResult</code>.
+	 *
+	 * @return the token to pass to <code>endStage</code>
+	 */
+
+	protected Object startStage( PipelineStage stage, Object component ) {
+
+		if ( mPipelineListener == null ) {
+			return null;
+		}
+
+		return mPipelineListener.stageStarted( stage, component, mDepth );
+	}
+
+	/**
+	 * Reports the end of a stage to the PipelineListener, if any.
+	 */
+
+	protected void endStage( PipelineStage stage, Object component, Object token, Object result ) {
+
+		if ( mPipelineListener == null ) {
+			return;
+		}
+
+		mPipelineListener.stageEnded( stage, component, mDepth, token, result );
+	}
+
+	/**
+	 * Runs the Inspector, reporting it to the PipelineListener.
+	 * <p>
+	 * Subclasses may override this method to report the Inspector in finer detail, such as each of
+	 * the sub-Inspectors of a <code>CompositeInspector</code>.
+	 *
+	 * @return the inspection result, as either a String or an element
+	 */
+
+	protected Object runInspector( Object toInspect, String type, String... names ) {
+
+		Object inspectionResult;
+		Object token = startStage( PipelineStage.INSPECT, mInspector );
+
+		if ( mInspector instanceof DomInspector<?> ) {
+			inspectionResult = ( (DomInspector<?>) mInspector ).inspectAsDom( toInspect, type, names );
+		} else {
+			inspectionResult = mInspector.inspect( toInspect, type, names );
+		}
+
+		endStage( PipelineStage.INSPECT, mInspector, token, inspectionResult );
+
+		return inspectionResult;
+	}
+
 	protected void startBuild() {
 
 		M pipelineOwner = getPipelineOwner();
@@ -633,6 +812,8 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 			M pipelineOwner = getPipelineOwner();
 
 			for ( InspectionResultProcessor<M> inspectionResultProcessor : mInspectionResultProcessors ) {
+				Object token = startStage( PipelineStage.PROCESS_INSPECTION_RESULT, inspectionResultProcessor );
+
 				if ( inspectionResultProcessor instanceof DomInspectionResultProcessor<?, ?> ) {
 					if ( inspectionResultToProcess instanceof String ) {
 						inspectionResultToProcess = stringToElement( (String) inspectionResultToProcess );
@@ -648,6 +829,8 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 					inspectionResultToProcess = inspectionResultProcessor.processInspectionResult( (String) inspectionResultToProcess, pipelineOwner, toInspect, type, names );
 				}
 
+				endStage( PipelineStage.PROCESS_INSPECTION_RESULT, inspectionResultProcessor, token, inspectionResultToProcess );
+
 				// An InspectionResultProcessor could return null to cancel the
 				// inspection
 
@@ -681,8 +864,12 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 			return null;
 		}
 
-		return mWidgetBuilder.buildWidget( elementName, attributes,
-				getPipelineOwner() );
+		if ( mPipelineListener == null ) {
+			return mWidgetBuilder.buildWidget( elementName, attributes,
+					getPipelineOwner() );
+		}
+
+		return buildWidget( mWidgetBuilder, elementName, attributes, getPipelineOwner() );
 	}
 
 	/**
@@ -697,7 +884,9 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 			M pipelineOwner = getPipelineOwner();
 
 			for ( WidgetProcessor<W, M> widgetProcessor : mWidgetProcessors ) {
+				Object token = startStage( PipelineStage.PROCESS_WIDGET, widgetProcessor );
 				processedWidget = widgetProcessor.processWidget( processedWidget, elementName, attributes, pipelineOwner );
+				endStage( PipelineStage.PROCESS_WIDGET, widgetProcessor, token, processedWidget );
 
 				// A WidgetProcessor could return null to cancel the widget
 
@@ -723,7 +912,9 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 
 		M pipelineOwner = getPipelineOwner();
 
+		Object token = startStage( PipelineStage.LAYOUT_WIDGET, mLayout );
 		mLayout.layoutWidget( widget, elementName, attributes, pipelineOwner, pipelineOwner );
+		endStage( PipelineStage.LAYOUT_WIDGET, mLayout, token, null );
 	}
 
 	protected void endBuild() {
@@ -751,4 +942,135 @@ public abstract class BasePipeline<W, C extends W, E, M extends C> {
 			( (AdvancedWidgetBuilder<W, M>) mWidgetBuilder ).onEndBuild( pipelineOwner );
 		}
 	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Builds a widget, reporting it to the PipelineListener.
+	 * <p>
+	 * Note: for a plain <code>CompositeWidgetBuilder</code>, this bypasses
+	 * <code>CompositeWidgetBuilder.buildWidget</code>. Instead its WidgetBuilders are tried directly
+	 * (in the same order, stopping at the first non-null widget, as
+	 * <code>CompositeWidgetBuilder.buildWidget</code> would) and reported individually, so that the
+	 * PipelineListener can tell which one built the widget. Subclasses of
+	 * <code>CompositeWidgetBuilder</code> may have overridden <code>buildWidget</code>, so are
+	 * called (and reported) as a whole.
+	 */
+
+	@SuppressWarnings( "unchecked" )
+	private W buildWidget( WidgetBuilder<W, M> widgetBuilder, String elementName, Map<String, String> attributes, M pipelineOwner ) {
+
+		if ( widgetBuilder.getClass() == CompositeWidgetBuilder.class ) {
+			for ( WidgetBuilder<W, M> compositeWidgetBuilder : ( (CompositeWidgetBuilder<W, M>) widgetBuilder ).getWidgetBuilders() ) {
+				W widget = buildWidget( compositeWidgetBuilder, elementName, attributes, pipelineOwner );
+
+				if ( widget != null ) {
+					return widget;
+				}
+			}
+
+			return null;
+		}
+
+		Object token = startStage( PipelineStage.BUILD_WIDGET, widgetBuilder );
+		W widget = widgetBuilder.buildWidget( elementName, attributes, pipelineOwner );
+		endStage( PipelineStage.BUILD_WIDGET, widgetBuilder, token, widget );
+
+		return widget;
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * A node in a tree of nested inspection results, kept so that rebuilds can reuse them.
+	 */
+
+	private static class InspectionNode<E> {
+
+		//
+		// Private members
+		//
+
+		private E									mInspectionResult;
+
+		private Object								mToInspect;
+
+		private String								mType;
+
+		private String[]							mNames;
+
+		private Map<String, InspectionNode<E>>		mChildren;
+
+		//
+		// Constructor
+		//
+
+		public InspectionNode( E inspectionResult ) {
+
+			mInspectionResult = inspectionResult;
+		}
+
+		//
+		// Public methods
+		//
+
+		public boolean isInspectionResult( E inspectionResult ) {
+
+			return ( mInspectionResult == inspectionResult );
+		}
+
+		/**
+		 * @return the inspection result, or null if it was not for the given inspection
+		 */
+
+		public E getInspectionResult( Object toInspect, String type, String... names ) {
+
+			if ( mInspectionResult == null || mToInspect != toInspect || !ObjectUtils.nullSafeEquals( type, mType ) || !Arrays.equals( names, mNames ) ) {
+				return null;
+			}
+
+			return mInspectionResult;
+		}
+
+		/**
+		 * Sets a fresh inspection result, discarding the subtree of the previous one.
+		 */
+
+		public void setInspectionResult( E inspectionResult, Object toInspect, String type, String... names ) {
+
+			mInspectionResult = inspectionResult;
+			mToInspect = toInspect;
+			mType = type;
+			mChildren = null;
+
+			// (defensive copy, as varargs arrays can be reused by the caller)
+
+			if ( names == null ) {
+				mNames = null;
+			} else {
+				mNames = new String[names.length];
+				System.arraycopy( names, 0, mNames, 0, names.length );
+			}
+		}
+
+		public InspectionNode<E> getChild( String name ) {
+
+			if ( mChildren == null ) {
+				mChildren = new HashMap<String, InspectionNode<E>>();
+			}
+
+			InspectionNode<E> child = mChildren.get( name );
+
+			if ( child == null ) {
+				child = new InspectionNode<E>( null );
+				mChildren.put( name, child );
+			}
+
+			return child;
+		}
+	}
 }
@@ -0,0 +1,67 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.base;
+
+/**
+ * Listener for the stages of a <code>BasePipeline</code>, for profiling or metrics.
+ * <p>
+ * Each stage is reported as a <code>stageStarted</code>/<code>stageEnded</code> pair, once per
+ * component (each Inspector, InspectionResultProcessor, WidgetBuilder, WidgetProcessor and Layout)
+ * run. Pairs nest: a nested Metawidget's stages are reported inside its parent's
+ * <code>BUILD_NESTED_METAWIDGET</code> stage. Rather than keeping its own stack,
+ * <code>stageStarted</code> can return a token (such as a start time) that is handed back to the
+ * matching <code>stageEnded</code>.
+ * <p>
+ * If a component throws an exception, its <code>stageEnded</code> is not called.
+ * <p>
+ * PipelineListeners are shared with nested pipelines (see
+ * <code>BasePipeline.initNestedPipeline</code>) so, like other parts of the pipeline, they should
+ * be immutable or Thread-safe. This interface is deliberately free of timing APIs, so that it can
+ * be used client-side in GWT. Implementations such as
+ * <code>org.metawidget.pipeline.metrics.MetricsPipelineListener</code> do their own timing.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public interface PipelineListener {
+
+	//
+	// Methods
+	//
+
+	/**
+	 * Called before a component of the pipeline runs.
+	 *
+	 * @param stage
+	 *            the stage of the pipeline
+	 * @param component
+	 *            the Inspector, InspectionResultProcessor, WidgetBuilder, WidgetProcessor or Layout
+	 *            about to run (or, for <code>BUILD_NESTED_METAWIDGET</code>, the parent
+	 *            Metawidget)
+	 * @param depth
+	 *            0 for the top-level Metawidget, 1 for a Metawidget nested inside it, and so on
+	 * @return a token to pass to the matching <code>stageEnded</code>. May be null
+	 */
+
+	Object stageStarted( PipelineStage stage, Object component, int depth );
+
+	/**
+	 * Called after a component of the pipeline has run.
+	 *
+	 * @param token
+	 *            the token returned by the matching <code>stageStarted</code>
+	 * @param result
+	 *            what the component returned (see <code>PipelineStage</code>). May be null
+	 */
+
+	void stageEnded( PipelineStage stage, Object component, int depth, Object token, Object result );
+}
@@ -0,0 +1,67 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.base;
+
+/**
+ * Stages of <code>BasePipeline</code> reported to a <code>PipelineListener</code>.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public enum PipelineStage {
+
+	/**
+	 * An <code>Inspector</code> inspecting. The result is the inspection result (a String or a DOM
+	 * element), or null if there was nothing to inspect. Pipelines that support
+	 * <code>CompositeInspector</code> (such as <code>W3CPipeline</code>) report its sub-Inspectors
+	 * individually.
+	 */
+
+	INSPECT,
+
+	/**
+	 * An <code>InspectionResultProcessor</code> processing. The result is the processed inspection
+	 * result, or null if the processor cancelled the inspection.
+	 */
+
+	PROCESS_INSPECTION_RESULT,
+
+	/**
+	 * A <code>WidgetBuilder</code> building. The result is the widget, or null if this
+	 * <code>WidgetBuilder</code> declined to build one. The WidgetBuilders inside a
+	 * <code>CompositeWidgetBuilder</code> are reported individually, so the one that returns a
+	 * widget is the one that 'won'.
+	 */
+
+	BUILD_WIDGET,
+
+	/**
+	 * Building a nested Metawidget, because no <code>WidgetBuilder</code> returned a widget. The
+	 * component is the pipeline owner (ie. the parent Metawidget) and the result is the nested
+	 * Metawidget. The nested Metawidget's own stages are reported in between, one level deeper.
+	 */
+
+	BUILD_NESTED_METAWIDGET,
+
+	/**
+	 * A <code>WidgetProcessor</code> processing. The result is the processed widget, or null if the
+	 * processor cancelled the widget.
+	 */
+
+	PROCESS_WIDGET,
+
+	/**
+	 * A <code>Layout</code> laying out a widget. The result is always null.
+	 */
+
+	LAYOUT_WIDGET
+}
@@ -0,0 +1,807 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.compact;
+
+import java.io.StringReader;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.XmlUtils;
+import org.metawidget.util.simple.ObjectUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compact, immutable element of an inspection result.
+ * <p>
+ * An alternative to <code>org.w3c.dom.Element</code> for use by <code>CompactPipeline</code>.
+ * Attributes are held as flat arrays of (interned) names and values, and exposed through a
+ * read-only <code>Map</code> view rather than being copied. Elements cannot be modified once
+ * constructed, so may be freely shared between threads and between Metawidgets.
+ * <p>
+ * Note: because elements are constructed bottom-up, a child's link to its parent cannot be
+ * <code>final</code>. It is assigned exactly once, by the parent's constructor, before the parent is
+ * published. All other fields are <code>final</code>.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public final class CompactElement {
+
+	//
+	// Private statics
+	//
+
+	private static final String[]			EMPTY_STRINGS	= new String[0];
+
+	private static final CompactElement[]	EMPTY_CHILDREN	= new CompactElement[0];
+
+	private static final String				XMLNS			= "xmlns";
+
+	private static final String				XMLNS_URI		= "http://www.w3.org/2000/xmlns/";
+
+	private static final String				NAME			= "name";
+
+	private static final SAXParserFactory	SAX_PARSER_FACTORY;
+
+	static {
+		SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+		SAX_PARSER_FACTORY.setNamespaceAware( false );
+		SAX_PARSER_FACTORY.setValidating( false );
+	}
+
+	private static final Queue<SAXParser>	SAX_PARSERS		= new ConcurrentLinkedQueue<SAXParser>();
+
+	//
+	// Private members
+	//
+
+	private final String					mName;
+
+	private final String[]					mAttributeNames;
+
+	private final String[]					mAttributeValues;
+
+	private final CompactElement[]			mChildren;
+
+	private final Map<String, String>		mAttributes;
+
+	/**
+	 * Parent of this element, assigned once by the parent's constructor (see class javadoc).
+	 */
+
+	private CompactElement					mParent;
+
+	/**
+	 * Index of this element within its parent's children, assigned with <code>mParent</code>.
+	 */
+
+	private int								mIndexInParent;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Constructs a new CompactElement.
+	 *
+	 * @param name
+	 *            the element name, such as <code>entity</code> or <code>property</code>
+	 * @param attributeNames
+	 *            attribute names, in order. May be null
+	 * @param attributeValues
+	 *            attribute values, in the same order as attributeNames. May be null
+	 * @param children
+	 *            child elements. Each may only belong to one parent
+	 */
+
+	public CompactElement( String name, String[] attributeNames, String[] attributeValues, CompactElement... children ) {
+
+		this( copyOf( children ), name.intern(), internAll( attributeNames ), copyOf( attributeValues ) );
+	}
+
+	/**
+	 * Constructs a new CompactElement without defensively copying (or interning) its arguments.
+	 */
+
+	private CompactElement( CompactElement[] children, String name, String[] attributeNames, String[] attributeValues ) {
+
+		if ( attributeNames.length != attributeValues.length ) {
+			throw new IllegalArgumentException( "Element '" + name + "' has " + attributeNames.length + " attribute names but " + attributeValues.length + " attribute values" );
+		}
+
+		mName = name;
+		mAttributeNames = attributeNames;
+		mAttributeValues = attributeValues;
+		mChildren = children;
+		mAttributes = new AttributesView();
+
+		for ( int loop = 0, length = children.length; loop < length; loop++ ) {
+			CompactElement child = children[loop];
+
+			if ( child.mParent != null ) {
+				throw new IllegalArgumentException( "Child element #" + ( loop + 1 ) + " already belongs to a '" + child.mParent.mName + "'" );
+			}
+
+			child.mParent = this;
+			child.mIndexInParent = loop;
+		}
+	}
+
+	//
+	// Public statics
+	//
+
+	/**
+	 * Parses the given XML into a CompactElement, without going through a DOM.
+	 *
+	 * @return the root element, or null if xml was null
+	 */
+
+	public static CompactElement fromString( String xml ) {
+
+		if ( xml == null ) {
+			return null;
+		}
+
+		try {
+			SAXParser saxParser = SAX_PARSERS.poll();
+
+			if ( saxParser == null ) {
+				synchronized ( SAX_PARSER_FACTORY ) {
+					saxParser = SAX_PARSER_FACTORY.newSAXParser();
+				}
+			}
+
+			CompactElementHandler handler = new CompactElementHandler();
+			XMLReader xmlReader = saxParser.getXMLReader();
+			xmlReader.setContentHandler( handler );
+			xmlReader.setEntityResolver( handler );
+			xmlReader.setErrorHandler( handler );
+			xmlReader.parse( new InputSource( new StringReader( xml ) ) );
+
+			// Only pool SAXParsers that parsed successfully
+
+			SAX_PARSERS.offer( saxParser );
+
+			return handler.getRoot();
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Converts the given DOM Element (and its child Elements) into a CompactElement.
+	 *
+	 * @return the converted element, or null if element was null
+	 */
+
+	public static CompactElement fromElement( Element element ) {
+
+		if ( element == null ) {
+			return null;
+		}
+
+		return fromElement( element, null );
+	}
+
+	//
+	// Public methods
+	//
+
+	public String getName() {
+
+		return mName;
+	}
+
+	public int getAttributeCount() {
+
+		return mAttributeNames.length;
+	}
+
+	public String getAttributeName( int index ) {
+
+		return mAttributeNames[index];
+	}
+
+	public String getAttributeValue( int index ) {
+
+		return mAttributeValues[index];
+	}
+
+	/**
+	 * Gets the value of the given attribute.
+	 *
+	 * @return the attribute value, or null if there is no such attribute (unlike
+	 *         <code>org.w3c.dom.Element.getAttribute</code>, which returns an empty String)
+	 */
+
+	public String getAttribute( String name ) {
+
+		int index = indexOfAttribute( name );
+
+		if ( index == -1 ) {
+			return null;
+		}
+
+		return mAttributeValues[index];
+	}
+
+	public boolean hasAttribute( String name ) {
+
+		return ( indexOfAttribute( name ) != -1 );
+	}
+
+	/**
+	 * Gets the attributes of this element as a read-only Map.
+	 * <p>
+	 * The Map is a view over this element's attributes, not a copy. It preserves attribute order.
+	 */
+
+	public Map<String, String> getAttributes() {
+
+		return mAttributes;
+	}
+
+	public int getChildCount() {
+
+		return mChildren.length;
+	}
+
+	public CompactElement getChild( int index ) {
+
+		return mChildren[index];
+	}
+
+	/**
+	 * @return the first child element, or null if there are no children
+	 */
+
+	public CompactElement getFirstChild() {
+
+		if ( mChildren.length == 0 ) {
+			return null;
+		}
+
+		return mChildren[0];
+	}
+
+	/**
+	 * @return the next sibling element, or null if this is the last child (or has no parent)
+	 */
+
+	public CompactElement getNextSibling() {
+
+		if ( mParent == null ) {
+			return null;
+		}
+
+		int nextIndex = mIndexInParent + 1;
+
+		if ( nextIndex == mParent.mChildren.length ) {
+			return null;
+		}
+
+		return mParent.mChildren[nextIndex];
+	}
+
+	/**
+	 * @return the parent element, or null if this is a root element
+	 */
+
+	public CompactElement getParent() {
+
+		return mParent;
+	}
+
+	/**
+	 * Converts this element (and its children) into a DOM Element, for use by components that only
+	 * understand <code>org.w3c.dom</code>.
+	 * <p>
+	 * The returned Element is the document element of a new <code>Document</code>.
+	 */
+
+	public Element toElement() {
+
+		Document document = XmlUtils.newDocument();
+		Element element = toElement( document, null );
+		document.appendChild( element );
+
+		return element;
+	}
+
+	/**
+	 * Serializes this element (and its children) to XML, in the same form as
+	 * <code>XmlUtils.nodeToString( node, false )</code>.
+	 */
+
+	@Override
+	public String toString() {
+
+		StringBuilder builder = new StringBuilder();
+		toString( builder );
+
+		return builder.toString();
+	}
+
+	//
+	// Private statics
+	//
+
+	private static CompactElement fromElement( Element element, String parentNamespace ) {
+
+		NamedNodeMap attributes = element.getAttributes();
+		int attributesLength = attributes.getLength();
+
+		// Elements created through createElementNS carry their namespace, rather than an @xmlns
+
+		String namespace = element.getNamespaceURI();
+		boolean addXmlns = ( namespace != null && !namespace.equals( parentNamespace ) && !element.hasAttribute( XMLNS ) );
+
+		int offset = ( addXmlns ? 1 : 0 );
+		String[] attributeNames = newStrings( attributesLength + offset );
+		String[] attributeValues = newStrings( attributesLength + offset );
+
+		if ( addXmlns ) {
+			attributeNames[0] = XMLNS;
+			attributeValues[0] = namespace;
+		}
+
+		for ( int loop = 0; loop < attributesLength; loop++ ) {
+			Node attribute = attributes.item( loop );
+			attributeNames[loop + offset] = attribute.getNodeName().intern();
+			attributeValues[loop + offset] = attribute.getNodeValue();
+		}
+
+		List<CompactElement> children = null;
+
+		for ( Element child = XmlUtils.getFirstChildElement( element ); child != null; child = XmlUtils.getNextSiblingElement( child ) ) {
+
+			if ( children == null ) {
+				children = CollectionUtils.newArrayList();
+			}
+
+			children.add( fromElement( child, namespace ) );
+		}
+
+		return new CompactElement( toArray( children ), element.getNodeName().intern(), attributeNames, attributeValues );
+	}
+
+	private static String[] internAll( String[] strings ) {
+
+		if ( strings == null ) {
+			return EMPTY_STRINGS;
+		}
+
+		String[] interned = new String[strings.length];
+
+		for ( int loop = 0, length = strings.length; loop < length; loop++ ) {
+			interned[loop] = strings[loop].intern();
+		}
+
+		return interned;
+	}
+
+	private static String[] copyOf( String[] strings ) {
+
+		if ( strings == null || strings.length == 0 ) {
+			return EMPTY_STRINGS;
+		}
+
+		return strings.clone();
+	}
+
+	private static CompactElement[] copyOf( CompactElement[] children ) {
+
+		if ( children == null || children.length == 0 ) {
+			return EMPTY_CHILDREN;
+		}
+
+		return children.clone();
+	}
+
+	/* package private */static String[] newStrings( int length ) {
+
+		if ( length == 0 ) {
+			return EMPTY_STRINGS;
+		}
+
+		return new String[length];
+	}
+
+	/* package private */static CompactElement[] toArray( List<CompactElement> children ) {
+
+		if ( children == null || children.isEmpty() ) {
+			return EMPTY_CHILDREN;
+		}
+
+		return children.toArray( new CompactElement[children.size()] );
+	}
+
+	//
+	// Private methods
+	//
+
+	private int indexOfAttribute( String name ) {
+
+		String[] attributeNames = mAttributeNames;
+		int length = attributeNames.length;
+
+		// Names are interned, so try an identity match first
+
+		for ( int loop = 0; loop < length; loop++ ) {
+			if ( attributeNames[loop] == name ) {
+				return loop;
+			}
+		}
+
+		for ( int loop = 0; loop < length; loop++ ) {
+			if ( attributeNames[loop].equals( name ) ) {
+				return loop;
+			}
+		}
+
+		return -1;
+	}
+
+	private Element toElement( Document document, String parentNamespace ) {
+
+		String namespace = getAttribute( XMLNS );
+
+		if ( namespace == null ) {
+			namespace = parentNamespace;
+		}
+
+		Element element = document.createElementNS( namespace, mName );
+
+		for ( int loop = 0, length = mAttributeNames.length; loop < length; loop++ ) {
+			String attributeName = mAttributeNames[loop];
+
+			if ( XMLNS.equals( attributeName ) || attributeName.startsWith( XMLNS + ":" ) ) {
+				element.setAttributeNS( XMLNS_URI, attributeName, mAttributeValues[loop] );
+				continue;
+			}
+
+			element.setAttribute( attributeName, mAttributeValues[loop] );
+		}
+
+		for ( CompactElement child : mChildren ) {
+			element.appendChild( child.toElement( document, namespace ) );
+		}
+
+		return element;
+	}
+
+	private void toString( StringBuilder builder ) {
+
+		builder.append( "<" );
+		builder.append( XmlUtils.escapeForXml( mName ) );
+
+		// Namespace first, then name first for easy unit tests (consistent with
+		// XmlUtils.nodeToString)
+
+		appendAttribute( builder, XMLNS );
+		appendAttribute( builder, NAME );
+
+		for ( int loop = 0, length = mAttributeNames.length; loop < length; loop++ ) {
+			String attributeName = mAttributeNames[loop];
+
+			if ( XMLNS.equals( attributeName ) || NAME.equals( attributeName ) ) {
+				continue;
+			}
+
+			builder.append( " " );
+			builder.append( XmlUtils.escapeForXml( attributeName ) );
+			builder.append( "=\"" );
+			builder.append( XmlUtils.escapeForXml( mAttributeValues[loop] ) );
+			builder.append( "\"" );
+		}
+
+		if ( mChildren.length == 0 ) {
+			builder.append( "/>" );
+			return;
+		}
+
+		builder.append( ">" );
+
+		for ( CompactElement child : mChildren ) {
+			child.toString( builder );
+		}
+
+		builder.append( "</" );
+		builder.append( XmlUtils.escapeForXml( mName ) );
+		builder.append( ">" );
+	}
+
+	private void appendAttribute( StringBuilder builder, String attributeName ) {
+
+		String value = getAttribute( attributeName );
+
+		if ( value == null ) {
+			return;
+		}
+
+		builder.append( " " );
+		builder.append( attributeName );
+		builder.append( "=\"" );
+		builder.append( XmlUtils.escapeForXml( value ) );
+		builder.append( "\"" );
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * Read-only Map view over a CompactElement's attribute arrays.
+	 */
+
+	private class AttributesView
+		extends AbstractMap<String, String> {
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public int size() {
+
+			return mAttributeNames.length;
+		}
+
+		@Override
+		public boolean containsKey( Object key ) {
+
+			if ( !( key instanceof String ) ) {
+				return false;
+			}
+
+			return hasAttribute( (String) key );
+		}
+
+		@Override
+		public String get( Object key ) {
+
+			if ( !( key instanceof String ) ) {
+				return null;
+			}
+
+			return getAttribute( (String) key );
+		}
+
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+
+			return new AbstractSet<Map.Entry<String, String>>() {
+
+				@Override
+				public int size() {
+
+					return mAttributeNames.length;
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+
+					return new Iterator<Map.Entry<String, String>>() {
+
+						private int	mIndex;
+
+						public boolean hasNext() {
+
+							return ( mIndex < mAttributeNames.length );
+						}
+
+						public Map.Entry<String, String> next() {
+
+							if ( !hasNext() ) {
+								throw new NoSuchElementException();
+							}
+
+							return new AttributeEntry( mIndex++ );
+						}
+
+						public void remove() {
+
+							throw new UnsupportedOperationException( "CompactElement attributes are read-only" );
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/**
+	 * Read-only Map.Entry for a single attribute.
+	 */
+
+	private class AttributeEntry
+		implements Map.Entry<String, String> {
+
+		//
+		// Private members
+		//
+
+		private final int	mIndex;
+
+		//
+		// Constructor
+		//
+
+		public AttributeEntry( int index ) {
+
+			mIndex = index;
+		}
+
+		//
+		// Public methods
+		//
+
+		public String getKey() {
+
+			return mAttributeNames[mIndex];
+		}
+
+		public String getValue() {
+
+			return mAttributeValues[mIndex];
+		}
+
+		public String setValue( String value ) {
+
+			throw new UnsupportedOperationException( "CompactElement attributes are read-only" );
+		}
+
+		@Override
+		public boolean equals( Object that ) {
+
+			if ( !( that instanceof Map.Entry<?, ?> ) ) {
+				return false;
+			}
+
+			Map.Entry<?, ?> thatEntry = (Map.Entry<?, ?>) that;
+			return ObjectUtils.nullSafeEquals( getKey(), thatEntry.getKey() ) && ObjectUtils.nullSafeEquals( getValue(), thatEntry.getValue() );
+		}
+
+		@Override
+		public int hashCode() {
+
+			// As per the Map.Entry contract
+
+			return ObjectUtils.nullSafeHashCode( getKey() ) ^ ObjectUtils.nullSafeHashCode( getValue() );
+		}
+
+		@Override
+		public String toString() {
+
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	/**
+	 * SAX handler that builds a CompactElement tree directly, without an intermediate DOM.
+	 * <p>
+	 * Attribute names are interned, and identical attribute values within the same document share
+	 * a single String instance.
+	 */
+
+	private static class CompactElementHandler
+		extends DefaultHandler {
+
+		//
+		// Private members
+		//
+
+		private final List<String>					mNameStack				= CollectionUtils.newArrayList();
+
+		private final List<String[]>				mAttributeNamesStack	= CollectionUtils.newArrayList();
+
+		private final List<String[]>				mAttributeValuesStack	= CollectionUtils.newArrayList();
+
+		private final List<List<CompactElement>>	mChildrenStack			= CollectionUtils.newArrayList();
+
+		private final Map<String, String>			mValues					= CollectionUtils.newHashMap();
+
+		private CompactElement						mRoot;
+
+		//
+		// Public methods
+		//
+
+		public CompactElement getRoot() {
+
+			return mRoot;
+		}
+
+		@Override
+		public void startElement( String uri, String localName, String qName, Attributes attributes ) {
+
+			int length = attributes.getLength();
+			String[] attributeNames = newStrings( length );
+			String[] attributeValues = newStrings( length );
+
+			for ( int loop = 0; loop < length; loop++ ) {
+				attributeNames[loop] = attributes.getQName( loop ).intern();
+				attributeValues[loop] = shareValue( attributes.getValue( loop ) );
+			}
+
+			mNameStack.add( qName.intern() );
+			mAttributeNamesStack.add( attributeNames );
+			mAttributeValuesStack.add( attributeValues );
+			mChildrenStack.add( null );
+		}
+
+		@Override
+		public void endElement( String uri, String localName, String qName ) {
+
+			int last = mNameStack.size() - 1;
+			CompactElement element = new CompactElement( toArray( mChildrenStack.remove( last ) ), mNameStack.remove( last ), mAttributeNamesStack.remove( last ), mAttributeValuesStack.remove( last ) );
+
+			if ( last == 0 ) {
+				mRoot = element;
+				return;
+			}
+
+			List<CompactElement> siblings = mChildrenStack.get( last - 1 );
+
+			if ( siblings == null ) {
+				siblings = CollectionUtils.newArrayList();
+				mChildrenStack.set( last - 1, siblings );
+			}
+
+			siblings.add( element );
+		}
+
+		/**
+		 * Do not make URL connections for external entities.
+		 */
+
+		@Override
+		public InputSource resolveEntity( String publicId, String systemId ) {
+
+			return new InputSource( new StringReader( "" ) );
+		}
+
+		//
+		// Private methods
+		//
+
+		private String shareValue( String value ) {
+
+			String shared = mValues.get( value );
+
+			if ( shared == null ) {
+				mValues.put( value, value );
+				return value;
+			}
+
+			return shared;
+		}
+	}
+}
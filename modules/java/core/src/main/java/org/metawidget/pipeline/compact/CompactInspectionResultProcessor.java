@@ -0,0 +1,31 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.compact;
+
+import org.metawidget.inspectionresultprocessor.iface.DomInspectionResultProcessor;
+
+/**
+ * Processes the given inspection result as a <code>CompactElement</code>.
+ * <p>
+ * <code>CompactPipeline</code> hands a <code>DomInspectionResultProcessor</code> an
+ * <code>org.w3c.dom.Element</code>, because that is what existing implementations expect.
+ * InspectionResultProcessors that implement this interface instead are handed the
+ * <code>CompactElement</code> directly, avoiding any conversion.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public interface CompactInspectionResultProcessor<M>
+	extends DomInspectionResultProcessor<CompactElement, M> {
+
+	// Marker interface
+}
@@ -0,0 +1,391 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.compact;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.metawidget.inspectionresultprocessor.iface.DomInspectionResultProcessor;
+import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessor;
+import org.metawidget.pipeline.base.PipelineStage;
+import org.metawidget.pipeline.config.ConfigurablePipeline;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.XmlUtils;
+import org.metawidget.util.simple.ObjectUtils;
+import org.w3c.dom.Element;
+
+/**
+ * Pipeline backed by compact, immutable <code>CompactElement</code>s rather than
+ * <code>org.w3c.dom</code>.
+ * <p>
+ * Inspection results are parsed straight into <code>CompactElement</code>s (without building a
+ * DOM), and <code>getAttributesAsMap</code> returns a copy-on-write view rather than copying every
+ * attribute for every widget. Existing components continue to work unchanged:
+ * <ul>
+ * <li><code>Inspectors</code> may return XML, an <code>org.w3c.dom.Element</code> (if they are a
+ * <code>DomInspector</code>) or a <code>CompactElement</code></li>
+ * <li><code>DomInspectionResultProcessors</code> are handed an <code>org.w3c.dom.Element</code>,
+ * unless they implement <code>CompactInspectionResultProcessor</code></li>
+ * <li>other <code>InspectionResultProcessors</code> are handed XML</li>
+ * </ul>
+ * Results are only converted between these forms when the next component requires it, so
+ * consecutive DOM-based InspectionResultProcessors share a single DOM.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public abstract class CompactPipeline<W, C extends W, M extends C>
+	extends ConfigurablePipeline<W, C, CompactElement, M> {
+
+	//
+	// Protected methods
+	//
+
+	/**
+	 * Overridden to adapt between XML, <code>org.w3c.dom.Element</code>s and
+	 * <code>CompactElement</code>s as each InspectionResultProcessor requires.
+	 *
+	 * @param inspectionResult
+	 *            may be a String of XML, an <code>org.w3c.dom.Element</code> or a
+	 *            <code>CompactElement</code>, depending on the Inspector
+	 */
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	protected CompactElement processInspectionResult( Object inspectionResult, Object toInspect, String type, String... names ) {
+
+		Object inspectionResultToProcess = inspectionResult;
+		List<InspectionResultProcessor<M>> inspectionResultProcessors = getInspectionResultProcessors();
+
+		if ( inspectionResultProcessors != null ) {
+			M pipelineOwner = getPipelineOwner();
+
+			for ( InspectionResultProcessor<M> inspectionResultProcessor : inspectionResultProcessors ) {
+				Object token = startStage( PipelineStage.PROCESS_INSPECTION_RESULT, inspectionResultProcessor );
+
+				if ( inspectionResultProcessor instanceof CompactInspectionResultProcessor<?> ) {
+					CompactInspectionResultProcessor<M> compactInspectionResultProcessor = (CompactInspectionResultProcessor<M>) inspectionResultProcessor;
+					inspectionResultToProcess = compactInspectionResultProcessor.processInspectionResultAsDom( toCompactElement( inspectionResultToProcess ), pipelineOwner, toInspect, type, names );
+				} else if ( inspectionResultProcessor instanceof DomInspectionResultProcessor<?, ?> ) {
+					DomInspectionResultProcessor<Element, M> domInspectionResultProcessor = (DomInspectionResultProcessor<Element, M>) inspectionResultProcessor;
+					inspectionResultToProcess = domInspectionResultProcessor.processInspectionResultAsDom( toW3CElement( inspectionResultToProcess ), pipelineOwner, toInspect, type, names );
+				} else {
+					inspectionResultToProcess = inspectionResultProcessor.processInspectionResult( toXml( inspectionResultToProcess ), pipelineOwner, toInspect, type, names );
+				}
+
+				endStage( PipelineStage.PROCESS_INSPECTION_RESULT, inspectionResultProcessor, token, inspectionResultToProcess );
+
+				// An InspectionResultProcessor could return null to cancel the
+				// inspection
+
+				if ( inspectionResultToProcess == null ) {
+					return null;
+				}
+			}
+		}
+
+		return toCompactElement( inspectionResultToProcess );
+	}
+
+	@Override
+	protected CompactElement stringToElement( String xml ) {
+
+		return CompactElement.fromString( xml );
+	}
+
+	@Override
+	protected String elementToString( CompactElement element ) {
+
+		if ( element == null ) {
+			return null;
+		}
+
+		return element.toString();
+	}
+
+	@Override
+	protected CompactElement getFirstChildElement( CompactElement parent ) {
+
+		return parent.getFirstChild();
+	}
+
+	@Override
+	protected CompactElement getNextSiblingElement( CompactElement element ) {
+
+		return element.getNextSibling();
+	}
+
+	@Override
+	protected String getElementName( CompactElement element ) {
+
+		return element.getName();
+	}
+
+	/**
+	 * Returns a mutable Map of the element's attributes, as <code>BasePipeline</code> and
+	 * WidgetBuilders expect. The Map reads through to the (immutable) element, and only copies its
+	 * attributes if it is actually modified.
+	 */
+
+	@Override
+	protected Map<String, String> getAttributesAsMap( CompactElement element ) {
+
+		return new CopyOnWriteAttributes( element.getAttributes() );
+	}
+
+	//
+	// Private methods
+	//
+
+	private CompactElement toCompactElement( Object inspectionResult ) {
+
+		if ( inspectionResult instanceof CompactElement ) {
+			return (CompactElement) inspectionResult;
+		}
+
+		if ( inspectionResult instanceof Element ) {
+			return CompactElement.fromElement( (Element) inspectionResult );
+		}
+
+		return stringToElement( (String) inspectionResult );
+	}
+
+	private Element toW3CElement( Object inspectionResult ) {
+
+		if ( inspectionResult instanceof Element ) {
+			return (Element) inspectionResult;
+		}
+
+		if ( inspectionResult instanceof CompactElement ) {
+			return ( (CompactElement) inspectionResult ).toElement();
+		}
+
+		return XmlUtils.documentFromString( (String) inspectionResult ).getDocumentElement();
+	}
+
+	private String toXml( Object inspectionResult ) {
+
+		if ( inspectionResult instanceof Element ) {
+			return XmlUtils.nodeToString( (Element) inspectionResult, false );
+		}
+
+		if ( inspectionResult instanceof CompactElement ) {
+			return elementToString( (CompactElement) inspectionResult );
+		}
+
+		return (String) inspectionResult;
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * Mutable Map that reads through to a read-only Map until it is first modified, whereupon it
+	 * takes a copy.
+	 * <p>
+	 * Most widgets never modify their attributes, so this saves copying every attribute of every
+	 * widget.
+	 */
+
+	/* package private */static class CopyOnWriteAttributes
+		extends AbstractMap<String, String> {
+
+		//
+		// Private members
+		//
+
+		private final Map<String, String>	mReadOnly;
+
+		private Map<String, String>			mCopy;
+
+		//
+		// Constructor
+		//
+
+		public CopyOnWriteAttributes( Map<String, String> readOnly ) {
+
+			mReadOnly = readOnly;
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public int size() {
+
+			return getDelegate().size();
+		}
+
+		@Override
+		public boolean containsKey( Object key ) {
+
+			return getDelegate().containsKey( key );
+		}
+
+		@Override
+		public String get( Object key ) {
+
+			return getDelegate().get( key );
+		}
+
+		@Override
+		public String put( String key, String value ) {
+
+			return getCopy().put( key, value );
+		}
+
+		@Override
+		public String remove( Object key ) {
+
+			if ( mCopy == null && !mReadOnly.containsKey( key ) ) {
+				return null;
+			}
+
+			return getCopy().remove( key );
+		}
+
+		@Override
+		public void putAll( Map<? extends String, ? extends String> map ) {
+
+			getCopy().putAll( map );
+		}
+
+		@Override
+		public void clear() {
+
+			getCopy().clear();
+		}
+
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+
+			if ( mCopy != null ) {
+				return mCopy.entrySet();
+			}
+
+			// Iterate the read-only Map, but copy if the iterator is used to modify
+
+			return new AbstractSet<Map.Entry<String, String>>() {
+
+				@Override
+				public int size() {
+
+					return CopyOnWriteAttributes.this.size();
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+
+					final Iterator<Map.Entry<String, String>> iterator = mReadOnly.entrySet().iterator();
+
+					return new Iterator<Map.Entry<String, String>>() {
+
+						private String	mLastKey;
+
+						public boolean hasNext() {
+
+							return iterator.hasNext();
+						}
+
+						public Map.Entry<String, String> next() {
+
+							final Map.Entry<String, String> entry = iterator.next();
+							mLastKey = entry.getKey();
+
+							return new Map.Entry<String, String>() {
+
+								public String getKey() {
+
+									return entry.getKey();
+								}
+
+								public String getValue() {
+
+									return CopyOnWriteAttributes.this.get( entry.getKey() );
+								}
+
+								public String setValue( String value ) {
+
+									return put( entry.getKey(), value );
+								}
+
+								@Override
+								public boolean equals( Object that ) {
+
+									if ( !( that instanceof Map.Entry<?, ?> ) ) {
+										return false;
+									}
+
+									Map.Entry<?, ?> thatEntry = (Map.Entry<?, ?>) that;
+									return ObjectUtils.nullSafeEquals( getKey(), thatEntry.getKey() ) && ObjectUtils.nullSafeEquals( getValue(), thatEntry.getValue() );
+								}
+
+								@Override
+								public int hashCode() {
+
+									// As per the Map.Entry contract
+
+									return ObjectUtils.nullSafeHashCode( getKey() ) ^ ObjectUtils.nullSafeHashCode( getValue() );
+								}
+
+								@Override
+								public String toString() {
+
+									return getKey() + "=" + getValue();
+								}
+							};
+						}
+
+						public void remove() {
+
+							if ( mLastKey == null ) {
+								throw new IllegalStateException();
+							}
+
+							getCopy().remove( mLastKey );
+							mLastKey = null;
+						}
+					};
+				}
+			};
+		}
+
+		//
+		// Private methods
+		//
+
+		private Map<String, String> getDelegate() {
+
+			if ( mCopy != null ) {
+				return mCopy;
+			}
+
+			return mReadOnly;
+		}
+
+		private Map<String, String> getCopy() {
+
+			if ( mCopy == null ) {
+				mCopy = CollectionUtils.newLinkedHashMap();
+				mCopy.putAll( mReadOnly );
+			}
+
+			return mCopy;
+		}
+	}
+}
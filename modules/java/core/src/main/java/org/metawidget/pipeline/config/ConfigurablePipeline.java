@@ -0,0 +1,281 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.config;
+
+import java.util.Map;
+
+import org.metawidget.config.iface.ConfigReader;
+import org.metawidget.config.impl.BaseConfigReader;
+import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessor;
+import org.metawidget.inspector.composite.CompositeInspector;
+import org.metawidget.inspector.composite.CompositeInspector.InspectorListener;
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.pipeline.base.BasePipeline;
+import org.metawidget.pipeline.base.PipelineStage;
+import org.metawidget.widgetprocessor.iface.WidgetProcessor;
+import org.w3c.dom.Element;
+
+/**
+ * Pipeline that configures itself using a <code>ConfigReader</code>.
+ * <p>
+ * Common base of <code>W3CPipeline</code> and <code>CompactPipeline</code>. It is kept out of
+ * <code>BasePipeline</code> because <code>ConfigReader</code> is not available to GWT.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public abstract class ConfigurablePipeline<W, C extends W, E, M extends C>
+	extends BasePipeline<W, C, E, M> {
+
+	//
+	// Private statics
+	//
+
+	private static ConfigReader	DEFAULT_CONFIG_READER;
+
+	//
+	// Private members
+	//
+
+	private ConfigReader		mConfigReader;
+
+	private Object				mConfig;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Gets the current <code>ConfigReader</code>, or creates a default one if one hasn't been set.
+	 * <p>
+	 * Subclasses wishing to set a different default should call <code>setConfigReader</code>. Care
+	 * should be taken to <em>reuse</em> the same <code>ConfigReader</code> instance as much as
+	 * possible, to maximize caching.
+	 */
+
+	public final ConfigReader getConfigReader() {
+
+		if ( mConfigReader == null ) {
+			mConfigReader = getDefaultConfigReader();
+		}
+
+		return mConfigReader;
+	}
+
+	public void setConfigReader( ConfigReader configReader ) {
+
+		mConfigReader = configReader;
+	}
+
+	/**
+	 * Reference to the configuration file. Typically this is a Resource path (e.g.
+	 * <code>com/myapp/metawidget.xml</code>), but can also be an id (e.g. for Android).
+	 */
+
+	public Object getConfig() {
+
+		return mConfig;
+	}
+
+	public void setConfig( Object config ) {
+
+		mConfig = config;
+		setNeedsConfiguring();
+	}
+
+	/**
+	 * Returns the first InspectionResultProcessor in this pipeline's list of
+	 * InspectionResultProcessors (ie. as added by <code>addInspectionResultProcessor</code>) that
+	 * the given class <code>isAssignableFrom</code>.
+	 * <p>
+	 * This method is here, rather than in <code>BasePipeline</code>, because even though
+	 * <code>GwtPipeline</code> overrides it the GWT compiler still chokes on the
+	 * <code>isAssignableFrom</code>.
+	 *
+	 * @param inspectionResultProcessorClass
+	 *            the class, or interface or superclass, to find. Returns <code>null</code> if no
+	 *            such InspectionResultProcessor
+	 * @param <T>
+	 *            the type of the InspectionResultProcessor. Note this needn't be a subclass of
+	 *            <code>InspectionResultProcessor</code>
+	 */
+
+	@SuppressWarnings( "unchecked" )
+	public <T> T getInspectionResultProcessor( Class<T> inspectionResultProcessorClass ) {
+
+		configureOnce();
+
+		if ( getInspectionResultProcessors() == null ) {
+			return null;
+		}
+
+		for ( InspectionResultProcessor<M> inspectionResultProcessor : getInspectionResultProcessors() ) {
+			if ( inspectionResultProcessorClass.isAssignableFrom( inspectionResultProcessor.getClass() ) ) {
+				return (T) inspectionResultProcessor;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the first WidgetProcessor in this pipeline's list of WidgetProcessors (ie. as added
+	 * by <code>addWidgetProcessor</code>) that the given class <code>isAssignableFrom</code>.
+	 * <p>
+	 * This method is here, rather than in <code>BasePipeline</code>, because even though
+	 * <code>GwtPipeline</code> overrides it the GWT compiler still chokes on the
+	 * <code>isAssignableFrom</code>.
+	 *
+	 * @param widgetProcessorClass
+	 *            the class, or interface or superclass, to find. Returns <code>null</code> if no
+	 *            such WidgetProcessor
+	 * @param <T>
+	 *            the type of the WidgetProcessor. Note this needn't be a subclass of
+	 *            <code>WidgetProcessor</code>. It may be some orthagonal interface (like
+	 *            <code>org.metawidget.faces.component.widgetprocessor.ConverterProcessor</code>)
+	 */
+
+	@SuppressWarnings( "unchecked" )
+	public <T> T getWidgetProcessor( Class<T> widgetProcessorClass ) {
+
+		configureOnce();
+
+		if ( getWidgetProcessors() == null ) {
+			return null;
+		}
+
+		for ( WidgetProcessor<W, M> widgetProcessor : getWidgetProcessors() ) {
+			if ( widgetProcessorClass.isAssignableFrom( widgetProcessor.getClass() ) ) {
+				return (T) widgetProcessor;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Overridden to support custom ConfigReaders.
+	 */
+
+	@Override
+	public void initNestedPipeline( BasePipeline<W, C, E, M> nestedPipeline, Map<String, String> attributes ) {
+
+		( (ConfigurablePipeline<W, C, E, M>) nestedPipeline ).setConfigReader( getConfigReader() );
+		super.initNestedPipeline( nestedPipeline, attributes );
+	}
+
+	//
+	// Protected methods
+	//
+
+	@Override
+	protected void configure() {
+
+		if ( mConfig != null ) {
+			getConfigReader().configure( (String) mConfig, getPipelineOwner() );
+		}
+
+		configureDefaults();
+	}
+
+	/**
+	 * @return the resource path to the default configuration file, or null if there is no default
+	 *         configuration.
+	 */
+
+	protected abstract String getDefaultConfiguration();
+
+	/**
+	 * Configure a default Inspector (<code>setInspector</code>),
+	 * list of InspectionResultProcessors (<code>setInspectionResultProcessors</code>),
+	 * WidgetBuilder (<code>setWidgetBuilder</code>), list of
+	 * WidgetProcessors (<code>setWidgetProcessors</code>) and a Layout (<code>setLayout</code>).
+	 */
+
+	protected void configureDefaults() {
+
+		String defaultConfiguration = getDefaultConfiguration();
+
+		if ( defaultConfiguration != null ) {
+
+			ConfigReader configReader = getConfigReader();
+
+			if ( getInspector() == null ) {
+				configReader.configure( defaultConfiguration, getPipelineOwner(), "inspector" );
+			}
+
+			if ( getInspectionResultProcessors() == null ) {
+				configReader.configure( defaultConfiguration, getPipelineOwner(), "inspectionResultProcessors" );
+			}
+
+			if ( getWidgetBuilder() == null ) {
+				configReader.configure( defaultConfiguration, getPipelineOwner(), "widgetBuilder" );
+			}
+
+			if ( getWidgetProcessors() == null ) {
+				configReader.configure( defaultConfiguration, getPipelineOwner(), "widgetProcessors" );
+			}
+
+			if ( getLayout() == null ) {
+				configReader.configure( defaultConfiguration, getPipelineOwner(), "layout" );
+			}
+		}
+	}
+
+	/**
+	 * Reports the sub-Inspectors of a <code>CompositeInspector</code> individually, so that the
+	 * PipelineListener can tell which one is slow. Most configurations use a
+	 * <code>CompositeInspector</code>, so otherwise every inspection would be reported as the same
+	 * single Inspector.
+	 */
+
+	@Override
+	protected Object runInspector( Object toInspect, String type, String... names ) {
+
+		Inspector inspector = getInspector();
+
+		if ( getPipelineListener() == null || !( inspector instanceof CompositeInspector ) ) {
+			return super.runInspector( toInspect, type, names );
+		}
+
+		return ( (CompositeInspector) inspector ).inspectAsDomAndReport( new InspectorListener() {
+
+			public Object inspectorStarted( Inspector subInspector ) {
+
+				return startStage( PipelineStage.INSPECT, subInspector );
+			}
+
+			public void inspectorEnded( Inspector subInspector, Object token, Element result ) {
+
+				endStage( PipelineStage.INSPECT, subInspector, token, result );
+			}
+		}, toInspect, type, names );
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Gets the default <code>ConfigReader</code> shared by all pipelines (of any element type) that
+	 * have not had one set, so that they all share the same cache.
+	 */
+
+	private static synchronized ConfigReader getDefaultConfigReader() {
+
+		if ( DEFAULT_CONFIG_READER == null ) {
+			DEFAULT_CONFIG_READER = new BaseConfigReader();
+		}
+
+		return DEFAULT_CONFIG_READER;
+	}
+}
@@ -0,0 +1,229 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.metawidget.iface.MetawidgetException;
+import org.metawidget.pipeline.base.PipelineListener;
+import org.metawidget.pipeline.base.PipelineStage;
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * PipelineListener that emits a Java Flight Recorder event for each stage of the pipeline.
+ * <p>
+ * Events are named <code>org.metawidget.PipelineStage</code> (in the 'Metawidget' category) and
+ * carry the <code>stage</code>, the <code>component</code> type, the nesting <code>depth</code> and
+ * whether the component <code>produced</code> a result (eg. whether a WidgetBuilder 'won'). As
+ * with other JFR events, their duration and thread are recorded automatically.
+ * <p>
+ * Metawidget supports Java 5, so this class binds to the <code>jdk.jfr</code> API (Java 9 and
+ * above) reflectively, using <code>jdk.jfr.EventFactory</code>. Use <code>isAvailable</code> to
+ * check for it. When no recording has enabled the event, <code>stageStarted</code> returns
+ * without creating anything.
+ * <p>
+ * <em>JfrPipelineListener is Thread-safe.</em>
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class JfrPipelineListener
+	implements PipelineListener {
+
+	//
+	// Public statics
+	//
+
+	public static final String	EVENT_NAME	= "org.metawidget.PipelineStage";
+
+	//
+	// Private statics
+	//
+
+	/**
+	 * Shared by all JfrPipelineListeners, because each <code>EventFactory.create</code> registers a
+	 * new event type with JFR (so creating one per instance would leak event types).
+	 */
+
+	private static JfrEvents	JFR_EVENTS;
+
+	//
+	// Private members
+	//
+
+	/* package private */final JfrEvents	mJfrEvents;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * @throws MetawidgetException
+	 *             if Java Flight Recorder is not available
+	 */
+
+	public JfrPipelineListener() {
+
+		mJfrEvents = getJfrEvents();
+	}
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * @return true if Java Flight Recorder's event API (Java 9 and above) is available
+	 */
+
+	public static boolean isAvailable() {
+
+		try {
+			Class.forName( "jdk.jfr.EventFactory" );
+			return true;
+		} catch ( Exception e ) {
+			return false;
+		}
+	}
+
+	public Object stageStarted( PipelineStage stage, Object component, int depth ) {
+
+		JfrEvents jfrEvents = mJfrEvents;
+
+		try {
+			if ( !( (Boolean) jfrEvents.mIsEnabled.invoke( jfrEvents.mEventType ) ) ) {
+				return null;
+			}
+
+			Object event = jfrEvents.mNewEvent.invoke( jfrEvents.mEventFactory );
+			jfrEvents.mBegin.invoke( event );
+
+			return event;
+		} catch ( Exception e ) {
+			throw MetawidgetException.newException( e );
+		}
+	}
+
+	public void stageEnded( PipelineStage stage, Object component, int depth, Object token, Object result ) {
+
+		if ( token == null ) {
+			return;
+		}
+
+		JfrEvents jfrEvents = mJfrEvents;
+
+		try {
+			jfrEvents.mEnd.invoke( token );
+
+			if ( !( (Boolean) jfrEvents.mShouldCommit.invoke( token ) ) ) {
+				return;
+			}
+
+			jfrEvents.mSet.invoke( token, 0, stage.name() );
+			jfrEvents.mSet.invoke( token, 1, ( component == null ? null : component.getClass().getName() ) );
+			jfrEvents.mSet.invoke( token, 2, depth );
+			jfrEvents.mSet.invoke( token, 3, result != null );
+			jfrEvents.mCommit.invoke( token );
+		} catch ( Exception e ) {
+			throw MetawidgetException.newException( e );
+		}
+	}
+
+	//
+	// Private methods
+	//
+
+	private static synchronized JfrEvents getJfrEvents() {
+
+		if ( JFR_EVENTS == null ) {
+			JFR_EVENTS = new JfrEvents();
+		}
+
+		return JFR_EVENTS;
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * The <code>jdk.jfr.EventFactory</code> for our event type, plus the reflective Methods needed to
+	 * create and commit its events.
+	 */
+
+	/* package private */static class JfrEvents {
+
+		//
+		// Private members
+		//
+
+		/* package private */final Object	mEventFactory;
+
+		/* package private */final Object	mEventType;
+
+		/* package private */final Method	mNewEvent;
+
+		/* package private */final Method	mIsEnabled;
+
+		/* package private */final Method	mBegin;
+
+		/* package private */final Method	mEnd;
+
+		/* package private */final Method	mShouldCommit;
+
+		/* package private */final Method	mSet;
+
+		/* package private */final Method	mCommit;
+
+		//
+		// Constructor
+		//
+
+		public JfrEvents() {
+
+			try {
+				Class<?> annotationElementClass = Class.forName( "jdk.jfr.AnnotationElement" );
+				Constructor<?> annotationElementConstructor = annotationElementClass.getConstructor( Class.class, Object.class );
+				List<Object> annotations = CollectionUtils.newArrayList();
+				annotations.add( annotationElementConstructor.newInstance( Class.forName( "jdk.jfr.Name" ), EVENT_NAME ) );
+				annotations.add( annotationElementConstructor.newInstance( Class.forName( "jdk.jfr.Label" ), "Metawidget Pipeline Stage" ) );
+				annotations.add( annotationElementConstructor.newInstance( Class.forName( "jdk.jfr.Category" ), new String[] { "Metawidget" } ) );
+				annotations.add( annotationElementConstructor.newInstance( Class.forName( "jdk.jfr.StackTrace" ), Boolean.FALSE ) );
+
+				// Fields (set by index in stageEnded, so order is significant)
+
+				Constructor<?> valueDescriptorConstructor = Class.forName( "jdk.jfr.ValueDescriptor" ).getConstructor( Class.class, String.class );
+				List<Object> fields = CollectionUtils.newArrayList();
+				fields.add( valueDescriptorConstructor.newInstance( String.class, "stage" ) );
+				fields.add( valueDescriptorConstructor.newInstance( String.class, "component" ) );
+				fields.add( valueDescriptorConstructor.newInstance( int.class, "depth" ) );
+				fields.add( valueDescriptorConstructor.newInstance( boolean.class, "produced" ) );
+
+				Class<?> eventFactoryClass = Class.forName( "jdk.jfr.EventFactory" );
+				mEventFactory = eventFactoryClass.getMethod( "create", List.class, List.class ).invoke( null, annotations, fields );
+				mEventType = eventFactoryClass.getMethod( "getEventType" ).invoke( mEventFactory );
+				mNewEvent = eventFactoryClass.getMethod( "newEvent" );
+				mIsEnabled = Class.forName( "jdk.jfr.EventType" ).getMethod( "isEnabled" );
+
+				Class<?> eventClass = Class.forName( "jdk.jfr.Event" );
+				mBegin = eventClass.getMethod( "begin" );
+				mEnd = eventClass.getMethod( "end" );
+				mShouldCommit = eventClass.getMethod( "shouldCommit" );
+				mSet = eventClass.getMethod( "set", int.class, Object.class );
+				mCommit = eventClass.getMethod( "commit" );
+			} catch ( Exception e ) {
+				throw MetawidgetException.newException( "Java Flight Recorder is not available", e );
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.metawidget.pipeline.base.PipelineListener;
+import org.metawidget.pipeline.base.PipelineStage;
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * PipelineListener that keeps counters and timing histograms (see <code>PipelineMetric</code>) per
+ * stage and per component type, for export to whatever monitoring system is in use.
+ * <p>
+ * For example:
+ * <p>
+ * <code>
+ * final MetricsPipelineListener metrics = new MetricsPipelineListener();<br/>
+ * SwingMetawidget metawidget = new SwingMetawidget() {<br/>
+ * &nbsp;&nbsp;&nbsp;protected Pipeline newPipeline() {<br/>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;Pipeline pipeline = super.newPipeline();<br/>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;pipeline.setPipelineListener( metrics );<br/>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;return pipeline;<br/>
+ * &nbsp;&nbsp;&nbsp;}<br/>
+ * };<br/>
+ * ...<br/>
+ * for ( PipelineMetric metric : metrics.getMetrics() ) ...
+ * </code>
+ * <p>
+ * <em>MetricsPipelineListener is Thread-safe</em>, so one instance can be shared by every
+ * Metawidget in an application.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class MetricsPipelineListener
+	implements PipelineListener {
+
+	//
+	// Private members
+	//
+
+	/**
+	 * PipelineMetrics keyed by component type, indexed by <code>PipelineStage.ordinal()</code>.
+	 */
+
+	private final List<ConcurrentMap<Class<?>, PipelineMetric>>	mMetrics;
+
+	//
+	// Constructor
+	//
+
+	public MetricsPipelineListener() {
+
+		PipelineStage[] stages = PipelineStage.values();
+		mMetrics = CollectionUtils.newArrayList( stages.length );
+
+		for ( int loop = 0, length = stages.length; loop < length; loop++ ) {
+			ConcurrentMap<Class<?>, PipelineMetric> stageMetrics = CollectionUtils.newConcurrentHashMap();
+			mMetrics.add( stageMetrics );
+		}
+	}
+
+	//
+	// Public methods
+	//
+
+	public Object stageStarted( PipelineStage stage, Object component, int depth ) {
+
+		return System.nanoTime();
+	}
+
+	public void stageEnded( PipelineStage stage, Object component, int depth, Object token, Object result ) {
+
+		// (token can be null if we were set part way through a stage)
+
+		if ( token == null ) {
+			return;
+		}
+
+		long nanos = System.nanoTime() - (Long) token;
+		getOrCreateMetric( stage, component ).record( nanos, result != null, depth );
+	}
+
+	/**
+	 * @return a snapshot of the PipelineMetrics recorded so far, ordered by stage (in pipeline
+	 *         order) then component type. The PipelineMetrics themselves keep counting
+	 */
+
+	public List<PipelineMetric> getMetrics() {
+
+		List<PipelineMetric> metrics = CollectionUtils.newArrayList();
+
+		for ( ConcurrentMap<Class<?>, PipelineMetric> stageMetrics : mMetrics ) {
+			Map<String, PipelineMetric> sortedStageMetrics = CollectionUtils.newTreeMap();
+
+			for ( PipelineMetric metric : stageMetrics.values() ) {
+				sortedStageMetrics.put( metric.getComponentType(), metric );
+			}
+
+			metrics.addAll( sortedStageMetrics.values() );
+		}
+
+		return Collections.unmodifiableList( metrics );
+	}
+
+	/**
+	 * @return the PipelineMetric for the given stage and component type, or null if it has not run
+	 */
+
+	public PipelineMetric getMetric( PipelineStage stage, Class<?> componentType ) {
+
+		return mMetrics.get( stage.ordinal() ).get( componentType );
+	}
+
+	/**
+	 * Discards all PipelineMetrics recorded so far.
+	 */
+
+	public void reset() {
+
+		for ( ConcurrentMap<Class<?>, PipelineMetric> stageMetrics : mMetrics ) {
+			stageMetrics.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder builder = new StringBuilder();
+
+		for ( PipelineMetric metric : getMetrics() ) {
+			builder.append( metric );
+			builder.append( '\n' );
+		}
+
+		return builder.toString();
+	}
+
+	//
+	// Private methods
+	//
+
+	private PipelineMetric getOrCreateMetric( PipelineStage stage, Object component ) {
+
+		Class<?> componentType = ( component == null ? Void.class : component.getClass() );
+		ConcurrentMap<Class<?>, PipelineMetric> stageMetrics = mMetrics.get( stage.ordinal() );
+		PipelineMetric metric = stageMetrics.get( componentType );
+
+		if ( metric == null ) {
+			PipelineMetric newMetric = new PipelineMetric( stage, componentType.getName() );
+			metric = stageMetrics.putIfAbsent( componentType, newMetric );
+
+			if ( metric == null ) {
+				metric = newMetric;
+			}
+		}
+
+		return metric;
+	}
+}
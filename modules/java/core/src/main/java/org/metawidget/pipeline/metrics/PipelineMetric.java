@@ -0,0 +1,206 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.metawidget.pipeline.base.PipelineStage;
+
+/**
+ * Counters and a timing histogram for one type of component (eg. one Inspector, or one
+ * WidgetBuilder) at one stage of the pipeline.
+ * <p>
+ * The histogram has <code>HISTOGRAM_BUCKETS</code> buckets. Bucket 0 counts runs that took under
+ * 1 microsecond, bucket <code>n</code> counts runs that took at least 2<sup>n-1</sup> but under
+ * 2<sup>n</sup> microseconds, and the last bucket counts everything slower (over about a second).
+ * <p>
+ * <em>PipelineMetric is Thread-safe.</em>
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class PipelineMetric {
+
+	//
+	// Public statics
+	//
+
+	public static final int			HISTOGRAM_BUCKETS	= 22;
+
+	//
+	// Private members
+	//
+
+	private final PipelineStage		mStage;
+
+	private final String			mComponentType;
+
+	private final AtomicLong		mCount				= new AtomicLong();
+
+	private final AtomicLong		mProducedCount		= new AtomicLong();
+
+	private final AtomicLong		mTotalNanos			= new AtomicLong();
+
+	private final AtomicLong		mMaximumNanos		= new AtomicLong();
+
+	private final AtomicInteger		mMaximumDepth		= new AtomicInteger();
+
+	private final AtomicLongArray	mHistogram			= new AtomicLongArray( HISTOGRAM_BUCKETS );
+
+	//
+	// Constructor
+	//
+
+	public PipelineMetric( PipelineStage stage, String componentType ) {
+
+		mStage = stage;
+		mComponentType = componentType;
+	}
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * @return the (exclusive) upper bound of the given histogram bucket, in microseconds, or
+	 *         <code>Long.MAX_VALUE</code> for the last bucket
+	 */
+
+	public static long getHistogramBucketLimit( int bucket ) {
+
+		if ( bucket >= HISTOGRAM_BUCKETS - 1 ) {
+			return Long.MAX_VALUE;
+		}
+
+		return 1L << bucket;
+	}
+
+	public PipelineStage getStage() {
+
+		return mStage;
+	}
+
+	/**
+	 * @return the class name of the component
+	 */
+
+	public String getComponentType() {
+
+		return mComponentType;
+	}
+
+	/**
+	 * @return how many times the component ran
+	 */
+
+	public long getCount() {
+
+		return mCount.get();
+	}
+
+	/**
+	 * @return how many times the component returned a non-null result. For
+	 *         <code>BUILD_WIDGET</code> this is how many times the WidgetBuilder 'won'. For
+	 *         <code>PROCESS_WIDGET</code>, <code>getCount() - getProducedCount()</code> is how many
+	 *         widgets the WidgetProcessor cancelled
+	 */
+
+	public long getProducedCount() {
+
+		return mProducedCount.get();
+	}
+
+	public long getTotalNanos() {
+
+		return mTotalNanos.get();
+	}
+
+	public long getMaximumNanos() {
+
+		return mMaximumNanos.get();
+	}
+
+	public long getMeanNanos() {
+
+		long count = getCount();
+
+		if ( count == 0 ) {
+			return 0;
+		}
+
+		return getTotalNanos() / count;
+	}
+
+	/**
+	 * @return the deepest level of Metawidget nesting the component ran at (0 for the top-level
+	 *         Metawidget)
+	 */
+
+	public int getMaximumDepth() {
+
+		return mMaximumDepth.get();
+	}
+
+	/**
+	 * @return a copy of the histogram counts, indexed by bucket
+	 */
+
+	public long[] getHistogram() {
+
+		long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+		for ( int loop = 0; loop < HISTOGRAM_BUCKETS; loop++ ) {
+			histogram[loop] = mHistogram.get( loop );
+		}
+
+		return histogram;
+	}
+
+	@Override
+	public String toString() {
+
+		return mStage + " " + mComponentType + ": count=" + getCount() + ", produced=" + getProducedCount() + ", meanNanos=" + getMeanNanos() + ", maximumNanos=" + getMaximumNanos() + ", maximumDepth=" + getMaximumDepth();
+	}
+
+	//
+	// Package private methods
+	//
+
+	/* package private */void record( long nanos, boolean produced, int depth ) {
+
+		mCount.incrementAndGet();
+
+		if ( produced ) {
+			mProducedCount.incrementAndGet();
+		}
+
+		mTotalNanos.addAndGet( nanos );
+
+		long maximumNanos = mMaximumNanos.get();
+
+		while ( nanos > maximumNanos && !mMaximumNanos.compareAndSet( maximumNanos, nanos ) ) {
+			maximumNanos = mMaximumNanos.get();
+		}
+
+		int maximumDepth = mMaximumDepth.get();
+
+		while ( depth > maximumDepth && !mMaximumDepth.compareAndSet( maximumDepth, depth ) ) {
+			maximumDepth = mMaximumDepth.get();
+		}
+
+		long micros = nanos / 1000;
+		int bucket = Math.min( Long.SIZE - Long.numberOfLeadingZeros( micros ), HISTOGRAM_BUCKETS - 1 );
+		mHistogram.incrementAndGet( bucket );
+	}
+}
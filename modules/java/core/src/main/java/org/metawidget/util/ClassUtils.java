@@ -12,12 +12,20 @@
 package org.metawidget.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.security.AccessControlException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.metawidget.util.simple.StringUtils;
 
@@ -112,7 +120,8 @@ public final class ClassUtils {
 	public static <T> T getProperty( Object base, String property ) {
 
 		try {
-			Method method = getReadMethod( base.getClass(), property );
+			Class<?> baseClass = base.getClass();
+			Method method = getPropertyAccessors( baseClass, property ).getReadMethod( baseClass, property );
 			return (T) method.invoke( base );
 		} catch ( Exception e ) {
 			if ( base == null ) {
@@ -133,11 +142,7 @@ public final class ClassUtils {
 		try {
 			Class<?> baseClass = base.getClass();
 
-			// Determine the type based on the 'read' method, not the value.getClass(), because
-			// that is unreliable for 'Integer' versus 'int'
-
-			Method method = getReadMethod( baseClass, property );
-			method = getWriteMethod( baseClass, property, method.getReturnType() );
+			Method method = getPropertyAccessors( baseClass, property ).getWriteMethod( baseClass, property );
 			method.invoke( base, value );
 		} catch ( Exception e ) {
 			throw new RuntimeException( "Unable to set '" + property + "' of '" + base + "' to '" + value + "'", e );
@@ -392,7 +397,26 @@ public final class ClassUtils {
 		}
 
 		synchronized ( ALIEN_CLASSLOADERS ) {
-			ALIEN_CLASSLOADERS.add( classLoader );
+			if ( !ALIEN_CLASSLOADERS.add( classLoader ) ) {
+				return;
+			}
+		}
+
+		// Previously cached misses may now be found
+
+		clearForNameCache();
+	}
+
+	/**
+	 * Clears the cache used by <code>niceForName</code>. Called automatically whenever a new alien
+	 * ClassLoader is registered.
+	 */
+
+	/* package private */static void clearForNameCache() {
+
+		synchronized ( FOR_NAME_CACHES ) {
+			FOR_NAME_CACHES.clear();
+			LAST_FOR_NAME_CACHE = null;
 		}
 	}
 
@@ -424,6 +448,11 @@ public final class ClassUtils {
 	 * where, say, metawidget-core and metawidget-annotations are located in the EJB/lib and the
 	 * other modules are located in the WAR/lib). If that fails, it tries ClassUtils' ClassLoader.
 	 * If that fails, it tries our alien ClassLoader.
+	 * <p>
+	 * Because each failed attempt throws (and fills in the stack trace of) a
+	 * <code>ClassNotFoundException</code>, results are cached - both hits and misses. Primitives
+	 * and pseudo-types (such as JSON Schema's <code>array</code> or XML Schema's
+	 * <code>xs:string</code>) are resolved before trying any ClassLoader.
 	 *
 	 * @param classLoader
 	 *            the specific ClassLoader to use to try and load this class. In general clients
@@ -445,57 +474,52 @@ public final class ClassUtils {
 			classNameToUse = classNameToUse.substring( 0, indexOf );
 		}
 
-		// Try given ClassLoader (may be none)
+		// Primitives and pseudo-types never need a ClassLoader
 
-		try {
-			if ( classLoader != null ) {
-				return Class.forName( classNameToUse, false, classLoader );
-			}
-		} catch ( ClassNotFoundException e ) {
+		Class<?> primitive = getPrimitive( classNameToUse );
 
-			// Fall through and try other ClassLoaders
+		if ( primitive != null ) {
+			return primitive;
 		}
 
-		// Try given Thread ClassLoader (may be none, such as on Android)
+		if ( isPseudoType( classNameToUse ) ) {
+			return null;
+		}
 
-		ClassLoader threadClassLoader = Thread.currentThread().getContextClassLoader();
+		// Cached?
 
-		try {
-			if ( threadClassLoader != null && !threadClassLoader.equals( classLoader ) ) {
-				return Class.forName( classNameToUse, false, threadClassLoader );
-			}
-		} catch ( ClassNotFoundException e ) {
+		ClassLoader threadClassLoader = Thread.currentThread().getContextClassLoader();
+		ConcurrentMap<String, Object> cache = getForNameCache( threadClassLoader, classLoader );
+		Object cached = cache.get( classNameToUse );
 
-			// Fall through and try other ClassLoaders
+		if ( cached == FOR_NAME_MISS ) {
+			return null;
 		}
 
-		// Try our own ClassLoader (if different to threadClassLoader)
+		if ( cached != null ) {
+			@SuppressWarnings( "unchecked" )
+			Class<?> clazz = ( (WeakReference<Class<?>>) cached ).get();
 
-		ClassLoader thisClassLoader = ClassUtils.class.getClassLoader();
-
-		try {
-			if ( !thisClassLoader.equals( threadClassLoader ) && !thisClassLoader.equals( classLoader ) ) {
-				return Class.forName( classNameToUse, false, thisClassLoader );
+			if ( clazz != null ) {
+				return clazz;
 			}
-		} catch ( ClassNotFoundException e ) {
-
-			// Fall through and try other ClassLoaders
 		}
 
-		// Try our alien ClassLoaders
+		Class<?> clazz = uncachedForName( classNameToUse, classLoader, threadClassLoader );
 
-		synchronized ( ALIEN_CLASSLOADERS ) {
-			for ( ClassLoader alienClassLoader : ALIEN_CLASSLOADERS ) {
-				try {
-					return Class.forName( classNameToUse, false, alienClassLoader );
-				} catch ( ClassNotFoundException e ) {
+		// Bound the cache (in case of, say, arbitrary symbolic types)
 
-					// Fall through and try other ClassLoaders
-				}
-			}
+		if ( cache.size() >= FOR_NAME_CACHE_MAXIMUM_SIZE ) {
+			cache.clear();
+		}
+
+		if ( clazz == null ) {
+			cache.put( classNameToUse, FOR_NAME_MISS );
+		} else {
+			cache.put( classNameToUse, new WeakReference<Class<?>>( clazz ) );
 		}
 
-		return getPrimitive( classNameToUse );
+		return clazz;
 	}
 
 	public static boolean isPrimitive( String className ) {
@@ -563,32 +587,26 @@ public final class ClassUtils {
 	 * This approach is important for proxied classes, which don't always retain annotations.
 	 */
 
-	@SuppressWarnings( "unchecked" )
 	public static <T extends Annotation> T getOriginalAnnotation( Method method, Class<T> annotationClass ) {
 
-		Map<Class<? extends Annotation>, Annotation> cache = ORIGINAL_ANNOTATION_CACHE.get( method );
-
-		if ( cache == null ) {
-			cache = CollectionUtils.newWeakHashMap();
-			ORIGINAL_ANNOTATION_CACHE.put( method, cache );
-		}
+		expunge( ORIGINAL_ANNOTATION_CACHE, ORIGINAL_ANNOTATION_CACHE_QUEUE );
 
-		// Must synchronize, as WeakHashMap is not Thread safe and WeakHashMap:383 contains an
-		// infinite while: while (e != null && !(e.hash == h && eq(k, e.get())))
+		SoftReference<OriginalAnnotations> reference = ORIGINAL_ANNOTATION_CACHE.get( new LookupKey( method ) );
+		OriginalAnnotations originalAnnotations = null;
 
-		synchronized ( cache ) {
+		if ( reference != null ) {
+			originalAnnotations = reference.get();
+		}
 
-			// Use 'containsKey', because we may cache it as being 'null'
+		if ( originalAnnotations == null ) {
 
-			if ( cache.containsKey( annotationClass ) ) {
-				return (T) cache.get( annotationClass );
-			}
+			// (if another Thread got there first, we'll just have computed the same snapshot)
 
-			T annotation = internalGetOriginalAnnotation( method, annotationClass );
-			cache.put( annotationClass, annotation );
-
-			return annotation;
+			originalAnnotations = newOriginalAnnotations( method );
+			ORIGINAL_ANNOTATION_CACHE.put( new WeakKey<Method>( method, ORIGINAL_ANNOTATION_CACHE_QUEUE ), new SoftReference<OriginalAnnotations>( originalAnnotations ) );
 		}
+
+		return originalAnnotations.get( annotationClass );
 	}
 
 	/**
@@ -738,15 +756,72 @@ public final class ClassUtils {
 	// Private statics
 	//
 
-	private static final Map<Method, Map<Class<? extends Annotation>, Annotation>>	ORIGINAL_ANNOTATION_CACHE	= CollectionUtils.newHashMap();
-
 	/**
 	 * We found <code>getOriginalAnnotation</code> to be around 10x slower that just
 	 * <code>method.getAnnotation</code>, so we cache it.
+	 * <p>
+	 * Each Method's annotations are resolved once, into an immutable snapshot, so that lookups need
+	 * no locking. Methods are only weakly referenced, and snapshots only softly referenced (each
+	 * Annotation strongly references its annotation type, and so its ClassLoader), so that
+	 * redeployed webapps can be garbage collected.
+	 */
+
+	private static final ConcurrentMap<Object, SoftReference<OriginalAnnotations>>	ORIGINAL_ANNOTATION_CACHE		= CollectionUtils.newConcurrentHashMap();
+
+	private static final ReferenceQueue<Method>										ORIGINAL_ANNOTATION_CACHE_QUEUE	= new ReferenceQueue<Method>();
+
+	/**
+	 * Type names that are commonly used in inspection results but can never be Java classes (such
+	 * as JSON Schema types).
 	 */
 
-	private static <T extends Annotation> T internalGetOriginalAnnotation( Method method, Class<T> annotationClass ) {
+	private static final Set<String>	PSEUDO_TYPES	= CollectionUtils.newHashSet( "string", "number", "integer", "object", "array", "null", "any" );
 
+	/**
+	 * Maximum number of class names cached per combination of ClassLoaders.
+	 */
+
+	private static final int	FOR_NAME_CACHE_MAXIMUM_SIZE	= 1000;
+
+	/**
+	 * Marker for a cached miss (so that we can distinguish it from an uncached name).
+	 */
+
+	private static final Object	FOR_NAME_MISS	= new Object();
+
+	/**
+	 * Cache of <code>niceForName</code> results, keyed by Thread ClassLoader and then by given
+	 * ClassLoader.
+	 * <p>
+	 * Both levels are weakly keyed, and cached Classes are only weakly referenced, so that
+	 * redeployed webapps can be garbage collected.
+	 */
+
+	private static final Map<ClassLoader, Map<ClassLoader, ForNameCache>>	FOR_NAME_CACHES	= new WeakHashMap<ClassLoader, Map<ClassLoader, ForNameCache>>();
+
+	private static volatile ForNameCache									LAST_FOR_NAME_CACHE;
+
+	/**
+	 * Cache of the read and write methods used by <code>getProperty</code> and
+	 * <code>setProperty</code>, keyed by class and then by property name.
+	 * <p>
+	 * Lookups need no locking. Classes are weakly keyed, and cached Methods are only softly
+	 * referenced (each Method strongly references its declaring Class), so that redeployed webapps
+	 * can be garbage collected.
+	 */
+
+	private static final ConcurrentMap<Object, ConcurrentMap<String, PropertyAccessors>>	PROPERTY_ACCESSORS_CACHE		= CollectionUtils.newConcurrentHashMap();
+
+	private static final ReferenceQueue<Class<?>>											PROPERTY_ACCESSORS_CACHE_QUEUE	= new ReferenceQueue<Class<?>>();
+
+	/**
+	 * Resolves every annotation <code>getOriginalAnnotation</code> could return for the given
+	 * method, in the order they should be searched.
+	 */
+
+	private static OriginalAnnotations newOriginalAnnotations( Method method ) {
+
+		List<Annotation> annotations = CollectionUtils.newArrayList();
 		Method methodToUse = method;
 		String name = methodToUse.getName();
 		Class<?>[] parameterTypes = methodToUse.getParameterTypes();
@@ -775,37 +850,174 @@ public final class ClassUtils {
 			}
 		}
 
-		// If this method has the annotation, return it
+		// Search this method's annotations first...
 
 		if ( methodToUse != null ) {
-			T annotation = methodToUse.getAnnotation( annotationClass );
-
-			if ( annotation != null ) {
-				return annotation;
-			}
+			annotations.addAll( Arrays.asList( methodToUse.getAnnotations() ) );
 		}
 
-		// Try interfaces too, in case annotation is defined there
+		// ...then interfaces too, in case annotation is defined there
 
 		for ( Class<?> iface : method.getDeclaringClass().getInterfaces() ) {
 
 			try {
-				methodToUse = iface.getDeclaredMethod( name, parameterTypes );
-				T annotation = methodToUse.getAnnotation( annotationClass );
-
-				if ( annotation != null ) {
-					return annotation;
-				}
+				annotations.addAll( Arrays.asList( iface.getDeclaredMethod( name, parameterTypes ).getAnnotations() ) );
 			} catch ( Exception e ) {
 				// Not in this interface
 			}
 		}
 
-		// No annotation found
+		return new OriginalAnnotations( annotations.toArray( new Annotation[annotations.size()] ) );
+	}
+
+	private static Class<?> uncachedForName( String className, ClassLoader classLoader, ClassLoader threadClassLoader ) {
+
+		// Try given ClassLoader (may be none)
+
+		try {
+			if ( classLoader != null ) {
+				return Class.forName( className, false, classLoader );
+			}
+		} catch ( ClassNotFoundException e ) {
+
+			// Fall through and try other ClassLoaders
+		}
+
+		// Try given Thread ClassLoader (may be none, such as on Android)
+
+		try {
+			if ( threadClassLoader != null && !threadClassLoader.equals( classLoader ) ) {
+				return Class.forName( className, false, threadClassLoader );
+			}
+		} catch ( ClassNotFoundException e ) {
+
+			// Fall through and try other ClassLoaders
+		}
+
+		// Try our own ClassLoader (if different to threadClassLoader)
+
+		ClassLoader thisClassLoader = ClassUtils.class.getClassLoader();
+
+		try {
+			if ( !thisClassLoader.equals( threadClassLoader ) && !thisClassLoader.equals( classLoader ) ) {
+				return Class.forName( className, false, thisClassLoader );
+			}
+		} catch ( ClassNotFoundException e ) {
+
+			// Fall through and try other ClassLoaders
+		}
+
+		// Try our alien ClassLoaders
+
+		synchronized ( ALIEN_CLASSLOADERS ) {
+			for ( ClassLoader alienClassLoader : ALIEN_CLASSLOADERS ) {
+				try {
+					return Class.forName( className, false, alienClassLoader );
+				} catch ( ClassNotFoundException e ) {
+
+					// Fall through and try other ClassLoaders
+				}
+			}
+		}
 
 		return null;
 	}
 
+	/**
+	 * Whether the given type name can never be a Java class, so there is no point trying any
+	 * ClassLoaders.
+	 */
+
+	private static boolean isPseudoType( String className ) {
+
+		if ( className.length() == 0 || PSEUDO_TYPES.contains( className ) ) {
+			return true;
+		}
+
+		// (binary names may also contain '[' and ';', such as "[Ljava.lang.String;")
+
+		for ( int loop = 0, length = className.length(); loop < length; loop++ ) {
+			char c = className.charAt( loop );
+
+			if ( !Character.isJavaIdentifierPart( c ) && c != '.' && c != '[' && c != ';' ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static ConcurrentMap<String, Object> getForNameCache( ClassLoader threadClassLoader, ClassLoader classLoader ) {
+
+		// Fast path: most applications only ever use one combination of ClassLoaders
+
+		ForNameCache forNameCache = LAST_FOR_NAME_CACHE;
+
+		if ( forNameCache != null && forNameCache.isFor( threadClassLoader, classLoader ) ) {
+			return forNameCache.getClasses();
+		}
+
+		synchronized ( FOR_NAME_CACHES ) {
+			Map<ClassLoader, ForNameCache> forNameCaches = FOR_NAME_CACHES.get( threadClassLoader );
+
+			if ( forNameCaches == null ) {
+				forNameCaches = new WeakHashMap<ClassLoader, ForNameCache>();
+				FOR_NAME_CACHES.put( threadClassLoader, forNameCaches );
+			}
+
+			forNameCache = forNameCaches.get( classLoader );
+
+			if ( forNameCache == null ) {
+				forNameCache = new ForNameCache( threadClassLoader, classLoader );
+				forNameCaches.put( classLoader, forNameCache );
+			}
+
+			LAST_FOR_NAME_CACHE = forNameCache;
+		}
+
+		return forNameCache.getClasses();
+	}
+
+	private static PropertyAccessors getPropertyAccessors( Class<?> clazz, String property ) {
+
+		expunge( PROPERTY_ACCESSORS_CACHE, PROPERTY_ACCESSORS_CACHE_QUEUE );
+
+		ConcurrentMap<String, PropertyAccessors> propertyAccessors = PROPERTY_ACCESSORS_CACHE.get( new LookupKey( clazz ) );
+
+		if ( propertyAccessors == null ) {
+			ConcurrentMap<String, PropertyAccessors> newPropertyAccessors = CollectionUtils.newConcurrentHashMap();
+			propertyAccessors = PROPERTY_ACCESSORS_CACHE.putIfAbsent( new WeakKey<Class<?>>( clazz, PROPERTY_ACCESSORS_CACHE_QUEUE ), newPropertyAccessors );
+
+			if ( propertyAccessors == null ) {
+				propertyAccessors = newPropertyAccessors;
+			}
+		}
+
+		PropertyAccessors accessors = propertyAccessors.get( property );
+
+		if ( accessors == null ) {
+			accessors = new PropertyAccessors();
+			PropertyAccessors existingAccessors = propertyAccessors.putIfAbsent( property, accessors );
+
+			if ( existingAccessors != null ) {
+				accessors = existingAccessors;
+			}
+		}
+
+		return accessors;
+	}
+
+	/**
+	 * Removes entries whose <code>WeakKey</code> has been garbage collected.
+	 */
+
+	private static void expunge( Map<Object, ?> cache, ReferenceQueue<?> queue ) {
+
+		for ( Reference<?> reference = queue.poll(); reference != null; reference = queue.poll() ) {
+			cache.remove( reference );
+		}
+	}
+
 	private static Class<?> getPrimitive( String className ) {
 
 		if ( "byte".equals( className ) ) {
@@ -843,6 +1055,304 @@ public final class ClassUtils {
 		return null;
 	}
 
+	//
+	// Inner class
+	//
+
+	/**
+	 * Cached <code>niceForName</code> results for a single combination of ClassLoaders.
+	 * <p>
+	 * Deliberately holds no strong references to either ClassLoader, nor to any loaded Class (each
+	 * of which would strongly reference its ClassLoader).
+	 */
+
+	private static class ForNameCache {
+
+		//
+		// Private members
+		//
+
+		private final WeakReference<ClassLoader>	mThreadClassLoader;
+
+		private final WeakReference<ClassLoader>	mClassLoader;
+
+		private final ConcurrentMap<String, Object>	mClasses	= CollectionUtils.newConcurrentHashMap();
+
+		//
+		// Constructor
+		//
+
+		public ForNameCache( ClassLoader threadClassLoader, ClassLoader classLoader ) {
+
+			mThreadClassLoader = newWeakReference( threadClassLoader );
+			mClassLoader = newWeakReference( classLoader );
+		}
+
+		//
+		// Public methods
+		//
+
+		/**
+		 * @return values are either <code>FOR_NAME_MISS</code> or a
+		 *         <code>WeakReference&lt;Class&gt;</code>
+		 */
+
+		public ConcurrentMap<String, Object> getClasses() {
+
+			return mClasses;
+		}
+
+		public boolean isFor( ClassLoader threadClassLoader, ClassLoader classLoader ) {
+
+			return isFor( mThreadClassLoader, threadClassLoader ) && isFor( mClassLoader, classLoader );
+		}
+
+		//
+		// Private methods
+		//
+
+		private static WeakReference<ClassLoader> newWeakReference( ClassLoader classLoader ) {
+
+			if ( classLoader == null ) {
+				return null;
+			}
+
+			return new WeakReference<ClassLoader>( classLoader );
+		}
+
+		private static boolean isFor( WeakReference<ClassLoader> reference, ClassLoader classLoader ) {
+
+			// (a garbage collected ClassLoader must not match a null one)
+
+			if ( reference == null ) {
+				return ( classLoader == null );
+			}
+
+			return ( classLoader != null && reference.get() == classLoader );
+		}
+	}
+
+	/**
+	 * Weakly referenced cache key.
+	 * <p>
+	 * Equal to other WeakKeys and LookupKeys whose referents are equal. Once its referent has been
+	 * garbage collected, a WeakKey only equals itself (so can still be removed from its cache).
+	 */
+
+	private static class WeakKey<T>
+		extends WeakReference<T> {
+
+		//
+		// Private members
+		//
+
+		private final int	mHashCode;
+
+		//
+		// Constructor
+		//
+
+		public WeakKey( T referent, ReferenceQueue<? super T> queue ) {
+
+			super( referent, queue );
+
+			mHashCode = referent.hashCode();
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public boolean equals( Object that ) {
+
+			if ( this == that ) {
+				return true;
+			}
+
+			Object referent = get();
+
+			if ( referent == null ) {
+				return false;
+			}
+
+			if ( that instanceof LookupKey ) {
+				return referent.equals( ( (LookupKey) that ).mReferent );
+			}
+
+			if ( that instanceof WeakKey<?> ) {
+				return referent.equals( ( (WeakKey<?>) that ).get() );
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+
+			return mHashCode;
+		}
+	}
+
+	/**
+	 * Strongly referenced, short-lived key for looking up a <code>WeakKey</code>, so that lookups
+	 * do not need to create (and later enqueue) a <code>Reference</code>.
+	 */
+
+	private static class LookupKey {
+
+		//
+		// Private members
+		//
+
+		/* package private */final Object	mReferent;
+
+		//
+		// Constructor
+		//
+
+		public LookupKey( Object referent ) {
+
+			mReferent = referent;
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public boolean equals( Object that ) {
+
+			if ( that instanceof WeakKey<?> ) {
+				return mReferent.equals( ( (WeakKey<?>) that ).get() );
+			}
+
+			if ( that instanceof LookupKey ) {
+				return mReferent.equals( ( (LookupKey) that ).mReferent );
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+
+			return mReferent.hashCode();
+		}
+	}
+
+	/**
+	 * Immutable snapshot of every annotation <code>getOriginalAnnotation</code> could return for a
+	 * single Method, in search order.
+	 * <p>
+	 * Annotation types are held in a parallel array, because <code>annotationType</code> is a
+	 * (relatively slow) proxied call.
+	 */
+
+	private static class OriginalAnnotations {
+
+		//
+		// Private members
+		//
+
+		private final Class<?>[]	mAnnotationTypes;
+
+		private final Annotation[]	mAnnotations;
+
+		//
+		// Constructor
+		//
+
+		public OriginalAnnotations( Annotation[] annotations ) {
+
+			mAnnotations = annotations;
+			mAnnotationTypes = new Class<?>[annotations.length];
+
+			for ( int loop = 0, length = annotations.length; loop < length; loop++ ) {
+				mAnnotationTypes[loop] = annotations[loop].annotationType();
+			}
+		}
+
+		//
+		// Public methods
+		//
+
+		@SuppressWarnings( "unchecked" )
+		public <T extends Annotation> T get( Class<T> annotationClass ) {
+
+			for ( int loop = 0, length = mAnnotationTypes.length; loop < length; loop++ ) {
+				if ( mAnnotationTypes[loop] == annotationClass ) {
+					return (T) mAnnotations[loop];
+				}
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * Cached read and write methods for a single property of a single class.
+	 * <p>
+	 * Methods are resolved lazily (a property may only ever be read) and only softly referenced. If
+	 * a Method cannot be resolved, nothing is cached and the same exception is thrown every time.
+	 */
+
+	private static class PropertyAccessors {
+
+		//
+		// Private members
+		//
+
+		private volatile SoftReference<Method>	mReadMethod;
+
+		private volatile SoftReference<Method>	mWriteMethod;
+
+		//
+		// Public methods
+		//
+
+		public Method getReadMethod( Class<?> clazz, String property ) {
+
+			Method readMethod = dereference( mReadMethod );
+
+			if ( readMethod == null ) {
+				readMethod = ClassUtils.getReadMethod( clazz, property );
+				mReadMethod = new SoftReference<Method>( readMethod );
+			}
+
+			return readMethod;
+		}
+
+		public Method getWriteMethod( Class<?> clazz, String property ) {
+
+			Method writeMethod = dereference( mWriteMethod );
+
+			if ( writeMethod == null ) {
+
+				// Determine the type based on the 'read' method, not the value.getClass(), because
+				// that is unreliable for 'Integer' versus 'int'
+
+				writeMethod = ClassUtils.getWriteMethod( clazz, property, getReadMethod( clazz, property ).getReturnType() );
+				mWriteMethod = new SoftReference<Method>( writeMethod );
+			}
+
+			return writeMethod;
+		}
+
+		//
+		// Private methods
+		//
+
+		private static Method dereference( SoftReference<Method> reference ) {
+
+			if ( reference == null ) {
+				return null;
+			}
+
+			return reference.get();
+		}
+	}
+
 	//
 	// Private constructor
 	//
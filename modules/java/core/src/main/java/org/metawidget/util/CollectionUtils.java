@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -177,6 +178,18 @@ public final class CollectionUtils {
 		return new WeakHashMap<K, V>();
 	}
 
+	/**
+	 * Type-safe initializer.
+	 * <p>
+	 * ConcurrentHashMap is preferrable for caches that are read far more often than they are
+	 * written, as readers never block.
+	 */
+
+	public static <K, V> ConcurrentHashMap<K, V> newConcurrentHashMap() {
+
+		return new ConcurrentHashMap<K, V>();
+	}
+
 	/**
 	 * Type-safe initializer.
 	 */
@@ -17,11 +17,14 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -364,6 +367,29 @@ public final class XmlUtils {
 		return nodeToString( node, pretty ? 0 : -1 );
 	}
 
+	/**
+	 * Escapes the given String for use as XML element content or attribute values.
+	 *
+	 * @return the escaped String, or an empty String if the given String was null
+	 */
+
+	public static String escapeForXml( String in ) {
+
+		if ( in == null ) {
+			return "";
+		}
+
+		String out = in;
+
+		out = PATTERN_AMP.matcher( out ).replaceAll( "&amp;" );
+		out = PATTERN_LT.matcher( out ).replaceAll( "&lt;" );
+		out = PATTERN_GT.matcher( out ).replaceAll( "&gt;" );
+		out = PATTERN_QUOT.matcher( out ).replaceAll( "&quot;" );
+		out = PATTERN_APOS.matcher( out ).replaceAll( "&apos;" );
+
+		return out;
+	}
+
 	/**
 	 * Converts the given XML into a <code>org.w3c.dom.Document</code>.
 	 * <p>
@@ -384,32 +410,41 @@ public final class XmlUtils {
 		}
 
 		try {
-			synchronized ( DOCUMENT_BUILDER ) {
-				return DOCUMENT_BUILDER.parse( new InputSource( new StringReader( xml ) ) );
-			}
+			DocumentBuilder documentBuilder = acquireDocumentBuilder();
+			Document document = documentBuilder.parse( new InputSource( new StringReader( xml ) ) );
+			releaseDocumentBuilder( documentBuilder );
+
+			return document;
 		} catch ( Exception e ) {
 			throw new RuntimeException( e );
 		}
 	}
 
 	/**
-	 * Creates a new Document built from a shared, no-external-connection-making DocumentBuilder
+	 * Creates a new Document built from a pooled, no-external-connection-making DocumentBuilder
 	 * created by a namespace-aware, comment-ignoring, whitespace-ignoring DocumentBuilderFactory.
+	 * <p>
+	 * DocumentBuilders are not thread-safe, so each caller borrows one from the pool (creating it
+	 * if necessary) rather than contending on a single shared instance.
 	 */
 
 	public static Document newDocument() {
 
-		synchronized ( DOCUMENT_BUILDER ) {
-			return DOCUMENT_BUILDER.newDocument();
-		}
+		DocumentBuilder documentBuilder = acquireDocumentBuilder();
+		Document document = documentBuilder.newDocument();
+		releaseDocumentBuilder( documentBuilder );
+
+		return document;
 	}
 
 	public static Document parse( InputStream stream )
 		throws IOException, SAXException {
 
-		synchronized ( DOCUMENT_BUILDER ) {
-			return DOCUMENT_BUILDER.parse( stream );
-		}
+		DocumentBuilder documentBuilder = acquireDocumentBuilder();
+		Document document = documentBuilder.parse( stream );
+		releaseDocumentBuilder( documentBuilder );
+
+		return document;
 	}
 
 	/**
@@ -482,16 +517,19 @@ public final class XmlUtils {
 			master.setAttribute( attributeToAddName, attributeToAddValue );
 		}
 
-		// Combine child elements: for each child...
+		// Combine child elements: index the 'master' children by name (so that wide entities do not
+		// require a scan of the master for every child)...
 
 		NodeList childrenToAdd = toAdd.getChildNodes();
-		NodeList masterChildren = master.getChildNodes();
+		Map<String, Element> masterChildrenByName = indexChildElements( master, topLevelAttributeToCombineOn );
 
 		Set<String> childNamesAdded = CollectionUtils.newHashSet();
 
 		Node nodeLastMasterCombinePoint = null;
 
-		outerLoop: for ( int addLoop = 0, addLength = childrenToAdd.getLength(); addLoop < addLength; addLoop++ ) {
+		// ...then for each child...
+
+		for ( int addLoop = 0, addLength = childrenToAdd.getLength(); addLoop < addLength; addLoop++ ) {
 			Node nodeChildToAdd = childrenToAdd.item( addLoop );
 
 			if ( !( nodeChildToAdd instanceof Element ) ) {
@@ -511,37 +549,27 @@ public final class XmlUtils {
 
 			// ...find one with the same @name in the 'master'...
 
-			for ( int masterLoop = 0, masterLength = masterChildren.getLength(); masterLoop < masterLength; masterLoop++ ) {
-				Node nodeMasterChild = masterChildren.item( masterLoop );
+			Element masterChild = masterChildrenByName.get( childToAddName );
 
-				if ( !( nodeMasterChild instanceof Element ) ) {
-					continue;
-				}
-
-				Element masterChild = (Element) nodeMasterChild;
-				String masterChildName = masterChild.getAttribute( topLevelAttributeToCombineOn );
-
-				if ( !childToAddName.equals( masterChildName ) ) {
-					continue;
-				}
+			if ( masterChild != null ) {
 
 				String nodeNameInMaster = masterChild.getNodeName();
 				String nodeNameInAdd = childToAdd.getNodeName();
 
 				if ( !nodeNameInMaster.equals( nodeNameInAdd ) ) {
-					throw new RuntimeException( "Matching elements named '" + masterChildName + "', but existing one is a '" + nodeNameInMaster + "' whilst new one is a '" + nodeNameInAdd + "'" );
+					throw new RuntimeException( "Matching elements named '" + childToAddName + "', but existing one is a '" + nodeNameInMaster + "' whilst new one is a '" + nodeNameInAdd + "'" );
 				}
 
 				// ...and combine them
 
-				if ( masterLoop == masterLength - 1 ) {
+				if ( masterChild.getNextSibling() == null ) {
 					nodeLastMasterCombinePoint = null;
 				} else {
 					nodeLastMasterCombinePoint = masterChild;
 				}
 
 				combineElements( masterChild, childToAdd, childAttributeToCombineOn, childAttributeToCombineOn );
-				continue outerLoop;
+				continue;
 			}
 
 			// If no such child exists, add one either immediately after the
@@ -572,7 +600,31 @@ public final class XmlUtils {
 
 	public static String inspectionResultToJsonSchema( Element inspectionResult ) {
 
-		return inspectionResultToJsonSchema( XmlUtils.getFirstChildElement( inspectionResult ), false );
+		StringBuilder builder = new StringBuilder();
+
+		try {
+			writeJsonSchema( XmlUtils.getFirstChildElement( inspectionResult ), false, builder );
+		} catch ( IOException e ) {
+			// Should never happen, as StringBuilder does not throw IOException
+
+			throw new RuntimeException( e );
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Write the given Element to the given Writer as a JSON Schema (v3).
+	 * <p>
+	 * Produces the same output as <code>inspectionResultToJsonSchema( Element )</code>, but in a
+	 * single forward pass and without building the whole schema in memory first. Suitable for
+	 * streaming large schemas directly from REST services.
+	 */
+
+	public static void inspectionResultToJsonSchema( Element inspectionResult, Writer writer )
+		throws IOException {
+
+		writeJsonSchema( XmlUtils.getFirstChildElement( inspectionResult ), false, writer );
 	}
 
 	/**
@@ -607,88 +659,86 @@ public final class XmlUtils {
 
 	private static final String[]	JSON_SCHEMA_NON_STRING_ATTRIBUTE_NAMES	= new String[] { REQUIRED, HIDDEN, "minimum", "maximum", "minLength", "maxLength", "propertyOrder" };
 
-	private static String inspectionResultToJsonSchema( Element element, boolean excludeName ) {
+	private static void writeJsonSchema( Element element, boolean excludeName, Appendable out )
+		throws IOException {
 
-		StringBuilder jsonBuilder = new StringBuilder();
-
-		if ( element != null ) {
+		if ( element == null ) {
+			return;
+		}
 
-			// For each child trait...
+		// Write out the root (and its attributes)...
 
-			Element trait = XmlUtils.getFirstChildElement( element );
+		out.append( '{' );
+		boolean written = false;
 
-			while ( trait != null ) {
+		if ( ACTION.equals( getLocalName( element ) ) && !element.hasAttribute( TYPE ) ) {
+			out.append( "\"type\":\"function\"" );
+			written = true;
+		}
 
-				// ...that has a name...
+		written = writeAttributesAsJsonSchema( element.getAttributes(), excludeName, written, out );
 
-				if ( trait.hasAttribute( NAME ) ) {
+		// ...then, for each child trait that has a name...
 
-					// ..recurse into it...
+		boolean isArray = "array".equals( element.getAttribute( TYPE ) );
+		boolean writtenProperties = false;
+		Element trait = XmlUtils.getFirstChildElement( element );
 
-					String traitSchema = inspectionResultToJsonSchema( trait, true );
+		while ( trait != null ) {
 
-					if ( traitSchema.length() > 0 ) {
+			if ( trait.hasAttribute( NAME ) ) {
 
-						if ( jsonBuilder.length() > 0 ) {
-							jsonBuilder.append( StringUtils.SEPARATOR_COMMA_CHAR );
-						}
+				// ...write them all out as 'properties' (for arrays, 'properties' is inside
+				// 'items')...
 
-						jsonBuilder.append( '\"' );
-						jsonBuilder.append( trait.getAttribute( NAME ) );
-						jsonBuilder.append( "\":" );
-						jsonBuilder.append( traitSchema );
+				if ( writtenProperties ) {
+					out.append( StringUtils.SEPARATOR_COMMA_CHAR );
+				} else {
+					if ( written ) {
+						out.append( StringUtils.SEPARATOR_COMMA_CHAR );
 					}
-				}
-
-				trait = XmlUtils.getNextSiblingElement( trait );
-			}
-
-			// ...and write them all out as 'properties'
-
-			if ( jsonBuilder.length() > 0 ) {
-				jsonBuilder.insert( 0, "\"properties\":{" );
-				jsonBuilder.append( '}' );
 
-				// For arrays, 'properties' is inside 'items'
+					if ( isArray ) {
+						out.append( "\"items\":{" );
+					}
 
-				if ( "array".equals( element.getAttribute( TYPE ) ) ) {
-					jsonBuilder.insert( 0, "\"items\":{" );
-					jsonBuilder.append( '}' );
+					out.append( "\"properties\":{" );
+					writtenProperties = true;
 				}
-			}
-
-			// Finally write out the root...
-
-			String attributes = attributesToJsonSchema( element.getAttributes(), excludeName );
 
-			if ( attributes.length() > 0 ) {
+				// ...recursing into each one
 
-				if ( jsonBuilder.length() > 0 ) {
-					jsonBuilder.insert( 0, "," );
-				}
-
-				jsonBuilder.insert( 0, attributes );
+				out.append( '\"' );
+				out.append( trait.getAttribute( NAME ) );
+				out.append( "\":" );
+				writeJsonSchema( trait, true, out );
 			}
 
-			if ( ACTION.equals( getLocalName( element ) ) && !element.hasAttribute( "type" ) ) {
-				if ( jsonBuilder.length() > 0 ) {
-					jsonBuilder.insert( 0, "," );
-				}
-				jsonBuilder.insert( 0, "\"type\":\"function\"" );
-			}
+			trait = XmlUtils.getNextSiblingElement( trait );
+		}
 
-			// ...all inside an Object
+		if ( writtenProperties ) {
+			out.append( '}' );
 
-			jsonBuilder.insert( 0, "{" );
-			jsonBuilder.append( "}" );
+			if ( isArray ) {
+				out.append( '}' );
+			}
 		}
 
-		return jsonBuilder.toString();
+		out.append( '}' );
 	}
 
-	private static String attributesToJsonSchema( NamedNodeMap attributes, boolean excludeName ) {
+	/**
+	 * @param written
+	 *            whether anything has already been written to the enclosing Object (and so the
+	 *            first attribute needs a leading comma)
+	 * @return whether anything has been written to the enclosing Object
+	 */
+
+	private static boolean writeAttributesAsJsonSchema( NamedNodeMap attributes, boolean excludeName, boolean written, Appendable out )
+		throws IOException {
 
-		StringBuilder propertyBuilder = new StringBuilder();
+		boolean writtenAttributes = written;
 
 		for ( int loop = 0, length = attributes.getLength(); loop < length; loop++ ) {
 
@@ -705,32 +755,35 @@ public final class XmlUtils {
 
 			attributeName = StringUtils.camelCase( attributeName, '-' );
 
-			if ( propertyBuilder.length() > 0 ) {
-				propertyBuilder.append( StringUtils.SEPARATOR_COMMA_CHAR );
+			if ( writtenAttributes ) {
+				out.append( StringUtils.SEPARATOR_COMMA_CHAR );
 			}
 
-			propertyBuilder.append( "\"" + attributeName + "\"" );
-			propertyBuilder.append( StringUtils.SEPARATOR_COLON_CHAR );
+			out.append( '\"' );
+			out.append( attributeName );
+			out.append( '\"' );
+			out.append( StringUtils.SEPARATOR_COLON_CHAR );
+			writtenAttributes = true;
 
 			if ( ArrayUtils.contains( JSON_SCHEMA_ARRAY_BASED_ATTRIBUTE_NAMES, attributeName ) ) {
-				propertyBuilder.append( "[" );
-				propertyBuilder.append( arrayToJsonSchema( attributeValue ) );
-				propertyBuilder.append( "]" );
-			} else if ( ArrayUtils.contains( JSON_SCHEMA_NON_STRING_ATTRIBUTE_NAMES, attributeName ) && !attributeValue.contains( "{" )) {
-				propertyBuilder.append( attributeValue );
-			} else if ( "xsi:nil".equals( attributeValue )) {
-				propertyBuilder.append( "null" );
+				out.append( '[' );
+				out.append( arrayToJsonSchema( attributeValue ) );
+				out.append( ']' );
+			} else if ( ArrayUtils.contains( JSON_SCHEMA_NON_STRING_ATTRIBUTE_NAMES, attributeName ) && !attributeValue.contains( "{" ) ) {
+				out.append( attributeValue );
+			} else if ( "xsi:nil".equals( attributeValue ) ) {
+				out.append( "null" );
 			} else {
 
 				// Write out all other values as a string, as this is the safest option
 
-				propertyBuilder.append( "\"" );
-				propertyBuilder.append( attributeValue );
-				propertyBuilder.append( "\"" );
+				out.append( '\"' );
+				out.append( attributeValue );
+				out.append( '\"' );
 			}
 		}
 
-		return propertyBuilder.toString();
+		return writtenAttributes;
 	}
 
 	private static String arrayToJsonSchema( String array ) {
@@ -752,6 +805,87 @@ public final class XmlUtils {
 		return toReturn;
 	}
 
+	/**
+	 * Index the child elements of the given element by the given attribute.
+	 * <p>
+	 * Children without the attribute are not indexed. If more than one child has the same
+	 * attribute value, the first one wins (consistent with a linear scan).
+	 */
+
+	private static Map<String, Element> indexChildElements( Element element, String attributeName ) {
+
+		NodeList children = element.getChildNodes();
+		int length = children.getLength();
+
+		if ( length == 0 ) {
+			return Collections.emptyMap();
+		}
+
+		Map<String, Element> index = CollectionUtils.newHashMap();
+
+		for ( int loop = 0; loop < length; loop++ ) {
+			Node node = children.item( loop );
+
+			if ( !( node instanceof Element ) ) {
+				continue;
+			}
+
+			Element child = (Element) node;
+			String name = child.getAttribute( attributeName );
+
+			if ( name == null || name.length() == 0 || index.containsKey( name ) ) {
+				continue;
+			}
+
+			index.put( name, child );
+		}
+
+		return index;
+	}
+
+	/**
+	 * Borrow a DocumentBuilder from the pool, creating one if the pool is empty.
+	 * <p>
+	 * The pool only ever grows to the peak number of threads using it concurrently. We use a pool,
+	 * rather than a ThreadLocal, so as not to pin our classes (such as
+	 * <code>NopEntityResolver</code>) to long-lived container threads.
+	 */
+
+	private static DocumentBuilder acquireDocumentBuilder() {
+
+		DocumentBuilder documentBuilder = DOCUMENT_BUILDERS.poll();
+
+		if ( documentBuilder != null ) {
+			return documentBuilder;
+		}
+
+		// DocumentBuilderFactory is not thread-safe either, but this is only hit until the pool
+		// warms up
+
+		try {
+			synchronized ( DOCUMENT_BUILDER_FACTORY ) {
+				documentBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+			}
+		} catch ( ParserConfigurationException e ) {
+			throw new RuntimeException( e );
+		}
+
+		documentBuilder.setEntityResolver( new NopEntityResolver() );
+		return documentBuilder;
+	}
+
+	/**
+	 * Return a DocumentBuilder to the pool.
+	 * <p>
+	 * Only call this after the DocumentBuilder has been used successfully. DocumentBuilders that
+	 * threw an Exception are simply dropped, in case they were left in an inconsistent state.
+	 */
+
+	private static void releaseDocumentBuilder( DocumentBuilder documentBuilder ) {
+
+		DOCUMENT_BUILDERS.offer( documentBuilder );
+	}
+
 	//
 	// Inner class
 	//
@@ -1589,23 +1723,6 @@ public final class XmlUtils {
 		}
 	}
 
-	private static String escapeForXml( String in ) {
-
-		if ( in == null ) {
-			return "";
-		}
-
-		String out = in;
-
-		out = PATTERN_AMP.matcher( out ).replaceAll( "&amp;" );
-		out = PATTERN_LT.matcher( out ).replaceAll( "&lt;" );
-		out = PATTERN_GT.matcher( out ).replaceAll( "&gt;" );
-		out = PATTERN_QUOT.matcher( out ).replaceAll( "&quot;" );
-		out = PATTERN_APOS.matcher( out ).replaceAll( "&apos;" );
-
-		return out;
-	}
-
 	//
 	// Inner class
 	//
@@ -1638,30 +1755,26 @@ public final class XmlUtils {
 	// Private statics
 	//
 
-	private static final DocumentBuilder	DOCUMENT_BUILDER;
+	private static final DocumentBuilderFactory	DOCUMENT_BUILDER_FACTORY;
 
 	static {
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		factory.setNamespaceAware( true );
-		factory.setIgnoringComments( true );
-		factory.setIgnoringElementContentWhitespace( true );
-		try {
-			DOCUMENT_BUILDER = factory.newDocumentBuilder();
-			DOCUMENT_BUILDER.setEntityResolver( new NopEntityResolver() );
-		} catch ( ParserConfigurationException e ) {
-			throw new RuntimeException( e );
-		}
+		DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+		DOCUMENT_BUILDER_FACTORY.setNamespaceAware( true );
+		DOCUMENT_BUILDER_FACTORY.setIgnoringComments( true );
+		DOCUMENT_BUILDER_FACTORY.setIgnoringElementContentWhitespace( true );
 	}
 
-	private static final Pattern			PATTERN_AMP		= Pattern.compile( "&", Pattern.LITERAL );
+	private static final Queue<DocumentBuilder>	DOCUMENT_BUILDERS	= new ConcurrentLinkedQueue<DocumentBuilder>();
+
+	private static final Pattern				PATTERN_AMP			= Pattern.compile( "&", Pattern.LITERAL );
 
-	private static final Pattern			PATTERN_LT		= Pattern.compile( "<", Pattern.LITERAL );
+	private static final Pattern				PATTERN_LT			= Pattern.compile( "<", Pattern.LITERAL );
 
-	private static final Pattern			PATTERN_GT		= Pattern.compile( ">", Pattern.LITERAL );
+	private static final Pattern				PATTERN_GT			= Pattern.compile( ">", Pattern.LITERAL );
 
-	private static final Pattern			PATTERN_QUOT	= Pattern.compile( "\"", Pattern.LITERAL );
+	private static final Pattern				PATTERN_QUOT		= Pattern.compile( "\"", Pattern.LITERAL );
 
-	private static final Pattern			PATTERN_APOS	= Pattern.compile( "\'", Pattern.LITERAL );
+	private static final Pattern				PATTERN_APOS		= Pattern.compile( "\'", Pattern.LITERAL );
 
 	//
 	// Private constructor
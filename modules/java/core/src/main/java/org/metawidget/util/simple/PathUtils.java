@@ -33,6 +33,25 @@ public final class PathUtils {
 		return new TypeAndNames( path, separator );
 	}
 
+	/**
+	 * Formats the given type and names as a <code>type/name</code> path. The reverse of
+	 * <code>parsePath</code>.
+	 */
+
+	public static String toPath( String type, String... names ) {
+
+		StringBuilder builder = new StringBuilder( type );
+
+		if ( names != null ) {
+			for ( String name : names ) {
+				builder.append( StringUtils.SEPARATOR_FORWARD_SLASH_CHAR );
+				builder.append( name );
+			}
+		}
+
+		return builder.toString();
+	}
+
 	/**
 	 * Tuple for returning a <code>type</code> and an array of <code>names</code>.
 	 * <p>
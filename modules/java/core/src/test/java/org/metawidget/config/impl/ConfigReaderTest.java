@@ -14,9 +14,13 @@ package org.metawidget.config.impl;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.regex.Pattern;
 
 import javax.swing.SwingConstants;
@@ -24,6 +28,7 @@ import javax.swing.SwingConstants;
 import junit.framework.TestCase;
 
 import org.metawidget.config.iface.ConfigReader;
+import org.metawidget.config.iface.ResourceResolver;
 import org.metawidget.config.impl.AllTypesInspectorConfig.FooEnum;
 import org.metawidget.iface.MetawidgetException;
 import org.metawidget.inspector.composite.CompositeInspector;
@@ -259,6 +264,92 @@ public class ConfigReaderTest
 		assertTrue( FooEnum.BAR.equals( inspector.getEnum() ) );
 	}
 
+	public void testRecipe() {
+
+		// (configure the mutable AllTypesInspectorConfig, rather than the immutable
+		// AllTypesInspector, so that there is something to stamp)
+
+		String xml = "<?xml version=\"1.0\"?>";
+		xml += "<metawidget xmlns=\"http://metawidget.org\"	xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"	xsi:schemaLocation=\"http://metawidget.org http://metawidget.org/xsd/metawidget-1.0.xsd\" version=\"1.0\">";
+		xml += "<allTypesInspectorConfig xmlns=\"java:org.metawidget.config.impl\">";
+		xml += "<int><int>3</int></int>";
+		xml += "<list>";
+		xml += "<list>";
+		xml += "<string>foo</string>";
+		xml += "<class>java.lang.String</class>";
+		xml += "<instanceOf>java.util.Date</instanceOf>";
+		xml += "</list>";
+		xml += "</list>";
+		xml += "<pattern><pattern>.*?</pattern></pattern>";
+		xml += "<inputStream><resource>org/metawidget/config/metawidget-test-logging.xml</resource></inputStream>";
+		xml += "<stringArray><array><string>foo</string><string>bar</string></array></stringArray>";
+		xml += "<enum><enum>BAR</enum></enum>";
+		xml += "</allTypesInspectorConfig>";
+		xml += "</metawidget>";
+
+		final String recipeXml = xml;
+
+		ResourceResolver resourceResolver = new ResourceResolver() {
+
+			public InputStream openResource( String resource ) {
+
+				if ( "recipe.xml".equals( resource ) ) {
+					return new ByteArrayInputStream( recipeXml.getBytes() );
+				}
+
+				return new SimpleResourceResolver().openResource( resource );
+			}
+		};
+
+		// Compiled recipe
+
+		BaseConfigReader configReader = new BaseConfigReader( resourceResolver );
+		AllTypesInspectorConfig parsed = (AllTypesInspectorConfig) configReader.configure( "recipe.xml", AllTypesInspectorConfig.class );
+		assertTrue( configReader.mResourceCache.get( "recipe.xml/org.metawidget.config.impl.AllTypesInspectorConfig" ).getRecipe( AllTypesInspectorConfig.class ) != null );
+		AllTypesInspectorConfig stamped = (AllTypesInspectorConfig) configReader.configure( "recipe.xml", AllTypesInspectorConfig.class );
+
+		assertEquals( 3, stamped.getInt() );
+		assertEquals( "foo", stamped.getList().get( 0 ) );
+		assertTrue( String.class.equals( stamped.getList().get( 1 ) ) );
+		assertTrue( stamped.getList().get( 2 ) instanceof Date );
+		assertEquals( 3, stamped.getList().size() );
+		assertEquals( ".*?", stamped.getPattern().toString() );
+		assertEquals( "bar", stamped.getStringArray()[1] );
+		assertTrue( FooEnum.BAR.equals( stamped.getEnum() ) );
+
+		ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+		IOUtils.streamBetween( stamped.getInputStream(), streamOut );
+		assertTrue( streamOut.toString().contains( "<metawidget xmlns=\"http://metawidget.org\"" ) );
+
+		// Mutables should be fresh for each stamping, immutable values shared
+
+		assertTrue( parsed != stamped );
+		assertTrue( parsed.getList() != stamped.getList() );
+		assertTrue( parsed.getList().get( 2 ) != stamped.getList().get( 2 ) );
+		assertTrue( parsed.getStringArray() != stamped.getStringArray() );
+		assertTrue( parsed.getInputStream() != stamped.getInputStream() );
+		assertTrue( parsed.getPattern() == stamped.getPattern() );
+
+		// Configure an instance
+
+		AllTypesInspectorConfig toConfigure = new AllTypesInspectorConfig();
+		assertTrue( toConfigure == configReader.configure( "recipe.xml", toConfigure ) );
+		assertTrue( toConfigure == configReader.configure( "recipe.xml", toConfigure ) );
+		assertEquals( 3, toConfigure.getInt() );
+		assertEquals( 3, toConfigure.getList().size() );
+
+		// Replayed
+
+		configReader = new BaseConfigReader( resourceResolver );
+		configReader.setCompileRecipes( false );
+		configReader.configure( "recipe.xml", AllTypesInspectorConfig.class );
+		assertTrue( configReader.mResourceCache.get( "recipe.xml/org.metawidget.config.impl.AllTypesInspectorConfig" ).getRecipe( AllTypesInspectorConfig.class ) == null );
+		AllTypesInspectorConfig replayed = (AllTypesInspectorConfig) configReader.configure( "recipe.xml", AllTypesInspectorConfig.class );
+		assertEquals( 3, replayed.getInt() );
+		assertEquals( 3, replayed.getList().size() );
+		assertTrue( FooEnum.BAR.equals( replayed.getEnum() ) );
+	}
+
 	public void testUnsupportedType() {
 
 		String xml = "<?xml version=\"1.0\"?>";
@@ -692,6 +783,54 @@ public class ConfigReaderTest
 		}
 	}
 
+	public void testConcurrentConfigure()
+		throws Exception {
+
+		final BaseConfigReader configReader = new BaseConfigReader();
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final List<Object> configured = Collections.synchronizedList( new ArrayList<Object>() );
+		final List<Throwable> errors = Collections.synchronizedList( new ArrayList<Throwable>() );
+		Thread[] threads = new Thread[8];
+
+		for ( int loop = 0; loop < threads.length; loop++ ) {
+			threads[loop] = new Thread() {
+
+				@Override
+				public void run() {
+
+					try {
+						start.await();
+
+						for ( int configure = 0; configure < 50; configure++ ) {
+							configured.add( configReader.configure( "org/metawidget/config/metawidget-test-logging.xml", Inspector.class ) );
+						}
+					} catch ( Throwable t ) {
+						errors.add( t );
+					}
+				}
+			};
+			threads[loop].start();
+		}
+
+		start.countDown();
+
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+
+		assertTrue( errors.toString(), errors.isEmpty() );
+		assertEquals( 400, configured.size() );
+		assertTrue( configured.get( 0 ) instanceof CompositeInspector );
+
+		// Every thread should share the same immutable, and the resource should be parsed once
+
+		for ( Object inspector : configured ) {
+			assertTrue( configured.get( 0 ) == inspector );
+		}
+
+		assertEquals( 1, configReader.mResourceCache.size() );
+	}
+
 	//
 	// Inner class
 	//
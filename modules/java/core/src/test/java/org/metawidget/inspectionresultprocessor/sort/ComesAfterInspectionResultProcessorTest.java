@@ -11,10 +11,13 @@
 
 package org.metawidget.inspectionresultprocessor.sort;
 
+import static org.metawidget.inspector.InspectionResultConstants.*;
+
 import junit.framework.TestCase;
 
 import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessorException;
 import org.metawidget.util.XmlUtils;
+import org.w3c.dom.Element;
 
 /**
  * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
@@ -302,4 +305,91 @@ public class ComesAfterInspectionResultProcessorTest
 
 		assertEquals( validateXml, outputXml );
 	}
+
+	public void testInPlace()
+		throws Exception {
+
+		ComesAfterInspectionResultProcessor<Object> processor = new ComesAfterInspectionResultProcessor<Object>();
+
+		// Nothing to sort
+
+		String inputXml = "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\">";
+		inputXml += "<entity type=\"Foo\">";
+		inputXml += "<property name=\"foo\"/>";
+		inputXml += "<property name=\"bar\"/>";
+		inputXml += "</entity></inspection-result>";
+
+		Element inspectionResult = XmlUtils.documentFromString( inputXml ).getDocumentElement();
+		Element entity = XmlUtils.getFirstChildElement( inspectionResult );
+		Element foo = XmlUtils.getFirstChildElement( entity );
+
+		assertTrue( inspectionResult == processor.processInspectionResultAsDom( inspectionResult, null, null, null ) );
+		assertTrue( foo == XmlUtils.getFirstChildElement( entity ) );
+		assertEquals( "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Foo\"><property name=\"foo\"/><property name=\"bar\"/></entity></inspection-result>", XmlUtils.nodeToString( inspectionResult, false ) );
+
+		// Already in order
+
+		inputXml = "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\">";
+		inputXml += "<entity type=\"Foo\">";
+		inputXml += "<property name=\"foo\"/>";
+		inputXml += "<property name=\"bar\" comes-after=\"foo\"/>";
+		inputXml += "</entity></inspection-result>";
+
+		inspectionResult = XmlUtils.documentFromString( inputXml ).getDocumentElement();
+		entity = XmlUtils.getFirstChildElement( inspectionResult );
+		foo = XmlUtils.getFirstChildElement( entity );
+
+		assertTrue( inspectionResult == processor.processInspectionResultAsDom( inspectionResult, null, null, null ) );
+		assertTrue( foo == XmlUtils.getFirstChildElement( entity ) );
+
+		// Reordered in place
+
+		inputXml = "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\">";
+		inputXml += "<entity type=\"Foo\">";
+		inputXml += "<property name=\"foo\" comes-after=\"bar\"/>";
+		inputXml += "<property name=\"bar\"/>";
+		inputXml += "</entity></inspection-result>";
+
+		inspectionResult = XmlUtils.documentFromString( XmlUtils.documentToString( XmlUtils.documentFromString( inputXml ), true ) ).getDocumentElement();
+		entity = XmlUtils.getFirstChildElement( inspectionResult );
+		foo = XmlUtils.getFirstChildElement( entity );
+
+		assertTrue( inspectionResult == processor.processInspectionResultAsDom( inspectionResult, null, null, null ) );
+		assertTrue( foo == XmlUtils.getNextSiblingElement( XmlUtils.getFirstChildElement( entity ) ) );
+		assertEquals( "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Foo\"><property name=\"bar\"/><property name=\"foo\" comes-after=\"bar\"/></entity></inspection-result>", XmlUtils.nodeToString( inspectionResult, false ) );
+	}
+
+	public void testLargeEntity()
+		throws Exception {
+
+		// Each property comes after the next one, plus one comes after all (worst case for a
+		// quadratic implementation)
+
+		int properties = 1000;
+		StringBuilder builder = new StringBuilder( "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Foo\">" );
+		builder.append( "<property name=\"last\" comes-after=\"\"/>" );
+
+		for ( int loop = 0; loop < properties; loop++ ) {
+			builder.append( "<property name=\"prop" ).append( loop ).append( "\"" );
+
+			if ( loop < properties - 1 ) {
+				builder.append( " comes-after=\"prop" ).append( loop + 1 ).append( "\"" );
+			}
+
+			builder.append( "/>" );
+		}
+
+		builder.append( "</entity></inspection-result>" );
+
+		Element inspectionResult = new ComesAfterInspectionResultProcessor<Object>().processInspectionResultAsDom( XmlUtils.documentFromString( builder.toString() ).getDocumentElement(), null, null, null );
+		Element property = XmlUtils.getFirstChildElement( XmlUtils.getFirstChildElement( inspectionResult ) );
+
+		for ( int loop = properties - 1; loop >= 0; loop-- ) {
+			assertEquals( "prop" + loop, property.getAttribute( NAME ) );
+			property = XmlUtils.getNextSiblingElement( property );
+		}
+
+		assertEquals( "last", property.getAttribute( NAME ) );
+		assertEquals( null, XmlUtils.getNextSiblingElement( property ) );
+	}
 }
@@ -0,0 +1,245 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.inspector.caching;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.inspector.iface.InspectorException;
+import org.metawidget.inspector.propertytype.PropertyTypeInspector;
+import org.metawidget.util.MetawidgetTestUtils;
+import org.metawidget.util.XmlUtils;
+import org.w3c.dom.Element;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class CachingInspectorTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testCaching() {
+
+		CountingInspector countingInspector = new CountingInspector();
+		CachingInspector inspector = new CachingInspector( new CachingInspectorConfig().setInspector( countingInspector ) );
+
+		// Class-level inspections are cached
+
+		String xml = inspector.inspect( null, Foo.class.getName() );
+		assertTrue( xml.contains( "name=\"bar\"" ) );
+		assertEquals( xml, inspector.inspect( null, Foo.class.getName() ) );
+		assertEquals( 1, countingInspector.getCount() );
+		assertEquals( 1, inspector.getHitCount() );
+		assertEquals( 1, inspector.getMissCount() );
+
+		// Paths are cached separately
+
+		assertEquals( null, inspector.inspect( null, Foo.class.getName(), "baz" ) );
+		assertEquals( null, inspector.inspect( null, Foo.class.getName(), "baz" ) );
+		assertEquals( 2, countingInspector.getCount() );
+		assertEquals( 2, inspector.getSize() );
+
+		// Runtime inspections are not cached (or counted)
+
+		inspector.inspect( new Foo(), Foo.class.getName() );
+		inspector.inspect( new Foo(), Foo.class.getName() );
+		assertEquals( 4, countingInspector.getCount() );
+		assertEquals( 2, inspector.getHitCount() );
+		assertEquals( 2, inspector.getMissCount() );
+
+		// ...unless the Inspector is value independent
+
+		inspector = new CachingInspector( new CachingInspectorConfig().setInspector( countingInspector ).setValueIndependent( true ) );
+		inspector.inspect( new Foo(), Foo.class.getName() );
+		inspector.inspect( new Foo(), Foo.class.getName() );
+		assertEquals( 5, countingInspector.getCount() );
+	}
+
+	public void testDefensiveCopy() {
+
+		CountingInspector countingInspector = new CountingInspector();
+		CachingInspector inspector = new CachingInspector( new CachingInspectorConfig().setInspector( countingInspector ) );
+
+		// Modifying a returned DOM must not affect the cache
+
+		Element element = inspector.inspectAsDom( null, Foo.class.getName() );
+		String xml = XmlUtils.nodeToString( element, false );
+		XmlUtils.getFirstChildElement( element ).setAttribute( "modified", "true" );
+
+		element = inspector.inspectAsDom( null, Foo.class.getName() );
+		assertEquals( xml, XmlUtils.nodeToString( element, false ) );
+		XmlUtils.getFirstChildElement( element ).setAttribute( "modified", "true" );
+
+		assertEquals( xml, XmlUtils.nodeToString( inspector.inspectAsDom( null, Foo.class.getName() ), false ) );
+		assertEquals( xml, inspector.inspect( null, Foo.class.getName() ) );
+		assertTrue( element != inspector.inspectAsDom( null, Foo.class.getName() ) );
+		assertEquals( 1, countingInspector.getCount() );
+
+		// Non-DomInspectors
+
+		inspector = new CachingInspector( new CachingInspectorConfig().setInspector( new Inspector() {
+
+			public String inspect( Object toInspect, String type, String... names ) {
+
+				return "<inspection-result><entity type=\"" + type + "\"/></inspection-result>";
+			}
+		} ) );
+
+		element = inspector.inspectAsDom( null, "Foo" );
+		element.setAttribute( "modified", "true" );
+		assertEquals( "<inspection-result><entity type=\"Foo\"/></inspection-result>", inspector.inspect( null, "Foo" ) );
+		assertEquals( "Foo", XmlUtils.getFirstChildElement( inspector.inspectAsDom( null, "Foo" ) ).getAttribute( "type" ) );
+	}
+
+	public void testEviction() {
+
+		CountingInspector countingInspector = new CountingInspector();
+		CachingInspector inspector = new CachingInspector( new CachingInspectorConfig().setInspector( countingInspector ).setMaximumSize( 2 ) );
+
+		inspector.inspect( null, "Foo" );
+		inspector.inspect( null, "Bar" );
+		inspector.inspect( null, "Foo" );
+		assertEquals( 2, countingInspector.getCount() );
+
+		// Least recently used (Bar) is evicted
+
+		inspector.inspect( null, "Baz" );
+		assertEquals( 2, inspector.getSize() );
+		inspector.inspect( null, "Foo" );
+		assertEquals( 3, countingInspector.getCount() );
+		inspector.inspect( null, "Bar" );
+		assertEquals( 4, countingInspector.getCount() );
+	}
+
+	public void testInvalidate() {
+
+		CountingInspector countingInspector = new CountingInspector();
+		CachingInspector inspector = new CachingInspector( new CachingInspectorConfig().setInspector( countingInspector ) );
+
+		inspector.inspect( null, "Foo" );
+		inspector.inspect( null, "Foo", "bar" );
+		inspector.inspect( null, "Foo", "bar", "baz" );
+		inspector.inspect( null, "FooBar" );
+		assertEquals( 4, inspector.getSize() );
+
+		inspector.invalidate( "Foo" );
+		assertEquals( 1, inspector.getSize() );
+		inspector.inspect( null, "FooBar" );
+		assertEquals( 4, countingInspector.getCount() );
+		inspector.inspect( null, "Foo", "bar" );
+		assertEquals( 5, countingInspector.getCount() );
+
+		inspector.invalidate();
+		assertEquals( 0, inspector.getSize() );
+	}
+
+	public void testInvalidateDuringInspection() {
+
+		// Simulate another Thread invalidating while an inspection is in flight
+
+		final CachingInspector[] inspector = new CachingInspector[1];
+		CountingInspector countingInspector = new CountingInspector() {
+
+			@Override
+			public Element inspectAsDom( Object toInspect, String type, String... names ) {
+
+				Element element = super.inspectAsDom( toInspect, type, names );
+
+				if ( getCount() == 1 ) {
+					inspector[0].invalidate( type );
+				}
+
+				return element;
+			}
+		};
+
+		inspector[0] = new CachingInspector( new CachingInspectorConfig().setInspector( countingInspector ) );
+
+		// The (possibly stale) result must not be cached
+
+		assertTrue( inspector[0].inspect( null, Foo.class.getName() ).contains( "name=\"bar\"" ) );
+		assertEquals( 0, inspector[0].getSize() );
+
+		inspector[0].inspectAsDom( null, Foo.class.getName() );
+		assertEquals( 2, countingInspector.getCount() );
+		assertEquals( 1, inspector[0].getSize() );
+		inspector[0].inspectAsDom( null, Foo.class.getName() );
+		assertEquals( 2, countingInspector.getCount() );
+	}
+
+	public void testConfig() {
+
+		MetawidgetTestUtils.testEqualsAndHashcode( CachingInspectorConfig.class, new CachingInspectorConfig() {
+			// Subclass
+		} );
+
+		try {
+			new CachingInspector( new CachingInspectorConfig() );
+			fail();
+		} catch ( InspectorException e ) {
+			assertEquals( "CachingInspector needs an Inspector", e.getMessage() );
+		}
+
+		try {
+			new CachingInspector( new CachingInspectorConfig().setInspector( new PropertyTypeInspector() ).setMaximumSize( 0 ) );
+			fail();
+		} catch ( InspectorException e ) {
+			assertEquals( "CachingInspector needs a maximumSize greater than zero", e.getMessage() );
+		}
+	}
+
+	//
+	// Inner class
+	//
+
+	public static class Foo {
+
+		//
+		// Public methods
+		//
+
+		public String getBar() {
+
+			return null;
+		}
+	}
+
+	/* package private */static class CountingInspector
+		extends PropertyTypeInspector {
+
+		//
+		// Private members
+		//
+
+		private int	mCount;
+
+		//
+		// Public methods
+		//
+
+		public int getCount() {
+
+			return mCount;
+		}
+
+		@Override
+		public Element inspectAsDom( Object toInspect, String type, String... names ) {
+
+			mCount++;
+			return super.inspectAsDom( toInspect, type, names );
+		}
+	}
+}
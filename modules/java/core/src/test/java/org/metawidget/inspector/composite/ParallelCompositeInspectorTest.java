@@ -0,0 +1,263 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.inspector.composite;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.inspector.iface.InspectorException;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.MetawidgetTestUtils;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class ParallelCompositeInspectorTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testInspection() {
+
+		// Slowest Inspector first, to prove results are combined in declared order
+
+		Inspector[] inspectors = new Inspector[] { new SleepingInspector( "<property name=\"foo\" a=\"1\"/><property name=\"bar\"/>", 200 ), new SleepingInspector( "<property name=\"baz\"/><property name=\"foo\" a=\"2\" b=\"3\"/>", 100 ),
+				new SleepingInspector( "<property name=\"abc\"/>", 0 ) };
+
+		String expected = new CompositeInspector( new CompositeInspectorConfig().setInspectors( inspectors ) ).inspect( null, "Foo" );
+		ParallelCompositeInspector inspector = new ParallelCompositeInspector( new ParallelCompositeInspectorConfig().setInspectors( inspectors ) );
+		assertEquals( expected, inspector.inspect( null, "Foo" ) );
+
+		assertEquals( "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Foo\"><property name=\"foo\" a=\"2\" b=\"3\"/><property name=\"bar\"/><property name=\"baz\"/><property name=\"abc\"/></entity></inspection-result>", expected );
+	}
+
+	public void testConcurrency() {
+
+		// Each Inspector waits for all the others to start, so this only completes if they all run
+		// at the same time (the default Executor is bounded by the number of processors, so supply
+		// our own)
+
+		CountDownLatch started = new CountDownLatch( 3 );
+		ParallelCompositeInspectorConfig config = new ParallelCompositeInspectorConfig().setInspectors( new LatchInspector( "<property name=\"foo\"/>", started ), new LatchInspector( "<property name=\"bar\"/>", started ),
+				new LatchInspector( "<property name=\"baz\"/>", started ) );
+		ExecutorService executor = Executors.newCachedThreadPool();
+		config.setExecutor( executor );
+
+		try {
+			assertEquals( "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Foo\"><property name=\"foo\"/><property name=\"bar\"/><property name=\"baz\"/></entity></inspection-result>", new ParallelCompositeInspector( config ).inspect( null, "Foo" ) );
+			assertEquals( 0, started.getCount() );
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testTimeout() {
+
+		ParallelCompositeInspectorConfig config = new ParallelCompositeInspectorConfig().setInspectors( new SleepingInspector( "<property name=\"foo\"/>", 0 ), new SleepingInspector( "<property name=\"bar\"/>", 2000 ) );
+		config.setTimeout( 100 );
+
+		try {
+			new ParallelCompositeInspector( config ).inspect( (Object) null, "Foo", "bar", "baz" );
+			fail();
+		} catch ( InspectorException e ) {
+			assertEquals( SleepingInspector.class.getName() + " did not inspect Foo/bar/baz within 100ms", e.getMessage() );
+		}
+	}
+
+	public void testFailure() {
+
+		ParallelCompositeInspectorConfig config = new ParallelCompositeInspectorConfig().setInspectors( new SleepingInspector( "<property name=\"foo\"/>", 0 ), new Inspector() {
+
+			public String inspect( Object toInspect, String type, String... names ) {
+
+				throw InspectorException.newException( "Failed" );
+			}
+		} );
+
+		try {
+			new ParallelCompositeInspector( config ).inspect( null, "Foo" );
+			fail();
+		} catch ( InspectorException e ) {
+			assertEquals( "Failed", e.getMessage() );
+		}
+	}
+
+	public void testRejectedExecution() {
+
+		Inspector[] inspectors = new Inspector[] { new SleepingInspector( "<property name=\"foo\"/>", 0 ), new SleepingInspector( "<property name=\"bar\"/>", 0 ) };
+		ParallelCompositeInspectorConfig config = new ParallelCompositeInspectorConfig().setInspectors( inspectors );
+		config.setExecutor( new Executor() {
+
+			public void execute( Runnable command ) {
+
+				throw new RejectedExecutionException();
+			}
+		} );
+
+		String expected = new CompositeInspector( new CompositeInspectorConfig().setInspectors( inspectors ) ).inspect( null, "Foo" );
+		assertEquals( expected, new ParallelCompositeInspector( config ).inspect( null, "Foo" ) );
+	}
+
+	public void testDefaultExecutorIsBounded() {
+
+		// More sub-Inspectors than processors, each busy long enough to saturate the pool
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		Set<Thread> threads = Collections.synchronizedSet( CollectionUtils.<Thread> newHashSet() );
+		Inspector[] inspectors = new Inspector[processors * 2 + 2];
+
+		for ( int loop = 0; loop < inspectors.length; loop++ ) {
+			inspectors[loop] = new ThreadRecordingInspector( "<property name=\"foo" + loop + "\"/>", 100, threads );
+		}
+
+		String expected = new CompositeInspector( new CompositeInspectorConfig().setInspectors( inspectors ) ).inspect( null, "Foo" );
+		threads.clear();
+		assertEquals( expected, new ParallelCompositeInspector( new ParallelCompositeInspectorConfig().setInspectors( inspectors ) ).inspect( null, "Foo" ) );
+
+		// Rejected sub-Inspectors ran on this thread instead
+
+		assertTrue( threads.contains( Thread.currentThread() ) );
+		assertTrue( threads.size() <= processors + 1 );
+	}
+
+	public void testConfig() {
+
+		MetawidgetTestUtils.testEqualsAndHashcode( ParallelCompositeInspectorConfig.class, new ParallelCompositeInspectorConfig() {
+			// Subclass
+		} );
+	}
+
+	//
+	// Inner class
+	//
+
+	/* package private */static class LatchInspector
+		implements Inspector {
+
+		//
+		// Private members
+		//
+
+		private String			mProperties;
+
+		private CountDownLatch	mStarted;
+
+		//
+		// Constructor
+		//
+
+		public LatchInspector( String properties, CountDownLatch started ) {
+
+			mProperties = properties;
+			mStarted = started;
+		}
+
+		//
+		// Public methods
+		//
+
+		public String inspect( Object toInspect, String type, String... names ) {
+
+			mStarted.countDown();
+
+			try {
+				if ( !mStarted.await( 10, TimeUnit.SECONDS ) ) {
+					throw InspectorException.newException( "Inspectors did not run concurrently" );
+				}
+			} catch ( InterruptedException e ) {
+				throw InspectorException.newException( e );
+			}
+
+			return "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"" + type + "\">" + mProperties + "</entity></inspection-result>";
+		}
+	}
+
+	/* package private */static class SleepingInspector
+		implements Inspector {
+
+		//
+		// Private members
+		//
+
+		private String	mProperties;
+
+		private long	mSleep;
+
+		//
+		// Constructor
+		//
+
+		public SleepingInspector( String properties, long sleep ) {
+
+			mProperties = properties;
+			mSleep = sleep;
+		}
+
+		//
+		// Public methods
+		//
+
+		public String inspect( Object toInspect, String type, String... names ) {
+
+			try {
+				Thread.sleep( mSleep );
+			} catch ( InterruptedException e ) {
+				return null;
+			}
+
+			return "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"" + type + "\">" + mProperties + "</entity></inspection-result>";
+		}
+	}
+
+	/* package private */static class ThreadRecordingInspector
+		extends SleepingInspector {
+
+		//
+		// Private members
+		//
+
+		private Set<Thread>	mThreads;
+
+		//
+		// Constructor
+		//
+
+		public ThreadRecordingInspector( String properties, long sleep, Set<Thread> threads ) {
+
+			super( properties, sleep );
+			mThreads = threads;
+		}
+
+		//
+		// Public methods
+		//
+
+		@Override
+		public String inspect( Object toInspect, String type, String... names ) {
+
+			mThreads.add( Thread.currentThread() );
+			return super.inspect( toInspect, type, names );
+		}
+	}
+}
@@ -11,8 +11,15 @@
 
 package org.metawidget.inspector.impl;
 
+import static org.metawidget.inspector.InspectionResultConstants.*;
+
+import java.util.Date;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
+import org.metawidget.inspector.impl.propertystyle.Property;
+import org.metawidget.inspector.propertytype.PropertyTypeInspector;
 import org.metawidget.util.MetawidgetTestUtils;
 
 /**
@@ -32,4 +39,140 @@ public class BaseObjectInspectorTest
 			// Subclass
 		} );
 	}
+
+	public void testInspectionPlans() {
+
+		CountingInspector uncachedInspector = new CountingInspector( new BaseObjectInspectorConfig() );
+		CountingInspector cachedInspector = new CountingInspector( new BaseObjectInspectorConfig().setCacheInspectionPlans( true ) );
+
+		assertEquals( null, ( (BaseObjectInspector) uncachedInspector ).mInspectionPlans );
+		assertEquals( null, ( (BaseObjectInspector) uncachedInspector ).mEntityAttributes );
+		assertTrue( ( (BaseObjectInspector) cachedInspector ).mInspectionPlans.isEmpty() );
+
+		Foo foo = new Foo();
+		foo.setBar( new Bar() );
+
+		// Should give identical results...
+
+		String uncached = uncachedInspector.inspect( foo, Foo.class.getName() );
+		assertEquals( uncached, cachedInspector.inspect( foo, Foo.class.getName() ) );
+		assertTrue( uncached.contains( "<property name=\"bar\" type=\"" + Bar.class.getName() + "\"/>" ) );
+		assertEquals( 1, ( (BaseObjectInspector) cachedInspector ).mInspectionPlans.size() );
+		int inspectPropertyCount = cachedInspector.mInspectPropertyCount;
+		assertEquals( 2, inspectPropertyCount );
+
+		// ...but not re-inspect properties the second time
+
+		assertEquals( uncached, cachedInspector.inspect( foo, Foo.class.getName() ) );
+		assertEquals( inspectPropertyCount, cachedInspector.mInspectPropertyCount );
+
+		// Runtime values should still be honoured
+
+		foo.setBar( new SubBar() );
+		uncached = uncachedInspector.inspect( foo, Foo.class.getName() );
+		assertTrue( uncached.contains( "<property name=\"bar\" actual-class=\"" + SubBar.class.getName() + "\" type=\"" + Bar.class.getName() + "\"/>" ) );
+		assertEquals( uncached, cachedInspector.inspect( foo, Foo.class.getName() ) );
+		assertEquals( inspectPropertyCount, cachedInspector.mInspectPropertyCount );
+
+		// Parent properties
+
+		uncached = uncachedInspector.inspect( foo, Foo.class.getName(), "bar" );
+		assertEquals( uncached, cachedInspector.inspect( foo, Foo.class.getName(), "bar" ) );
+		assertEquals( 2, ( (BaseObjectInspector) cachedInspector ).mInspectionPlans.size() );
+
+		uncached = uncachedInspector.inspect( foo, Foo.class.getName(), "bar", "date" );
+		assertEquals( uncached, cachedInspector.inspect( foo, Foo.class.getName(), "bar", "date" ) );
+
+		int inspectEntityCount = cachedInspector.mInspectEntityCount;
+		assertEquals( uncached, cachedInspector.inspect( foo, Foo.class.getName(), "bar", "date" ) );
+		assertEquals( inspectEntityCount, cachedInspector.mInspectEntityCount );
+
+		// Clear cache
+
+		inspectPropertyCount = cachedInspector.mInspectPropertyCount;
+		cachedInspector.clearCache();
+		assertTrue( ( (BaseObjectInspector) cachedInspector ).mInspectionPlans.isEmpty() );
+		assertTrue( ( (BaseObjectInspector) cachedInspector ).mEntityAttributes.isEmpty() );
+		assertEquals( uncachedInspector.inspect( foo, Foo.class.getName() ), cachedInspector.inspect( foo, Foo.class.getName() ) );
+		assertEquals( inspectPropertyCount + 2, cachedInspector.mInspectPropertyCount );
+	}
+
+	//
+	// Inner class
+	//
+
+	/* package private */static class CountingInspector
+		extends PropertyTypeInspector {
+
+		//
+		// Package private members
+		//
+
+		/* package private */int	mInspectPropertyCount;
+
+		/* package private */int	mInspectEntityCount;
+
+		//
+		// Constructor
+		//
+
+		public CountingInspector( BaseObjectInspectorConfig config ) {
+
+			super( config );
+		}
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected Map<String, String> inspectProperty( Property property )
+			throws Exception {
+
+			mInspectPropertyCount++;
+			return super.inspectProperty( property );
+		}
+
+		@Override
+		protected Map<String, String> inspectEntity( String declaredClass, String actualClass )
+			throws Exception {
+
+			mInspectEntityCount++;
+			return super.inspectEntity( declaredClass, actualClass );
+		}
+	}
+
+	public static class Foo {
+
+		private Bar	mBar;
+
+		public Bar getBar() {
+
+			return mBar;
+		}
+
+		public void setBar( Bar bar ) {
+
+			mBar = bar;
+		}
+
+		public String getName() {
+
+			return NAME;
+		}
+	}
+
+	public static class Bar {
+
+		public Date getDate() {
+
+			return null;
+		}
+	}
+
+	public static class SubBar
+		extends Bar {
+
+		// Subclass
+	}
 }
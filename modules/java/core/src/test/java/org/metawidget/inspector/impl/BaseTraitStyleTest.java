@@ -12,7 +12,10 @@
 package org.metawidget.inspector.impl;
 
 import java.util.Date;
+import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import javax.swing.JComponent;
@@ -20,10 +23,12 @@ import javax.swing.JTextField;
 
 import junit.framework.TestCase;
 
+import org.metawidget.inspector.iface.InspectorException;
 import org.metawidget.inspector.impl.propertystyle.BasePropertyStyle;
 import org.metawidget.inspector.impl.propertystyle.Property;
 import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyle;
 import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyleConfig;
+import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.MetawidgetTestUtils;
 import org.w3c.dom.Element;
 
@@ -67,6 +72,147 @@ public class BaseTraitStyleTest
 		assertEquals( traitStyle.mCache, null );
 	}
 
+	public void testConcurrentCache()
+		throws Exception {
+
+		final AtomicInteger uncachedLookups = new AtomicInteger();
+
+		final BaseTraitStyle<Property> traitStyle = new JavaBeanPropertyStyle( new JavaBeanPropertyStyleConfig() ) {
+
+			@Override
+			protected Map<String, Property> inspectProperties( String type ) {
+
+				uncachedLookups.incrementAndGet();
+
+				try {
+					Thread.sleep( 50 );
+				} catch ( InterruptedException e ) {
+					// (do nothing)
+				}
+
+				return super.inspectProperties( type );
+			}
+		};
+
+		// Start lots of threads...
+
+		final CountDownLatch startSignal = new CountDownLatch( 1 );
+		final CountDownLatch doneSignal = new CountDownLatch( 50 );
+		final Map<Thread, Map<String, Property>> results = CollectionUtils.newConcurrentHashMap();
+
+		for ( int concurrentThreads = 0; concurrentThreads < doneSignal.getCount(); concurrentThreads++ ) {
+
+			new Thread( new Runnable() {
+
+				public void run() {
+
+					try {
+						startSignal.await();
+						results.put( Thread.currentThread(), traitStyle.getTraits( Date.class.getName() ) );
+					} catch ( InterruptedException e ) {
+						// (do nothing)
+					} finally {
+						doneSignal.countDown();
+					}
+				}
+			} ).start();
+		}
+
+		// ...and run them all simultaneously
+
+		startSignal.countDown();
+		doneSignal.await();
+
+		// Should have been looked up only once, and shared
+
+		assertEquals( 1, uncachedLookups.get() );
+		assertEquals( 50, results.size() );
+
+		Map<String, Property> traits = traitStyle.getTraits( Date.class.getName() );
+
+		for ( Map<String, Property> result : results.values() ) {
+			assertEquals( traits, result );
+		}
+
+		// Clearing the cache should cause a re-lookup
+
+		traitStyle.clearCache();
+		assertTrue( traitStyle.mCache.isEmpty() );
+		assertTrue( traits != traitStyle.getTraits( Date.class.getName() ) );
+		assertEquals( 2, uncachedLookups.get() );
+	}
+
+	public void testCacheFailure() {
+
+		final AtomicInteger uncachedLookups = new AtomicInteger();
+
+		BaseTraitStyle<Property> traitStyle = new JavaBeanPropertyStyle( new JavaBeanPropertyStyleConfig() ) {
+
+			@Override
+			protected Map<String, Property> inspectProperties( String type ) {
+
+				if ( uncachedLookups.incrementAndGet() == 1 ) {
+					throw InspectorException.newException( "Failed first time" );
+				}
+
+				return super.inspectProperties( type );
+			}
+		};
+
+		// Failures should propagate unwrapped...
+
+		try {
+			traitStyle.getTraits( Date.class.getName() );
+			fail();
+		} catch ( InspectorException e ) {
+			assertEquals( "Failed first time", e.getMessage() );
+		}
+
+		// ...and not be cached
+
+		assertTrue( traitStyle.mCache.isEmpty() );
+		assertTrue( traitStyle.getTraits( Date.class.getName() ) != null );
+		assertEquals( 2, uncachedLookups.get() );
+		assertEquals( 1, traitStyle.mCache.size() );
+	}
+
+	public void testRecursiveLookup()
+		throws Exception {
+
+		final AtomicInteger uncachedLookups = new AtomicInteger();
+
+		final BaseTraitStyle<Property> traitStyle = new JavaBeanPropertyStyle( new JavaBeanPropertyStyleConfig() ) {
+
+			@Override
+			protected Map<String, Property> inspectProperties( String type ) {
+
+				// Recursively look up the same type (should not wait on ourselves)
+
+				if ( uncachedLookups.incrementAndGet() == 1 ) {
+					assertTrue( getTraits( type ) != null );
+				}
+
+				return super.inspectProperties( type );
+			}
+		};
+
+		Thread thread = new Thread( new Runnable() {
+
+			public void run() {
+
+				traitStyle.getTraits( Date.class.getName() );
+			}
+		} );
+
+		thread.start();
+		thread.join( 5000 );
+		assertFalse( thread.isAlive() );
+
+		assertEquals( 2, uncachedLookups.get() );
+		assertTrue( traitStyle.getTraits( Date.class.getName() ) != null );
+		assertEquals( 2, uncachedLookups.get() );
+	}
+
 	public void testExcludedBaseType() {
 
 		// Default excludeBaseType
@@ -27,8 +27,10 @@ import junit.framework.TestCase;
 
 import org.metawidget.inspector.iface.InspectorException;
 import org.metawidget.inspector.impl.BaseTraitStyle;
+import org.metawidget.inspector.impl.propertystyle.BasePropertyStyle;
 import org.metawidget.inspector.impl.propertystyle.Property;
 import org.metawidget.inspector.impl.propertystyle.ValueAndDeclaredType;
+import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyle.FieldProperty;
 import org.metawidget.inspector.impl.propertystyle.javabean.JavaBeanPropertyStyle.JavaBeanProperty;
 import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.MetawidgetTestUtils;
@@ -274,6 +276,72 @@ public class JavaBeanPropertyStyleTest
 		assertEquals( String[].class.getName(), valueAndDeclaredType.getDeclaredType() );
 	}
 
+	public void testTraversePropertyPath()
+		throws Exception {
+
+		JavaBeanPropertyStyle propertyStyle = new JavaBeanPropertyStyle();
+		Field propertyPathsField = BasePropertyStyle.class.getDeclaredField( "mPropertyPaths" );
+		propertyPathsField.setAccessible( true );
+		Map<?, ?> propertyPaths = (Map<?, ?>) propertyPathsField.get( propertyStyle );
+
+		TraverseFoo traverseFoo = new TraverseFoo( "foo1" );
+		traverseFoo.setNext( new TraverseFoo( "foo2" ) );
+
+		// Compiled on first traversal, then reused
+
+		for ( int loop = 0; loop < 2; loop++ ) {
+			ValueAndDeclaredType valueAndDeclaredType = propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "name" );
+			assertEquals( "foo2", valueAndDeclaredType.getValue() );
+			assertEquals( String.class.getName(), valueAndDeclaredType.getDeclaredType() );
+			assertEquals( 1, propertyPaths.size() );
+		}
+
+		ValueAndDeclaredType valueAndDeclaredType = propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), true, "next", "name" );
+		assertTrue( traverseFoo.getNext() == valueAndDeclaredType.getValue() );
+		assertEquals( Object.class.getName(), valueAndDeclaredType.getDeclaredType() );
+		assertEquals( 1, propertyPaths.size() );
+
+		// Runtime classes that differ from the compiled path
+
+		traverseFoo.setNext( new TraverseBar( "bar1" ) );
+		valueAndDeclaredType = propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "name" );
+		assertEquals( "bar1", valueAndDeclaredType.getValue() );
+		valueAndDeclaredType = propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "bar" );
+		assertEquals( "bar", valueAndDeclaredType.getValue() );
+		traverseFoo.setNext( new TraverseFoo( "foo3" ) );
+		assertEquals( null, propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "bar" ).getValue() );
+		assertEquals( null, propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "bar" ).getDeclaredType() );
+		assertEquals( "foo3", propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "name" ).getValue() );
+
+		// Cycles are detected by identity
+
+		traverseFoo.setNext( traverseFoo );
+		assertEquals( null, propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next" ).getDeclaredType() );
+
+		TraverseFoo traverseFoo2 = new TraverseFoo( "foo1" );
+		traverseFoo.setNext( traverseFoo2 );
+		traverseFoo2.setNext( traverseFoo );
+		assertEquals( null, propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "next" ).getDeclaredType() );
+		assertEquals( null, propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "next", "name" ).getDeclaredType() );
+
+		traverseFoo2.setNext( new TraverseFoo( "foo1" ) );
+		assertEquals( "foo1", propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "next", "name" ).getValue() );
+
+		// Clear cache
+
+		assertEquals( 5, propertyPaths.size() );
+		propertyStyle.clearCache();
+		assertEquals( 0, propertyPaths.size() );
+
+		// No cache
+
+		JavaBeanPropertyStyleConfig config = new JavaBeanPropertyStyleConfig();
+		config.setCacheLookups( false );
+		propertyStyle = new JavaBeanPropertyStyle( config );
+		assertEquals( null, propertyPathsField.get( propertyStyle ) );
+		assertEquals( "foo1", propertyStyle.traverse( traverseFoo, TraverseFoo.class.getName(), false, "next", "next", "name" ).getValue() );
+	}
+
 	public void testPrivateField() {
 
 		JavaBeanPropertyStyleConfig config = new JavaBeanPropertyStyleConfig();
@@ -292,6 +360,27 @@ public class JavaBeanPropertyStyleTest
 		assertTrue( field == property.getPrivateField() );
 	}
 
+	public void testSuppressAccessChecks() {
+
+		Map<String, Property> properties = new JavaBeanPropertyStyle( new JavaBeanPropertyStyleConfig().setSupportPublicFields( true ) ).getProperties( Foo.class.getName() );
+		assertTrue( !( (FieldProperty) properties.get( "foo" ) ).getField().isAccessible() );
+		assertTrue( !( (JavaBeanProperty) properties.get( "methodFoo" ) ).getReadMethod().isAccessible() );
+
+		JavaBeanPropertyStyleConfig config = new JavaBeanPropertyStyleConfig().setSupportPublicFields( true ).setSuppressAccessChecks( true );
+		properties = new JavaBeanPropertyStyle( config ).getProperties( Foo.class.getName() );
+		assertTrue( ( (FieldProperty) properties.get( "foo" ) ).getField().isAccessible() );
+		assertTrue( ( (JavaBeanProperty) properties.get( "methodFoo" ) ).getReadMethod().isAccessible() );
+		assertTrue( ( (JavaBeanProperty) properties.get( "methodBar" ) ).getWriteMethod().isAccessible() );
+
+		// Reads and writes as before
+
+		Foo foo = new Foo();
+		properties.get( "foo" ).write( foo, "Foo" );
+		assertEquals( "Foo", properties.get( "foo" ).read( foo ) );
+		assertEquals( null, properties.get( "methodFoo" ).read( foo ) );
+		properties.get( "methodBar" ).write( foo, "Bar" );
+	}
+
 	public void testConfig() {
 
 		MetawidgetTestUtils.testEqualsAndHashcode( JavaBeanPropertyStyleConfig.class, new JavaBeanPropertyStyleConfig() {
@@ -594,6 +683,83 @@ public class JavaBeanPropertyStyleTest
 		}
 	}
 
+	static class TraverseFoo {
+
+		//
+		// Private members
+		//
+
+		private String	mName;
+
+		private Object	mNext;
+
+		//
+		// Constructor
+		//
+
+		public TraverseFoo( String name ) {
+
+			mName = name;
+		}
+
+		//
+		// Public methods
+		//
+
+		public String getName() {
+
+			return mName;
+		}
+
+		public Object getNext() {
+
+			return mNext;
+		}
+
+		public void setNext( Object next ) {
+
+			mNext = next;
+		}
+
+		/**
+		 * Every TraverseFoo is equal, so cycle detection must use identity.
+		 */
+
+		@Override
+		public boolean equals( Object that ) {
+
+			return ( that instanceof TraverseFoo );
+		}
+
+		@Override
+		public int hashCode() {
+
+			return 0;
+		}
+	}
+
+	static class TraverseBar
+		extends TraverseFoo {
+
+		//
+		// Constructor
+		//
+
+		public TraverseBar( String name ) {
+
+			super( name );
+		}
+
+		//
+		// Public methods
+		//
+
+		public String getBar() {
+
+			return "bar";
+		}
+	}
+
 	static class PrivateFieldTest {
 
 		//
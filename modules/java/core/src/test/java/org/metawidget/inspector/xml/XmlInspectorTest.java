@@ -849,6 +849,62 @@ public class XmlInspectorTest
 		assertEquals( 2, entity.getChildNodes().getLength() );
 	}
 
+	public void testIndexed()
+		throws Exception {
+
+		XmlInspector indexed = new XmlInspector( new XmlInspectorConfig().setIndexed( true ).setInputStream( new ByteArrayInputStream( mXml.getBytes() ) ) );
+
+		// Same results as walking the DOM
+
+		String subFoo = "org.metawidget.inspector.xml.XmlInspectorTest$SubFoo";
+
+		assertEquals( mInspector.inspect( null, subFoo ), indexed.inspect( null, subFoo ) );
+		assertEquals( mInspector.inspect( null, subFoo, "bar" ), indexed.inspect( null, subFoo, "bar" ) );
+		assertEquals( mInspector.inspect( null, "Bar" ), indexed.inspect( null, "Bar" ) );
+		assertEquals( null, indexed.inspect( null, subFoo, "no-such-property" ) );
+		assertEquals( null, indexed.inspect( null, "NoSuchType" ) );
+
+		try {
+			indexed.inspect( null, subFoo, "a" );
+			fail();
+		} catch ( InspectorException e ) {
+			assertEquals( "Property a in entity org.metawidget.inspector.xml.XmlInspectorTest$SubFoo has no @type attribute in the XML, so cannot navigate to org.metawidget.inspector.xml.XmlInspectorTest$SubFoo/a", e.getMessage() );
+		}
+
+		// Nested properties
+
+		String xml = "<?xml version=\"1.0\"?>";
+		xml += "<inspection-result xmlns=\"http://www.metawidget.org/inspection-result\" version=\"1.0\">";
+		xml += "<entity type=\"Foo\">";
+		xml += "<property name=\"a\"/>";
+		xml += "<property name=\"c\">";
+		xml += "<property name=\"c1\"/>";
+		xml += "<property name=\"c3\" type=\"C3-Type\">";
+		xml += "<property name=\"c31\"/>";
+		xml += "</property>";
+		xml += "</property>";
+		xml += "</entity>";
+		xml += "</inspection-result>";
+
+		Inspector inspector = new XmlInspector( new XmlInspectorConfig().setInputStream( new ByteArrayInputStream( xml.getBytes() ) ) );
+		Inspector indexedInspector = new XmlInspector( new XmlInspectorConfig().setIndexed( true ).setInputStream( new ByteArrayInputStream( xml.getBytes() ) ) );
+
+		assertEquals( inspector.inspect( null, "Foo" ), indexedInspector.inspect( null, "Foo" ) );
+		assertEquals( inspector.inspect( null, "Foo", "c" ), indexedInspector.inspect( null, "Foo", "c" ) );
+		assertEquals( inspector.inspect( null, "Foo", "c", "c3" ), indexedInspector.inspect( null, "Foo", "c", "c3" ) );
+
+		// Equality
+
+		assertFalse( new XmlInspectorConfig().equals( new XmlInspectorConfig().setIndexed( true ) ) );
+		assertEquals( new XmlInspectorConfig().setIndexed( true ), new XmlInspectorConfig().setIndexed( true ) );
+		assertEquals( new XmlInspectorConfig().setIndexed( true ).hashCode(), new XmlInspectorConfig().setIndexed( true ).hashCode() );
+
+		// Concurrency
+
+		mInspector = indexed;
+		testConcurrency();
+	}
+
 	//
 	// Protected methods
 	//
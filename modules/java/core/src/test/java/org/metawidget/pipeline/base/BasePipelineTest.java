@@ -26,17 +26,26 @@ import org.metawidget.config.iface.ConfigReader;
 import org.metawidget.config.impl.BaseConfigReader;
 import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessor;
 import org.metawidget.inspectionresultprocessor.sort.ComesAfterInspectionResultProcessor;
+import org.metawidget.inspector.composite.CompositeInspector;
+import org.metawidget.inspector.composite.CompositeInspectorConfig;
+import org.metawidget.inspector.composite.ParallelCompositeInspector;
+import org.metawidget.inspector.composite.ParallelCompositeInspectorConfig;
+import org.metawidget.inspector.iface.Inspector;
 import org.metawidget.inspector.propertytype.PropertyTypeInspector;
 import org.metawidget.layout.iface.AdvancedLayout;
 import org.metawidget.layout.iface.Layout;
+import org.metawidget.pipeline.metrics.MetricsPipelineListener;
 import org.metawidget.pipeline.w3c.W3CPipeline;
 import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.XmlUtils;
+import org.metawidget.widgetbuilder.composite.CompositeWidgetBuilder;
+import org.metawidget.widgetbuilder.composite.CompositeWidgetBuilderConfig;
 import org.metawidget.widgetbuilder.iface.AdvancedWidgetBuilder;
 import org.metawidget.widgetbuilder.iface.WidgetBuilder;
 import org.metawidget.widgetprocessor.iface.AdvancedWidgetProcessor;
 import org.metawidget.widgetprocessor.iface.WidgetProcessor;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 /**
  * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
@@ -270,6 +279,235 @@ public class BasePipelineTest
 		assertEquals( 11, events.size() );
 	}
 
+	public void testPipelineListener()
+		throws Exception {
+
+		final List<String> events = CollectionUtils.newArrayList();
+		PipelineListener pipelineListener = new PipelineListener() {
+
+			public Object stageStarted( PipelineStage stage, Object component, int depth ) {
+
+				events.add( "start " + stage + " " + depth );
+				return stage;
+			}
+
+			public void stageEnded( PipelineStage stage, Object component, int depth, Object token, Object result ) {
+
+				assertTrue( token == stage );
+				events.add( "end " + stage + " " + depth + " " + ( result != null ) );
+			}
+		};
+
+		final WidgetBuilder<JComponent, JComponent> declineWidgetBuilder = new WidgetBuilder<JComponent, JComponent>() {
+
+			public JComponent buildWidget( String elementName, Map<String, String> attributes, JComponent metawidget ) {
+
+				return null;
+			}
+		};
+		final WidgetBuilder<JComponent, JComponent> panelWidgetBuilder = new WidgetBuilder<JComponent, JComponent>() {
+
+			public JComponent buildWidget( String elementName, Map<String, String> attributes, JComponent metawidget ) {
+
+				if ( ENTITY.equals( elementName ) ) {
+					return null;
+				}
+
+				return new JPanel();
+			}
+		};
+
+		MockPipeline pipeline = new MockPipeline();
+		pipeline.setPipelineListener( pipelineListener );
+		pipeline.setInspector( new PropertyTypeInspector() );
+		pipeline.setInspectionResultProcessors( new ComesAfterInspectionResultProcessor<JComponent>() );
+		pipeline.setWidgetBuilder( new CompositeWidgetBuilder<JComponent, JComponent>( new CompositeWidgetBuilderConfig<JComponent, JComponent>().setWidgetBuilders( declineWidgetBuilder, panelWidgetBuilder ) ) );
+		pipeline.setWidgetProcessors( new WidgetProcessor<JComponent, JComponent>() {
+
+			public JComponent processWidget( JComponent widget, String elementName, Map<String, String> attributes, JComponent metawidget ) {
+
+				return widget;
+			}
+		} );
+		pipeline.setLayout( new Layout<JComponent, JComponent, JComponent>() {
+
+			public void layoutWidget( JComponent widget, String elementName, Map<String, String> attributes, JComponent container, JComponent metawidget ) {
+
+				// Do nothing
+			}
+		} );
+		assertTrue( pipeline.getPipelineListener() == pipelineListener );
+
+		// Inspection
+
+		pipeline.buildWidgets( pipeline.inspectAsDom( new Foo(), Foo.class.getName() ) );
+
+		assertEquals( "start INSPECT 0", events.get( 0 ) );
+		assertEquals( "end INSPECT 0 true", events.get( 1 ) );
+		assertEquals( "start PROCESS_INSPECTION_RESULT 0", events.get( 2 ) );
+		assertEquals( "end PROCESS_INSPECTION_RESULT 0 true", events.get( 3 ) );
+
+		// Each WidgetBuilder in the CompositeWidgetBuilder is reported
+
+		assertEquals( "start BUILD_WIDGET 0", events.get( 4 ) );
+		assertEquals( "end BUILD_WIDGET 0 false", events.get( 5 ) );
+		assertEquals( "start BUILD_WIDGET 0", events.get( 6 ) );
+		assertEquals( "end BUILD_WIDGET 0 false", events.get( 7 ) );
+
+		// (the 'bar' property)
+
+		assertEquals( "start BUILD_WIDGET 0", events.get( 8 ) );
+		assertEquals( "end BUILD_WIDGET 0 false", events.get( 9 ) );
+		assertEquals( "start BUILD_WIDGET 0", events.get( 10 ) );
+		assertEquals( "end BUILD_WIDGET 0 true", events.get( 11 ) );
+		assertEquals( "start PROCESS_WIDGET 0", events.get( 12 ) );
+		assertEquals( "end PROCESS_WIDGET 0 true", events.get( 13 ) );
+		assertEquals( "start LAYOUT_WIDGET 0", events.get( 14 ) );
+		assertEquals( "end LAYOUT_WIDGET 0 false", events.get( 15 ) );
+		assertEquals( 16, events.size() );
+
+		// Nested pipelines share the listener, one level deeper
+
+		MockPipeline nestedPipeline = new MockPipeline();
+		pipeline.initNestedPipeline( nestedPipeline, null );
+		assertTrue( nestedPipeline.getPipelineListener() == pipelineListener );
+
+		events.clear();
+		nestedPipeline.inspectAsDom( new Foo(), Foo.class.getName() );
+		assertEquals( "start INSPECT 1", events.get( 0 ) );
+		assertEquals( "end INSPECT 1 true", events.get( 1 ) );
+
+		// Subclasses of CompositeWidgetBuilder are called (and reported) as a whole, as they may
+		// override buildWidget
+
+		final List<String> compositeCalls = CollectionUtils.newArrayList();
+		pipeline.setWidgetBuilder( new CompositeWidgetBuilder<JComponent, JComponent>( new CompositeWidgetBuilderConfig<JComponent, JComponent>().setWidgetBuilders( declineWidgetBuilder, panelWidgetBuilder ) ) {
+
+			@Override
+			public JComponent buildWidget( String elementName, Map<String, String> attributes, JComponent metawidget ) {
+
+				compositeCalls.add( elementName );
+				return super.buildWidget( elementName, attributes, metawidget );
+			}
+		} );
+
+		events.clear();
+		pipeline.buildWidgets( pipeline.inspectAsDom( new Foo(), Foo.class.getName() ) );
+		assertEquals( "[entity, property]", compositeCalls.toString() );
+		assertEquals( "start BUILD_WIDGET 0", events.get( 4 ) );
+		assertEquals( "end BUILD_WIDGET 0 false", events.get( 5 ) );
+		assertEquals( "start BUILD_WIDGET 0", events.get( 6 ) );
+		assertEquals( "end BUILD_WIDGET 0 true", events.get( 7 ) );
+		assertEquals( 12, events.size() );
+
+		// No listener
+
+		pipeline.setPipelineListener( null );
+		events.clear();
+		pipeline.buildWidgets( pipeline.inspectAsDom( new Foo(), Foo.class.getName() ) );
+		assertTrue( events.isEmpty() );
+	}
+
+	public void testPipelineListenerCompositeInspector() {
+
+		MetricsPipelineListener metricsPipelineListener = new MetricsPipelineListener();
+		MockPipeline pipeline = new MockPipeline();
+		pipeline.setPipelineListener( metricsPipelineListener );
+
+		// Each sub-Inspector of a CompositeInspector gets its own metric...
+
+		pipeline.setInspector( new CompositeInspector( new CompositeInspectorConfig().setInspectors( new PropertyTypeInspector(), new NullInspector() ) ) );
+		Element inspectionResult = pipeline.inspectAsDom( new Foo(), Foo.class.getName() );
+		assertEquals( "bar", XmlUtils.getFirstChildElement( XmlUtils.getFirstChildElement( inspectionResult ) ).getAttribute( NAME ) );
+
+		assertEquals( 1, metricsPipelineListener.getMetric( PipelineStage.INSPECT, PropertyTypeInspector.class ).getProducedCount() );
+		assertEquals( 1, metricsPipelineListener.getMetric( PipelineStage.INSPECT, NullInspector.class ).getCount() );
+		assertEquals( 0, metricsPipelineListener.getMetric( PipelineStage.INSPECT, NullInspector.class ).getProducedCount() );
+		assertEquals( null, metricsPipelineListener.getMetric( PipelineStage.INSPECT, CompositeInspector.class ) );
+
+		// ...including those run on other Threads
+
+		pipeline.setInspector( new ParallelCompositeInspector( new ParallelCompositeInspectorConfig().setInspectors( new PropertyTypeInspector(), new NullInspector() ) ) );
+		pipeline.inspectAsDom( new Foo(), Foo.class.getName() );
+
+		assertEquals( 2, metricsPipelineListener.getMetric( PipelineStage.INSPECT, PropertyTypeInspector.class ).getCount() );
+		assertEquals( 2, metricsPipelineListener.getMetric( PipelineStage.INSPECT, NullInspector.class ).getCount() );
+		assertEquals( null, metricsPipelineListener.getMetric( PipelineStage.INSPECT, ParallelCompositeInspector.class ) );
+
+		// Without a listener, the CompositeInspector is run as normal
+
+		pipeline.setPipelineListener( null );
+		assertEquals( "bar", XmlUtils.getFirstChildElement( XmlUtils.getFirstChildElement( pipeline.inspectAsDom( new Foo(), Foo.class.getName() ) ) ).getAttribute( NAME ) );
+		assertEquals( 2, metricsPipelineListener.getMetric( PipelineStage.INSPECT, PropertyTypeInspector.class ).getCount() );
+	}
+
+	public void testReuseNestedInspectionResults()
+		throws Exception {
+
+		final int[] inspections = new int[1];
+		final PropertyTypeInspector propertyTypeInspector = new PropertyTypeInspector();
+		NestingPipeline pipeline = new NestingPipeline();
+		pipeline.setInspector( new Inspector() {
+
+			public String inspect( Object toInspect, String type, String... names ) {
+
+				inspections[0]++;
+				return propertyTypeInspector.inspect( toInspect, type, names );
+			}
+		} );
+
+		// By default, every rebuild re-inspects every nested pipeline
+
+		pipeline.mToInspect = new DeepFoo();
+		Element inspectionResult = pipeline.inspectAsDom( pipeline.mToInspect, DeepFoo.class.getName() );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 3, inspections[0] );
+		assertEquals( "bar/baz", pipeline.mBuilt );
+
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 5, inspections[0] );
+
+		// With reuse, rebuilding the same inspection result reuses the nested ones
+
+		pipeline.setReuseNestedInspectionResults( true );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 7, inspections[0] );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 7, inspections[0] );
+		assertEquals( "bar/baz", pipeline.mBuilt );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 7, inspections[0] );
+
+		// ...but a fresh inspection discards them
+
+		inspectionResult = pipeline.inspectAsDom( pipeline.mToInspect, DeepFoo.class.getName() );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 10, inspections[0] );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 10, inspections[0] );
+
+		// ...as does inspecting a different Object
+
+		pipeline.mToInspect = new DeepFoo();
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 12, inspections[0] );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( 12, inspections[0] );
+
+		// Nested pipelines only reuse results for their first inspection
+
+		NestingPipeline nestedPipeline = new NestingPipeline();
+		Map<String, String> attributes = CollectionUtils.newHashMap();
+		attributes.put( NAME, "bar" );
+		pipeline.initNestedPipeline( nestedPipeline, attributes );
+		assertTrue( nestedPipeline.isReuseNestedInspectionResults() );
+
+		Element nestedInspectionResult = nestedPipeline.inspectAsDom( pipeline.mToInspect, DeepFoo.class.getName(), "bar" );
+		assertEquals( 12, inspections[0] );
+		assertTrue( nestedInspectionResult != nestedPipeline.inspectAsDom( pipeline.mToInspect, DeepFoo.class.getName(), "bar" ) );
+		assertEquals( 13, inspections[0] );
+	}
+
 	public void testGetInspectionResultProcessor() {
 
 		MyInspectionResultProcessor myInspectionResultProcessor = new MyInspectionResultProcessor();
@@ -319,6 +557,149 @@ public class BasePipelineTest
 		}
 	}
 
+	public static class Foo {
+
+		//
+		// Public methods
+		//
+
+		public String getBar() {
+
+			return null;
+		}
+	}
+
+	public static class DeepFoo {
+
+		//
+		// Public methods
+		//
+
+		public String getName() {
+
+			return null;
+		}
+
+		public DeepBar getBar() {
+
+			return new DeepBar();
+		}
+	}
+
+	public static class DeepBar {
+
+		//
+		// Public methods
+		//
+
+		public String getName() {
+
+			return null;
+		}
+
+		public DeepBaz getBaz() {
+
+			return new DeepBaz();
+		}
+	}
+
+	public static class DeepBaz {
+
+		//
+		// Public methods
+		//
+
+		public String getName() {
+
+			return null;
+		}
+	}
+
+	/**
+	 * Pipeline that builds nested pipelines (rather than nested Metawidgets) for every property
+	 * that is not a String.
+	 */
+
+	/* package private */static class NullInspector
+		implements Inspector {
+
+		//
+		// Public methods
+		//
+
+		public String inspect( Object toInspect, String type, String... names ) {
+
+			return null;
+		}
+	}
+
+	/* package private */static class NestingPipeline
+		extends MockPipeline {
+
+		//
+		// Private members
+		//
+
+		/* package private */Object		mToInspect;
+
+		/* package private */String[]	mNames	= new String[0];
+
+		/* package private */String		mBuilt;
+
+		//
+		// Constructor
+		//
+
+		public NestingPipeline() {
+
+			setWidgetBuilder( new WidgetBuilder<JComponent, JComponent>() {
+
+				public JComponent buildWidget( String elementName, Map<String, String> attributes, JComponent metawidget ) {
+
+					if ( String.class.getName().equals( attributes.get( TYPE ) ) ) {
+						return new JPanel();
+					}
+
+					return null;
+				}
+			} );
+			setLayout( new Layout<JComponent, JComponent, JComponent>() {
+
+				public void layoutWidget( JComponent widget, String elementName, Map<String, String> attributes, JComponent container, JComponent metawidget ) {
+
+					// Do nothing
+				}
+			} );
+		}
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected JComponent buildNestedMetawidget( Map<String, String> attributes )
+			throws Exception {
+
+			NestingPipeline nestedPipeline = new NestingPipeline();
+			initNestedPipeline( nestedPipeline, attributes );
+			nestedPipeline.mToInspect = mToInspect;
+			nestedPipeline.mNames = new String[mNames.length + 1];
+			System.arraycopy( mNames, 0, nestedPipeline.mNames, 0, mNames.length );
+			nestedPipeline.mNames[mNames.length] = attributes.get( NAME );
+			nestedPipeline.buildWidgets( nestedPipeline.inspectAsDom( mToInspect, DeepFoo.class.getName(), nestedPipeline.mNames ) );
+
+			// Record the deepest path built
+
+			if ( nestedPipeline.mBuilt == null ) {
+				mBuilt = attributes.get( NAME );
+			} else {
+				mBuilt = attributes.get( NAME ) + "/" + nestedPipeline.mBuilt;
+			}
+
+			return new JPanel();
+		}
+	}
+
 	/* package private */static class MyInspectionResultProcessor
 		implements InspectionResultProcessor<JComponent> {
 
@@ -0,0 +1,202 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.compact;
+
+import static org.metawidget.inspector.InspectionResultConstants.*;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.metawidget.util.XmlUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class CompactElementTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testFromString() {
+
+		String xml = "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Foo\"><property name=\"bar\" type=\"java.lang.String\" required=\"true\"/><property name=\"baz\" lookup=\"a,b&amp;c\" required=\"true\"/><action name=\"save\"/></entity></inspection-result>";
+		CompactElement root = CompactElement.fromString( xml );
+
+		assertEquals( "inspection-result", root.getName() );
+		assertTrue( root.getParent() == null );
+		assertTrue( root.getNextSibling() == null );
+		assertEquals( 1, root.getChildCount() );
+
+		CompactElement entity = root.getFirstChild();
+		assertEquals( ENTITY, entity.getName() );
+		assertTrue( entity.getParent() == root );
+		assertEquals( "Foo", entity.getAttribute( TYPE ) );
+		assertEquals( 3, entity.getChildCount() );
+
+		CompactElement bar = entity.getFirstChild();
+		CompactElement baz = bar.getNextSibling();
+		CompactElement save = baz.getNextSibling();
+		assertEquals( "bar", bar.getAttribute( NAME ) );
+		assertEquals( "a,b&c", baz.getAttribute( LOOKUP ) );
+		assertEquals( ACTION, save.getName() );
+		assertTrue( save.getNextSibling() == null );
+		assertTrue( save.getFirstChild() == null );
+		assertTrue( entity.getChild( 2 ) == save );
+
+		// Attribute names are interned, and identical values share an instance
+
+		assertTrue( NAME == bar.getAttributeName( 0 ) );
+		assertTrue( bar.getAttribute( REQUIRED ) == baz.getAttribute( REQUIRED ) );
+		assertTrue( bar.getAttribute( "missing" ) == null );
+		assertTrue( !bar.hasAttribute( "missing" ) );
+
+		// Serializes in the same format as XmlUtils.nodeToString, but preserves attribute order
+
+		assertEquals( xml, root.toString() );
+		assertEquals( null, CompactElement.fromString( null ) );
+
+		// Bad XML
+
+		try {
+			CompactElement.fromString( "<unclosed>" );
+			fail();
+		} catch ( RuntimeException e ) {
+			// Should throw
+		}
+
+		assertEquals( "<ok/>", CompactElement.fromString( "<ok/>" ).toString() );
+	}
+
+	public void testAttributes() {
+
+		CompactElement element = new CompactElement( PROPERTY, new String[] { NAME, TYPE, REQUIRED }, new String[] { "foo", "int", TRUE } );
+		Map<String, String> attributes = element.getAttributes();
+
+		assertEquals( 3, attributes.size() );
+		assertEquals( "foo", attributes.get( NAME ) );
+		assertEquals( "int", attributes.get( new String( "type" ) ) );
+		assertTrue( attributes.containsKey( REQUIRED ) );
+		assertTrue( !attributes.containsKey( "missing" ) );
+		assertTrue( attributes.get( 42 ) == null );
+		assertTrue( attributes == element.getAttributes() );
+		assertEquals( "{name=foo, type=int, required=true}", attributes.toString() );
+
+		Map<String, String> hashMap = XmlUtils.getAttributesAsMap( XmlUtils.documentFromString( "<property name=\"foo\" type=\"int\" required=\"true\"/>" ).getDocumentElement() );
+		assertEquals( hashMap, attributes );
+		assertEquals( attributes, hashMap );
+		assertEquals( hashMap.hashCode(), attributes.hashCode() );
+
+		// Read-only
+
+		try {
+			attributes.put( "bar", "baz" );
+			fail();
+		} catch ( UnsupportedOperationException e ) {
+			// Should throw
+		}
+
+		try {
+			Iterator<Map.Entry<String, String>> iterator = attributes.entrySet().iterator();
+			iterator.next();
+			iterator.remove();
+			fail();
+		} catch ( UnsupportedOperationException e ) {
+			assertEquals( "CompactElement attributes are read-only", e.getMessage() );
+		}
+
+		try {
+			attributes.entrySet().iterator().next().setValue( "bar" );
+			fail();
+		} catch ( UnsupportedOperationException e ) {
+			assertEquals( "CompactElement attributes are read-only", e.getMessage() );
+		}
+
+		// Constructor is defensive
+
+		String[] names = new String[] { NAME };
+		String[] values = new String[] { "foo" };
+		element = new CompactElement( PROPERTY, names, values );
+		values[0] = "bar";
+		assertEquals( "foo", element.getAttribute( NAME ) );
+
+		try {
+			new CompactElement( PROPERTY, new String[] { NAME, TYPE }, new String[] { "foo" } );
+			fail();
+		} catch ( IllegalArgumentException e ) {
+			assertEquals( "Element 'property' has 2 attribute names but 1 attribute values", e.getMessage() );
+		}
+
+		assertEquals( "<entity/>", new CompactElement( ENTITY, null, null ).toString() );
+	}
+
+	public void testChildren() {
+
+		CompactElement foo = new CompactElement( PROPERTY, new String[] { NAME }, new String[] { "foo" } );
+		CompactElement bar = new CompactElement( PROPERTY, new String[] { NAME }, new String[] { "bar" } );
+		CompactElement entity = new CompactElement( ENTITY, new String[] { TYPE }, new String[] { "Foo" }, foo, bar );
+
+		assertTrue( entity.getFirstChild() == foo );
+		assertTrue( foo.getNextSibling() == bar );
+		assertTrue( bar.getNextSibling() == null );
+		assertTrue( bar.getParent() == entity );
+		assertEquals( "<entity type=\"Foo\"><property name=\"foo\"/><property name=\"bar\"/></entity>", entity.toString() );
+
+		try {
+			new CompactElement( ENTITY, null, null, bar );
+			fail();
+		} catch ( IllegalArgumentException e ) {
+			assertEquals( "Child element #1 already belongs to a 'entity'", e.getMessage() );
+		}
+	}
+
+	public void testDom() {
+
+		// From a DOM built using createElementNS (no @xmlns)
+
+		Document document = XmlUtils.newDocument();
+		Element root = document.createElementNS( NAMESPACE, ROOT );
+		root.setAttribute( VERSION, "1.0" );
+		document.appendChild( root );
+		Element entity = document.createElementNS( NAMESPACE, ENTITY );
+		entity.setAttribute( TYPE, "Foo" );
+		root.appendChild( entity );
+		Element property = document.createElementNS( NAMESPACE, PROPERTY );
+		property.setAttribute( NAME, "bar" );
+		property.setAttribute( TYPE, "int" );
+		entity.appendChild( property );
+
+		CompactElement compact = CompactElement.fromElement( root );
+		assertEquals( "http://metawidget.org/inspection-result", compact.getAttribute( "xmlns" ) );
+		assertTrue( compact.getFirstChild().getAttribute( "xmlns" ) == null );
+		assertEquals( XmlUtils.nodeToString( root, false ), compact.toString() );
+		assertEquals( null, CompactElement.fromElement( null ) );
+
+		// Back to a DOM
+
+		Element roundTrip = compact.toElement();
+		assertEquals( NAMESPACE, roundTrip.getNamespaceURI() );
+		assertEquals( NAMESPACE, XmlUtils.getFirstChildElement( roundTrip ).getNamespaceURI() );
+		assertEquals( XmlUtils.nodeToString( root, false ), XmlUtils.nodeToString( roundTrip, false ) );
+
+		// From a parsed DOM (with @xmlns)
+
+		String xml = "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"Foo\"/></inspection-result>";
+		assertEquals( xml, CompactElement.fromElement( XmlUtils.documentFromString( xml ).getDocumentElement() ).toString() );
+	}
+}
@@ -0,0 +1,307 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.compact;
+
+import static org.metawidget.inspector.InspectionResultConstants.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspectionresultprocessor.iface.DomInspectionResultProcessor;
+import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessor;
+import org.metawidget.inspector.propertytype.PropertyTypeInspector;
+import org.metawidget.layout.iface.Layout;
+import org.metawidget.pipeline.compact.CompactPipeline.CopyOnWriteAttributes;
+import org.metawidget.pipeline.w3c.W3CPipeline;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.XmlUtils;
+import org.metawidget.widgetbuilder.iface.WidgetBuilder;
+import org.w3c.dom.Element;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class CompactPipelineTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testBuildCompoundWidget()
+		throws Exception {
+
+		MockPipeline pipeline = new MockPipeline();
+
+		// Bad entity
+
+		try {
+			pipeline.buildWidgets( CompactElement.fromString( "<inspection-result><property type=\"foo\"/></inspection-result>" ) );
+			fail();
+		} catch ( Exception e ) {
+			assertEquals( "Top-level element name should be entity, not property", e.getMessage() );
+		}
+
+		// Bad child
+
+		try {
+			pipeline.buildWidgets( CompactElement.fromString( "<inspection-result><entity type=\"foo\"><bar/></entity></inspection-result>" ) );
+			fail();
+		} catch ( Exception e ) {
+			assertEquals( "Child element #1 should be property or action, not bar", e.getMessage() );
+		}
+
+		// Missing name attribute
+
+		try {
+			pipeline.buildWidgets( CompactElement.fromString( "<inspection-result><entity type=\"foo\"><property/></entity></inspection-result>" ) );
+			fail();
+		} catch ( Exception e ) {
+			assertEquals( "Child element #1 has no @name", e.getMessage() );
+		}
+	}
+
+	public void testBuildWidgets()
+		throws Exception {
+
+		final List<String> laidOut = CollectionUtils.newArrayList();
+		MockPipeline pipeline = new MockPipeline();
+
+		pipeline.setWidgetBuilder( new WidgetBuilder<JComponent, JComponent>() {
+
+			public JComponent buildWidget( String elementName, Map<String, String> attributes, JComponent metawidget ) {
+
+				if ( ENTITY.equals( elementName ) ) {
+					return null;
+				}
+
+				return new JLabel( attributes.get( NAME ) );
+			}
+		} );
+		pipeline.setLayout( new Layout<JComponent, JComponent, JComponent>() {
+
+			public void layoutWidget( JComponent widget, String elementName, Map<String, String> attributes, JComponent container, JComponent metawidget ) {
+
+				laidOut.add( elementName + ":" + attributes.get( NAME ) + ":" + attributes.get( READ_ONLY ) );
+			}
+		} );
+
+		CompactElement inspectionResult = CompactElement.fromString( "<inspection-result><entity type=\"Foo\"><property name=\"bar\"/><action name=\"baz\"/></entity></inspection-result>" );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( "[property:bar:null, action:baz:null]", laidOut.toString() );
+
+		// Forced read-only must not leak into the (shared) inspection result
+
+		laidOut.clear();
+		pipeline.setReadOnly( true );
+		pipeline.buildWidgets( inspectionResult );
+		assertEquals( "[property:bar:true, action:baz:true]", laidOut.toString() );
+		assertEquals( "<inspection-result><entity type=\"Foo\"><property name=\"bar\"/><action name=\"baz\"/></entity></inspection-result>", inspectionResult.toString() );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	public void testInspectionResultProcessorAdapters() {
+
+		final List<String> called = CollectionUtils.newArrayList();
+		MockPipeline pipeline = new MockPipeline();
+		pipeline.setInspector( new PropertyTypeInspector() );
+
+		// Inspector returns a DOM. DOM-based processors should share it
+
+		final Element[] sharedDom = new Element[1];
+
+		pipeline.setInspectionResultProcessors( new DomInspectionResultProcessor<Element, JComponent>() {
+
+			public Element processInspectionResultAsDom( Element inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				called.add( "dom1" );
+				sharedDom[0] = inspectionResult;
+				XmlUtils.getFirstChildElement( inspectionResult ).setAttribute( "dom1", TRUE );
+				return inspectionResult;
+			}
+
+			public String processInspectionResult( String inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				throw new UnsupportedOperationException();
+			}
+		}, new DomInspectionResultProcessor<Element, JComponent>() {
+
+			public Element processInspectionResultAsDom( Element inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				called.add( "dom2" );
+				assertTrue( inspectionResult == sharedDom[0] );
+				return inspectionResult;
+			}
+
+			public String processInspectionResult( String inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				throw new UnsupportedOperationException();
+			}
+		}, new CompactInspectionResultProcessor<JComponent>() {
+
+			public CompactElement processInspectionResultAsDom( CompactElement inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				called.add( "compact" );
+				assertEquals( TRUE, inspectionResult.getFirstChild().getAttribute( "dom1" ) );
+				CompactElement entity = new CompactElement( ENTITY, new String[] { TYPE, "compact" }, new String[] { "Foo", TRUE } );
+				return new CompactElement( ROOT, null, null, entity );
+			}
+
+			public String processInspectionResult( String inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				throw new UnsupportedOperationException();
+			}
+		}, new InspectionResultProcessor<JComponent>() {
+
+			public String processInspectionResult( String inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				called.add( "string" );
+				assertEquals( "<inspection-result><entity type=\"Foo\" compact=\"true\"/></inspection-result>", inspectionResult );
+				return inspectionResult.replace( "compact", "string" );
+			}
+		} );
+
+		CompactElement inspectionResult = pipeline.inspectAsDom( "foo", String.class.getName() );
+		assertEquals( "[dom1, dom2, compact, string]", called.toString() );
+		assertEquals( "<inspection-result><entity type=\"Foo\" string=\"true\"/></inspection-result>", inspectionResult.toString() );
+		assertEquals( inspectionResult.toString(), pipeline.inspect( "foo", String.class.getName() ) );
+
+		// Processors can cancel
+
+		pipeline.setInspectionResultProcessors( new InspectionResultProcessor<JComponent>() {
+
+			public String processInspectionResult( String inspectionResult, JComponent metawidget, Object toInspect, String type, String... names ) {
+
+				return null;
+			}
+		} );
+
+		assertEquals( null, pipeline.inspectAsDom( "foo", String.class.getName() ) );
+		assertEquals( null, pipeline.inspect( "foo", String.class.getName() ) );
+
+		// No processors
+
+		pipeline.setInspectionResultProcessors( (InspectionResultProcessor<JComponent>[]) null );
+		inspectionResult = pipeline.inspectAsDom( "foo", String.class.getName() );
+		assertEquals( String.class.getName(), inspectionResult.getFirstChild().getAttribute( TYPE ) );
+	}
+
+	public void testCopyOnWriteAttributes() {
+
+		CompactElement element = new CompactElement( PROPERTY, new String[] { NAME, TYPE }, new String[] { "foo", "int" } );
+		Map<String, String> attributes = new CopyOnWriteAttributes( element.getAttributes() );
+
+		assertEquals( 2, attributes.size() );
+		assertEquals( "foo", attributes.get( NAME ) );
+		assertEquals( null, attributes.remove( "missing" ) );
+		assertEquals( element.getAttributes(), attributes );
+
+		attributes.put( REQUIRED, TRUE );
+		assertEquals( 3, attributes.size() );
+		assertEquals( TRUE, attributes.get( REQUIRED ) );
+		assertEquals( null, element.getAttribute( REQUIRED ) );
+		assertEquals( "{name=foo, type=int, required=true}", attributes.toString() );
+
+		// Modify through iterator
+
+		attributes = new CopyOnWriteAttributes( element.getAttributes() );
+		Iterator<Map.Entry<String, String>> iterator = attributes.entrySet().iterator();
+		Map.Entry<String, String> entry = iterator.next();
+		entry.setValue( "bar" );
+		assertEquals( "bar", entry.getValue() );
+		assertEquals( "bar", attributes.get( NAME ) );
+		iterator.next();
+		iterator.remove();
+		assertTrue( !iterator.hasNext() );
+		assertEquals( "{name=bar}", attributes.toString() );
+		assertEquals( "foo", element.getAttribute( NAME ) );
+		assertEquals( "int", element.getAttribute( TYPE ) );
+
+		attributes.clear();
+		assertTrue( attributes.isEmpty() );
+		assertEquals( 2, element.getAttributeCount() );
+	}
+
+	public void testDefaultConfigReader() {
+
+		// CompactPipelines and W3CPipelines share the same default ConfigReader (and so its cache)
+
+		W3CPipeline<JComponent, JComponent, JComponent> w3cPipeline = new W3CPipeline<JComponent, JComponent, JComponent>() {
+
+			@Override
+			protected String getDefaultConfiguration() {
+
+				return null;
+			}
+
+			@Override
+			protected Map<String, String> getAdditionalAttributes( JComponent widget ) {
+
+				return null;
+			}
+
+			@Override
+			protected JComponent buildNestedMetawidget( Map<String, String> attributes ) {
+
+				return null;
+			}
+
+			@Override
+			protected JComponent getPipelineOwner() {
+
+				return null;
+			}
+		};
+
+		assertTrue( new MockPipeline().getConfigReader() == w3cPipeline.getConfigReader() );
+	}
+
+	//
+	// Inner class
+	//
+
+	/* package private */static class MockPipeline
+		extends CompactPipeline<JComponent, JComponent, JComponent> {
+
+		@Override
+		protected String getDefaultConfiguration() {
+
+			return null;
+		}
+
+		@Override
+		protected Map<String, String> getAdditionalAttributes( JComponent widget ) {
+
+			return null;
+		}
+
+		@Override
+		protected JComponent buildNestedMetawidget( Map<String, String> attributes )
+			throws Exception {
+
+			return null;
+		}
+
+		@Override
+		protected JComponent getPipelineOwner() {
+
+			return null;
+		}
+	}
+}
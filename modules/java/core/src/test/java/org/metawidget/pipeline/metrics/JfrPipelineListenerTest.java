@@ -0,0 +1,72 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.metrics;
+
+import junit.framework.TestCase;
+
+import org.metawidget.iface.MetawidgetException;
+import org.metawidget.inspector.propertytype.PropertyTypeInspector;
+import org.metawidget.pipeline.base.PipelineStage;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class JfrPipelineListenerTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testJfrPipelineListener()
+		throws Exception {
+
+		if ( !JfrPipelineListener.isAvailable() ) {
+			try {
+				new JfrPipelineListener();
+				fail();
+			} catch ( MetawidgetException e ) {
+				assertEquals( "Java Flight Recorder is not available", e.getMessage() );
+			}
+
+			return;
+		}
+
+		JfrPipelineListener listener = new JfrPipelineListener();
+		PropertyTypeInspector inspector = new PropertyTypeInspector();
+
+		// All instances share the same event type
+
+		assertTrue( listener.mJfrEvents == new JfrPipelineListener().mJfrEvents );
+
+		// Not recording
+
+		assertEquals( null, listener.stageStarted( PipelineStage.INSPECT, inspector, 0 ) );
+		listener.stageEnded( PipelineStage.INSPECT, inspector, 0, null, null );
+
+		// Recording (jdk.jfr is not available at compile time, so use reflection)
+
+		Class<?> recordingClass = Class.forName( "jdk.jfr.Recording" );
+		Object recording = recordingClass.newInstance();
+		recordingClass.getMethod( "enable", String.class ).invoke( recording, JfrPipelineListener.EVENT_NAME );
+		recordingClass.getMethod( "start" ).invoke( recording );
+
+		try {
+			Object token = listener.stageStarted( PipelineStage.INSPECT, inspector, 0 );
+			assertTrue( token != null );
+			listener.stageEnded( PipelineStage.INSPECT, inspector, 0, token, "<inspection-result/>" );
+		} finally {
+			recordingClass.getMethod( "close" ).invoke( recording );
+		}
+	}
+}
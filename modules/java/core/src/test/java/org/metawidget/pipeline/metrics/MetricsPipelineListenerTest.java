@@ -0,0 +1,108 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.pipeline.metrics;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspectionresultprocessor.sort.ComesAfterInspectionResultProcessor;
+import org.metawidget.inspector.propertytype.PropertyTypeInspector;
+import org.metawidget.pipeline.base.PipelineStage;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class MetricsPipelineListenerTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testMetrics() {
+
+		MetricsPipelineListener listener = new MetricsPipelineListener();
+		PropertyTypeInspector inspector = new PropertyTypeInspector();
+		ComesAfterInspectionResultProcessor<Object> processor = new ComesAfterInspectionResultProcessor<Object>();
+
+		assertTrue( listener.getMetrics().isEmpty() );
+		assertEquals( null, listener.getMetric( PipelineStage.INSPECT, PropertyTypeInspector.class ) );
+
+		// Record some stages
+
+		listener.stageEnded( PipelineStage.PROCESS_INSPECTION_RESULT, processor, 0, listener.stageStarted( PipelineStage.PROCESS_INSPECTION_RESULT, processor, 0 ), null );
+		listener.stageEnded( PipelineStage.INSPECT, inspector, 0, listener.stageStarted( PipelineStage.INSPECT, inspector, 0 ), "<inspection-result/>" );
+		listener.stageEnded( PipelineStage.INSPECT, inspector, 2, listener.stageStarted( PipelineStage.INSPECT, inspector, 2 ), null );
+		listener.stageEnded( PipelineStage.LAYOUT_WIDGET, null, 1, listener.stageStarted( PipelineStage.LAYOUT_WIDGET, null, 1 ), null );
+
+		// Ignore stages that were already running when we were set
+
+		listener.stageEnded( PipelineStage.INSPECT, inspector, 0, null, null );
+
+		PipelineMetric metric = listener.getMetric( PipelineStage.INSPECT, PropertyTypeInspector.class );
+		assertEquals( PipelineStage.INSPECT, metric.getStage() );
+		assertEquals( PropertyTypeInspector.class.getName(), metric.getComponentType() );
+		assertEquals( 2, metric.getCount() );
+		assertEquals( 1, metric.getProducedCount() );
+		assertEquals( 2, metric.getMaximumDepth() );
+		assertTrue( metric.getTotalNanos() >= metric.getMaximumNanos() );
+		assertTrue( metric.getMeanNanos() <= metric.getMaximumNanos() );
+
+		long histogramCount = 0;
+
+		for ( long bucket : metric.getHistogram() ) {
+			histogramCount += bucket;
+		}
+
+		assertEquals( 2, histogramCount );
+
+		// Ordered by stage
+
+		List<PipelineMetric> metrics = listener.getMetrics();
+		assertEquals( 3, metrics.size() );
+		assertTrue( metric == metrics.get( 0 ) );
+		assertEquals( ComesAfterInspectionResultProcessor.class.getName(), metrics.get( 1 ).getComponentType() );
+		assertEquals( 0, metrics.get( 1 ).getProducedCount() );
+		assertEquals( Void.class.getName(), metrics.get( 2 ).getComponentType() );
+		assertTrue( listener.toString().startsWith( "INSPECT " + PropertyTypeInspector.class.getName() + ": count=2, produced=1, meanNanos=" ) );
+
+		// Reset
+
+		listener.reset();
+		assertTrue( listener.getMetrics().isEmpty() );
+	}
+
+	public void testHistogram() {
+
+		PipelineMetric metric = new PipelineMetric( PipelineStage.BUILD_WIDGET, "Foo" );
+		metric.record( 999, true, 0 );
+		metric.record( 1000, true, 0 );
+		metric.record( 3999, true, 0 );
+		metric.record( 4000, true, 0 );
+		metric.record( Long.MAX_VALUE / 2, true, 0 );
+
+		long[] histogram = metric.getHistogram();
+		assertEquals( PipelineMetric.HISTOGRAM_BUCKETS, histogram.length );
+		assertEquals( 1, histogram[0] );
+		assertEquals( 1, histogram[1] );
+		assertEquals( 1, histogram[2] );
+		assertEquals( 1, histogram[3] );
+		assertEquals( 1, histogram[PipelineMetric.HISTOGRAM_BUCKETS - 1] );
+		assertEquals( Long.MAX_VALUE / 2, metric.getMaximumNanos() );
+
+		assertEquals( 1, PipelineMetric.getHistogramBucketLimit( 0 ) );
+		assertEquals( 4, PipelineMetric.getHistogramBucketLimit( 2 ) );
+		assertEquals( Long.MAX_VALUE, PipelineMetric.getHistogramBucketLimit( PipelineMetric.HISTOGRAM_BUCKETS - 1 ) );
+	}
+}
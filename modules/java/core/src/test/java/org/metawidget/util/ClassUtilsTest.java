@@ -12,7 +12,10 @@
 package org.metawidget.util;
 
 import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Set;
 
 import junit.framework.TestCase;
@@ -160,6 +163,46 @@ public class ClassUtilsTest
 		}
 	}
 
+	public void testPropertyAccessorsCache() {
+
+		// Same property name, different classes
+
+		Foo foo = new Foo();
+		SubFoo subFoo = new SubFoo();
+		Baz baz = new Baz();
+
+		ClassUtils.setProperty( foo, "bar", baz );
+		ClassUtils.setProperty( subFoo, "bar", baz );
+		assertEquals( baz, ClassUtils.getProperty( foo, "bar" ) );
+		assertEquals( baz, ClassUtils.getProperty( subFoo, "bar" ) );
+		assertEquals( 0, ClassUtils.<Integer> getProperty( subFoo, "count" ).intValue() );
+
+		// Write method resolved against the primitive type, repeatedly
+
+		for ( int loop = 0; loop < 3; loop++ ) {
+			ClassUtils.setProperty( subFoo, "count", loop );
+			assertEquals( loop, ClassUtils.<Integer> getProperty( subFoo, "count" ).intValue() );
+		}
+
+		try {
+			ClassUtils.getProperty( foo, "count" );
+			fail();
+		} catch ( Exception e ) {
+			assertEquals( "No such method getCount (or boolean isCount) on class org.metawidget.util.ClassUtilsTest$Foo", e.getCause().getMessage() );
+		}
+
+		// Misses are never cached as hits
+
+		for ( int loop = 0; loop < 2; loop++ ) {
+			try {
+				ClassUtils.setProperty( subFoo, "littleBoolean", true );
+				fail();
+			} catch ( Exception e ) {
+				assertEquals( "No such method setLittleBoolean( boolean ) on class org.metawidget.util.ClassUtilsTest$SubFoo", e.getCause().getMessage() );
+			}
+		}
+	}
+
 	public void testStrictJavaBeanConvention()
 		throws Exception {
 
@@ -192,6 +235,57 @@ public class ClassUtilsTest
 		assertEquals( String.class, ClassUtils.niceForName( "[Ljava.lang.String;", null ).getComponentType() );
 	}
 
+	public void testForNameCache() {
+
+		// Primitives and pseudo-types
+
+		assertEquals( int.class, ClassUtils.niceForName( "int" ) );
+		assertEquals( boolean.class, ClassUtils.niceForName( "boolean", getClass().getClassLoader() ) );
+		assertEquals( null, ClassUtils.niceForName( "array" ) );
+		assertEquals( null, ClassUtils.niceForName( "xs:string" ) );
+		assertEquals( null, ClassUtils.niceForName( "Login Screen" ) );
+		assertEquals( null, ClassUtils.niceForName( "" ) );
+		assertEquals( List.class, ClassUtils.niceForName( "java.util.List<java.lang.String>" ) );
+
+		// Misses are cached
+
+		final List<String> loaded = CollectionUtils.newArrayList();
+
+		ClassLoader countingClassLoader = new ClassLoader( getClass().getClassLoader() ) {
+
+			@Override
+			protected synchronized Class<?> loadClass( String name, boolean resolve )
+				throws ClassNotFoundException {
+
+				loaded.add( name );
+				return super.loadClass( name, resolve );
+			}
+		};
+
+		assertEquals( null, ClassUtils.niceForName( "org.metawidget.util.DoesNotExist", countingClassLoader ) );
+		assertEquals( 1, loaded.size() );
+		assertEquals( null, ClassUtils.niceForName( "org.metawidget.util.DoesNotExist", countingClassLoader ) );
+		assertEquals( 1, loaded.size() );
+
+		// Hits are cached
+
+		assertEquals( ClassUtilsTest.class, ClassUtils.niceForName( ClassUtilsTest.class.getName(), countingClassLoader ) );
+		assertEquals( 2, loaded.size() );
+		assertEquals( ClassUtilsTest.class, ClassUtils.niceForName( ClassUtilsTest.class.getName(), countingClassLoader ) );
+		assertEquals( 2, loaded.size() );
+
+		// Cache is per ClassLoader
+
+		assertEquals( null, ClassUtils.niceForName( "org.metawidget.util.DoesNotExist" ) );
+		assertEquals( 2, loaded.size() );
+
+		// Clearing the cache
+
+		ClassUtils.clearForNameCache();
+		assertEquals( null, ClassUtils.niceForName( "org.metawidget.util.DoesNotExist", countingClassLoader ) );
+		assertEquals( 3, loaded.size() );
+	}
+
 	public void testGetOriginalDeclaringClass()
 		throws Exception {
 
@@ -214,6 +308,33 @@ public class ClassUtilsTest
 		assertEquals( Object.class, ClassUtils.getOriginalDeclaringClass( method ) );
 	}
 
+	@SuppressWarnings( "deprecation" )
+	public void testGetOriginalAnnotation()
+		throws Exception {
+
+		// Annotation on overridden method
+
+		Method method = AnnotatedSub.class.getMethod( "getFoo" );
+		assertEquals( "super", ClassUtils.getOriginalAnnotation( method, Tag.class ).value() );
+		assertTrue( ClassUtils.getOriginalAnnotation( method, Deprecated.class ) == null );
+
+		// Annotation on interface
+
+		method = AnnotatedSub.class.getMethod( "getBar" );
+		assertEquals( "interface", ClassUtils.getOriginalAnnotation( method, Tag.class ).value() );
+
+		// Overriding with a different annotation suppresses the original
+
+		method = AnnotatedSub.class.getMethod( "getBaz" );
+		assertTrue( ClassUtils.getOriginalAnnotation( method, Tag.class ) == null );
+		assertTrue( ClassUtils.getOriginalAnnotation( method, Deprecated.class ) != null );
+
+		// Cached across copies of the same Method
+
+		Tag tag = ClassUtils.getOriginalAnnotation( AnnotatedSub.class.getMethod( "getFoo" ), Tag.class );
+		assertTrue( tag == ClassUtils.getOriginalAnnotation( AnnotatedSub.class.getMethod( "getFoo" ), Tag.class ) );
+	}
+
 	public void testAlienClassLoader()
 		throws Exception {
 
@@ -238,6 +359,8 @@ public class ClassUtilsTest
 		synchronized ( ClassUtils.ALIEN_CLASSLOADERS ) {
 			ClassUtils.ALIEN_CLASSLOADERS.clear();
 		}
+
+		ClassUtils.clearForNameCache();
 	}
 
 	public static void testGetPackagesAsFolderNames() {
@@ -305,6 +428,80 @@ public class ClassUtilsTest
 		}
 	}
 
+	public static class SubFoo
+		extends Foo {
+
+		//
+		// Private members
+		//
+
+		private int	mCount;
+
+		//
+		// Public methods
+		//
+
+		public int getCount() {
+
+			return mCount;
+		}
+
+		public void setCount( int count ) {
+
+			mCount = count;
+		}
+	}
+
+	@Retention( RetentionPolicy.RUNTIME )
+	static @interface Tag {
+
+		String value();
+	}
+
+	static interface AnnotatedInterface {
+
+		@Tag( "interface" )
+		String getBar();
+	}
+
+	public static class AnnotatedSuper {
+
+		@Tag( "super" )
+		public String getFoo() {
+
+			return null;
+		}
+
+		@Tag( "super" )
+		public String getBaz() {
+
+			return null;
+		}
+	}
+
+	public static class AnnotatedSub
+		extends AnnotatedSuper
+		implements AnnotatedInterface {
+
+		@Override
+		public String getFoo() {
+
+			return null;
+		}
+
+		public String getBar() {
+
+			return null;
+		}
+
+		@Override
+		@Deprecated
+		public String getBaz() {
+
+			return null;
+		}
+	}
+
 	static interface Bar {
 		// Just a marker interface
 	}
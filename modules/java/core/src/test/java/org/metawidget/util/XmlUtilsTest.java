@@ -11,9 +11,13 @@
 
 package org.metawidget.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import junit.framework.TestCase;
 
@@ -257,6 +261,63 @@ public class XmlUtilsTest
 		assertEquals( "<bar>\n   <foo>some\n      <strong>bold</strong>text</foo>\n</bar>", XmlUtils.documentToString( document, true ) );
 	}
 
+	public void testConcurrentDocumentBuilders()
+		throws Exception {
+
+		final CountDownLatch startSignal = new CountDownLatch( 1 );
+		final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+		List<Thread> threads = CollectionUtils.newArrayList();
+
+		for ( int loop = 0; loop < 16; loop++ ) {
+			final int threadNumber = loop;
+
+			Thread thread = new Thread() {
+
+				@Override
+				public void run() {
+
+					try {
+						startSignal.await();
+
+						for ( int iteration = 0; iteration < 100; iteration++ ) {
+							String xml = "<entity type=\"Thread" + threadNumber + "\"><property name=\"iteration" + iteration + "\"/></entity>";
+							assertEquals( xml, XmlUtils.documentToString( XmlUtils.documentFromString( xml ), false ) );
+							assertEquals( xml, XmlUtils.documentToString( XmlUtils.parse( new ByteArrayInputStream( xml.getBytes() ) ), false ) );
+
+							Document document = XmlUtils.newDocument();
+							document.appendChild( document.createElement( "thread" + threadNumber ) );
+							assertEquals( "<thread" + threadNumber + "/>", XmlUtils.documentToString( document, false ) );
+						}
+					} catch ( Throwable t ) {
+						failures.add( t );
+					}
+				}
+			};
+
+			thread.start();
+			threads.add( thread );
+		}
+
+		startSignal.countDown();
+
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+
+		assertTrue( failures.toString(), failures.isEmpty() );
+
+		// Failed parses should not poison the pool
+
+		try {
+			XmlUtils.documentFromString( "<unclosed>" );
+			fail();
+		} catch ( RuntimeException e ) {
+			// Should throw
+		}
+
+		assertEquals( "<ok/>", XmlUtils.documentToString( XmlUtils.documentFromString( "<ok/>" ), false ) );
+	}
+
 	public void testCombineElements() {
 
 		Document documentMaster = XmlUtils.documentFromString( "<inspection-result><foo fooAttr=\"1\"><bar barAttr=\"2\" data=\"bar2\"/></foo></inspection-result>" );
@@ -279,6 +340,63 @@ public class XmlUtilsTest
 		assertEquals( "<inspection-result><foo fooAttr=\"1\"><bar barAttr=\"2\" data=\"bar2\"/></foo><foo fooAttr=\"2\"><bar barAttr=\"3\" data=\"bar3\"/></foo></inspection-result>", XmlUtils.documentToString( documentMaster, false ) );
 	}
 
+	public void testCombineElementsOrdering() {
+
+		// New children go immediately after the last matched master, or at the end
+
+		Document documentMaster = XmlUtils.documentFromString( "<entity><property name=\"a\"/><property name=\"b\"/><property name=\"c\"/></entity>" );
+		Document documentToAdd = XmlUtils.documentFromString( "<entity><property name=\"x\"/><property name=\"b\" foo=\"1\"/><property name=\"y\"/><property name=\"z\"/><property name=\"c\"/><property name=\"w\"/></entity>" );
+		XmlUtils.combineElements( documentMaster.getDocumentElement(), documentToAdd.getDocumentElement(), "name", "name" );
+		assertEquals( "<entity><property name=\"a\"/><property name=\"b\" foo=\"1\"/><property name=\"y\"/><property name=\"z\"/><property name=\"c\"/><property name=\"w\"/><property name=\"x\"/></entity>", XmlUtils.documentToString( documentMaster, false ) );
+
+		// Mismatched node names
+
+		documentToAdd = XmlUtils.documentFromString( "<entity><action name=\"a\"/></entity>" );
+
+		try {
+			XmlUtils.combineElements( documentMaster.getDocumentElement(), documentToAdd.getDocumentElement(), "name", "name" );
+			fail();
+		} catch ( Exception e ) {
+			assertEquals( "Matching elements named 'a', but existing one is a 'property' whilst new one is a 'action'", e.getMessage() );
+		}
+
+		// Duplicate names
+
+		documentToAdd = XmlUtils.documentFromString( "<entity><property name=\"a\"/><property name=\"a\"/></entity>" );
+
+		try {
+			XmlUtils.combineElements( documentMaster.getDocumentElement(), documentToAdd.getDocumentElement(), "name", "name" );
+			fail();
+		} catch ( Exception e ) {
+			assertEquals( "Element has more than one child with @name 'a'", e.getMessage() );
+		}
+
+		// Wide entities
+
+		StringBuilder master = new StringBuilder( "<entity>" );
+		StringBuilder toAdd = new StringBuilder( "<entity>" );
+
+		for ( int loop = 0; loop < 500; loop++ ) {
+			master.append( "<property name=\"prop" ).append( loop ).append( "\"/>" );
+			toAdd.append( "<property name=\"prop" ).append( 499 - loop ).append( "\" value=\"" ).append( loop ).append( "\"/>" );
+		}
+
+		master.append( "</entity>" );
+		toAdd.append( "<property name=\"extra\"/></entity>" );
+
+		documentMaster = XmlUtils.documentFromString( master.toString() );
+		documentToAdd = XmlUtils.documentFromString( toAdd.toString() );
+		XmlUtils.combineElements( documentMaster.getDocumentElement(), documentToAdd.getDocumentElement(), "name", "name" );
+
+		Element entity = documentMaster.getDocumentElement();
+		assertEquals( 501, entity.getChildNodes().getLength() );
+		assertEquals( "prop0", ( (Element) entity.getChildNodes().item( 0 ) ).getAttribute( "name" ) );
+		assertEquals( "499", ( (Element) entity.getChildNodes().item( 0 ) ).getAttribute( "value" ) );
+		assertEquals( "extra", ( (Element) entity.getChildNodes().item( 1 ) ).getAttribute( "name" ) );
+		assertEquals( "prop499", ( (Element) entity.getChildNodes().item( 500 ) ).getAttribute( "name" ) );
+		assertEquals( "0", ( (Element) entity.getChildNodes().item( 500 ) ).getAttribute( "value" ) );
+	}
+
 	public void testinspectionResultToJsonSchema() {
 
 		// Normal case
@@ -342,6 +460,61 @@ public class XmlUtilsTest
 		assertEquals( "{\"title\":null,\"type\":\"1\"}", XmlUtils.inspectionResultToJsonSchema( document.getDocumentElement() ) );
 	}
 
+	public void testinspectionResultToJsonSchemaWriter()
+		throws Exception {
+
+		// Streaming should match the String version exactly
+
+		String[] xmls = new String[] {
+				"<inspection-result><entity name=\"root\" type=\"1\"><property name=\"bar\" barAttr=\"2\" data=\"bar2\"/><baz name=\"bazName\" bazAttr=\"3\"/><ignore ignoreMe=\"please\"/><action name=\"anAction\"/></entity></inspection-result>",
+				"<inspection-result><entity name=\"root\" type=\"1\"><action name=\"anAction\" label=\"Action Label\" enum=\"\"/></entity></inspection-result>",
+				"<inspection-result><entity><action name=\"anAction\"><property name=\"nested\"/></action></entity></inspection-result>",
+				"<inspection-result><entity><property name=\"bar\" type=\"array\" barAttr=\"2\" data=\"bar2\"><property name=\"nested\" nestedAttr=\"3\"/><property name=\"nested2\"/></property></entity></inspection-result>",
+				"<inspection-result><entity type=\"array\"><property name=\"nested\"/></entity></inspection-result>",
+				"<inspection-result><entity><ignore/><property name=\"nested\"/></entity></inspection-result>",
+				"<inspection-result/>",
+				"<inspection-result><entity/></inspection-result>",
+				"<inspection-result><entity type=\"1\" enum=\"foo\\,bar,baz\" title=\"xsi:nil\" hidden=\"true\"/></inspection-result>" };
+
+		for ( String xml : xmls ) {
+			Element element = XmlUtils.documentFromString( xml ).getDocumentElement();
+			StringWriter writer = new StringWriter();
+			XmlUtils.inspectionResultToJsonSchema( element, writer );
+			assertEquals( XmlUtils.inspectionResultToJsonSchema( element ), writer.toString() );
+		}
+
+		// Explicit results for cases not covered above
+
+		Element element = XmlUtils.documentFromString( "<inspection-result><entity><action name=\"anAction\"><property name=\"nested\"/></action></entity></inspection-result>" ).getDocumentElement();
+		assertEquals( "{\"properties\":{\"anAction\":{\"type\":\"function\",\"properties\":{\"nested\":{}}}}}", XmlUtils.inspectionResultToJsonSchema( element ) );
+
+		element = XmlUtils.documentFromString( "<inspection-result><entity type=\"array\"><property name=\"nested\"/></entity></inspection-result>" ).getDocumentElement();
+		assertEquals( "{\"type\":\"array\",\"items\":{\"properties\":{\"nested\":{}}}}", XmlUtils.inspectionResultToJsonSchema( element ) );
+
+		// Deep nesting
+
+		StringBuilder builder = new StringBuilder( "<inspection-result><entity>" );
+
+		for ( int loop = 0; loop < 200; loop++ ) {
+			builder.append( "<property name=\"p" + loop + "\">" );
+		}
+
+		for ( int loop = 0; loop < 200; loop++ ) {
+			builder.append( "</property>" );
+		}
+
+		builder.append( "</entity></inspection-result>" );
+		String json = XmlUtils.inspectionResultToJsonSchema( XmlUtils.documentFromString( builder.toString() ).getDocumentElement() );
+		assertTrue( json.startsWith( "{\"properties\":{\"p0\":{\"properties\":{\"p1\":{" ) );
+		StringBuilder expectedEnd = new StringBuilder( "\"p199\":{}" );
+
+		for ( int loop = 0; loop < 200; loop++ ) {
+			expectedEnd.append( "}}" );
+		}
+
+		assertTrue( json.endsWith( expectedEnd.toString() ) );
+	}
+
 	//
 	// Private members
 	//
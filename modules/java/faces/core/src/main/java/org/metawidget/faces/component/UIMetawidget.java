@@ -15,6 +15,8 @@ import static org.metawidget.inspector.InspectionResultConstants.*;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -53,10 +55,13 @@ import org.metawidget.util.LogUtils;
 import org.metawidget.util.LogUtils.Log;
 import org.metawidget.util.WidgetBuilderUtils;
 import org.metawidget.util.XmlUtils;
+import org.metawidget.util.simple.ObjectUtils;
 import org.metawidget.util.simple.StringUtils;
 import org.metawidget.widgetbuilder.iface.WidgetBuilder;
 import org.metawidget.widgetprocessor.iface.WidgetProcessor;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 /**
  * Base Metawidget for Java Server Faces environments.
@@ -173,6 +178,21 @@ public abstract class UIMetawidget
 
 	/* package private */boolean			mBuildWidgetsOnAjaxRequest;
 
+	private boolean							mReuseWidgetsIfUnchanged;
+
+	/**
+	 * Fingerprint of the inspection result the current children were built from, or null if they
+	 * should not be reused.
+	 */
+
+	/* package private */byte[]				mBuiltFingerprint;
+
+	/**
+	 * Value binding expression the current children were built against, or null if none.
+	 */
+
+	private String							mBuiltValueBindingExpression;
+
 	private boolean							mInspectFromParent;
 
 	private boolean							mReadOnly;
@@ -396,6 +416,27 @@ public abstract class UIMetawidget
 		mBuildWidgetsOnAjaxRequest = buildWidgetsOnAjaxRequest;
 	}
 
+	/**
+	 * By default, <code>UIMetawidget</code> removes and rebuilds all its (recreatable) children
+	 * every time it builds widgets. This is important for polymorphic values, whose widgets may
+	 * change from request to request, but churns the component tree (and bloats view state) when
+	 * nothing has changed.
+	 * <p>
+	 * Clients can use <code>setReuseWidgetsIfUnchanged</code> to instead fingerprint the
+	 * (processed) inspection result, and keep the existing children if it is the same as the one
+	 * they were built from. Children are always rebuilt if the Metawidget's value binding has
+	 * changed, as their bindings (value, action, rendered, facets and so on) derive from it.
+	 * <p>
+	 * The fingerprint covers the inspection result and <code>isReadOnly</code>. Clients whose
+	 * <code>WidgetBuilder</code>s or <code>WidgetProcessor</code>s vary their output based on
+	 * anything else (such as request parameters) should not use this option.
+	 */
+
+	public void setReuseWidgetsIfUnchanged( boolean reuseWidgetsIfUnchanged ) {
+
+		mReuseWidgetsIfUnchanged = reuseWidgetsIfUnchanged;
+	}
+
 	/**
 	 * Returns a label for the given set of attributes.
 	 * <p>
@@ -748,13 +789,16 @@ public abstract class UIMetawidget
 	@Override
 	public Object saveState( FacesContext context ) {
 
-		Object[] values = new Object[6];
+		Object[] values = new Object[9];
 		values[0] = super.saveState( context );
 		values[1] = mExplicitRendererType;
 		values[2] = mReadOnly;
 		values[3] = mPipeline.getConfig();
 		values[4] = mInspectFromParent;
 		values[5] = mBuildWidgetsOnAjaxRequest;
+		values[6] = mReuseWidgetsIfUnchanged;
+		values[7] = mBuiltFingerprint;
+		values[8] = mBuiltValueBindingExpression;
 
 		return values;
 	}
@@ -770,6 +814,9 @@ public abstract class UIMetawidget
 		mPipeline.setConfig( values[3] );
 		mInspectFromParent = (Boolean) values[4];
 		mBuildWidgetsOnAjaxRequest = (Boolean) values[5];
+		mReuseWidgetsIfUnchanged = (Boolean) values[6];
+		mBuiltFingerprint = (byte[]) values[7];
+		mBuiltValueBindingExpression = (String) values[8];
 	}
 
 	//
@@ -884,7 +931,7 @@ public abstract class UIMetawidget
 		ValueBinding valueBinding = getValueBinding( "value" );
 
 		if ( valueBinding != null ) {
-			mPipeline.buildWidgets( inspect( valueBinding, mInspectFromParent ) );
+			buildWidgets( inspect( valueBinding, mInspectFromParent ) );
 			return;
 		}
 
@@ -893,27 +940,27 @@ public abstract class UIMetawidget
 		Object value = getValue();
 
 		if ( value instanceof String ) {
-			mPipeline.buildWidgets( mPipeline.inspectAsDom( null, (String) value ) );
+			buildWidgets( mPipeline.inspectAsDom( null, (String) value ) );
 			return;
 		}
 
 		// ...or a Class (for 'binding' attribute)...
 
 		if ( value instanceof Class<?> ) {
-			mPipeline.buildWidgets( mPipeline.inspectAsDom( null, ( (Class<?>) value ).getName() ) );
+			buildWidgets( mPipeline.inspectAsDom( null, ( (Class<?>) value ).getName() ) );
 			return;
 		}
 
 		// ...or a direct Object (for 'binding' attribute)...
 
 		if ( value != null ) {
-			mPipeline.buildWidgets( mPipeline.inspectAsDom( value, value.getClass().getName() ) );
+			buildWidgets( mPipeline.inspectAsDom( value, value.getClass().getName() ) );
 			return;
 		}
 
 		// ...or run without inspection (using the Metawidget purely for layout)
 
-		mPipeline.buildWidgets( null );
+		buildWidgets( null );
 	}
 
 	protected abstract String getDefaultConfiguration();
@@ -1053,6 +1100,119 @@ public abstract class UIMetawidget
 	// Private methods
 	//
 
+	/**
+	 * Build widgets from the given inspection result or, if
+	 * <code>setReuseWidgetsIfUnchanged</code> and the inspection result is unchanged, reuse the
+	 * existing ones.
+	 */
+
+	private void buildWidgets( Element inspectionResult )
+		throws Exception {
+
+		if ( !mReuseWidgetsIfUnchanged ) {
+			mPipeline.buildWidgets( inspectionResult );
+			return;
+		}
+
+		byte[] fingerprint = fingerprint( inspectionResult );
+		ValueBinding valueBinding = getValueBinding( "value" );
+		String valueBindingExpression = null;
+
+		if ( valueBinding != null ) {
+			valueBindingExpression = valueBinding.getExpressionString();
+		}
+
+		// Unchanged? Reuse the existing children
+
+		if ( Arrays.equals( fingerprint, mBuiltFingerprint ) && getChildCount() > 0 && ObjectUtils.nullSafeEquals( valueBindingExpression, mBuiltValueBindingExpression ) ) {
+			LOG.trace( "reusing widgets" );
+			return;
+		}
+
+		// Otherwise rebuild
+
+		mBuiltFingerprint = null;
+		mPipeline.buildWidgets( inspectionResult );
+		mBuiltFingerprint = fingerprint;
+		mBuiltValueBindingExpression = valueBindingExpression;
+	}
+
+	/**
+	 * Structural hash of everything that goes into building the widgets: the inspection result
+	 * and whether we are read-only.
+	 */
+
+	/* package private */byte[] fingerprint( Element inspectionResult )
+		throws Exception {
+
+		MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+		digest.update( (byte) ( isReadOnly() ? 1 : 0 ) );
+
+		if ( inspectionResult != null ) {
+			fingerprint( inspectionResult, digest );
+		}
+
+		return digest.digest();
+	}
+
+	private void fingerprint( Node node, MessageDigest digest )
+		throws Exception {
+
+		// Length-prefix every name and value (and count the attributes), so that no value can
+		// masquerade as structure. For example <a x="1&lt;y=2"/> and <a x="1" y="2"/> must not
+		// collide
+
+		digest.update( (byte) node.getNodeType() );
+		update( digest, node.getNodeName() );
+
+		if ( node instanceof Element ) {
+			NamedNodeMap attributes = node.getAttributes();
+			int length = attributes.getLength();
+			update( digest, length );
+
+			for ( int loop = 0; loop < length; loop++ ) {
+				Node attribute = attributes.item( loop );
+				update( digest, attribute.getNodeName() );
+				update( digest, attribute.getNodeValue() );
+			}
+		} else if ( node.getNodeValue() != null ) {
+			digest.update( (byte) 1 );
+			update( digest, node.getNodeValue() );
+		} else {
+			digest.update( (byte) 0 );
+		}
+
+		// Node types are all below '>' and '/', so children cannot be mistaken for siblings
+
+		digest.update( (byte) '>' );
+
+		for ( Node child = node.getFirstChild(); child != null; child = child.getNextSibling() ) {
+			fingerprint( child, digest );
+		}
+
+		digest.update( (byte) '/' );
+	}
+
+	/**
+	 * Update the digest with the given value, prefixed by its length.
+	 */
+
+	private static void update( MessageDigest digest, String value )
+		throws Exception {
+
+		byte[] bytes = value.getBytes( "UTF-8" );
+		update( digest, bytes.length );
+		digest.update( bytes );
+	}
+
+	private static void update( MessageDigest digest, int value ) {
+
+		digest.update( (byte) ( value >>> 24 ) );
+		digest.update( (byte) ( value >>> 16 ) );
+		digest.update( (byte) ( value >>> 8 ) );
+		digest.update( (byte) value );
+	}
+
 	/**
 	 * Removes all recreatable children (i.e. not marked COMPONENT_ATTRIBUTE_NOT_RECREATABLE). Does
 	 * not remove top-level <code>UIComponent</code>s if any of their
@@ -1449,6 +1609,7 @@ public abstract class UIMetawidget
 
 			if ( !rendered ) {
 				getMetawidget().getChildren().clear();
+				getMetawidget().mBuiltFingerprint = null;
 			}
 		}
 
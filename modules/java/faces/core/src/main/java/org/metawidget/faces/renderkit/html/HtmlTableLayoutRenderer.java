@@ -14,13 +14,16 @@ package org.metawidget.faces.renderkit.html;
 import static org.metawidget.inspector.InspectionResultConstants.*;
 
 import java.io.IOException;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.faces.component.UIComponent;
 import javax.faces.component.UIData;
 import javax.faces.component.UIInput;
 import javax.faces.component.UIParameter;
+import javax.faces.component.UIViewRoot;
 import javax.faces.component.html.HtmlInputHidden;
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
@@ -31,6 +34,7 @@ import org.metawidget.faces.component.UIMetawidget;
 import org.metawidget.faces.component.UIStub;
 import org.metawidget.layout.iface.LayoutException;
 import org.metawidget.util.WidgetBuilderUtils;
+import org.metawidget.util.simple.ObjectUtils;
 import org.metawidget.util.simple.SimpleLayoutUtils;
 import org.metawidget.util.simple.StringUtils;
 
@@ -69,6 +73,11 @@ import org.metawidget.util.simple.StringUtils;
  * The parameters <code>columns</code> and <code>columnClasses</code> might more properly be named
  * <code>numberOfColumns</code> and <code>columnStyleClasses</code>, but we are trying to follow the
  * <code>javax.faces.component.html.HtmlDataTable</code> convention.
+ * <p>
+ * Everything about a child that does not change from render to render (its metadata, CSS ids,
+ * label text, column span and required marker) is computed once and kept in a
+ * <code>RenderPlan</code> on the Metawidget. Subsequent renders of the same Metawidget (for example
+ * AJAX partial updates, or each row of an enclosing <code>UIData</code>) reuse it.
  *
  * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
  */
@@ -261,6 +270,10 @@ public class HtmlTableLayoutRenderer
 
 		List<UIComponent> children = metawidget.getChildren();
 
+		// Reuse the render plan from last time, if still valid
+
+		state.renderPlan = getRenderPlan( context, metawidget );
+
 		// Next, for each child component...
 
 		state.currentColumn = 0;
@@ -337,27 +350,17 @@ public class HtmlTableLayoutRenderer
 
 		ResponseWriter writer = context.getResponseWriter();
 
-		String cssId = getCssId( childComponent );
-
-		// Section headings
-
-		@SuppressWarnings( "unchecked" )
-		Map<String, String> metadataAttributes = (Map<String, String>) childComponent.getAttributes().get( UIMetawidget.COMPONENT_ATTRIBUTE_METADATA );
-
 		// (layoutBeforeChild may get called even if layoutBegin crashed. Try
 		// to fail gracefully)
 
 		State state = getState( metawidget );
+		ChildPlan childPlan = getChildPlan( context, metawidget, childComponent );
 
-		if ( metadataAttributes != null ) {
-			// Large components get a whole row
+		// Large components get a whole row
 
-			boolean largeComponent = metawidget instanceof UIData || TRUE.equals( metadataAttributes.get( LARGE ) );
-
-			if ( largeComponent && state.currentColumn != 1 ) {
-				writer.endElement( "tr" );
-				state.currentColumn = 1;
-			}
+		if ( childPlan.largeComponent && state.currentColumn != 1 ) {
+			writer.endElement( "tr" );
+			state.currentColumn = 1;
 		}
 
 		// Start a new row, if necessary
@@ -367,8 +370,8 @@ public class HtmlTableLayoutRenderer
 
 			writer.startElement( "tr", metawidget );
 
-			if ( cssId != null ) {
-				writer.writeAttribute( "id", TABLE_ID_PREFIX + cssId + ROW_ID_SUFFIX, null );
+			if ( childPlan.rowId != null ) {
+				writer.writeAttribute( "id", childPlan.rowId, null );
 			}
 
 			writeRowStyleClass( metawidget, writer, state.currentRow );
@@ -386,8 +389,8 @@ public class HtmlTableLayoutRenderer
 			writer.endElement( "tr" );
 			writer.startElement( "tr", metawidget );
 
-			if ( cssId != null ) {
-				writer.writeAttribute( "id", TABLE_ID_PREFIX + cssId + ROW_ID_SUFFIX + "2", null );
+			if ( childPlan.rowId != null ) {
+				writer.writeAttribute( "id", childPlan.rowId + "2", null );
 			}
 
 			writeRowStyleClass( metawidget, writer, state.currentRow );
@@ -397,8 +400,8 @@ public class HtmlTableLayoutRenderer
 
 		writer.startElement( "td", metawidget );
 
-		if ( cssId != null ) {
-			writer.writeAttribute( "id", TABLE_ID_PREFIX + cssId + COMPONENT_CELL_ID_SUFFIX, null );
+		if ( childPlan.componentCellId != null ) {
+			writer.writeAttribute( "id", childPlan.componentCellId, null );
 		}
 
 		// CSS
@@ -415,7 +418,7 @@ public class HtmlTableLayoutRenderer
 
 		// Metawidgets, tables and large components span all columns
 
-		if ( childComponent instanceof UIMetawidget || childComponent instanceof UIData || SimpleLayoutUtils.isSpanAllColumns( metadataAttributes ) ) {
+		if ( childPlan.spanAllColumns ) {
 			colspan = ( state.columns * LABEL_AND_COMPONENT_AND_REQUIRED ) - 2;
 			state.currentColumn = state.columns;
 
@@ -426,7 +429,7 @@ public class HtmlTableLayoutRenderer
 			// Nested table Metawidgets span the required column too (as they have their own
 			// required column)
 
-			if ( childComponent instanceof UIMetawidget && "table".equals( childComponent.getRendererType() ) ) {
+			if ( childPlan.nestedTableMetawidget ) {
 				colspan++;
 			}
 		} else if ( !labelWritten ) {
@@ -461,9 +464,10 @@ public class HtmlTableLayoutRenderer
 		ResponseWriter writer = context.getResponseWriter();
 		writer.startElement( "th", metawidget );
 
-		String cssId = getCssId( componentNeedingLabel );
-		if ( cssId != null ) {
-			writer.writeAttribute( "id", TABLE_ID_PREFIX + cssId + LABEL_CELL_ID_SUFFIX, null );
+		String labelCellId = getChildPlan( context, metawidget, componentNeedingLabel ).labelCellId;
+
+		if ( labelCellId != null ) {
+			writer.writeAttribute( "id", labelCellId, null );
 		}
 
 		// CSS
@@ -498,7 +502,9 @@ public class HtmlTableLayoutRenderer
 
 		// (except embedded table Metawidgets, which have their own required column)
 
-		if ( !( childComponent instanceof UIMetawidget && "table".equals( childComponent.getRendererType() ) ) && childComponent.getAttributes().containsKey( UIMetawidget.COMPONENT_ATTRIBUTE_METADATA ) ) {
+		ChildPlan childPlan = getChildPlan( context, metawidget, childComponent );
+
+		if ( !childPlan.nestedTableMetawidget && childPlan.metadataAttributes != null ) {
 
 			writer.startElement( "td", metawidget );
 
@@ -526,21 +532,11 @@ public class HtmlTableLayoutRenderer
 	protected void layoutRequired( FacesContext context, UIComponent metawidget, UIComponent child )
 		throws IOException {
 
-		@SuppressWarnings( "unchecked" )
-		Map<String, String> attributes = (Map<String, String>) child.getAttributes().get( UIMetawidget.COMPONENT_ATTRIBUTE_METADATA );
-
 		ResponseWriter writer = context.getResponseWriter();
 
-		if ( attributes != null ) {
-			if ( TRUE.equals( attributes.get( REQUIRED ) ) && !WidgetBuilderUtils.isReadOnly( attributes ) && !( (UIMetawidget) metawidget ).isReadOnly() ) {
-				// UIStubs can have attributes="required: true". UIMetawidgets with
-				// rendererType="simple" can be over required fields
-
-				if ( child instanceof UIInput || child instanceof UIStub || child instanceof UIMetawidget ) {
-					writer.write( "*" );
-					return;
-				}
-			}
+		if ( getChildPlan( context, metawidget, child ).required ) {
+			writer.write( "*" );
+			return;
 		}
 
 		// Render an empty div, so that the CSS can force it to a certain
@@ -551,6 +547,30 @@ public class HtmlTableLayoutRenderer
 		writer.endElement( "div" );
 	}
 
+	/**
+	 * Overridden to use the label text from the render plan, if any.
+	 */
+
+	@Override
+	protected String getLabelText( UIComponent componentNeedingLabel ) {
+
+		UIComponent metawidget = componentNeedingLabel.getParent();
+
+		if ( metawidget instanceof UIMetawidget ) {
+			RenderPlan renderPlan = getState( metawidget ).renderPlan;
+
+			if ( renderPlan != null ) {
+				ChildPlan childPlan = renderPlan.getChildPlan( componentNeedingLabel );
+
+				if ( childPlan != null ) {
+					return childPlan.labelText;
+				}
+			}
+		}
+
+		return super.getLabelText( componentNeedingLabel );
+	}
+
 	protected String getCssId( UIComponent metawidget ) {
 
 		ValueBinding binding = metawidget.getValueBinding( "value" );
@@ -610,6 +630,111 @@ public class HtmlTableLayoutRenderer
 	// Private methods
 	//
 
+	/**
+	 * Fetch the render plan stored on the Metawidget, or start a new one if there is none or it was
+	 * computed for a different locale or read-only-ness.
+	 */
+
+	private RenderPlan getRenderPlan( FacesContext context, UIComponent metawidget ) {
+
+		UIMetawidget uiMetawidget = (UIMetawidget) metawidget;
+		RenderPlan renderPlan = uiMetawidget.getClientProperty( RenderPlan.class );
+
+		// Labels are only localized if there is a bundle (see UIMetawidget.getLocalizedKey)
+
+		Locale locale = null;
+
+		if ( uiMetawidget.getValueBinding( "bundle" ) != null || context.getApplication().getMessageBundle() != null ) {
+			UIViewRoot viewRoot = context.getViewRoot();
+
+			if ( viewRoot != null ) {
+				locale = viewRoot.getLocale();
+			}
+		}
+
+		boolean readOnly = uiMetawidget.isReadOnly();
+
+		if ( renderPlan == null || renderPlan.readOnly != readOnly || !ObjectUtils.nullSafeEquals( renderPlan.locale, locale ) ) {
+			renderPlan = new RenderPlan( locale, readOnly );
+			uiMetawidget.putClientProperty( RenderPlan.class, renderPlan );
+		}
+
+		renderPlan.startRender();
+		return renderPlan;
+	}
+
+	/**
+	 * Fetch the plan for the given child from the current render plan, computing it if necessary.
+	 */
+
+	private ChildPlan getChildPlan( FacesContext context, UIComponent metawidget, UIComponent childComponent ) {
+
+		State state = getState( metawidget );
+
+		if ( state.renderPlan == null ) {
+			state.renderPlan = getRenderPlan( context, metawidget );
+		}
+
+		// Already checked during this render?
+
+		RenderPlan renderPlan = state.renderPlan;
+		ChildPlan childPlan = renderPlan.getChildPlan( childComponent );
+
+		if ( childPlan != null && childPlan.render == renderPlan.render ) {
+			return childPlan;
+		}
+
+		@SuppressWarnings( "unchecked" )
+		Map<String, String> metadataAttributes = (Map<String, String>) childComponent.getAttributes().get( UIMetawidget.COMPONENT_ATTRIBUTE_METADATA );
+		ValueBinding binding = childComponent.getValueBinding( "value" );
+		String expressionString = null;
+
+		if ( binding != null ) {
+			expressionString = binding.getExpressionString();
+		}
+
+		// Reuse the existing plan, unless the child has been rebuilt or rebound
+
+		if ( childPlan != null && childPlan.metadataAttributes == metadataAttributes && ObjectUtils.nullSafeEquals( childPlan.expressionString, expressionString ) ) {
+			childPlan.render = renderPlan.render;
+			return childPlan;
+		}
+
+		childPlan = new ChildPlan();
+		childPlan.render = renderPlan.render;
+		childPlan.metadataAttributes = metadataAttributes;
+		childPlan.expressionString = expressionString;
+
+		String cssId = getCssId( childComponent );
+
+		if ( cssId != null ) {
+			childPlan.rowId = TABLE_ID_PREFIX + cssId + ROW_ID_SUFFIX;
+			childPlan.labelCellId = TABLE_ID_PREFIX + cssId + LABEL_CELL_ID_SUFFIX;
+			childPlan.componentCellId = TABLE_ID_PREFIX + cssId + COMPONENT_CELL_ID_SUFFIX;
+		}
+
+		if ( metadataAttributes != null ) {
+			childPlan.largeComponent = metawidget instanceof UIData || TRUE.equals( metadataAttributes.get( LARGE ) );
+
+			// UIStubs can have attributes="required: true". UIMetawidgets with
+			// rendererType="simple" can be over required fields
+
+			if ( TRUE.equals( metadataAttributes.get( REQUIRED ) ) && !WidgetBuilderUtils.isReadOnly( metadataAttributes ) && !renderPlan.readOnly ) {
+				childPlan.required = childComponent instanceof UIInput || childComponent instanceof UIStub || childComponent instanceof UIMetawidget;
+			}
+		}
+
+		childPlan.spanAllColumns = childComponent instanceof UIMetawidget || childComponent instanceof UIData || SimpleLayoutUtils.isSpanAllColumns( metadataAttributes );
+		childPlan.nestedTableMetawidget = childComponent instanceof UIMetawidget && "table".equals( childComponent.getRendererType() );
+
+		// (not this.getLabelText, which consults the plan)
+
+		childPlan.labelText = super.getLabelText( childComponent );
+
+		renderPlan.putChildPlan( childComponent, childPlan );
+		return childPlan;
+	}
+
 	/* package private */State getState( UIComponent metawidget ) {
 
 		State state = (State) ( (UIMetawidget) metawidget ).getClientProperty( HtmlTableLayoutRenderer.class );
@@ -647,5 +772,117 @@ public class HtmlTableLayoutRenderer
 		/* package private */String[]	columnClasses;
 
 		/* package private */String[]	rowClasses;
+
+		/* package private */RenderPlan	renderPlan;
+	}
+
+	/**
+	 * Everything about the Metawidget's children that does not change from render to render.
+	 * <p>
+	 * Only valid for the locale and read-only-ness it was computed for. Plans for children that
+	 * were not rendered last time (for example, because they have since been removed) are dropped.
+	 */
+
+	/* package private */static class RenderPlan {
+
+		//
+		// Private members
+		//
+
+		/* package private */final Locale				locale;
+
+		/* package private */final boolean				readOnly;
+
+		/**
+		 * Incremented every render, so that child plans need only be checked once per render.
+		 */
+
+		/* package private */int						render;
+
+		private Map<UIComponent, ChildPlan>				mChildPlans			= new IdentityHashMap<UIComponent, ChildPlan>();
+
+		private Map<UIComponent, ChildPlan>				mPreviousChildPlans	= new IdentityHashMap<UIComponent, ChildPlan>();
+
+		//
+		// Constructor
+		//
+
+		public RenderPlan( Locale locale, boolean readOnly ) {
+
+			this.locale = locale;
+			this.readOnly = readOnly;
+		}
+
+		//
+		// Public methods
+		//
+
+		/**
+		 * Start a new render. Child plans used during the previous render are carried over as they
+		 * are looked up.
+		 */
+
+		public void startRender() {
+
+			render++;
+
+			if ( mChildPlans.isEmpty() ) {
+				return;
+			}
+
+			Map<UIComponent, ChildPlan> previousChildPlans = mPreviousChildPlans;
+			previousChildPlans.clear();
+			mPreviousChildPlans = mChildPlans;
+			mChildPlans = previousChildPlans;
+		}
+
+		public ChildPlan getChildPlan( UIComponent childComponent ) {
+
+			ChildPlan childPlan = mChildPlans.get( childComponent );
+
+			if ( childPlan == null ) {
+				childPlan = mPreviousChildPlans.remove( childComponent );
+
+				if ( childPlan != null ) {
+					mChildPlans.put( childComponent, childPlan );
+				}
+			}
+
+			return childPlan;
+		}
+
+		public void putChildPlan( UIComponent childComponent, ChildPlan childPlan ) {
+
+			mChildPlans.put( childComponent, childPlan );
+		}
+	}
+
+	/**
+	 * Simple, lightweight structure for a child's part of the <code>RenderPlan</code>.
+	 */
+
+	/* package private */static class ChildPlan {
+
+		/* package private */int					render;
+
+		/* package private */Map<String, String>	metadataAttributes;
+
+		/* package private */String					expressionString;
+
+		/* package private */String					rowId;
+
+		/* package private */String					labelCellId;
+
+		/* package private */String					componentCellId;
+
+		/* package private */String					labelText;
+
+		/* package private */boolean				largeComponent;
+
+		/* package private */boolean				spanAllColumns;
+
+		/* package private */boolean				nestedTableMetawidget;
+
+		/* package private */boolean				required;
 	}
 }
@@ -12,10 +12,15 @@
 package org.metawidget.inspectionresultprocessor.faces;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Matcher;
 
 import javax.faces.context.FacesContext;
+import javax.faces.el.ValueBinding;
 
 import org.metawidget.faces.FacesUtils;
 import org.metawidget.faces.component.UIMetawidget;
@@ -41,7 +46,22 @@ public class FacesInspectionResultProcessor
 	// Private statics
 	//
 
-	private static final String	UNDERSCORE_THIS_ATTRIBUTE	= "_this";
+	private static final String		UNDERSCORE_THIS_ATTRIBUTE					= "_this";
+
+	private static final String		APPLICATION_ATTRIBUTE_EXPRESSION_TEMPLATES	= "metawidget-expression-templates";
+
+	/**
+	 * Maximum number of distinct attribute values whose ExpressionTemplates are cached.
+	 */
+
+	private static final int		MAXIMUM_CACHED_TEMPLATES					= 1000;
+
+	/**
+	 * Whether <code>ValueExpression</code>s are supported (JSF 1.2 and above). Null until the first
+	 * expression is compiled.
+	 */
+
+	private static volatile Boolean	SUPPORTS_VALUE_EXPRESSIONS;
 
 	//
 	// Private members
@@ -49,7 +69,7 @@ public class FacesInspectionResultProcessor
 
 	private PropertyStyle		mInjectThis;
 
-	private String[]			mIgnoreAttributes;
+	private Set<String>			mIgnoreAttributes;
 
 	//
 	// Constructors
@@ -71,7 +91,13 @@ public class FacesInspectionResultProcessor
 	public FacesInspectionResultProcessor( FacesInspectionResultProcessorConfig config ) {
 
 		mInjectThis = config.getInjectThis();
-		mIgnoreAttributes = config.getIgnoreAttributes();
+		String[] ignoreAttributes = config.getIgnoreAttributes();
+
+		if ( ignoreAttributes == null ) {
+			mIgnoreAttributes = CollectionUtils.newHashSet();
+		} else {
+			mIgnoreAttributes = CollectionUtils.newHashSet( ignoreAttributes );
+		}
 	}
 
 	//
@@ -141,6 +167,9 @@ public class FacesInspectionResultProcessor
 	@Override
 	protected void processAttributes( Map<String, String> attributes, UIMetawidget metawidget ) {
 
+		FacesContext context = null;
+		ConcurrentMap<String, ExpressionTemplate> expressionTemplates = null;
+
 		// For each attribute value...
 
 		for ( Map.Entry<String, String> entry : attributes.entrySet() ) {
@@ -150,7 +179,7 @@ public class FacesInspectionResultProcessor
 
 			// ...except ones that are *expected* to be EL expressions...
 
-			if ( ArrayUtils.contains( mIgnoreAttributes, key )) {
+			if ( mIgnoreAttributes.contains( key ) ) {
 
 				if ( mInjectThis != null ) {
 					String unwrappedExpression = FacesUtils.unwrapExpression( value );
@@ -165,72 +194,268 @@ public class FacesInspectionResultProcessor
 
 			// ...that contains an EL expression...
 
+			if ( value.indexOf( '{' ) == -1 ) {
+				continue;
+			}
+
+			if ( context == null ) {
+				context = FacesContext.getCurrentInstance();
+				expressionTemplates = getExpressionTemplates( context );
+			}
+
+			ExpressionTemplate template = getExpressionTemplate( expressionTemplates, value );
+
+			if ( !template.hasExpressions() ) {
+				continue;
+			}
+
+			// ...evaluate it and replace it
+
+			attributes.put( key, template.evaluate( context, mInjectThis != null ) );
+		}
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Gets the application-wide cache of ExpressionTemplates. These are shared by all
+	 * FacesInspectionResultProcessors, as they depend only on the attribute value.
+	 */
+
+	@SuppressWarnings( "unchecked" )
+	private ConcurrentMap<String, ExpressionTemplate> getExpressionTemplates( FacesContext context ) {
+
+		Map<String, Object> applicationMap = context.getExternalContext().getApplicationMap();
+		ConcurrentMap<String, ExpressionTemplate> expressionTemplates = (ConcurrentMap<String, ExpressionTemplate>) applicationMap.get( APPLICATION_ATTRIBUTE_EXPRESSION_TEMPLATES );
+
+		if ( expressionTemplates == null ) {
+
+			// (if another Thread got there first, we'll just lose its cached templates)
+
+			expressionTemplates = CollectionUtils.newConcurrentHashMap();
+			applicationMap.put( APPLICATION_ATTRIBUTE_EXPRESSION_TEMPLATES, expressionTemplates );
+		}
+
+		return expressionTemplates;
+	}
+
+	private ExpressionTemplate getExpressionTemplate( ConcurrentMap<String, ExpressionTemplate> expressionTemplates, String value ) {
+
+		ExpressionTemplate template = expressionTemplates.get( value );
+
+		if ( template == null ) {
+
+			// Attribute values are usually a fixed set, but guard against unbounded growth
+
+			if ( expressionTemplates.size() >= MAXIMUM_CACHED_TEMPLATES ) {
+				expressionTemplates.clear();
+			}
+
+			template = new ExpressionTemplate( value );
+			expressionTemplates.put( value, template );
+		}
+
+		return template;
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * An attribute value parsed into literal text and compiled expressions.
+	 * <p>
+	 * Each expression is compiled the first time it is evaluated, to a <code>ValueExpression</code>
+	 * (JSF 1.2 and above) or a <code>ValueBinding</code> (JSF 1.1). Both hold no per-request state
+	 * and are always evaluated against the current context, so ExpressionTemplates can be shared.
+	 */
+
+	private static class ExpressionTemplate {
+
+		//
+		// Private members
+		//
+
+		private final String						mValue;
+
+		/**
+		 * Literal text before each expression, plus the literal text after the last one.
+		 */
+
+		private final String[]						mLiterals;
+
+		/**
+		 * Each expression, including its <code>#{...}</code>.
+		 */
+
+		private final String[]						mExpressionStrings;
+
+		/**
+		 * Each expression, compiled on first use.
+		 * <p>
+		 * Note: we hold <code>ValueExpression</code>s as Objects, to stop link-time dependencies on
+		 * <code>javax.el</code>, so that we still work with JSF 1.1.
+		 */
+
+		private final AtomicReferenceArray<Object>	mCompiledExpressions;
+
+		/**
+		 * Whether each expression refers to <code>_this</code>.
+		 */
+
+		private final boolean[]						mUnderscoreThis;
+
+		/**
+		 * Offset of each expression within <code>mValue</code>.
+		 */
+
+		private final int[]							mExpressionStarts;
+
+		//
+		// Constructor
+		//
+
+		public ExpressionTemplate( String value ) {
+
+			mValue = value;
+
+			List<String> literals = CollectionUtils.newArrayList();
+			List<String> expressionStrings = CollectionUtils.newArrayList();
+			List<Integer> expressionStarts = CollectionUtils.newArrayList();
+			List<Boolean> underscoreThis = CollectionUtils.newArrayList();
 			Matcher matcher = FacesUtils.matchExpression( value );
-			int matchOffset = 0;
+			int literalStart = 0;
 
 			while ( matcher.find() ) {
+				literals.add( value.substring( literalStart, matcher.start() ) );
+				expressionStrings.add( matcher.group( 0 ) );
+				expressionStarts.add( matcher.start() );
+				underscoreThis.add( matcher.group( 2 ).startsWith( UNDERSCORE_THIS_ATTRIBUTE + StringUtils.SEPARATOR_DOT ) );
+				literalStart = matcher.end();
+			}
+
+			literals.add( value.substring( literalStart ) );
+
+			mLiterals = literals.toArray( new String[literals.size()] );
+			mExpressionStrings = expressionStrings.toArray( new String[expressionStrings.size()] );
+			mCompiledExpressions = new AtomicReferenceArray<Object>( mExpressionStrings.length );
+			mExpressionStarts = new int[mExpressionStrings.length];
+			mUnderscoreThis = new boolean[mExpressionStrings.length];
+
+			for ( int loop = 0, length = mExpressionStrings.length; loop < length; loop++ ) {
+				mExpressionStarts[loop] = expressionStarts.get( loop );
+				mUnderscoreThis[loop] = underscoreThis.get( loop );
+			}
+		}
+
+		//
+		// Public methods
+		//
+
+		public boolean hasExpressions() {
+
+			return ( mExpressionStrings.length > 0 );
+		}
 
-				String expression = matcher.group( 0 );
+		public String evaluate( FacesContext context, boolean injectThis ) {
+
+			StringBuilder builder = new StringBuilder( mValue.length() );
+
+			for ( int loop = 0, length = mExpressionStrings.length; loop < length; loop++ ) {
+
+				builder.append( mLiterals[loop] );
 
 				// Sanity checks
 
-				if ( mInjectThis == null && matcher.group( 2 ).startsWith( UNDERSCORE_THIS_ATTRIBUTE + StringUtils.SEPARATOR_DOT ) ) {
-					throw InspectionResultProcessorException.newException( "Expression for '" + value + "' contains '" + UNDERSCORE_THIS_ATTRIBUTE + "', but " + FacesInspectionResultProcessorConfig.class.getSimpleName() + ".setInjectThis is null" );
+				if ( !injectThis && mUnderscoreThis[loop] ) {
+					throw InspectionResultProcessorException.newException( "Expression for '" + builder + mValue.substring( mExpressionStarts[loop] ) + "' contains '" + UNDERSCORE_THIS_ATTRIBUTE + "', but " + FacesInspectionResultProcessorConfig.class.getSimpleName() + ".setInjectThis is null" );
 				}
 
-				// ...evaluate it...
-
 				try {
-					FacesContext context = FacesContext.getCurrentInstance();
-					@SuppressWarnings( "deprecation" )
-					Object valueObject = context.getApplication().createValueBinding( expression ).getValue( context );
-					String valueObjectAsString;
+					Object valueObject = getValue( context, loop );
 
-					if ( valueObject == null ) {
+					// Support the default case (when the String is just one EL)
 
-						// Support the default case (when the String is just one EL)
+					if ( length == 1 && mLiterals[0].length() == 0 && mLiterals[1].length() == 0 ) {
 
-						if ( matcher.start() == 0 && matcher.end() == value.length() ) {
-							value = null;
-							break;
+						if ( valueObject == null ) {
+							return null;
 						}
 
-						valueObjectAsString = "";
-					} else {
-
-						// Support the default case (when the String is just one EL)
+						if ( valueObject instanceof Collection<?> ) {
+							return CollectionUtils.toString( (Collection<?>) valueObject );
+						}
 
-						if ( matcher.start() == 0 && matcher.end() == value.length() ) {
-							if ( valueObject instanceof Collection<?> ) {
-								value = CollectionUtils.toString( (Collection<?>) valueObject );
-							} else if ( valueObject.getClass().isArray() ) {
-								value = ArrayUtils.toString( valueObject );
-							} else {
-								value = String.valueOf( valueObject );
-							}
-							break;
+						if ( valueObject.getClass().isArray() ) {
+							return ArrayUtils.toString( valueObject );
 						}
-						
-						valueObjectAsString = String.valueOf( valueObject );
+
+						return String.valueOf( valueObject );
 					}
 
 					// Replace multiple ELs within the String
 
-					value = new StringBuilder( value ).replace( matcher.start() + matchOffset, matcher.end() + matchOffset, valueObjectAsString ).toString();
-					matchOffset += valueObjectAsString.length() - ( matcher.end() - matcher.start() );
+					if ( valueObject != null ) {
+						builder.append( String.valueOf( valueObject ) );
+					}
 
 				} catch ( Exception e ) {
 
 					// We have found it helpful to include the actual expression we were trying to
-					// evaluate
+					// evaluate (and the String as evaluated so far)
+
+					throw InspectionResultProcessorException.newException( "Unable to evaluate " + builder + mValue.substring( mExpressionStarts[loop] ), e );
+				}
+			}
+
+			builder.append( mLiterals[mExpressionStrings.length] );
+			return builder.toString();
+		}
+
+		//
+		// Private methods
+		//
+
+		@SuppressWarnings( "deprecation" )
+		private Object getValue( FacesContext context, int index ) {
+
+			Object compiledExpression = mCompiledExpressions.get( index );
+
+			if ( compiledExpression == null ) {
+
+				// (if another Thread got there first, we'll just use its compiled expression next time)
+
+				compiledExpression = compileExpression( context, mExpressionStrings[index] );
+				mCompiledExpressions.set( index, compiledExpression );
+			}
+
+			if ( compiledExpression instanceof ValueBinding ) {
+				return ( (ValueBinding) compiledExpression ).getValue( context );
+			}
+
+			return ( (javax.el.ValueExpression) compiledExpression ).getValue( context.getELContext() );
+		}
+
+		@SuppressWarnings( "deprecation" )
+		private static Object compileExpression( FacesContext context, String expressionString ) {
+
+			if ( !Boolean.FALSE.equals( SUPPORTS_VALUE_EXPRESSIONS ) ) {
+				try {
+					// JSF 1.2 mode
 
-					throw InspectionResultProcessorException.newException( "Unable to evaluate " + value, e );
+					Object[] valueExpression = new Object[] { context.getApplication().getExpressionFactory().createValueExpression( context.getELContext(), expressionString, Object.class ) };
+					SUPPORTS_VALUE_EXPRESSIONS = Boolean.TRUE;
+					return valueExpression[0];
+				} catch ( NoSuchMethodError e ) {
+					SUPPORTS_VALUE_EXPRESSIONS = Boolean.FALSE;
 				}
 			}
 
-			// ...and replace it
+			// JSF 1.1 mode
 
-			attributes.put( key, value );
+			return context.getApplication().createValueBinding( expressionString );
 		}
 	}
 }
@@ -14,6 +14,7 @@ package org.metawidget.faces.component;
 import static org.metawidget.inspector.InspectionResultConstants.*;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 
 import javax.faces.component.UIComponent;
@@ -32,7 +33,9 @@ import org.metawidget.inspector.propertytype.PropertyTypeInspector;
 import org.metawidget.util.CollectionUtils;
 import org.metawidget.util.LogUtils;
 import org.metawidget.util.LogUtilsTest;
+import org.metawidget.util.XmlUtils;
 import org.metawidget.widgetbuilder.iface.WidgetBuilder;
+import org.w3c.dom.Element;
 
 /**
  * UIMetawidget test cases.
@@ -171,6 +174,107 @@ public class UIMetawidgetTest
 		assertEquals( notRecreatableComponent, metawidget.getChildren().get( 0 ) );
 	}
 
+	@SuppressWarnings( "deprecation" )
+	public void testReuseWidgetsIfUnchanged()
+		throws Exception {
+
+		final StringBuilder result = new StringBuilder();
+
+		UIMetawidget metawidget = new HtmlMetawidget() {
+
+			@Override
+			protected Pipeline newPipeline() {
+
+				return new Pipeline() {
+
+					@Override
+					protected void configure() {
+
+						// Do not read metawidget.xml
+					}
+
+					@Override
+					public void buildWidgets( Element inspectionResult )
+						throws Exception {
+
+						result.append( "buildWidgets called;" );
+
+						HtmlOutputText child = new HtmlOutputText();
+						child.setValueBinding( "value", mContext.getApplication().createValueBinding( "#{foo.bar}" ) );
+						getChildren().clear();
+						getChildren().add( child );
+					}
+				};
+			}
+		};
+
+		metawidget.setInspector( new PropertyTypeInspector() );
+		metawidget.setValueBinding( "value", mContext.getApplication().createValueBinding( "#{foo}" ) );
+
+		// Rebuilds every time by default
+
+		metawidget.buildWidgets();
+		metawidget.buildWidgets();
+		assertEquals( "buildWidgets called;buildWidgets called;", result.toString() );
+
+		// Reuse if unchanged
+
+		result.setLength( 0 );
+		metawidget.setReuseWidgetsIfUnchanged( true );
+		metawidget.buildWidgets();
+		UIComponent child = metawidget.getChildren().get( 0 );
+		metawidget.buildWidgets();
+		assertEquals( "buildWidgets called;", result.toString() );
+		assertTrue( child == metawidget.getChildren().get( 0 ) );
+
+		// Rebuild if the value binding changed (even if the inspection result did not)
+
+		metawidget.setValueBinding( "value", mContext.getApplication().createValueBinding( "#{baz}" ) );
+		metawidget.buildWidgets();
+		assertEquals( "buildWidgets called;buildWidgets called;", result.toString() );
+		assertTrue( child != metawidget.getChildren().get( 0 ) );
+		metawidget.buildWidgets();
+		assertEquals( "buildWidgets called;buildWidgets called;", result.toString() );
+
+		// Rebuild if read-only changed
+
+		metawidget.setReadOnly( true );
+		metawidget.buildWidgets();
+		assertEquals( "buildWidgets called;buildWidgets called;buildWidgets called;", result.toString() );
+
+		// Rebuild if the value changes shape
+
+		metawidget.setValueBinding( "value", mContext.getApplication().createValueBinding( "#{array}" ) );
+		metawidget.buildWidgets();
+		assertEquals( "buildWidgets called;buildWidgets called;buildWidgets called;buildWidgets called;", result.toString() );
+		metawidget.buildWidgets();
+		assertEquals( "buildWidgets called;buildWidgets called;buildWidgets called;buildWidgets called;", result.toString() );
+	}
+
+	public void testFingerprint()
+		throws Exception {
+
+		UIMetawidget metawidget = new HtmlMetawidget();
+
+		// Attribute values containing separators must not collide with extra attributes
+
+		Element entity = XmlUtils.newDocument().createElementNS( NAMESPACE, ENTITY );
+		entity.setAttribute( "a", "1<b=2" );
+
+		Element otherEntity = XmlUtils.newDocument().createElementNS( NAMESPACE, ENTITY );
+		otherEntity.setAttribute( "a", "1" );
+		otherEntity.setAttribute( "b", "2" );
+
+		assertFalse( Arrays.equals( metawidget.fingerprint( entity ), metawidget.fingerprint( otherEntity ) ) );
+
+		// Same structure, same fingerprint
+
+		Element sameEntity = XmlUtils.newDocument().createElementNS( NAMESPACE, ENTITY );
+		sameEntity.setAttribute( "a", "1<b=2" );
+
+		assertTrue( Arrays.equals( metawidget.fingerprint( entity ), metawidget.fingerprint( sameEntity ) ) );
+	}
+
 	public void testStub()
 		throws Exception {
 
@@ -116,6 +116,69 @@ public class HtmlTableLayoutRendererTest
 		assertEquals( "<div id=\"j_id2\"><htmlInputHidden></htmlInputHidden><table><tbody><tr><th><htmlOutputLabel id=\"foo-label\" for=\"foo\" value=\"Bar:\"></htmlOutputLabel></th><td><htmlInputText id=\"foo\"></htmlInputText><htmlMessage id=\"j_idmw0\" for=\"foo\"></htmlMessage></td><td>*</td></tr></tbody></table></div>", mContext.getResponseWriter().toString() );
 	}
 
+	public void testRenderPlan()
+		throws Exception {
+
+		HtmlMetawidget metawidget = new HtmlMetawidget();
+		HtmlTableLayoutRenderer renderer = new HtmlTableLayoutRenderer();
+		HtmlInputText inputText = new HtmlInputText();
+		inputText.setId( "foo" );
+		Map<String, String> attributes = CollectionUtils.newHashMap();
+		attributes.put( NAME, "Bar" );
+		attributes.put( REQUIRED, TRUE );
+		inputText.getAttributes().put( UIMetawidget.COMPONENT_ATTRIBUTE_METADATA, attributes );
+		metawidget.getChildren().add( inputText );
+
+		renderer.encodeBegin( mContext, metawidget );
+		renderer.encodeChildren( mContext, metawidget );
+		renderer.encodeEnd( mContext, metawidget );
+
+		String expected = "<table id=\"j_id2\"><tbody><tr><th><htmlOutputLabel id=\"foo-label\" for=\"foo\" value=\"Bar:\"></htmlOutputLabel></th><td><htmlInputText id=\"foo\"></htmlInputText><htmlMessage id=\"j_idmw0\" for=\"foo\"></htmlMessage></td><td>*</td></tr></tbody></table>";
+		assertEquals( expected, mContext.getResponseWriter().toString() );
+
+		HtmlTableLayoutRenderer.RenderPlan renderPlan = metawidget.getClientProperty( HtmlTableLayoutRenderer.RenderPlan.class );
+		HtmlTableLayoutRenderer.ChildPlan childPlan = renderPlan.getChildPlan( inputText );
+		assertEquals( "Bar", childPlan.labelText );
+		assertTrue( childPlan.required );
+
+		// Render again: same output, same plan
+
+		mContext = new MockFacesContext();
+		renderer.encodeBegin( mContext, metawidget );
+		renderer.encodeChildren( mContext, metawidget );
+		renderer.encodeEnd( mContext, metawidget );
+
+		assertEquals( expected, mContext.getResponseWriter().toString() );
+		assertTrue( renderPlan == metawidget.getClientProperty( HtmlTableLayoutRenderer.RenderPlan.class ) );
+		assertTrue( childPlan == renderPlan.getChildPlan( inputText ) );
+
+		// Rebuilt child: new child plan
+
+		attributes = CollectionUtils.newHashMap();
+		attributes.put( NAME, "Baz" );
+		inputText.getAttributes().put( UIMetawidget.COMPONENT_ATTRIBUTE_METADATA, attributes );
+
+		mContext = new MockFacesContext();
+		renderer.encodeBegin( mContext, metawidget );
+		renderer.encodeChildren( mContext, metawidget );
+		renderer.encodeEnd( mContext, metawidget );
+
+		assertTrue( mContext.getResponseWriter().toString().contains( "value=\"Baz:\"" ) );
+		assertTrue( renderPlan == metawidget.getClientProperty( HtmlTableLayoutRenderer.RenderPlan.class ) );
+		assertFalse( childPlan == renderPlan.getChildPlan( inputText ) );
+		assertFalse( renderPlan.getChildPlan( inputText ).required );
+
+		// Read-only: new render plan
+
+		metawidget.setReadOnly( true );
+		mContext = new MockFacesContext();
+		renderer.encodeBegin( mContext, metawidget );
+		renderer.encodeChildren( mContext, metawidget );
+		renderer.encodeEnd( mContext, metawidget );
+
+		assertFalse( renderPlan == metawidget.getClientProperty( HtmlTableLayoutRenderer.RenderPlan.class ) );
+	}
+
 	//
 	// Protected methods
 	//
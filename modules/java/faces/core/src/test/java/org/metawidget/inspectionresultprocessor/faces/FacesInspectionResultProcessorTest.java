@@ -16,7 +16,10 @@ import static org.metawidget.inspector.InspectionResultConstants.*;
 import java.util.List;
 import java.util.Map;
 
+import javax.faces.application.Application;
+import javax.faces.application.ApplicationWrapper;
 import javax.faces.context.FacesContext;
+import javax.faces.el.ValueBinding;
 
 import junit.framework.TestCase;
 
@@ -291,6 +294,94 @@ public class FacesInspectionResultProcessorTest
 		assertEquals( entity.getChildNodes().getLength(), 1 );
 	}
 
+	public void testExpressionTemplates() {
+
+		String xml = "<?xml version=\"1.0\"?>";
+		xml += "<inspection-result xmlns=\"http://www.metawidget.org/inspection-result\" version=\"1.0\">";
+		xml += "<entity type=\"Foo\">";
+		xml += "<property name=\"bar\" value-is-embedded-el=\"first #{abc} last\" faces-lookup=\"#{faces.lookup}\"/>";
+		xml += "</entity></inspection-result>";
+
+		// Templates are shared across processors, and ignored attributes need not be set
+
+		for ( int loop = 0; loop < 2; loop++ ) {
+			FacesInspectionResultProcessor inspectionResultProcessor = new FacesInspectionResultProcessor( new FacesInspectionResultProcessorConfig().setIgnoreAttributes( (String[]) null ) );
+			String result = inspectionResultProcessor.processInspectionResult( xml, null, null, "Foo" );
+			Element property = XmlUtils.getFirstChildElement( XmlUtils.getFirstChildElement( XmlUtils.documentFromString( result ).getDocumentElement() ) );
+			assertEquals( "first result of #{abc} last", property.getAttribute( "value-is-embedded-el" ) );
+			assertEquals( "result of #{faces.lookup}", property.getAttribute( "faces-lookup" ) );
+		}
+
+		// Errors report the String as evaluated so far, every time
+
+		xml = "<?xml version=\"1.0\"?>";
+		xml += "<inspection-result xmlns=\"http://www.metawidget.org/inspection-result\" version=\"1.0\">";
+		xml += "<entity type=\"Foo\">";
+		xml += "<property name=\"bar\" value-is-error=\"first #{abc} then #{error}\"/>";
+		xml += "</entity></inspection-result>";
+
+		FacesInspectionResultProcessor inspectionResultProcessor = new FacesInspectionResultProcessor();
+
+		for ( int loop = 0; loop < 2; loop++ ) {
+			try {
+				inspectionResultProcessor.processInspectionResult( xml, null, null, "Foo" );
+				fail();
+			} catch ( InspectionResultProcessorException e ) {
+				assertEquals( "Unable to evaluate first result of #{abc} then #{error}", e.getMessage() );
+			}
+		}
+	}
+
+	public void testExpressionsCompiledOnce() {
+
+		final List<String> compiled = CollectionUtils.newArrayList();
+
+		mContext.release();
+		mContext = new MockFacesContext() {
+
+			@Override
+			public Application getApplication() {
+
+				final Application application = super.getApplication();
+
+				return new ApplicationWrapper() {
+
+					@Override
+					public Application getWrapped() {
+
+						return application;
+					}
+
+					@Override
+					@SuppressWarnings( "deprecation" )
+					public ValueBinding createValueBinding( String expressionString ) {
+
+						compiled.add( expressionString );
+						return super.createValueBinding( expressionString );
+					}
+				};
+			}
+		};
+
+		String xml = "<?xml version=\"1.0\"?>";
+		xml += "<inspection-result xmlns=\"http://www.metawidget.org/inspection-result\" version=\"1.0\">";
+		xml += "<entity type=\"Foo\">";
+		xml += "<property name=\"bar\" value-is-embedded-el=\"first #{abc} last #{def}\"/>";
+		xml += "</entity></inspection-result>";
+
+		// Evaluating the same template again reuses its compiled expressions
+
+		FacesInspectionResultProcessor inspectionResultProcessor = new FacesInspectionResultProcessor();
+
+		for ( int loop = 0; loop < 2; loop++ ) {
+			String result = inspectionResultProcessor.processInspectionResult( xml, null, null, "Foo" );
+			Element property = XmlUtils.getFirstChildElement( XmlUtils.getFirstChildElement( XmlUtils.documentFromString( result ).getDocumentElement() ) );
+			assertEquals( "first result of #{abc} last result of #{def}", property.getAttribute( "value-is-embedded-el" ) );
+		}
+
+		assertEquals( "[#{abc}, #{def}]", compiled.toString() );
+	}
+
 	//
 	// Protected methods
 	//
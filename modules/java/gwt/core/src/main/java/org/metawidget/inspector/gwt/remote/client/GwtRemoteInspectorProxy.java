@@ -12,12 +12,20 @@
 package org.metawidget.inspector.gwt.remote.client;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.metawidget.inspector.gwt.remote.iface.GwtRemoteInspector;
 import org.metawidget.inspector.gwt.remote.iface.GwtRemoteInspectorAsync;
 import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.util.simple.PathUtils;
+import org.metawidget.util.simple.StringUtils;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.rpc.ServiceDefTarget;
 
@@ -32,6 +40,11 @@ import com.google.gwt.user.client.rpc.ServiceDefTarget;
  * rather than the entire object. This is because some <code>Inspectors</code> inspect the
  * <em>value</em> of the properties (eg. <code>PropertyTypeInspector</code>). On a case-by-case
  * basis, however, such optimization is possible - see <code>GwtMetawidget.rebind</code>.
+ * <p>
+ * Inspections requested within the same browser event (such as those from a screen full of nested
+ * <code>GwtMetawidget</code>s) can be batched into a single AJAX call per <code>toInspect</code>
+ * (see <code>setBatchInspections</code>). Results can also be cached client-side (see
+ * <code>setCacheInspectionResults</code>), but this is off by default for the same reason as above.
  *
  * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
  */
@@ -43,7 +56,19 @@ public class GwtRemoteInspectorProxy
 	// Private members
 	//
 
-	private GwtRemoteInspectorAsync	mInspector;
+	private GwtRemoteInspectorAsync			mInspector;
+
+	private boolean							mBatchInspections;
+
+	/**
+	 * Cache of inspection results, keyed by type and path. Null if caching is disabled.
+	 */
+
+	private Map<String, String>				mCache;
+
+	private List<PendingInspection>			mPending			= new ArrayList<PendingInspection>();
+
+	private Timer							mSendPending;
 
 	//
 	// Constructor
@@ -85,24 +110,241 @@ public class GwtRemoteInspectorProxy
 		throw new UnsupportedOperationException( "Use async inspection instead" );
 	}
 
+	/**
+	 * Sets whether inspections requested within the same browser event should be sent to the
+	 * server in a single AJAX call.
+	 * <p>
+	 * Off by default, because it requires the server to implement
+	 * <code>GwtRemoteInspector.inspectBatch</code> (as <code>GwtRemoteInspectorImpl</code> does).
+	 * Servlets that implement their own <code>GwtRemoteInspector</code> may not.
+	 */
+
+	public void setBatchInspections( boolean batchInspections ) {
+
+		mBatchInspections = batchInspections;
+	}
+
+	/**
+	 * Sets whether to cache inspection results client-side, keyed by type and path.
+	 * <p>
+	 * Off by default, because some <code>Inspectors</code> inspect the <em>value</em> of the
+	 * properties, so the same type and path may not always produce the same result. Clients that
+	 * enable caching should call <code>invalidate</code> whenever such a value changes.
+	 */
+
+	public void setCacheInspectionResults( boolean cacheInspectionResults ) {
+
+		if ( !cacheInspectionResults ) {
+			mCache = null;
+		} else if ( mCache == null ) {
+			mCache = new HashMap<String, String>();
+		}
+	}
+
+	/**
+	 * Invalidates all cached inspection results.
+	 */
+
+	public void invalidate() {
+
+		if ( mCache != null ) {
+			mCache.clear();
+		}
+	}
+
+	/**
+	 * Invalidates cached inspection results for the given type, including all paths beneath it.
+	 */
+
+	public void invalidate( String type ) {
+
+		if ( mCache == null ) {
+			return;
+		}
+
+		String prefix = type + StringUtils.SEPARATOR_FORWARD_SLASH_CHAR;
+
+		for ( Iterator<String> i = mCache.keySet().iterator(); i.hasNext(); ) {
+			String key = i.next();
+
+			if ( key.equals( type ) || key.startsWith( prefix ) ) {
+				i.remove();
+			}
+		}
+	}
+
 	public void inspect( Object toInspect, String type, String[] names, final AsyncCallback<String> callback ) {
 
 		if ( !( toInspect instanceof Serializable ) ) {
 			throw new RuntimeException( "Objects passed to GwtRemoteInspector must be Serializable" );
 		}
 
-		mInspector.inspect( (Serializable) toInspect, type, names, new AsyncCallback<String>() {
+		// Cached?
+
+		String cacheKey = null;
+
+		if ( mCache != null ) {
+			cacheKey = PathUtils.toPath( type, names );
+			String cached = mCache.get( cacheKey );
+
+			if ( cached != null ) {
+				callback.onSuccess( cached );
+				return;
+			}
+		}
+
+		PendingInspection pending = new PendingInspection( (Serializable) toInspect, type, names, cacheKey, callback );
+
+		if ( !mBatchInspections ) {
+			send( pending );
+			return;
+		}
+
+		// Queue until the end of this browser event, so that sibling (and nested) Metawidgets can
+		// share the round trip
+
+		mPending.add( pending );
+
+		if ( mSendPending == null ) {
+			mSendPending = new Timer() {
+
+				@Override
+				public void run() {
+
+					sendPending();
+				}
+			};
+
+			mSendPending.schedule( 1 );
+		}
+	}
+
+	//
+	// Private methods
+	//
+
+	/* package private */void sendPending() {
+
+		List<PendingInspection> pendings = mPending;
+		mPending = new ArrayList<PendingInspection>();
+		mSendPending = null;
+
+		// One batch per toInspect
+
+		while ( !pendings.isEmpty() ) {
+			Serializable toInspect = pendings.get( 0 ).mToInspect;
+			List<PendingInspection> batch = new ArrayList<PendingInspection>();
+
+			for ( Iterator<PendingInspection> i = pendings.iterator(); i.hasNext(); ) {
+				PendingInspection pending = i.next();
+
+				if ( pending.mToInspect == toInspect ) {
+					batch.add( pending );
+					i.remove();
+				}
+			}
+
+			if ( batch.size() == 1 ) {
+				send( batch.get( 0 ) );
+			} else {
+				send( toInspect, batch );
+			}
+		}
+	}
+
+	private void send( final PendingInspection pending ) {
+
+		mInspector.inspect( pending.mToInspect, pending.mType, pending.mNames, new AsyncCallback<String>() {
 
 			public void onFailure( Throwable caught ) {
 
-				callback.onFailure( caught );
+				pending.mCallback.onFailure( caught );
 			}
 
 			public void onSuccess( String xml ) {
 
-				callback.onSuccess( xml );
+				cache( pending, xml );
+				pending.mCallback.onSuccess( xml );
 			}
 		} );
+	}
+
+	private void send( Serializable toInspect, final List<PendingInspection> batch ) {
 
+		int size = batch.size();
+		String[] types = new String[size];
+		String[][] names = new String[size][];
+
+		for ( int loop = 0; loop < size; loop++ ) {
+			PendingInspection pending = batch.get( loop );
+			types[loop] = pending.mType;
+			names[loop] = pending.mNames;
+		}
+
+		mInspector.inspectBatch( toInspect, types, names, new AsyncCallback<String[]>() {
+
+			public void onFailure( Throwable caught ) {
+
+				for ( PendingInspection pending : batch ) {
+					pending.mCallback.onFailure( caught );
+				}
+			}
+
+			public void onSuccess( String[] xmls ) {
+
+				for ( int loop = 0, length = batch.size(); loop < length; loop++ ) {
+					PendingInspection pending = batch.get( loop );
+					cache( pending, xmls[loop] );
+					pending.mCallback.onSuccess( xmls[loop] );
+				}
+			}
+		} );
+	}
+
+	private void cache( PendingInspection pending, String xml ) {
+
+		// Caching may have been switched off (or on) while the call was in flight
+
+		if ( mCache != null && pending.mCacheKey != null && xml != null ) {
+			mCache.put( pending.mCacheKey, xml );
+		}
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * An inspection waiting to be sent to the server.
+	 */
+
+	private static class PendingInspection {
+
+		//
+		// Private members
+		//
+
+		/* package private */Serializable			mToInspect;
+
+		/* package private */String					mType;
+
+		/* package private */String[]				mNames;
+
+		/* package private */String					mCacheKey;
+
+		/* package private */AsyncCallback<String>	mCallback;
+
+		//
+		// Constructor
+		//
+
+		public PendingInspection( Serializable toInspect, String type, String[] names, String cacheKey, AsyncCallback<String> callback ) {
+
+			mToInspect = toInspect;
+			mType = type;
+			mNames = names;
+			mCacheKey = cacheKey;
+			mCallback = callback;
+		}
 	}
 }
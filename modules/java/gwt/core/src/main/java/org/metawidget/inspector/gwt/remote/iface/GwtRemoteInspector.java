@@ -47,4 +47,21 @@ public interface GwtRemoteInspector
 	//
 
 	String inspect( Serializable toInspect, String type, String[] names );
+
+	/**
+	 * Inspect several paths of the same <code>toInspect</code> in a single round trip.
+	 * <p>
+	 * Useful for forms with nested Metawidgets, which would otherwise make one AJAX call per
+	 * nested Metawidget. <code>GwtRemoteInspectorProxy</code> only calls this method if
+	 * <code>setBatchInspections</code> is true, so implementations that do not support batching
+	 * may throw <code>UnsupportedOperationException</code>.
+	 *
+	 * @param types
+	 *            the type of each path to inspect
+	 * @param names
+	 *            the names of each path to inspect. Must be the same length as <code>types</code>
+	 * @return the inspection result of each path, in the same order as <code>types</code>
+	 */
+
+	String[] inspectBatch( Serializable toInspect, String[] types, String[][] names );
 }
@@ -12,6 +12,7 @@
 package org.metawidget.inspector.gwt.remote.server;
 
 import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.servlet.ServletConfig;
@@ -24,6 +25,9 @@ import org.metawidget.inspector.gwt.remote.iface.GwtRemoteInspector;
 import org.metawidget.inspector.iface.Inspector;
 import org.metawidget.pipeline.w3c.W3CPipeline;
 import org.metawidget.util.ClassUtils;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.simple.PathUtils;
+import org.metawidget.util.simple.StringUtils;
 
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 
@@ -34,6 +38,8 @@ import com.google.gwt.user.server.rpc.RemoteServiceServlet;
  * <ul>
  * <li><code>config</code> - fully qualified path to (optional) <code>metawidget.xml</code>, for
  * example <code>com/foo/metawidget.xml</code>.
+ * <li><code>cacheInspectionResults</code> - <code>true</code> to reuse inspection results across
+ * requests (see <code>setCacheInspectionResults</code>).
  * </ul>
  * <p>
  * <strong>This Inspector is designed to work 'out of the box' for most cases. However, use of
@@ -47,12 +53,25 @@ public class GwtRemoteInspectorImpl
 	extends RemoteServiceServlet
 	implements GwtRemoteInspector {
 
+	//
+	// Private statics
+	//
+
+	private static final int							MAXIMUM_CACHED_INSPECTION_RESULTS	= 1000;
+
 	//
 	// Private members
 	//
 
 	private transient GwtRemoteInspectorImplPipeline	mPipeline;
 
+	/**
+	 * Cache of inspection results, keyed by class of <code>toInspect</code>, type and path. Null if
+	 * caching is disabled.
+	 */
+
+	private transient volatile Map<String, String>		mCache;
+
 	//
 	// Constructor
 	//
@@ -81,6 +100,10 @@ public class GwtRemoteInspectorImpl
 		if ( config != null ) {
 			mPipeline.setConfig( config );
 		}
+
+		if ( Boolean.parseBoolean( servletConfig.getInitParameter( "cacheInspectionResults" ) ) ) {
+			setCacheInspectionResults( true );
+		}
 	}
 
 	/**
@@ -94,17 +117,113 @@ public class GwtRemoteInspectorImpl
 
 	public String inspect( Serializable toInspect, String type, String[] names ) {
 
-		return mPipeline.inspect( toInspect, type, names );
+		// (read mCache once, as caching may be switched off concurrently)
+
+		Map<String, String> cache = mCache;
+
+		if ( cache == null ) {
+			return mPipeline.inspect( toInspect, type, names );
+		}
+
+		String cacheKey = getCacheKey( toInspect, type, names );
+		String inspectionResult;
+
+		synchronized ( cache ) {
+			inspectionResult = cache.get( cacheKey );
+		}
+
+		if ( inspectionResult == null ) {
+			inspectionResult = mPipeline.inspect( toInspect, type, names );
+
+			synchronized ( cache ) {
+				cache.put( cacheKey, inspectionResult );
+			}
+		}
+
+		return inspectionResult;
+	}
+
+	/**
+	 * Inspect several paths of the given Serializable in one request.
+	 * <p>
+	 * Paths that appear more than once in the batch are only inspected once. This is always safe,
+	 * because every path in the batch shares the same <code>toInspect</code>.
+	 */
+
+	public String[] inspectBatch( Serializable toInspect, String[] types, String[][] names ) {
+
+		String[] inspectionResults = new String[types.length];
+		Map<String, String> inspectedInBatch = CollectionUtils.newHashMap();
+
+		for ( int loop = 0, length = types.length; loop < length; loop++ ) {
+			String cacheKey = getCacheKey( toInspect, types[loop], names[loop] );
+			String inspectionResult = inspectedInBatch.get( cacheKey );
+
+			if ( inspectionResult == null ) {
+				inspectionResult = inspect( toInspect, types[loop], names[loop] );
+				inspectedInBatch.put( cacheKey, inspectionResult );
+			}
+
+			inspectionResults[loop] = inspectionResult;
+		}
+
+		return inspectionResults;
+	}
+
+	/**
+	 * Sets whether to reuse inspection results across requests, keyed by the class of
+	 * <code>toInspect</code>, the type and the path.
+	 * <p>
+	 * Off by default, because some <code>Inspectors</code> inspect the <em>value</em> of the
+	 * properties (eg. <code>PropertyTypeInspector</code>), so the same path may not always produce
+	 * the same result. The cache is bounded, discarding the least recently used results.
+	 */
+
+	public void setCacheInspectionResults( boolean cacheInspectionResults ) {
+
+		if ( !cacheInspectionResults ) {
+			mCache = null;
+			return;
+		}
+
+		if ( mCache == null ) {
+			mCache = new LinkedHashMap<String, String>( 16, 0.75f, true ) {
+
+				@Override
+				protected boolean removeEldestEntry( Map.Entry<String, String> eldest ) {
+
+					return size() > MAXIMUM_CACHED_INSPECTION_RESULTS;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Discards all reused inspection results, for example after redeploying
+	 * <code>metawidget.xml</code>.
+	 */
+
+	public void invalidate() {
+
+		Map<String, String> cache = mCache;
+
+		if ( cache != null ) {
+			synchronized ( cache ) {
+				cache.clear();
+			}
+		}
 	}
 
 	public void setInspector( Inspector inspector ) {
 
 		mPipeline.setInspector( inspector );
+		invalidate();
 	}
 
 	public void setInspectionResultProcessors( InspectionResultProcessor<GwtRemoteInspectorImpl>... inspectionResultProcessors ) {
 
 		mPipeline.setInspectionResultProcessors( inspectionResultProcessors );
+		invalidate();
 	}
 
 	//
@@ -132,6 +251,21 @@ public class GwtRemoteInspectorImpl
 		return getServletConfig().getInitParameter( "config" );
 	}
 
+	//
+	// Private methods
+	//
+
+	private static String getCacheKey( Serializable toInspect, String type, String[] names ) {
+
+		String path = PathUtils.toPath( type, names );
+
+		if ( toInspect == null ) {
+			return StringUtils.SEPARATOR_COLON_CHAR + path;
+		}
+
+		return toInspect.getClass().getName() + StringUtils.SEPARATOR_COLON_CHAR + path;
+	}
+
 	//
 	// Inner class
 	//
@@ -0,0 +1,190 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.inspector.gwt.remote.server;
+
+import java.io.Serializable;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspector.iface.Inspector;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class GwtRemoteInspectorImplTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testInspectBatch() {
+
+		CountingInspector inspector = new CountingInspector();
+		GwtRemoteInspectorImpl remoteInspector = new GwtRemoteInspectorImpl();
+		remoteInspector.setInspector( inspector );
+		remoteInspector.setInspectionResultProcessors();
+
+		// Paths repeated within a batch are only inspected once
+
+		Foo foo = new Foo();
+		String[] inspectionResults = remoteInspector.inspectBatch( foo, new String[] { "Foo", "Foo", "Foo" }, new String[][] { null, new String[] { "bar" }, null } );
+
+		assertEquals( 3, inspectionResults.length );
+		assertTrue( inspectionResults[0].contains( "name=\"Foo\"" ) );
+		assertTrue( inspectionResults[1].contains( "name=\"Foo/bar\"" ) );
+		assertSame( inspectionResults[0], inspectionResults[2] );
+		assertEquals( 2, inspector.getInspections() );
+
+		// ...but not across batches, unless caching
+
+		remoteInspector.inspectBatch( foo, new String[] { "Foo" }, new String[][] { null } );
+		assertEquals( 3, inspector.getInspections() );
+	}
+
+	public void testCacheInspectionResults() {
+
+		CountingInspector inspector = new CountingInspector();
+		GwtRemoteInspectorImpl remoteInspector = new GwtRemoteInspectorImpl();
+		remoteInspector.setInspector( inspector );
+		remoteInspector.setInspectionResultProcessors();
+		remoteInspector.setCacheInspectionResults( true );
+
+		Foo foo = new Foo();
+		String inspectionResult = remoteInspector.inspect( foo, "Foo", null );
+		assertSame( inspectionResult, remoteInspector.inspect( new Foo(), "Foo", null ) );
+		assertEquals( 1, inspector.getInspections() );
+
+		// Keyed by class of toInspect, and by path
+
+		remoteInspector.inspect( new SubFoo(), "Foo", null );
+		assertEquals( 2, inspector.getInspections() );
+		remoteInspector.inspect( foo, "Foo", new String[] { "bar" } );
+		assertEquals( 3, inspector.getInspections() );
+
+		// Batches use the cache too
+
+		remoteInspector.inspectBatch( foo, new String[] { "Foo", "Foo" }, new String[][] { null, new String[] { "bar" } } );
+		assertEquals( 3, inspector.getInspections() );
+
+		// Invalidate
+
+		remoteInspector.invalidate();
+		remoteInspector.inspect( foo, "Foo", null );
+		assertEquals( 4, inspector.getInspections() );
+
+		remoteInspector.setInspector( inspector );
+		remoteInspector.inspect( foo, "Foo", null );
+		assertEquals( 5, inspector.getInspections() );
+
+		// Switch off
+
+		remoteInspector.setCacheInspectionResults( false );
+		remoteInspector.inspect( foo, "Foo", null );
+		assertEquals( 6, inspector.getInspections() );
+	}
+
+	public void testCacheIsBounded() {
+
+		CountingInspector inspector = new CountingInspector();
+		GwtRemoteInspectorImpl remoteInspector = new GwtRemoteInspectorImpl();
+		remoteInspector.setInspector( inspector );
+		remoteInspector.setInspectionResultProcessors();
+		remoteInspector.setCacheInspectionResults( true );
+
+		// Fill the cache
+
+		Foo foo = new Foo();
+
+		for ( int loop = 0; loop < 1000; loop++ ) {
+			remoteInspector.inspect( foo, "Foo", new String[] { String.valueOf( loop ) } );
+		}
+
+		assertEquals( 1000, inspector.getInspections() );
+
+		// Use the eldest, so that it is no longer the least recently used...
+
+		remoteInspector.inspect( foo, "Foo", new String[] { "0" } );
+		assertEquals( 1000, inspector.getInspections() );
+
+		// ...then overflow
+
+		remoteInspector.inspect( foo, "Foo", new String[] { "1000" } );
+		assertEquals( 1001, inspector.getInspections() );
+
+		remoteInspector.inspect( foo, "Foo", new String[] { "0" } );
+		assertEquals( 1001, inspector.getInspections() );
+
+		remoteInspector.inspect( foo, "Foo", new String[] { "1" } );
+		assertEquals( 1002, inspector.getInspections() );
+	}
+
+	//
+	// Inner class
+	//
+
+	/* package private */static class CountingInspector
+		implements Inspector {
+
+		//
+		// Private members
+		//
+
+		private int	mInspections;
+
+		//
+		// Public methods
+		//
+
+		public String inspect( Object toInspect, String type, String... names ) {
+
+			mInspections++;
+
+			StringBuilder builder = new StringBuilder( type );
+
+			if ( names != null ) {
+				for ( String name : names ) {
+					builder.append( '/' );
+					builder.append( name );
+				}
+			}
+
+			return "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"" + type + "\"><property name=\"" + builder + "\"/></entity></inspection-result>";
+		}
+
+		public int getInspections() {
+
+			return mInspections;
+		}
+	}
+
+	/* package private */static class Foo
+		implements Serializable {
+
+		//
+		// Private statics
+		//
+
+		private static final long	serialVersionUID	= 1l;
+	}
+
+	/* package private */static class SubFoo
+		extends Foo {
+
+		//
+		// Private statics
+		//
+
+		private static final long	serialVersionUID	= 1l;
+	}
+}
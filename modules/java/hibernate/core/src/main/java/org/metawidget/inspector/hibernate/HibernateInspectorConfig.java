@@ -54,6 +54,12 @@ public class HibernateInspectorConfig
 		return (HibernateInspectorConfig) super.setInputStream( stream );
 	}
 
+	@Override
+	public HibernateInspectorConfig setIndexed( boolean indexed ) {
+
+		return (HibernateInspectorConfig) super.setIndexed( indexed );
+	}
+
 	/**
 	 * Sets whether the Inspector returns &lt;id&gt; properties as <code>hidden="true"</code>. True
 	 * by default.
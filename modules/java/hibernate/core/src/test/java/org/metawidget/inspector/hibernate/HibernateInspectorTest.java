@@ -146,6 +146,38 @@ public class HibernateInspectorTest
 		assertFalse( property.hasAttribute( HIDDEN ) );
 	}
 
+	public void testIndexed() {
+
+		// hideIds must be honoured, even though HibernateInspector sets it after BaseXmlInspector's
+		// constructor has run
+
+		mInspector = new HibernateInspector( new HibernateInspectorConfig().setIndexed( true ).setInputStream( new SimpleResourceResolver().openResource( "org/metawidget/inspector/hibernate/test-hibernate.cfg.xml" ) ) );
+
+		Document document = XmlUtils.documentFromString( mInspector.inspect( null, "org.metawidget.inspector.hibernate.SubFoo" ) );
+		Element entity = (Element) document.getDocumentElement().getFirstChild();
+		Element property = (Element) entity.getFirstChild();
+		assertEquals( "baz", property.getAttribute( NAME ) );
+		assertEquals( TRUE, property.getAttribute( HIDDEN ) );
+
+		mInspector = new HibernateInspector( new HibernateInspectorConfig().setHideIds( false ).setIndexed( true ).setInputStream( new SimpleResourceResolver().openResource( "org/metawidget/inspector/hibernate/test-hibernate.cfg.xml" ) ) );
+
+		document = XmlUtils.documentFromString( mInspector.inspect( null, "org.metawidget.inspector.hibernate.SubFoo" ) );
+		entity = (Element) document.getDocumentElement().getFirstChild();
+		property = (Element) entity.getFirstChild();
+		assertEquals( "baz", property.getAttribute( NAME ) );
+		assertFalse( property.hasAttribute( HIDDEN ) );
+
+		// Traverse
+
+		document = XmlUtils.documentFromString( mInspector.inspect( null, "org.metawidget.inspector.hibernate.SubFoo", "bar" ) );
+		entity = (Element) document.getDocumentElement().getFirstChild();
+		assertEquals( "bar", entity.getAttribute( NAME ) );
+		assertEquals( TRUE, entity.getAttribute( REQUIRED ) );
+		property = (Element) entity.getFirstChild();
+		assertEquals( "id", property.getAttribute( NAME ) );
+		assertFalse( property.hasAttribute( HIDDEN ) );
+	}
+
 	public void testTraverseParent() {
 
 		Document document = XmlUtils.documentFromString( mInspector.inspect( null, "org.metawidget.inspector.hibernate.SubFoo", "bar" ) );
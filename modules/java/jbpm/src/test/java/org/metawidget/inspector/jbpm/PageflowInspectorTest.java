@@ -72,4 +72,18 @@ public class PageflowInspectorTest
 
 		assertEquals( property.getNextSibling(), null );
 	}
+
+	public void testIndexed() {
+
+		BaseXmlInspectorConfig config = new BaseXmlInspectorConfig().setIndexed( true );
+		config.setInputStreams( new SimpleResourceResolver().openResource( "org/metawidget/inspector/jbpm/test-pageflow1.jpdl.xml" ), new SimpleResourceResolver().openResource( "org/metawidget/inspector/jbpm/test-pageflow2.jpdl.xml" ) );
+		Inspector indexed = new PageflowInspector( config );
+
+		// Same results as walking the DOM
+
+		assertEquals( mInspector.inspect( null, "newuser.contact" ), indexed.inspect( null, "newuser.contact" ) );
+		assertEquals( mInspector.inspect( null, "checkout.confirm" ), indexed.inspect( null, "checkout.confirm" ) );
+		assertTrue( indexed.inspect( null, "checkout.confirm" ).contains( "purchase" ) );
+		assertEquals( null, indexed.inspect( null, "checkout.no-such-page" ) );
+	}
 }
@@ -0,0 +1,381 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.json.schema;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessor;
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.pipeline.w3c.W3CPipeline;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.XmlUtils;
+import org.w3c.dom.Element;
+
+/**
+ * Cache of JSON Schemas rendered from inspection results, keyed by type.
+ * <p>
+ * Suitable for REST services that serve JSON Schemas to the JavaScript versions of Metawidget (see
+ * http://blog.kennardconsulting.com/2013/02/metawidget-and-rest.html). Each type is inspected (using
+ * a <code>W3CPipeline</code>) and rendered (using <code>XmlUtils.inspectionResultToJsonSchema</code>)
+ * only once. Subsequent requests write the cached schema straight to the response, without
+ * re-inspecting or re-encoding.
+ * <p>
+ * The cache holds up to a maximum number of schemas (after which the approximately least recently
+ * used schema is discarded). Types that inspect to nothing (eg. unknown types, or types with no
+ * properties or actions) are not cached, so that requests for arbitrary type names cannot fill it.
+ * <p>
+ * Types are inspected without a <code>toInspect</code>, so the cache is not suitable for
+ * Inspectors that inspect the <em>value</em> of properties (eg. <code>PropertyTypeInspector</code>
+ * inspecting <code>actual-class</code>). Add any InspectionResultProcessors before sharing the cache
+ * between threads.
+ *
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class JsonSchemaCache {
+
+	//
+	// Private statics
+	//
+
+	private static final String								CHARSET					= "UTF-8";
+
+	private static final int								DEFAULT_MAXIMUM_SIZE	= 1000;
+
+	//
+	// Private members
+	//
+
+	private final JsonSchemaCachePipeline					mPipeline;
+
+	private final int										mMaximumSize;
+
+	private final ConcurrentMap<String, CachedJsonSchema>	mCache					= CollectionUtils.newConcurrentHashMap();
+
+	/**
+	 * Ticks on every cache access. Each cached schema records the tick it was last used at, so
+	 * eviction can find the (approximately) least recently used.
+	 */
+
+	private final AtomicLong								mClock					= new AtomicLong();
+
+	/**
+	 * Incremented by every <code>invalidate</code>. A render that misses the cache only stores its
+	 * schema if no invalidation happened while it was running, so that it cannot re-insert a stale
+	 * schema.
+	 */
+
+	private final AtomicLong								mGeneration				= new AtomicLong();
+
+	private final Object									mEvictionLock			= new Object();
+
+	//
+	// Constructor
+	//
+
+	public JsonSchemaCache( Inspector inspector ) {
+
+		this( inspector, DEFAULT_MAXIMUM_SIZE );
+	}
+
+	/**
+	 * @param maximumSize
+	 *            the maximum number of JSON Schemas to cache. Must be greater than zero
+	 */
+
+	public JsonSchemaCache( Inspector inspector, int maximumSize ) {
+
+		if ( maximumSize <= 0 ) {
+			throw new IllegalArgumentException( "JsonSchemaCache needs a maximumSize greater than zero" );
+		}
+
+		mMaximumSize = maximumSize;
+		mPipeline = newPipeline();
+		mPipeline.setInspector( inspector );
+	}
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Adds a processor to run over each inspection result before rendering it. Consider
+	 * <code>JsonSchemaMappingProcessor</code> and <code>JsonTypeMappingProcessor</code>.
+	 */
+
+	public void addInspectionResultProcessor( InspectionResultProcessor<JsonSchemaCache> inspectionResultProcessor ) {
+
+		mPipeline.addInspectionResultProcessor( inspectionResultProcessor );
+		invalidate();
+	}
+
+	/**
+	 * Gets the JSON Schema for the given type, inspecting and rendering it if not already cached.
+	 */
+
+	public String getJsonSchema( String type ) {
+
+		return getCachedJsonSchema( type ).mJson;
+	}
+
+	/**
+	 * Writes the JSON Schema for the given type to the given Writer.
+	 */
+
+	public void writeJsonSchema( String type, Writer writer )
+		throws IOException {
+
+		writer.write( getCachedJsonSchema( type ).mJson );
+	}
+
+	/**
+	 * Writes the JSON Schema for the given type to the given OutputStream, encoded as UTF-8.
+	 * <p>
+	 * The encoded bytes are cached too, so this avoids re-encoding the schema on every request.
+	 */
+
+	public void writeJsonSchema( String type, OutputStream out )
+		throws IOException {
+
+		out.write( getCachedJsonSchema( type ).mUtf8 );
+	}
+
+	/**
+	 * Discards the cached JSON Schema for the given type (if any).
+	 */
+
+	public void invalidate( String type ) {
+
+		// Bump the generation before removing, so that any in-flight render either sees the new
+		// generation or has already stored its schema (which we then remove)
+
+		mGeneration.incrementAndGet();
+		mCache.remove( type );
+	}
+
+	/**
+	 * Discards all cached JSON Schemas.
+	 */
+
+	public void invalidate() {
+
+		mGeneration.incrementAndGet();
+		mCache.clear();
+	}
+
+	/**
+	 * @return how many JSON Schemas are currently cached
+	 */
+
+	public int getSize() {
+
+		return mCache.size();
+	}
+
+	//
+	// Protected methods
+	//
+
+	/**
+	 * Instantiate the Pipeline used by this JsonSchemaCache.
+	 * <p>
+	 * Subclasses wishing to use their own Pipeline should override this method to instantiate their
+	 * version.
+	 */
+
+	protected JsonSchemaCachePipeline newPipeline() {
+
+		return new JsonSchemaCachePipeline();
+	}
+
+	//
+	// Private methods
+	//
+
+	private CachedJsonSchema getCachedJsonSchema( String type ) {
+
+		CachedJsonSchema cached = mCache.get( type );
+
+		if ( cached != null ) {
+			cached.setLastUsed( mClock.incrementAndGet() );
+			return cached;
+		}
+
+		// Rendering twice under contention is harmless, and cheaper than locking
+
+		long generation = mGeneration.get();
+		Element inspectionResult = mPipeline.inspectAsDom( null, type );
+
+		if ( inspectionResult == null ) {
+			return new CachedJsonSchema( "" );
+		}
+
+		cached = new CachedJsonSchema( XmlUtils.inspectionResultToJsonSchema( inspectionResult ) );
+
+		// Don't cache types that inspect to nothing
+
+		if ( XmlUtils.getFirstChildElement( XmlUtils.getFirstChildElement( inspectionResult ) ) == null ) {
+			return cached;
+		}
+
+		putCachedJsonSchema( type, generation, cached );
+		return cached;
+	}
+
+	/**
+	 * Stores the given JSON Schema, unless the cache was invalidated since <code>generation</code>
+	 * (ie. while the schema was rendering).
+	 */
+
+	private void putCachedJsonSchema( String type, long generation, CachedJsonSchema cached ) {
+
+		cached.setLastUsed( mClock.incrementAndGet() );
+		mCache.put( type, cached );
+
+		// Check after putting, not before, else an invalidate could slip in between
+
+		if ( mGeneration.get() != generation ) {
+			mCache.remove( type, cached );
+			return;
+		}
+
+		if ( mCache.size() > mMaximumSize ) {
+			evict();
+		}
+	}
+
+	/**
+	 * Evicts the least recently used schemas until the cache is back within its maximum size.
+	 * <p>
+	 * Schemas may be used concurrently with the scan, so this is approximate. Only one Thread
+	 * evicts at a time, but lookups carry on in parallel.
+	 */
+
+	private void evict() {
+
+		synchronized ( mEvictionLock ) {
+			while ( mCache.size() > mMaximumSize ) {
+				Map.Entry<String, CachedJsonSchema> eldest = null;
+
+				for ( Map.Entry<String, CachedJsonSchema> entry : mCache.entrySet() ) {
+					if ( eldest == null || entry.getValue().getLastUsed() < eldest.getValue().getLastUsed() ) {
+						eldest = entry;
+					}
+				}
+
+				if ( eldest == null ) {
+					return;
+				}
+
+				mCache.remove( eldest.getKey(), eldest.getValue() );
+			}
+		}
+	}
+
+	//
+	// Inner class
+	//
+
+	/**
+	 * Use the Pipeline for its Inspector/InspectionResultProcessor support.
+	 */
+
+	protected class JsonSchemaCachePipeline
+		extends W3CPipeline<Object, Object, JsonSchemaCache> {
+
+		//
+		// Protected methods
+		//
+
+		@Override
+		protected String getDefaultConfiguration() {
+
+			return null;
+		}
+
+		@Override
+		protected JsonSchemaCache getPipelineOwner() {
+
+			// For passing to processInspectionResult
+
+			return JsonSchemaCache.this;
+		}
+
+		//
+		// Unsupported protected methods (there are no widgets)
+		//
+
+		@Override
+		protected Map<String, String> getAdditionalAttributes( Object widget ) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected JsonSchemaCache buildNestedMetawidget( Map<String, String> attributes )
+			throws Exception {
+
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * A rendered JSON Schema, both as a String and as UTF-8 bytes.
+	 */
+
+	private static class CachedJsonSchema {
+
+		//
+		// Private members
+		//
+
+		/* package private */String	mJson;
+
+		/* package private */byte[]	mUtf8;
+
+		private volatile long		mLastUsed;
+
+		//
+		// Constructor
+		//
+
+		public CachedJsonSchema( String json ) {
+
+			mJson = json;
+
+			try {
+				mUtf8 = json.getBytes( CHARSET );
+			} catch ( IOException e ) {
+				throw new RuntimeException( e );
+			}
+		}
+
+		//
+		// Public methods
+		//
+
+		public long getLastUsed() {
+
+			return mLastUsed;
+		}
+
+		public void setLastUsed( long lastUsed ) {
+
+			mLastUsed = lastUsed;
+		}
+	}
+}
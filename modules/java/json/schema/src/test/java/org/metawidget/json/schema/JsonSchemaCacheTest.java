@@ -0,0 +1,187 @@
+// Metawidget
+//
+// This file is dual licensed under both the LGPL
+// (http://www.gnu.org/licenses/lgpl-2.1.html) and the EPL
+// (http://www.eclipse.org/org/documents/epl-v10.php). As a
+// recipient of Metawidget, you may choose to receive it under either
+// the LGPL or the EPL.
+//
+// Commercial licenses are also available. See http://metawidget.org
+// for details.
+
+package org.metawidget.json.schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspectionresultprocessor.json.schema.JsonSchemaMappingProcessor;
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.inspector.propertytype.PropertyTypeInspector;
+
+/**
+ * @author <a href="http://kennardconsulting.com">Richard Kennard</a>
+ */
+
+public class JsonSchemaCacheTest
+	extends TestCase {
+
+	//
+	// Public methods
+	//
+
+	public void testCache()
+		throws Exception {
+
+		CountingInspector inspector = new CountingInspector();
+		JsonSchemaCache cache = new JsonSchemaCache( inspector );
+		cache.addInspectionResultProcessor( new JsonSchemaMappingProcessor<JsonSchemaCache>() );
+
+		String expected = "{\"type\":\"" + Foo.class.getName() + "\",\"properties\":{\"bar\":{\"noSetter\":\"true\",\"propertyOrder\":0,\"type\":\"java.lang.String\"},\"baz\":{\"noSetter\":\"true\",\"propertyOrder\":1,\"type\":\"int\"}}}";
+		assertEquals( expected, cache.getJsonSchema( Foo.class.getName() ) );
+		assertEquals( 1, inspector.mInspections );
+
+		// Writer and OutputStream should reuse the cached schema
+
+		StringWriter writer = new StringWriter();
+		cache.writeJsonSchema( Foo.class.getName(), writer );
+		assertEquals( expected, writer.toString() );
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		cache.writeJsonSchema( Foo.class.getName(), out );
+		assertEquals( expected, out.toString( "UTF-8" ) );
+		assertEquals( 1, inspector.mInspections );
+
+		// Unknown types are not cached
+
+		assertEquals( "{\"type\":\"no.such.Type\"}", cache.getJsonSchema( "no.such.Type" ) );
+		assertEquals( 2, inspector.mInspections );
+		assertEquals( "{\"type\":\"no.such.Type\"}", cache.getJsonSchema( "no.such.Type" ) );
+		assertEquals( 3, inspector.mInspections );
+		assertEquals( 1, cache.getSize() );
+
+		// Invalidate
+
+		cache.invalidate( Foo.class.getName() );
+		assertEquals( 0, cache.getSize() );
+		assertEquals( expected, cache.getJsonSchema( Foo.class.getName() ) );
+		assertEquals( 4, inspector.mInspections );
+
+		cache.invalidate();
+		cache.getJsonSchema( Foo.class.getName() );
+		assertEquals( 5, inspector.mInspections );
+	}
+
+	public void testMaximumSize() {
+
+		CountingInspector inspector = new CountingInspector();
+		JsonSchemaCache cache = new JsonSchemaCache( inspector, 2 );
+
+		cache.getJsonSchema( Foo.class.getName() );
+		cache.getJsonSchema( Bar.class.getName() );
+		assertEquals( 2, cache.getSize() );
+
+		// Use Foo, so that Bar is the least recently used...
+
+		cache.getJsonSchema( Foo.class.getName() );
+		assertEquals( 2, inspector.mInspections );
+
+		// ...then overflow
+
+		cache.getJsonSchema( Baz.class.getName() );
+		assertEquals( 2, cache.getSize() );
+		assertEquals( 3, inspector.mInspections );
+
+		cache.getJsonSchema( Foo.class.getName() );
+		assertEquals( 3, inspector.mInspections );
+		cache.getJsonSchema( Bar.class.getName() );
+		assertEquals( 4, inspector.mInspections );
+
+		try {
+			new JsonSchemaCache( inspector, 0 );
+			fail();
+		} catch ( IllegalArgumentException e ) {
+			assertEquals( "JsonSchemaCache needs a maximumSize greater than zero", e.getMessage() );
+		}
+	}
+
+	public void testInvalidateDuringRender() {
+
+		final JsonSchemaCache[] cache = new JsonSchemaCache[1];
+
+		CountingInspector inspector = new CountingInspector() {
+
+			@Override
+			public String inspect( Object toInspect, String type, String... names ) {
+
+				// Simulate another Thread invalidating while this render is in flight
+
+				cache[0].invalidate();
+				return super.inspect( toInspect, type, names );
+			}
+		};
+
+		cache[0] = new JsonSchemaCache( inspector );
+
+		// The (possibly stale) schema is still returned, but not cached
+
+		assertTrue( cache[0].getJsonSchema( Foo.class.getName() ).length() > 0 );
+		assertEquals( 0, cache[0].getSize() );
+	}
+
+	//
+	// Inner class
+	//
+
+	public static class Foo {
+
+		public String getBar() {
+
+			return null;
+		}
+
+		public int getBaz() {
+
+			return 0;
+		}
+	}
+
+	public static class Bar {
+
+		public String getAbc() {
+
+			return null;
+		}
+	}
+
+	public static class Baz {
+
+		public String getDef() {
+
+			return null;
+		}
+	}
+
+	/* package private */static class CountingInspector
+		implements Inspector {
+
+		//
+		// Private members
+		//
+
+		/* package private */int		mInspections;
+
+		private Inspector			mDelegate	= new PropertyTypeInspector();
+
+		//
+		// Public methods
+		//
+
+		public String inspect( Object toInspect, String type, String... names ) {
+
+			mInspections++;
+			return mDelegate.inspect( toInspect, type, names );
+		}
+	}
+}
@@ -37,4 +37,10 @@ public class XmlSchemaInspectorConfig
 
 		return (XmlSchemaInspectorConfig) super.setInputStream( stream );
 	}
+
+	@Override
+	public XmlSchemaInspectorConfig setIndexed( boolean indexed ) {
+
+		return (XmlSchemaInspectorConfig) super.setIndexed( indexed );
+	}
 }
\ No newline at end of file
@@ -774,6 +774,24 @@ public class XmlSchemaInspectorTest
 		assertTrue( !entity.hasChildNodes() );
 	}
 
+	public void testIndexed() {
+
+		// Same results as walking the DOM (XmlSchemaInspector overrides
+		// traverseFromTopLevelTypeToNamedChildren and inspectTraits)
+
+		assertIndexed( "shiporder.xsd", "shiporder" );
+		assertIndexed( "shiporder.xsd", "shiporder", "shipto" );
+		assertIndexed( "shiporder-divided.xsd", "shiporder", "shipto" );
+		assertIndexed( "shiporder-named.xsd", "shiporder" );
+		assertIndexed( "quirks.xsd", "quirks" );
+		assertIndexed( "personinfo.xsd", "fullpersoninfo" );
+		assertIndexed( "acmt-010.xsd", "AccountRequestAcknowledgementV01", "Refs", "MsgId" );
+		assertIndexed( "acmt-010.xsd", "AccountRequestAcknowledgementV02", "Foo" );
+		assertIndexed( "trading-partner.xsd", "PlasticCardInformationGroup_ComplexType", "AuthorizationResponseInformation" );
+		assertIndexed( "ddms.xsd", "MetacardInfoType", "creator", "organization", "subOrganization" );
+		assertIndexed( "bank-account.xsd", "accountSummary", "currency" );
+	}
+
 	public void testConfig() {
 
 		MetawidgetTestUtils.testEqualsAndHashcode( XmlSchemaInspectorConfig.class, new XmlSchemaInspectorConfig() {
@@ -796,4 +814,17 @@ public class XmlSchemaInspectorTest
 		metawidget.setBorder( BorderFactory.createEmptyBorder( 5, 5, 5, 5 ) );
 		frame.setVisible( true );
 	}
+
+	//
+	// Private methods
+	//
+
+	private void assertIndexed( String resource, String type, String... names ) {
+
+		String path = "org/metawidget/inspector/xsd/" + resource;
+		Inspector inspector = new XmlSchemaInspector( new XmlSchemaInspectorConfig().setInputStream( new SimpleResourceResolver().openResource( path ) ) );
+		Inspector indexed = new XmlSchemaInspector( new XmlSchemaInspectorConfig().setIndexed( true ).setInputStream( new SimpleResourceResolver().openResource( path ) ) );
+
+		assertEquals( inspector.inspect( null, type, names ), indexed.inspect( null, type, names ) );
+	}
 }